@@ -0,0 +1,351 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+// Carrinhos por sessão: quentes como objetos, ociosos no formato do CodecCarrinho em byte[],
+// e os muito ociosos em um arquivo de derramamento. Cada sessão pertence a uma faixa com trava própria.
+// Registros relidos ou removidos ficam mortos no arquivo até a compactação, que regrava só os vivos.
+public final class ArmazemCarrinhos implements Closeable {
+    // Estimativas de heap: chave, entrada e nó do mapa por sessão; carrinho quente (objeto + tries)
+    // e cada item (item, produto, preço, nó); calibradas com BenchmarkArmazemCarrinhos
+    static final long BYTES_POR_SESSAO = 170;
+    static final long BYTES_CARRINHO = 160;
+    static final long BYTES_POR_ITEM = 200;
+    // Com menos mortos que isso, reescrever o arquivo custa mais do que o espaço devolvido
+    static final long MINIMO_COMPACTACAO = 1 << 20;
+
+    private final Faixa[] faixas;
+    private final FileChannel derramamento;
+    // Gravações compartilham a trava, cada uma na posição que reservou; a compactação a toma exclusiva.
+    // Quem precisa das duas pega a do arquivo antes da faixa.
+    private final ReentrantReadWriteLock travaArquivo = new ReentrantReadWriteLock();
+    private final AtomicLong fimArquivo = new AtomicLong();
+    private final AtomicLong bytesMortos = new AtomicLong();
+    private final long tempoOcioso;
+    private final long tempoDerramamento;
+    private final LongSupplier relogio;
+
+    public ArmazemCarrinhos(Path arquivoDerramamento, Duration tempoOcioso, Duration tempoDerramamento) {
+        this(arquivoDerramamento, tempoOcioso, tempoDerramamento, 64, System::nanoTime);
+    }
+
+    public ArmazemCarrinhos(Path arquivoDerramamento, Duration tempoOcioso, Duration tempoDerramamento,
+                            int quantidadeFaixas, LongSupplier relogioNanos) {
+        if (tempoDerramamento.compareTo(tempoOcioso) < 0) {
+            throw new IllegalArgumentException("Tempo de derramamento deve ser maior ou igual ao tempo ocioso");
+        }
+        if (quantidadeFaixas <= 0 || Integer.bitCount(quantidadeFaixas) != 1) {
+            throw new IllegalArgumentException("Quantidade de faixas deve ser uma potência de 2");
+        }
+        this.faixas = new Faixa[quantidadeFaixas];
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new Faixa();
+        }
+        this.tempoOcioso = tempoOcioso.toNanos();
+        this.tempoDerramamento = tempoDerramamento.toNanos();
+        this.relogio = relogioNanos;
+        try {
+            this.derramamento = FileChannel.open(arquivoDerramamento, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Carrinho obter(String sessao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.get(sessao);
+            return entrada == null ? new Carrinho() : aquecer(faixa, entrada);
+        }
+    }
+
+    // A operação roda com a faixa travada: atualizações da mesma sessão nunca se perdem
+    public Carrinho atualizar(String sessao, UnaryOperator<Carrinho> operacao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.get(sessao);
+            if (entrada == null) {
+                entrada = new Entrada();
+                entrada.carrinho = new Carrinho();
+                faixa.sessoes.put(sessao, entrada);
+                faixa.bytesQuentes += estimarBytes(entrada.carrinho);
+            }
+            Carrinho atual = aquecer(faixa, entrada);
+            Carrinho novo = operacao.apply(atual);
+            faixa.bytesQuentes += estimarBytes(novo) - estimarBytes(atual);
+            entrada.carrinho = novo;
+            return novo;
+        }
+    }
+
+    public void remover(String sessao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.remove(sessao);
+            if (entrada != null) {
+                descontar(faixa, entrada);
+                // Uma gravação em andamento para ela vê a mudança e descarta o registro
+                entrada.compacto = null;
+            }
+        }
+    }
+
+    // Compacta os quentes ociosos e derrama os compactados ociosos há mais tempo; retorna quantos mudaram.
+    // Compacta também o arquivo quando mais da metade dele está morta.
+    public int varrerOciosos() {
+        long agora = relogio.getAsLong();
+        int alterados = 0;
+        for (Faixa faixa : faixas) {
+            List<Pendente> pendentes = new ArrayList<>();
+            synchronized (faixa) {
+                for (Entrada entrada : faixa.sessoes.values()) {
+                    long ocioso = agora - entrada.ultimoAcesso;
+                    if (entrada.carrinho != null && ocioso >= tempoOcioso) {
+                        faixa.bytesQuentes -= estimarBytes(entrada.carrinho);
+                        entrada.compacto = CodecCarrinho.codificar(entrada.carrinho);
+                        entrada.carrinho = null;
+                        faixa.bytesCompactos += entrada.compacto.length;
+                        alterados++;
+                    }
+                    if (entrada.compacto != null && ocioso >= tempoDerramamento) {
+                        pendentes.add(new Pendente(entrada, entrada.compacto));
+                    }
+                }
+            }
+            if (!pendentes.isEmpty()) {
+                alterados += derramar(faixa, pendentes);
+            }
+        }
+        long mortos = bytesMortos.get();
+        if (mortos >= MINIMO_COMPACTACAO && mortos * 2 > fimArquivo.get()) {
+            compactar();
+        }
+        return alterados;
+    }
+
+    // Regrava os registros vivos no começo do arquivo, na ordem em que estão, e corta o resto.
+    // Para o armazém inteiro: trava o arquivo e depois todas as faixas, em ordem.
+    public void compactar() {
+        travaArquivo.writeLock().lock();
+        try {
+            travarFaixas(0, this::moverRegistrosVivos);
+        } finally {
+            travaArquivo.writeLock().unlock();
+        }
+    }
+
+    public Estatisticas estatisticas() {
+        int quentes = 0;
+        int compactados = 0;
+        int derramados = 0;
+        long bytesQuentes = 0;
+        long bytesCompactos = 0;
+        long bytesEmDisco = 0;
+        for (Faixa faixa : faixas) {
+            synchronized (faixa) {
+                for (Entrada entrada : faixa.sessoes.values()) {
+                    if (entrada.carrinho != null) {
+                        quentes++;
+                    } else if (entrada.compacto != null) {
+                        compactados++;
+                    } else {
+                        derramados++;
+                    }
+                }
+                bytesQuentes += faixa.bytesQuentes;
+                bytesCompactos += faixa.bytesCompactos;
+                bytesEmDisco += faixa.bytesEmDisco;
+            }
+        }
+        long bytesSessoes = BYTES_POR_SESSAO * (quentes + compactados + derramados);
+        return new Estatisticas(quentes, compactados, derramados, bytesSessoes, bytesQuentes, bytesCompactos,
+                bytesEmDisco, fimArquivo.get());
+    }
+
+    @Override
+    public void close() {
+        try {
+            derramamento.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // bytesEmDisco conta só os registros vivos; bytesArquivo inclui os mortos ainda não compactados
+    public record Estatisticas(int quentes, int compactados, int derramados, long bytesSessoes,
+                               long bytesQuentesEstimados, long bytesCompactos, long bytesEmDisco,
+                               long bytesArquivo) {
+        public long bytesEmMemoria() {
+            return bytesSessoes + bytesQuentesEstimados + bytesCompactos;
+        }
+    }
+
+    private Carrinho aquecer(Faixa faixa, Entrada entrada) {
+        entrada.ultimoAcesso = relogio.getAsLong();
+        if (entrada.carrinho == null) {
+            byte[] dados = entrada.compacto;
+            if (dados == null) {
+                dados = ler(entrada.posicaoArquivo, entrada.tamanhoArquivo);
+                faixa.bytesEmDisco -= entrada.tamanhoArquivo;
+                bytesMortos.addAndGet(entrada.tamanhoArquivo);
+                entrada.posicaoArquivo = -1;
+            } else {
+                faixa.bytesCompactos -= dados.length;
+                entrada.compacto = null;
+            }
+            entrada.carrinho = CodecCarrinho.decodificar(dados);
+            faixa.bytesQuentes += estimarBytes(entrada.carrinho);
+        }
+        return entrada.carrinho;
+    }
+
+    private void descontar(Faixa faixa, Entrada entrada) {
+        if (entrada.carrinho != null) {
+            faixa.bytesQuentes -= estimarBytes(entrada.carrinho);
+        } else if (entrada.compacto != null) {
+            faixa.bytesCompactos -= entrada.compacto.length;
+        } else {
+            faixa.bytesEmDisco -= entrada.tamanhoArquivo;
+            bytesMortos.addAndGet(entrada.tamanhoArquivo);
+        }
+    }
+
+    // Grava fora da trava da faixa, que segue atendendo as outras sessões; só a publicação a retoma.
+    // A sessão usada ou removida durante a gravação fica como estava, e o registro já nasce morto.
+    private int derramar(Faixa faixa, List<Pendente> pendentes) {
+        int derramados = 0;
+        travaArquivo.readLock().lock();
+        try {
+            long[] posicoes = new long[pendentes.size()];
+            for (int i = 0; i < posicoes.length; i++) {
+                byte[] dados = pendentes.get(i).dados();
+                posicoes[i] = fimArquivo.getAndAdd(dados.length);
+                escrever(dados, posicoes[i]);
+            }
+            synchronized (faixa) {
+                for (int i = 0; i < posicoes.length; i++) {
+                    Entrada entrada = pendentes.get(i).entrada();
+                    byte[] dados = pendentes.get(i).dados();
+                    if (entrada.compacto != dados) {
+                        bytesMortos.addAndGet(dados.length);
+                        continue;
+                    }
+                    entrada.posicaoArquivo = posicoes[i];
+                    entrada.tamanhoArquivo = dados.length;
+                    faixa.bytesCompactos -= dados.length;
+                    faixa.bytesEmDisco += dados.length;
+                    entrada.compacto = null;
+                    derramados++;
+                }
+            }
+        } finally {
+            travaArquivo.readLock().unlock();
+        }
+        return derramados;
+    }
+
+    private void travarFaixas(int indice, Runnable acao) {
+        if (indice == faixas.length) {
+            acao.run();
+            return;
+        }
+        synchronized (faixas[indice]) {
+            travarFaixas(indice + 1, acao);
+        }
+    }
+
+    // Em ordem de posição cada registro só desce, então nunca sobrescreve um que ainda não foi movido
+    private void moverRegistrosVivos() {
+        List<Entrada> emDisco = new ArrayList<>();
+        for (Faixa faixa : faixas) {
+            for (Entrada entrada : faixa.sessoes.values()) {
+                if (entrada.posicaoArquivo >= 0) {
+                    emDisco.add(entrada);
+                }
+            }
+        }
+        emDisco.sort(Comparator.comparingLong((Entrada entrada) -> entrada.posicaoArquivo));
+        long destino = 0;
+        for (Entrada entrada : emDisco) {
+            if (entrada.posicaoArquivo != destino) {
+                escrever(ler(entrada.posicaoArquivo, entrada.tamanhoArquivo), destino);
+                entrada.posicaoArquivo = destino;
+            }
+            destino += entrada.tamanhoArquivo;
+        }
+        try {
+            derramamento.truncate(destino);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fimArquivo.set(destino);
+        bytesMortos.set(0);
+    }
+
+    private void escrever(byte[] dados, long posicao) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(dados);
+            while (buffer.hasRemaining()) {
+                derramamento.write(buffer, posicao + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] ler(long posicao, int tamanho) {
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        try {
+            while (buffer.hasRemaining()) {
+                if (derramamento.read(buffer, posicao + buffer.position()) < 0) {
+                    throw new IllegalStateException("Arquivo de derramamento truncado");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.array();
+    }
+
+    private static long estimarBytes(Carrinho carrinho) {
+        return BYTES_CARRINHO + BYTES_POR_ITEM * carrinho.quantidadeDistinta();
+    }
+
+    private Faixa faixa(String sessao) {
+        int h = sessao.hashCode();
+        return faixas[(h ^ (h >>> 16)) & (faixas.length - 1)];
+    }
+
+    private static final class Faixa {
+        private final Map<String, Entrada> sessoes = new HashMap<>();
+        private long bytesQuentes;
+        private long bytesCompactos;
+        private long bytesEmDisco;
+    }
+
+    private record Pendente(Entrada entrada, byte[] dados) {
+    }
+
+    private static final class Entrada {
+        private Carrinho carrinho;
+        private byte[] compacto;
+        private long posicaoArquivo = -1;
+        private int tamanhoArquivo;
+        private long ultimoAcesso;
+    }
+}
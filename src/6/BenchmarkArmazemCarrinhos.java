@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class BenchmarkArmazemCarrinhos {
+    private static final int SESSOES = 200_000;
+    private static final int ITENS_POR_CARRINHO = 5;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== BENCHMARK: ARMAZÉM DE CARRINHOS (QUENTE x COMPACTO x DISCO) ===\n");
+
+        Path arquivo = Files.createTempFile("carrinhos", ".derramados");
+        long[] agora = {0};
+        try (ArmazemCarrinhos armazem = new ArmazemCarrinhos(arquivo, Duration.ofMinutes(5),
+                Duration.ofMinutes(30), 64, () -> agora[0])) {
+            long base = heapUsado();
+            for (int s = 0; s < SESSOES; s++) {
+                for (int i = 0; i < ITENS_POR_CARRINHO; i++) {
+                    long id = (s * 31L + i * 7L) % 5_000;
+                    Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id % 300) + ".99", Moeda.BRL));
+                    armazem.atualizar("sessao-" + s, c -> c.adicionarItem(produto, 1));
+                }
+            }
+            relatar("Todos quentes", armazem, heapUsado() - base);
+
+            agora[0] += Duration.ofMinutes(10).toNanos();
+            long inicio = System.nanoTime();
+            armazem.varrerOciosos();
+            System.out.printf("  (compactação: %.1f ms)%n", (System.nanoTime() - inicio) / 1e6);
+            relatar("Ociosos compactados", armazem, heapUsado() - base);
+
+            agora[0] += Duration.ofMinutes(30).toNanos();
+            inicio = System.nanoTime();
+            armazem.varrerOciosos();
+            System.out.printf("  (derramamento: %.1f ms)%n", (System.nanoTime() - inicio) / 1e6);
+            relatar("Ociosos em disco", armazem, heapUsado() - base);
+
+            inicio = System.nanoTime();
+            int total = 0;
+            for (int s = 0; s < SESSOES; s += 100) {
+                total += armazem.obter("sessao-" + s).getTotalItens();
+            }
+            System.out.printf("%nReativar %d sessões do disco: %.1f us/sessão (checksum %d)%n",
+                    SESSOES / 100, (System.nanoTime() - inicio) / 1e3 / (SESSOES / 100), total);
+        } finally {
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    private static void relatar(String rotulo, ArmazemCarrinhos armazem, long heapMedido) {
+        ArmazemCarrinhos.Estatisticas e = armazem.estatisticas();
+        System.out.printf("%-22s quentes=%d compactados=%d em disco=%d | heap medido %.1f MB (%.0f B/sessão),"
+                        + " contabilizado %.1f MB, disco %.1f MB%n",
+                rotulo, e.quentes(), e.compactados(), e.derramados(), heapMedido / 1e6,
+                (double) heapMedido / SESSOES, e.bytesEmMemoria() / 1e6, e.bytesEmDisco() / 1e6);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BenchmarkCodecCarrinho {
+    private static final int OPERACOES = 20_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: CODEC BINÁRIO x SERIALIZAÇÃO JAVA x JSON ===\n");
+
+        Carrinho carrinho = new Carrinho();
+        for (long id = 1; id <= 20; id++) {
+            Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id * 13 % 500) + ".90", Moeda.BRL));
+            carrinho = carrinho.adicionarItem(produto, (int) (id % 4) + 1);
+        }
+        Carrinho exemplo = carrinho.aplicarCupom(new BigDecimal("10"));
+
+        byte[] binario = CodecCarrinho.codificar(exemplo);
+        byte[] serializado = serializar(exemplo);
+        byte[] json = paraJson(exemplo).getBytes(StandardCharsets.UTF_8);
+        System.out.println("Carrinho com " + exemplo.getItens().size() + " itens:");
+        System.out.printf("  binário:          %5d bytes%n", binario.length);
+        System.out.printf("  serialização Java: %5d bytes%n", serializado.length);
+        System.out.printf("  JSON:             %5d bytes%n%n", json.length);
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  codificar (binário)", () -> CodecCarrinho.codificar(exemplo).length);
+            medir("  codificar (serialização Java)", () -> serializar(exemplo).length);
+            medir("  codificar (JSON)", () -> paraJson(exemplo).length());
+            medir("  decodificar (binário)", () -> CodecCarrinho.decodificar(binario).getTotalItens());
+            medir("  decodificar (serialização Java)", () -> desserializar(serializado).size());
+            medir("  decodificar (JSON)", () -> deJson(new String(json, StandardCharsets.UTF_8)).getTotalItens());
+            medir("  total de itens sem decodificar", () ->
+                    new CodecCarrinho.Visao(ByteBuffer.wrap(binario)).getTotalItens());
+        }
+    }
+
+    private interface Operacao {
+        int executar();
+    }
+
+    private static void medir(String rotulo, Operacao operacao) {
+        long thread = Thread.currentThread().getId();
+        int checksum = 0;
+        long bytesAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += operacao.executar();
+        }
+        long duracao = System.nanoTime() - inicio;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesAntes;
+        System.out.printf("%-36s %8.1f ns/op %9.1f bytes/op (checksum %d)%n",
+                rotulo, (double) duracao / OPERACOES, (double) bytes / OPERACOES, checksum);
+    }
+
+    // As classes do carrinho não são Serializable: a comparação usa o grafo equivalente em tipos do JDK
+    private static List<Map<String, Object>> paraGrafo(Carrinho carrinho) {
+        List<Map<String, Object>> itens = new ArrayList<>();
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Map<String, Object> linha = new HashMap<>();
+            linha.put("id", item.getProduto().getId());
+            linha.put("nome", item.getProduto().getNome());
+            linha.put("preco", item.getProduto().getPreco().getValor());
+            linha.put("moeda", item.getProduto().getPreco().getMoeda());
+            linha.put("quantidade", item.getQuantidade());
+            itens.add(linha);
+        }
+        Map<String, Object> cupom = new HashMap<>();
+        cupom.put("descontoCupom", carrinho.getDescontoCupom());
+        itens.add(cupom);
+        return itens;
+    }
+
+    private static byte[] serializar(Carrinho carrinho) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream saida = new ObjectOutputStream(bytes)) {
+            saida.writeObject(paraGrafo(carrinho));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> desserializar(byte[] dados) {
+        try (ObjectInputStream entrada = new ObjectInputStream(new ByteArrayInputStream(dados))) {
+            return (List<Map<String, Object>>) entrada.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String paraJson(Carrinho carrinho) {
+        StringBuilder json = new StringBuilder("{\"descontoCupom\":").append(carrinho.getDescontoCupom())
+                .append(",\"itens\":[");
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            json.append("{\"id\":").append(produto.getId())
+                    .append(",\"nome\":\"").append(produto.getNome())
+                    .append("\",\"preco\":").append(produto.getPreco().getValor())
+                    .append(",\"moeda\":\"").append(produto.getPreco().getMoeda())
+                    .append("\",\"quantidade\":").append(item.getQuantidade()).append("},");
+        }
+        if (json.charAt(json.length() - 1) == ',') {
+            json.setLength(json.length() - 1);
+        }
+        return json.append("]}").toString();
+    }
+
+    // Leitor feito à mão para o formato de paraJson (sem escapes), no mesmo espírito do codec binário
+    private static Carrinho deJson(String json) {
+        BigDecimal cupom = new BigDecimal(campo(json, 0, "\"descontoCupom\":", ','));
+        Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+        for (int item = json.indexOf("{\"id\":"); item >= 0; item = json.indexOf("{\"id\":", item + 1)) {
+            long id = Long.parseLong(campo(json, item, "\"id\":", ','));
+            String nome = campo(json, item, "\"nome\":\"", '"');
+            BigDecimal preco = new BigDecimal(campo(json, item, "\"preco\":", ','));
+            Moeda moeda = Moeda.valueOf(campo(json, item, "\"moeda\":\"", '"'));
+            int quantidade = Integer.parseInt(campo(json, item, "\"quantidade\":", '}'));
+            edicao.adicionarItem(new Produto(id, nome, new Dinheiro(preco, moeda)), quantidade);
+        }
+        return edicao.aplicarCupom(cupom).congelar();
+    }
+
+    private static String campo(String json, int de, String chave, char fim) {
+        int inicio = json.indexOf(chave, de) + chave.length();
+        return json.substring(inicio, json.indexOf(fim, inicio));
+    }
+}
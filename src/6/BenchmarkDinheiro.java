@@ -0,0 +1,51 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class BenchmarkDinheiro {
+    private static final int OPERACOES = 5_000_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: DINHEIRO PONTO FIXO x BIGDECIMAL ===\n");
+
+        Dinheiro preco = new Dinheiro("19.90", Moeda.BRL);
+        Dinheiro frete = new Dinheiro("7.35", Moeda.BRL);
+        BigDecimal cupom = new BigDecimal("10");
+        BigDecimal precoReferencia = new BigDecimal("19.90");
+        BigDecimal freteReferencia = new BigDecimal("7.35");
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  somar (ponto fixo)", () -> preco.somar(frete).hashCode());
+            medir("  somar (BigDecimal)", () -> precoReferencia.add(freteReferencia)
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+            medir("  multiplicar (ponto fixo)", () -> preco.multiplicar(3).hashCode());
+            medir("  multiplicar (BigDecimal)", () -> precoReferencia.multiply(new BigDecimal(3))
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+            medir("  aplicarDesconto (ponto fixo)", () -> preco.aplicarDesconto(cupom).hashCode());
+            medir("  aplicarDesconto (BigDecimal)", () -> precoReferencia.multiply(BigDecimal.ONE.subtract(
+                            cupom.divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN)))
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+        }
+    }
+
+    private interface Operacao {
+        int executar();
+    }
+
+    private static void medir(String rotulo, Operacao operacao) {
+        long thread = Thread.currentThread().getId();
+        int checksum = 0;
+        long bytesAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += operacao.executar();
+        }
+        long duracao = System.nanoTime() - inicio;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesAntes;
+        System.out.printf("%-32s %6.1f ns/op %7.1f bytes/op (checksum %d)%n",
+                rotulo, (double) duracao / OPERACOES, (double) bytes / OPERACOES, checksum);
+    }
+}
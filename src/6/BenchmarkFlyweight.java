@@ -0,0 +1,62 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BenchmarkFlyweight {
+    private static final int PRODUTOS = 100_000;
+    private static final int ITENS_POR_CARRINHO = 3;
+
+    public static void main(String[] args) {
+        int quantidadeCarrinhos = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("=== BENCHMARK: FLYWEIGHT DE PRODUTO E DINHEIRO ===\n");
+
+        RegistroProdutos registro = new RegistroProdutos();
+        Random random = new Random(3);
+        for (int i = 0; i < PRODUTOS; i++) {
+            long id = i;
+            String preco = random.nextInt(120) + "." + (10 + random.nextInt(90));
+            registro.obter(id, 1, () -> new Produto(id, "Produto " + id, Dinheiro.of(preco, Moeda.BRL),
+                    "categoria-" + (id % 40)));
+        }
+
+        long semFlyweight = medir(quantidadeCarrinhos, null, registro);
+        long comFlyweight = medir(quantidadeCarrinhos, registro, registro);
+        System.out.printf("%,d carrinhos de %d itens sobre catálogo de %,d produtos:%n",
+                quantidadeCarrinhos, ITENS_POR_CARRINHO, PRODUTOS);
+        System.out.printf("  sem flyweight: %8.1f MB (%.0f B/carrinho)%n",
+                semFlyweight / 1e6, (double) semFlyweight / quantidadeCarrinhos);
+        System.out.printf("  com flyweight: %8.1f MB (%.0f B/carrinho)%n",
+                comFlyweight / 1e6, (double) comFlyweight / quantidadeCarrinhos);
+        System.out.printf("  redução:       %8.1f%%%n", 100.0 * (semFlyweight - comFlyweight) / semFlyweight);
+    }
+
+    // Carrinhos montados como chegam do armazém de sessões: decodificados do formato binário
+    private static long medir(int quantidadeCarrinhos, RegistroProdutos canonizador, RegistroProdutos catalogo) {
+        Random random = new Random(5);
+        long base = heapUsado();
+        List<Carrinho> carrinhos = new ArrayList<>(quantidadeCarrinhos);
+        for (int c = 0; c < quantidadeCarrinhos; c++) {
+            Carrinho carrinho = new Carrinho();
+            for (int i = 0; i < ITENS_POR_CARRINHO; i++) {
+                long id = random.nextInt(PRODUTOS);
+                carrinho = carrinho.adicionarItem(catalogo.obter(id, 1, null), 1 + random.nextInt(3));
+            }
+            byte[] dados = CodecCarrinho.codificar(carrinho);
+            carrinhos.add(canonizador == null ? CodecCarrinho.decodificar(dados)
+                    : CodecCarrinho.decodificar(dados, canonizador));
+        }
+        long usado = heapUsado() - base;
+        if (carrinhos.get(random.nextInt(carrinhos.size())).getItens().isEmpty()) {
+            System.out.println("inesperado");
+        }
+        return usado;
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
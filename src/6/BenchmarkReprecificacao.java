@@ -0,0 +1,79 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class BenchmarkReprecificacao {
+    private static final int CARRINHOS = 200_000;
+    private static final int PRODUTOS = 10_000;
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: REPRECIFICAÇÃO EM LOTE ===\n");
+
+        Random random = new Random(42);
+        Produto[] catalogo = new Produto[PRODUTOS];
+        for (int i = 0; i < PRODUTOS; i++) {
+            catalogo[i] = new Produto((long) i, "Produto " + i,
+                    new Dinheiro((1 + random.nextInt(500)) + "." + (10 + random.nextInt(90)), Moeda.BRL),
+                    "categoria-" + (i % 50));
+        }
+        List<Carrinho> carrinhos = new ArrayList<>(CARRINHOS);
+        for (int c = 0; c < CARRINHOS; c++) {
+            Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+            int itens = 1 + random.nextInt(10);
+            for (int i = 0; i < itens; i++) {
+                edicao.adicionarItem(catalogo[random.nextInt(PRODUTOS)], 1 + random.nextInt(4));
+            }
+            carrinhos.add(edicao.aplicarCupom(new BigDecimal(random.nextInt(3) * 5)).congelar());
+        }
+
+        Map<Long, Dinheiro> novosPrecos = new HashMap<>();
+        for (int i = 0; i < PRODUTOS; i += 10) {
+            novosPrecos.put((long) i, catalogo[i].getPreco().fracao(11, 10));
+        }
+        List<Promocao> promocoes = new ArrayList<>();
+        for (int i = 0; i < PRODUTOS; i += 7) {
+            promocoes.add(i % 2 == 0 ? new Promocao.LevePague(i, 3, 2)
+                    : new Promocao.DescontoProduto(i, new BigDecimal("12.5")));
+        }
+        promocoes.add(new Promocao.DescontoCategoria("categoria-3", new BigDecimal("20")));
+        promocoes.add(new Promocao.DescontoProgressivo(new Dinheiro("1000.00", Moeda.BRL), new BigDecimal("5")));
+        InstantaneoPrecos instantaneo = new InstantaneoPrecos(novosPrecos, MotorPromocoes.compilar(promocoes));
+
+        long inicio = System.nanoTime();
+        long checksumReferencia = 0;
+        for (Carrinho carrinho : carrinhos) {
+            checksumReferencia += ReprecificacaoLote.reprecificarComObjetos(carrinho, instantaneo).hashCode();
+        }
+        double referencia = CARRINHOS * 1e9 / (System.nanoTime() - inicio);
+        System.out.printf("Referência (1 thread, objetos por item): %,.0f carrinhos/s (checksum %d)%n%n",
+                referencia, checksumReferencia);
+
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        double base = 0;
+        for (int paralelismo = 1; paralelismo <= nucleos; paralelismo *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(paralelismo);
+            ReprecificacaoLote job = new ReprecificacaoLote(pool);
+            ReprecificacaoLote.Resultado resultado = null;
+            long[] checksum = new long[1];
+            for (int rodada = 0; rodada < 3; rodada++) {
+                checksum[0] = 0;
+                resultado = job.executar(carrinhos.stream(), instantaneo, (c, total) -> {
+                    synchronized (checksum) {
+                        checksum[0] += total.hashCode();
+                    }
+                });
+            }
+            pool.shutdown();
+            if (paralelismo == 1) {
+                base = resultado.carrinhosPorSegundo();
+            }
+            System.out.printf("%2d thread(s): %,12.0f carrinhos/s  escala %.2fx  falhas %d (checksum %d)%n",
+                    paralelismo, resultado.carrinhosPorSegundo(), resultado.carrinhosPorSegundo() / base,
+                    resultado.falhas(), checksum[0]);
+        }
+    }
+}
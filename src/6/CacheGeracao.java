@@ -0,0 +1,163 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+public class CacheGeracao {
+    private static final String INDICE = "indice.properties";
+
+    private final Path diretorio;
+    private final Properties indice = new Properties();
+    private int arquivosEscritos;
+    private int arquivosIgnorados;
+    private int unidadesCompiladas;
+
+    public CacheGeracao(Path diretorio) throws IOException {
+        this.diretorio = diretorio;
+        Files.createDirectories(diretorio);
+        Path arquivoIndice = diretorio.resolve(INDICE);
+        if (Files.exists(arquivoIndice)) {
+            try (Reader leitor = Files.newBufferedReader(arquivoIndice, StandardCharsets.UTF_8)) {
+                indice.load(leitor);
+            }
+        }
+    }
+
+    public void escrever(Path arquivo, String codigo) throws IOException {
+        String hash = hash(codigo.getBytes(StandardCharsets.UTF_8));
+        if (Files.exists(arquivo) && hash.equals(hash(Files.readAllBytes(arquivo)))) {
+            arquivosIgnorados++;
+            return;
+        }
+        Files.writeString(arquivo, codigo);
+        arquivosEscritos++;
+    }
+
+    public CompiladorEmMemoria.Compilacao compilar(Map<String, String> fontes) throws IOException {
+        Set<String> alteradas = new LinkedHashSet<>();
+        for (Map.Entry<String, String> fonte : fontes.entrySet()) {
+            String arquivo = fonte.getKey();
+            String hash = hash(fonte.getValue().getBytes(StandardCharsets.UTF_8));
+            if (!hash.equals(indice.getProperty("fonte." + arquivo)) || !classesEmCache(arquivo)) {
+                alteradas.add(arquivo);
+            }
+        }
+
+        Set<String> removidas = new HashSet<>();
+        for (String chave : indice.stringPropertyNames()) {
+            if (chave.startsWith("fonte.") && !fontes.containsKey(chave.substring("fonte.".length()))) {
+                removidas.add(chave.substring("fonte.".length()));
+            }
+        }
+
+        adicionarDependentes(fontes, alteradas, removidas);
+        for (String arquivo : removidas) {
+            descartar(arquivo);
+        }
+        if (!removidas.isEmpty()) {
+            salvarIndice();
+        }
+
+        if (!alteradas.isEmpty()) {
+            Map<String, String> aCompilar = new LinkedHashMap<>();
+            alteradas.forEach(arquivo -> aCompilar.put(arquivo, fontes.get(arquivo)));
+
+            CompiladorEmMemoria.Compilacao compilacao = CompiladorEmMemoria.compilar(
+                    aCompilar, List.of("-classpath", diretorio.toString()));
+            if (!compilacao.sucesso()) {
+                return compilacao;
+            }
+
+            for (String arquivo : alteradas) {
+                descartar(arquivo);
+            }
+            Map<String, List<String>> classesPorFonte = new HashMap<>();
+            for (Map.Entry<String, byte[]> classe : compilacao.classes().entrySet()) {
+                Files.write(diretorio.resolve(classe.getKey() + ".class"), classe.getValue());
+                classesPorFonte.computeIfAbsent(compilacao.origens().get(classe.getKey()), k -> new ArrayList<>())
+                        .add(classe.getKey());
+            }
+            for (String arquivo : alteradas) {
+                indice.setProperty("fonte." + arquivo, hash(fontes.get(arquivo).getBytes(StandardCharsets.UTF_8)));
+                indice.setProperty("classes." + arquivo,
+                        String.join(",", classesPorFonte.getOrDefault(arquivo, List.of())));
+            }
+            salvarIndice();
+            unidadesCompiladas += alteradas.size();
+        }
+
+        Map<String, byte[]> classes = new HashMap<>();
+        Map<String, String> origens = new HashMap<>();
+        for (String arquivo : fontes.keySet()) {
+            for (String classe : classesDe(arquivo)) {
+                classes.put(classe, Files.readAllBytes(diretorio.resolve(classe + ".class")));
+                origens.put(classe, arquivo);
+            }
+        }
+        return new CompiladorEmMemoria.Compilacao(true, classes, origens, "");
+    }
+
+    public String resumo() {
+        return "Arquivos escritos: " + arquivosEscritos
+                + ", inalterados: " + arquivosIgnorados
+                + ", unidades recompiladas: " + unidadesCompiladas;
+    }
+
+    private void adicionarDependentes(Map<String, String> fontes, Set<String> alteradas, Set<String> removidas) {
+        Deque<String> pendentes = new ArrayDeque<>(alteradas);
+        pendentes.addAll(removidas);
+        while (!pendentes.isEmpty()) {
+            String nome = pendentes.pop().replace(".java", "");
+            Pattern referencia = Pattern.compile("\\b" + Pattern.quote(nome) + "\\b");
+            for (Map.Entry<String, String> fonte : fontes.entrySet()) {
+                if (!alteradas.contains(fonte.getKey()) && referencia.matcher(fonte.getValue()).find()) {
+                    alteradas.add(fonte.getKey());
+                    pendentes.add(fonte.getKey());
+                }
+            }
+        }
+    }
+
+    private boolean classesEmCache(String arquivo) {
+        List<String> classes = classesDe(arquivo);
+        if (classes.isEmpty()) {
+            return false;
+        }
+        for (String classe : classes) {
+            if (!Files.exists(diretorio.resolve(classe + ".class"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> classesDe(String arquivo) {
+        String lista = indice.getProperty("classes." + arquivo, "");
+        return lista.isEmpty() ? List.of() : Arrays.asList(lista.split(","));
+    }
+
+    private void descartar(String arquivo) throws IOException {
+        for (String classe : classesDe(arquivo)) {
+            Files.deleteIfExists(diretorio.resolve(classe + ".class"));
+        }
+        indice.remove("fonte." + arquivo);
+        indice.remove("classes." + arquivo);
+    }
+
+    private void salvarIndice() throws IOException {
+        try (Writer escritor = Files.newBufferedWriter(diretorio.resolve(INDICE), StandardCharsets.UTF_8)) {
+            indice.store(escritor, "Cache de geracao");
+        }
+    }
+
+    private static String hash(byte[] conteudo) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(conteudo));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
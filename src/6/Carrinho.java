@@ -2,20 +2,35 @@ import java.math.BigDecimal;
 import java.util.*;
 
 public final class Carrinho {
-    private final List<ItemCarrinho> itens;
+    // Itens na ordem de inserção (posições removidas ficam nulas) e posição de cada produto nessa ordem
+    private final VetorPersistente<ItemCarrinho> ordem;
+    private final MapaPersistente<Long, Integer> posicoes;
     private final BigDecimal descontoCupom;
+    // Totais mantidos a cada operação; subtotal é nulo quando vazio ou com moedas diferentes
+    private final Dinheiro subtotal;
+    private final int totalItens;
+    private volatile List<ItemCarrinho> itens;
 
     public Carrinho() {
-        this(Collections.emptyList(), BigDecimal.ZERO);
+        this(VetorPersistente.vazio(), MapaPersistente.vazio(), BigDecimal.ZERO, null, 0);
     }
 
-    private Carrinho(List<ItemCarrinho> itens, BigDecimal descontoCupom) {
-        this.itens = Collections.unmodifiableList(new ArrayList<>(itens));
+    private Carrinho(VetorPersistente<ItemCarrinho> ordem, MapaPersistente<Long, Integer> posicoes,
+                     BigDecimal descontoCupom, Dinheiro subtotal, int totalItens) {
+        this.ordem = ordem;
+        this.posicoes = posicoes;
         this.descontoCupom = descontoCupom;
+        this.subtotal = subtotal;
+        this.totalItens = totalItens;
     }
 
     public List<ItemCarrinho> getItens() {
-        return itens;
+        List<ItemCarrinho> resultado = itens;
+        if (resultado == null) {
+            resultado = Collections.unmodifiableList(itensEmOrdem(ordem, posicoes.tamanho()));
+            itens = resultado;
+        }
+        return resultado;
     }
 
     public BigDecimal getDescontoCupom() {
@@ -23,55 +38,227 @@ public final class Carrinho {
     }
 
     public Carrinho adicionarItem(Produto produto, int quantidade) {
-        List<ItemCarrinho> novosItens = new ArrayList<>(itens);
-        Optional<ItemCarrinho> itemExistente = encontrarItem(produto.getId());
+        Integer posicao = posicoes.obter(produto.getId());
+        VetorPersistente<ItemCarrinho> novaOrdem = ordem;
+        ItemCarrinho itemAnterior = null;
+        ItemCarrinho novoItem;
 
-        if (itemExistente.isPresent()) {
-            novosItens.remove(itemExistente.get());
-            novosItens.add(itemExistente.get().adicionarQuantidade(quantidade));
+        if (posicao != null) {
+            itemAnterior = ordem.obter(posicao);
+            novoItem = itemAnterior.adicionarQuantidade(quantidade);
+            novaOrdem = novaOrdem.definir(posicao, null);
         } else {
-            novosItens.add(new ItemCarrinho(produto, quantidade));
+            novoItem = new ItemCarrinho(produto, quantidade);
         }
 
-        return new Carrinho(novosItens, descontoCupom);
+        MapaPersistente<Long, Integer> novasPosicoes = posicoes.associar(produto.getId(), novaOrdem.tamanho());
+        novaOrdem = novaOrdem.adicionar(novoItem);
+        int novoTotalItens = totalItens + novoItem.getQuantidade()
+                - (itemAnterior == null ? 0 : itemAnterior.getQuantidade());
+
+        return criar(novaOrdem, novasPosicoes, descontoCupom,
+                atualizarSubtotal(itemAnterior, novoItem, novaOrdem), novoTotalItens);
     }
 
     public Carrinho removerItem(Long produtoId) {
-        List<ItemCarrinho> novosItens = itens.stream()
-                .filter(item -> !item.getProduto().getId().equals(produtoId))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        Integer posicao = posicoes.obter(produtoId);
 
-        if (novosItens.size() == itens.size()) {
+        if (posicao == null) {
             throw new IllegalArgumentException("Produto não encontrado no carrinho");
         }
 
-        return new Carrinho(novosItens, descontoCupom);
+        ItemCarrinho removido = ordem.obter(posicao);
+        VetorPersistente<ItemCarrinho> novaOrdem = ordem.definir(posicao, null);
+        return criar(novaOrdem, posicoes.remover(produtoId), descontoCupom,
+                atualizarSubtotal(removido, null, novaOrdem), totalItens - removido.getQuantidade());
     }
 
     public Carrinho aplicarCupom(BigDecimal percentualDesconto) {
-        return new Carrinho(itens, percentualDesconto);
+        Dinheiro.validarDesconto(percentualDesconto);
+        return new Carrinho(ordem, posicoes, percentualDesconto, subtotal, totalItens);
+    }
+
+    public Edicao paraEdicao() {
+        return new Edicao(this);
     }
 
     public Dinheiro calcularTotal() {
-        if (itens.isEmpty()) {
-            return new Dinheiro(BigDecimal.ZERO, Moeda.BRL);
+        if (totalItens == 0) {
+            return Dinheiro.of(0, Moeda.BRL);
         }
 
-        Dinheiro subtotal = itens.stream()
-                .map(ItemCarrinho::getSubtotal)
-                .reduce(Dinheiro::somar)
-                .orElse(new Dinheiro(BigDecimal.ZERO, Moeda.BRL));
+        if (subtotal == null) {
+            // Moedas diferentes: o recálculo completo lança "Moedas incompatíveis"
+            return getItens().stream()
+                    .map(ItemCarrinho::getSubtotal)
+                    .reduce(Dinheiro::somar)
+                    .orElseThrow()
+                    .aplicarDesconto(descontoCupom);
+        }
 
         return subtotal.aplicarDesconto(descontoCupom);
     }
 
+    // Converte cada item para a moeda da conversão, permitindo carrinhos com moedas diferentes
+    public Dinheiro calcularTotal(TabelaCambio.Conversao conversao) {
+        return conversao.totalizar(this);
+    }
+
+    public Dinheiro calcularTotal(MotorPromocoes promocoes) {
+        return promocoes.avaliar(this).total();
+    }
+
     public int getTotalItens() {
-        return itens.stream().mapToInt(ItemCarrinho::getQuantidade).sum();
+        return totalItens;
+    }
+
+    int quantidadeDistinta() {
+        return posicoes.tamanho();
+    }
+
+    private Dinheiro atualizarSubtotal(ItemCarrinho removido, ItemCarrinho adicionado,
+                                       VetorPersistente<ItemCarrinho> novaOrdem) {
+        if (subtotal == null && totalItens > 0) {
+            return recalcularSubtotal(novaOrdem);
+        }
+
+        Dinheiro resultado = subtotal;
+        if (removido != null) {
+            resultado = resultado.subtrair(removido.getSubtotal());
+        }
+        if (adicionado != null) {
+            Dinheiro valor = adicionado.getSubtotal();
+            if (resultado == null || (removido == null && totalItens == 0)) {
+                resultado = valor;
+            } else if (resultado.getMoeda() != valor.getMoeda()) {
+                return null;
+            } else {
+                resultado = resultado.somar(valor);
+            }
+        }
+        return resultado;
+    }
+
+    private static Dinheiro recalcularSubtotal(VetorPersistente<ItemCarrinho> ordem) {
+        Dinheiro resultado = null;
+        for (ItemCarrinho item : itensEmOrdem(ordem, 0)) {
+            Dinheiro valor = item.getSubtotal();
+            if (resultado != null && resultado.getMoeda() != valor.getMoeda()) {
+                return null;
+            }
+            resultado = resultado == null ? valor : resultado.somar(valor);
+        }
+        return resultado;
+    }
+
+    // Reconstrói a ordem quando as posições vazias passam a dominar o vetor
+    private static Carrinho criar(VetorPersistente<ItemCarrinho> ordem, MapaPersistente<Long, Integer> posicoes,
+                                  BigDecimal descontoCupom, Dinheiro subtotal, int totalItens) {
+        if (ordem.tamanho() <= 32 || ordem.tamanho() <= 2 * posicoes.tamanho()) {
+            return new Carrinho(ordem, posicoes, descontoCupom, subtotal, totalItens);
+        }
+
+        List<ItemCarrinho> itens = itensEmOrdem(ordem, posicoes.tamanho());
+        return new Carrinho(VetorPersistente.de(itens), indexarPosicoes(itens), descontoCupom, subtotal, totalItens);
     }
 
-    private Optional<ItemCarrinho> encontrarItem(Long produtoId) {
-        return itens.stream()
-                .filter(item -> item.getProduto().getId().equals(produtoId))
-                .findFirst();
+    private static MapaPersistente<Long, Integer> indexarPosicoes(List<ItemCarrinho> itens) {
+        List<Long> ids = new ArrayList<>(itens.size());
+        List<Integer> indices = new ArrayList<>(itens.size());
+        for (int i = 0; i < itens.size(); i++) {
+            ids.add(itens.get(i).getProduto().getId());
+            indices.add(i);
+        }
+        return MapaPersistente.de(ids, indices);
+    }
+
+    private static List<ItemCarrinho> itensEmOrdem(VetorPersistente<ItemCarrinho> ordem, int quantidade) {
+        List<ItemCarrinho> lista = new ArrayList<>(quantidade);
+        ordem.paraCada(item -> {
+            if (item != null) {
+                lista.add(item);
+            }
+        });
+        return lista;
+    }
+
+    // Visão mutável de um único dono para montar carrinhos grandes sem criar uma versão por operação
+    public static final class Edicao {
+        private final Thread dono = Thread.currentThread();
+        private final List<ItemCarrinho> ordem;
+        private final Map<Long, Integer> posicoes = new HashMap<>();
+        private BigDecimal descontoCupom;
+        private boolean congelado;
+
+        private Edicao(Carrinho origem) {
+            this.ordem = new ArrayList<>(origem.getItens());
+            for (int i = 0; i < ordem.size(); i++) {
+                posicoes.put(ordem.get(i).getProduto().getId(), i);
+            }
+            this.descontoCupom = origem.descontoCupom;
+        }
+
+        public Edicao adicionarItem(Produto produto, int quantidade) {
+            verificarDono();
+            Integer posicao = posicoes.get(produto.getId());
+            ItemCarrinho novoItem;
+
+            if (posicao != null) {
+                novoItem = ordem.get(posicao).adicionarQuantidade(quantidade);
+                ordem.set(posicao, null);
+            } else {
+                novoItem = new ItemCarrinho(produto, quantidade);
+            }
+
+            posicoes.put(produto.getId(), ordem.size());
+            ordem.add(novoItem);
+            return this;
+        }
+
+        public Edicao removerItem(Long produtoId) {
+            verificarDono();
+            Integer posicao = posicoes.remove(produtoId);
+
+            if (posicao == null) {
+                throw new IllegalArgumentException("Produto não encontrado no carrinho");
+            }
+
+            ordem.set(posicao, null);
+            return this;
+        }
+
+        public Edicao aplicarCupom(BigDecimal percentualDesconto) {
+            verificarDono();
+            Dinheiro.validarDesconto(percentualDesconto);
+            this.descontoCupom = percentualDesconto;
+            return this;
+        }
+
+        public Carrinho congelar() {
+            verificarDono();
+            congelado = true;
+
+            List<ItemCarrinho> itens = new ArrayList<>(posicoes.size());
+            int totalItens = 0;
+            for (ItemCarrinho item : ordem) {
+                if (item != null) {
+                    itens.add(item);
+                    totalItens += item.getQuantidade();
+                }
+            }
+
+            VetorPersistente<ItemCarrinho> novaOrdem = VetorPersistente.de(itens);
+            return new Carrinho(novaOrdem, indexarPosicoes(itens), descontoCupom,
+                    recalcularSubtotal(novaOrdem), totalItens);
+        }
+
+        private void verificarDono() {
+            if (congelado) {
+                throw new IllegalStateException("Edição já congelada; use o Carrinho retornado por congelar()");
+            }
+            if (Thread.currentThread() != dono) {
+                throw new IllegalStateException("Carrinho em edição só pode ser usado pela thread que o criou");
+            }
+        }
     }
 }
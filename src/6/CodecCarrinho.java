@@ -0,0 +1,377 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Formato binário versionado do carrinho:
+//   versão (1 byte) | cupom | nº de itens (varint) | itens
+//   item    = id do produto (varint zigzag) | nome | categoria | preço | quantidade (varint)
+//   nome e categoria = 0 quando nulos, senão tamanho + 1 (varint) e UTF-8
+//   (até a versão 2 o nome era tamanho e UTF-8, sem nulo; a versão 1 não tinha categoria)
+//   dinheiro = moeda (1 byte, bit 7 marca valor grande) | centavos (varint) ou BigInteger (varint + bytes)
+//   cupom   = escala (varint zigzag) | BigInteger (varint + bytes)
+public final class CodecCarrinho {
+    public static final byte VERSAO = 3;
+
+    private static final Moeda[] MOEDAS = Moeda.values();
+    private static final int VALOR_GRANDE = 0x80;
+
+    private CodecCarrinho() {
+    }
+
+    public static byte[] codificar(Carrinho carrinho) {
+        ByteBuffer destino = ByteBuffer.allocate(tamanhoCodificado(carrinho));
+        codificar(carrinho, destino);
+        return destino.array();
+    }
+
+    public static void codificar(Carrinho carrinho, ByteBuffer destino) {
+        destino.put(VERSAO);
+        escreverDecimal(destino, carrinho.getDescontoCupom());
+        escreverVarLong(destino, carrinho.getItens().size());
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            escreverVarLong(destino, zigzag(idObrigatorio(produto)));
+            escreverOpcional(destino, produto.getNome());
+            escreverOpcional(destino, produto.getCategoria());
+            codificar(produto.getPreco(), destino);
+            escreverVarLong(destino, item.getQuantidade());
+        }
+    }
+
+    public static int tamanhoCodificado(Carrinho carrinho) {
+        int tamanho = 1 + tamanhoDecimal(carrinho.getDescontoCupom()) + tamanhoVarLong(carrinho.getItens().size());
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            tamanho += tamanhoVarLong(zigzag(idObrigatorio(produto)))
+                    + tamanhoOpcional(produto.getNome())
+                    + tamanhoOpcional(produto.getCategoria())
+                    + tamanhoCodificado(produto.getPreco())
+                    + tamanhoVarLong(item.getQuantidade());
+        }
+        return tamanho;
+    }
+
+    public static Carrinho decodificar(byte[] dados) {
+        return decodificar(ByteBuffer.wrap(dados));
+    }
+
+    public static Carrinho decodificar(ByteBuffer origem) {
+        return new Visao(origem).paraCarrinho();
+    }
+
+    // Produtos iguais aos do registro são trocados pela instância compartilhada do catálogo
+    public static Carrinho decodificar(byte[] dados, RegistroProdutos registro) {
+        return new Visao(ByteBuffer.wrap(dados), registro).paraCarrinho();
+    }
+
+    public static void codificar(Dinheiro dinheiro, ByteBuffer destino) {
+        long centavos = dinheiro.centavos();
+        if (centavos >= 0) {
+            destino.put((byte) dinheiro.getMoeda().ordinal());
+            escreverVarLong(destino, centavos);
+        } else {
+            destino.put((byte) (dinheiro.getMoeda().ordinal() | VALOR_GRANDE));
+            escreverInteiroGrande(destino, dinheiro.getValor().unscaledValue());
+        }
+    }
+
+    public static int tamanhoCodificado(Dinheiro dinheiro) {
+        long centavos = dinheiro.centavos();
+        if (centavos >= 0) {
+            return 1 + tamanhoVarLong(centavos);
+        }
+        int bytes = dinheiro.getValor().unscaledValue().bitLength() / 8 + 1;
+        return 1 + tamanhoVarLong(bytes) + bytes;
+    }
+
+    public static Dinheiro decodificarDinheiro(ByteBuffer origem) {
+        int cabecalho = origem.get() & 0xFF;
+        int ordinal = cabecalho & ~VALOR_GRANDE;
+        if (ordinal >= MOEDAS.length) {
+            throw new IllegalArgumentException("Moeda desconhecida no codec: " + ordinal);
+        }
+        Moeda moeda = MOEDAS[ordinal];
+        if ((cabecalho & VALOR_GRANDE) == 0) {
+            return Dinheiro.deCentavos(lerVarLong(origem), moeda);
+        }
+        return new Dinheiro(new BigDecimal(lerInteiroGrande(origem), 2), moeda);
+    }
+
+    // Leitura preguiçosa: só o cabeçalho é lido na criação; os itens são percorridos sob demanda
+    public static final class Visao {
+        private final ByteBuffer dados;
+        private final byte versao;
+        private final BigDecimal descontoCupom;
+        private final int quantidadeDeItens;
+        private final int inicioItens;
+        private final RegistroProdutos registro;
+        private Carrinho carrinho;
+
+        public Visao(ByteBuffer origem) {
+            this(origem, null);
+        }
+
+        public Visao(ByteBuffer origem, RegistroProdutos registro) {
+            this.registro = registro;
+            this.dados = origem.slice();
+            try {
+                this.versao = dados.get();
+                if (versao < 1 || versao > VERSAO) {
+                    throw new IllegalArgumentException("Versão de codec não suportada: " + versao);
+                }
+                this.descontoCupom = lerDecimal(dados);
+                this.quantidadeDeItens = Math.toIntExact(lerVarLong(dados));
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Dados do carrinho truncados", e);
+            }
+            this.inicioItens = dados.position();
+        }
+
+        public BigDecimal getDescontoCupom() {
+            return descontoCupom;
+        }
+
+        public int getQuantidadeDeItens() {
+            return quantidadeDeItens;
+        }
+
+        // Soma as quantidades pulando nomes e preços, sem montar nenhum objeto
+        public int getTotalItens() {
+            ByteBuffer leitura = dados.duplicate().position(inicioItens);
+            int total = 0;
+            for (int i = 0; i < quantidadeDeItens; i++) {
+                lerVarLong(leitura);
+                pularNome(leitura);
+                pularCategoria(leitura);
+                pularDinheiro(leitura);
+                total += (int) lerVarLong(leitura);
+            }
+            return total;
+        }
+
+        public boolean contem(long produtoId) {
+            ByteBuffer leitura = dados.duplicate().position(inicioItens);
+            long procurado = zigzag(produtoId);
+            for (int i = 0; i < quantidadeDeItens; i++) {
+                if (lerVarLong(leitura) == procurado) {
+                    return true;
+                }
+                pularNome(leitura);
+                pularCategoria(leitura);
+                pularDinheiro(leitura);
+                lerVarLong(leitura);
+            }
+            return false;
+        }
+
+        public synchronized Carrinho paraCarrinho() {
+            if (carrinho == null) {
+                ByteBuffer leitura = dados.duplicate().position(inicioItens);
+                try {
+                    Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+                    for (int i = 0; i < quantidadeDeItens; i++) {
+                        long id = dezigzag(lerVarLong(leitura));
+                        String nome = versao < 3 ? lerTexto(leitura) : lerOpcional(leitura);
+                        String categoria = versao == 1 ? null : lerOpcional(leitura);
+                        Dinheiro preco = decodificarDinheiro(leitura);
+                        int quantidade = Math.toIntExact(lerVarLong(leitura));
+                        Produto produto = new Produto(id, nome, preco, categoria);
+                        if (registro != null) {
+                            produto = registro.canonizar(produto);
+                        }
+                        edicao.adicionarItem(produto, quantidade);
+                    }
+                    carrinho = edicao.aplicarCupom(descontoCupom).congelar();
+                } catch (BufferUnderflowException e) {
+                    throw new IllegalArgumentException("Dados do carrinho truncados", e);
+                }
+            }
+            return carrinho;
+        }
+
+        private void pularNome(ByteBuffer leitura) {
+            if (versao < 3) {
+                pularTexto(leitura);
+            } else {
+                pularOpcional(leitura);
+            }
+        }
+
+        private void pularCategoria(ByteBuffer leitura) {
+            if (versao != 1) {
+                pularOpcional(leitura);
+            }
+        }
+    }
+
+    private static Long idObrigatorio(Produto produto) {
+        if (produto.getId() == null) {
+            throw new IllegalArgumentException("Produto sem id não pode ser codificado");
+        }
+        return produto.getId();
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static void escreverVarLong(ByteBuffer destino, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            destino.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        destino.put((byte) valor);
+    }
+
+    private static long lerVarLong(ByteBuffer origem) {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            byte b = origem.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint malformado");
+    }
+
+    private static int tamanhoVarLong(long valor) {
+        return valor == 0 ? 1 : (63 - Long.numberOfLeadingZeros(valor)) / 7 + 1;
+    }
+
+    private static void escreverInteiroGrande(ByteBuffer destino, BigInteger valor) {
+        byte[] bytes = valor.toByteArray();
+        escreverVarLong(destino, bytes.length);
+        destino.put(bytes);
+    }
+
+    private static BigInteger lerInteiroGrande(ByteBuffer origem) {
+        byte[] bytes = new byte[Math.toIntExact(lerVarLong(origem))];
+        origem.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private static void escreverDecimal(ByteBuffer destino, BigDecimal valor) {
+        escreverVarLong(destino, zigzag(valor.scale()));
+        escreverInteiroGrande(destino, valor.unscaledValue());
+    }
+
+    private static BigDecimal lerDecimal(ByteBuffer origem) {
+        int escala = Math.toIntExact(dezigzag(lerVarLong(origem)));
+        return new BigDecimal(lerInteiroGrande(origem), escala);
+    }
+
+    private static int tamanhoDecimal(BigDecimal valor) {
+        int bytes = valor.unscaledValue().bitLength() / 8 + 1;
+        return tamanhoVarLong(zigzag(valor.scale())) + tamanhoVarLong(bytes) + bytes;
+    }
+
+    private static void escreverOpcional(ByteBuffer destino, String texto) {
+        if (texto == null) {
+            destino.put((byte) 0);
+        } else {
+            escreverVarLong(destino, comprimentoUtf8(texto) + 1L);
+            escreverUtf8(destino, texto);
+        }
+    }
+
+    private static int tamanhoOpcional(String texto) {
+        if (texto == null) {
+            return 1;
+        }
+        int bytes = comprimentoUtf8(texto);
+        return tamanhoVarLong(bytes + 1L) + bytes;
+    }
+
+    private static String lerOpcional(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        return bytes == 0 ? null : lerUtf8(origem, bytes - 1);
+    }
+
+    private static void pularOpcional(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        if (bytes > 0) {
+            origem.position(origem.position() + bytes - 1);
+        }
+    }
+
+    private static void pularDinheiro(ByteBuffer origem) {
+        if ((origem.get() & VALOR_GRANDE) == 0) {
+            lerVarLong(origem);
+        } else {
+            pularTexto(origem);
+        }
+    }
+
+    private static void pularTexto(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        origem.position(origem.position() + bytes);
+    }
+
+    // UTF-8 escrito direto no buffer, sem o byte[] intermediário de String.getBytes
+    private static void escreverUtf8(ByteBuffer destino, String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                destino.put((byte) c);
+            } else if (c < 0x800) {
+                destino.put((byte) (0xC0 | (c >> 6)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                destino.put((byte) (0xF0 | (codigo >> 18)));
+                destino.put((byte) (0x80 | ((codigo >> 12) & 0x3F)));
+                destino.put((byte) (0x80 | ((codigo >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (codigo & 0x3F)));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    c = '\uFFFD';
+                }
+                destino.put((byte) (0xE0 | (c >> 12)));
+                destino.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static int comprimentoUtf8(String texto) {
+        int bytes = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String lerTexto(ByteBuffer origem) {
+        return lerUtf8(origem, Math.toIntExact(lerVarLong(origem)));
+    }
+
+    private static String lerUtf8(ByteBuffer origem, int bytes) {
+        if (origem.hasArray()) {
+            int inicio = origem.arrayOffset() + origem.position();
+            origem.position(origem.position() + bytes);
+            return new String(origem.array(), inicio, bytes, StandardCharsets.UTF_8);
+        }
+        byte[] copia = new byte[bytes];
+        origem.get(copia);
+        return new String(copia, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+
+// Mantém a TabelaCambio vigente; recarregar troca o instantâneo inteiro de uma vez,
+// e quem já pegou uma Conversao continua usando a tabela antiga até terminar o lote
+public final class ConversorMoedas {
+    private final Path arquivo;
+    private volatile TabelaCambio tabela;
+    private FileTime versaoCarregada;
+
+    public ConversorMoedas(Path arquivo) {
+        this.arquivo = arquivo;
+        recarregar();
+    }
+
+    public TabelaCambio tabela() {
+        return tabela;
+    }
+
+    public TabelaCambio.Conversao para(Moeda destino, LocalDate data) {
+        return tabela.para(destino, data);
+    }
+
+    public synchronized void recarregar() {
+        try {
+            FileTime versao = Files.getLastModifiedTime(arquivo);
+            tabela = TabelaCambio.carregar(arquivo);
+            versaoCarregada = versao;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized boolean recarregarSeAlterado() {
+        try {
+            if (Files.getLastModifiedTime(arquivo).equals(versaoCarregada)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recarregar();
+        return true;
+    }
+}
@@ -3,14 +3,30 @@ import java.math.RoundingMode;
 import java.util.Objects;
 
 public final class Dinheiro {
-    private final BigDecimal valor;
+    private static final BigDecimal DESCONTO_MAXIMO = new BigDecimal("30");
+    private static final BigDecimal CEM = new BigDecimal("100");
+    // Valores até 100,00 são compartilhados por moeda; o preenchimento preguiçoso pode correr entre
+    // threads sem problema porque Dinheiro é imutável e seus campos finais publicam o objeto com segurança
+    private static final int LIMITE_CACHE = 10_000;
+    private static final Dinheiro[][] CACHE = new Dinheiro[Moeda.values().length][LIMITE_CACHE + 1];
+
+    // Valor em centavos; só usa BigDecimal quando não cabe em um long
+    private final long centavos;
+    private final BigDecimal valorGrande;
     private final Moeda moeda;
 
     public Dinheiro(BigDecimal valor, Moeda moeda) {
         if (valor.compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException("Valor não pode ser negativo");
         }
-        this.valor = valor.setScale(2, RoundingMode.HALF_EVEN);
+        BigDecimal escalado = valor.setScale(2, RoundingMode.HALF_EVEN);
+        if (escalado.unscaledValue().bitLength() < Long.SIZE) {
+            this.centavos = escalado.unscaledValue().longValue();
+            this.valorGrande = null;
+        } else {
+            this.centavos = 0;
+            this.valorGrande = escalado;
+        }
         this.moeda = moeda;
     }
 
@@ -18,8 +34,51 @@ public final class Dinheiro {
         this(new BigDecimal(valor), moeda);
     }
 
+    private Dinheiro(long centavos, Moeda moeda) {
+        if (centavos < 0) {
+            throw new IllegalArgumentException("Valor não pode ser negativo");
+        }
+        this.centavos = centavos;
+        this.valorGrande = null;
+        this.moeda = moeda;
+    }
+
     public BigDecimal getValor() {
-        return valor;
+        return valorGrande != null ? valorGrande : BigDecimal.valueOf(centavos, 2);
+    }
+
+    // Acesso direto ao ponto fixo para o codec binário; -1 quando o valor não cabe em um long
+    long centavos() {
+        return valorGrande != null ? -1 : centavos;
+    }
+
+    static Dinheiro deCentavos(long centavos, Moeda moeda) {
+        return of(centavos, moeda);
+    }
+
+    public static Dinheiro of(long centavos, Moeda moeda) {
+        if (centavos < 0 || centavos > LIMITE_CACHE) {
+            return new Dinheiro(centavos, moeda);
+        }
+        Dinheiro[] porMoeda = CACHE[moeda.ordinal()];
+        Dinheiro dinheiro = porMoeda[(int) centavos];
+        if (dinheiro == null) {
+            dinheiro = new Dinheiro(centavos, moeda);
+            porMoeda[(int) centavos] = dinheiro;
+        }
+        return dinheiro;
+    }
+
+    public static Dinheiro of(BigDecimal valor, Moeda moeda) {
+        Dinheiro dinheiro = new Dinheiro(valor, moeda);
+        if (dinheiro.valorGrande == null && dinheiro.centavos <= LIMITE_CACHE) {
+            return of(dinheiro.centavos, moeda);
+        }
+        return dinheiro;
+    }
+
+    public static Dinheiro of(String valor, Moeda moeda) {
+        return of(new BigDecimal(valor), moeda);
     }
 
     public Moeda getMoeda() {
@@ -28,28 +87,83 @@ public final class Dinheiro {
 
     public Dinheiro somar(Dinheiro outro) {
         validarMoeda(outro);
-        return new Dinheiro(this.valor.add(outro.valor), this.moeda);
+        if (valorGrande == null && outro.valorGrande == null) {
+            long soma = centavos + outro.centavos;
+            if (((centavos ^ soma) & (outro.centavos ^ soma)) >= 0) {
+                return of(soma, moeda);
+            }
+        }
+        return new Dinheiro(this.getValor().add(outro.getValor()), this.moeda);
     }
 
     public Dinheiro subtrair(Dinheiro outro) {
         validarMoeda(outro);
-        return new Dinheiro(this.valor.subtract(outro.valor), this.moeda);
+        if (valorGrande == null && outro.valorGrande == null) {
+            return of(centavos - outro.centavos, moeda);
+        }
+        return new Dinheiro(this.getValor().subtract(outro.getValor()), this.moeda);
     }
 
     public Dinheiro multiplicar(BigDecimal fator) {
-        return new Dinheiro(this.valor.multiply(fator), this.moeda);
+        return new Dinheiro(this.getValor().multiply(fator), this.moeda);
     }
 
     public Dinheiro multiplicar(int quantidade) {
+        if (valorGrande == null) {
+            long produto = centavos * quantidade;
+            if (Math.multiplyHigh(centavos, quantidade) == (produto >> 63)) {
+                return of(produto, moeda);
+            }
+        }
         return multiplicar(new BigDecimal(quantidade));
     }
 
-    public Dinheiro aplicarDesconto(BigDecimal percentual) {
-        if (percentual.compareTo(new BigDecimal("30")) > 0) {
+    // valor * numerador / denominador, arredondado HALF_EVEN; usado pelas promoções (sem o teto de 30%)
+    Dinheiro fracao(long numerador, long denominador) {
+        if (valorGrande == null) {
+            long produto = centavos * numerador;
+            if (Math.multiplyHigh(centavos, numerador) == (produto >> 63)) {
+                return of(dividirHalfEven(produto, denominador), moeda);
+            }
+        }
+        return new Dinheiro(getValor().multiply(BigDecimal.valueOf(numerador))
+                .divide(BigDecimal.valueOf(denominador), 2, RoundingMode.HALF_EVEN), moeda);
+    }
+
+    boolean maiorQue(Dinheiro outro) {
+        validarMoeda(outro);
+        if (valorGrande == null && outro.valorGrande == null) {
+            return centavos > outro.centavos;
+        }
+        return getValor().compareTo(outro.getValor()) > 0;
+    }
+
+    public static void validarDesconto(BigDecimal percentual) {
+        if (percentual.compareTo(DESCONTO_MAXIMO) > 0) {
             throw new IllegalArgumentException("Desconto não pode ser maior que 30%");
         }
-        BigDecimal fatorDesconto = BigDecimal.ONE.subtract(percentual.divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN));
-        return new Dinheiro(this.valor.multiply(fatorDesconto), this.moeda);
+    }
+
+    public Dinheiro aplicarDesconto(BigDecimal percentual) {
+        validarDesconto(percentual);
+        // Percentual inteiro (caso comum): fator exato, calculado sem BigDecimal
+        if (valorGrande == null && percentual.scale() == 0 && percentual.signum() >= 0
+                && centavos <= Long.MAX_VALUE / 100) {
+            long fator = 100 - percentual.longValue();
+            return of(dividirHalfEven(centavos * fator, 100), moeda);
+        }
+        BigDecimal fatorDesconto = BigDecimal.ONE.subtract(percentual.divide(CEM, 4, RoundingMode.HALF_EVEN));
+        return new Dinheiro(this.getValor().multiply(fatorDesconto), this.moeda);
+    }
+
+    static long dividirHalfEven(long dividendo, long divisor) {
+        long quociente = Math.floorDiv(dividendo, divisor);
+        long resto = Math.floorMod(dividendo, divisor);
+        long dobro = resto * 2;
+        if (dobro > divisor || (dobro == divisor && (quociente & 1) != 0)) {
+            quociente++;
+        }
+        return quociente;
     }
 
     private void validarMoeda(Dinheiro outro) {
@@ -63,16 +177,18 @@ public final class Dinheiro {
         if (this == o) return true;
         if (!(o instanceof Dinheiro)) return false;
         Dinheiro dinheiro = (Dinheiro) o;
-        return valor.equals(dinheiro.valor) && moeda == dinheiro.moeda;
+        return centavos == dinheiro.centavos
+                && Objects.equals(valorGrande, dinheiro.valorGrande)
+                && moeda == dinheiro.moeda;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(valor, moeda);
+        return 31 * (31 * Long.hashCode(centavos) + Objects.hashCode(valorGrande)) + moeda.hashCode();
     }
 
     @Override
     public String toString() {
-        return moeda + " " + valor;
+        return moeda + " " + getValor();
     }
 }
@@ -1,64 +1,540 @@
 import java.io.*;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class GeradorArquivos {
+    private static final Map<String, String> FONTES = new LinkedHashMap<>();
+    private static CacheGeracao cache;
 
     public static void main(String[] args) throws Exception {
+        // --incremental: só reescreve/recompila o que mudou, reaproveitando .gerador-cache
+        if (Arrays.asList(args).contains("--incremental")) {
+            cache = new CacheGeracao(Paths.get(".gerador-cache"));
+        }
+
         System.out.println("Gerando arquivos Java...");
 
         // Criar arquivos
         criarMoeda();
+        criarVetorPersistente();
+        criarMapaPersistente();
         criarDinheiro();
         criarProduto();
         criarItemCarrinho();
         criarCarrinho();
         criarTestesCarrinho();
+        criarBenchmarkDinheiro();
+        criarCodecCarrinho();
+        criarBenchmarkCodecCarrinho();
+        criarArmazemCarrinhos();
+        criarBenchmarkArmazemCarrinhos();
+        criarTabelaCambio();
+        criarConversorMoedas();
+        criarPromocao();
+        criarMotorPromocoes();
+        criarInstantaneoPrecos();
+        criarReprecificacaoLote();
+        criarBenchmarkReprecificacao();
+        criarRegistroProdutos();
+        criarBenchmarkFlyweight();
 
         System.out.println("Arquivos criados com sucesso!");
         System.out.println("Compilando...");
 
-        // Compilar
-        Process compile = Runtime.getRuntime().exec("javac *.java");
-        compile.waitFor();
+        // Compilar em memória, sem iniciar outra JVM
+        CompiladorEmMemoria.Compilacao compilacao = cache != null
+                ? cache.compilar(FONTES)
+                : CompiladorEmMemoria.compilar(FONTES);
 
-        if (compile.exitValue() == 0) {
+        if (compilacao.sucesso()) {
             System.out.println("Compilação bem-sucedida!");
+            if (cache != null) {
+                System.out.println(cache.resumo());
+            }
             System.out.println("Executando testes...");
 
-            // Executar testes com assertions habilitadas
-            Process run = Runtime.getRuntime().exec("java -ea TestesCarrinho");
+            // Executar testes em um ClassLoader novo com assertions habilitadas
+            CompiladorEmMemoria.Execucao execucao =
+                    CompiladorEmMemoria.executar(compilacao.classes(), "TestesCarrinho", true);
+            System.out.print(execucao.saida());
+            System.err.print(execucao.erros());
+        } else {
+            System.err.println("Erro na compilação!");
+            System.err.print(compilacao.diagnosticos());
+        }
+    }
+
+    private static void escrever(String arquivo, String codigo) throws IOException {
+        if (cache != null) {
+            cache.escrever(Paths.get(arquivo), codigo);
+        } else {
+            Files.writeString(Paths.get(arquivo), codigo);
+        }
+        FONTES.put(arquivo, codigo);
+    }
+
+    private static void criarMoeda() throws IOException {
+        String codigo = """
+public enum Moeda {
+    BRL, USD, EUR
+}
+""";
+        escrever("Moeda.java", codigo);
+    }
+
+    private static void criarVetorPersistente() throws IOException {
+        String codigo = """
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class VetorPersistente<E> {
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS;
+    private static final int MASCARA = LARGURA - 1;
+    private static final VetorPersistente<?> VAZIO = new VetorPersistente<>(0, 0, new Object[LARGURA]);
+
+    private final int tamanho;
+    private final int deslocamento;
+    private final Object[] raiz;
+
+    private VetorPersistente(int tamanho, int deslocamento, Object[] raiz) {
+        this.tamanho = tamanho;
+        this.deslocamento = deslocamento;
+        this.raiz = raiz;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> VetorPersistente<E> vazio() {
+        return (VetorPersistente<E>) VAZIO;
+    }
+
+    // Monta a árvore de baixo para cima em O(n), sem cópias de caminho
+    public static <E> VetorPersistente<E> de(List<? extends E> elementos) {
+        int tamanho = elementos.size();
+        if (tamanho == 0) {
+            return vazio();
+        }
 
-            // Mostrar saída
-            BufferedReader reader = new BufferedReader(new InputStreamReader(run.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+        List<Object[]> nivel = new ArrayList<>();
+        for (int i = 0; i < tamanho; i += LARGURA) {
+            Object[] folha = new Object[LARGURA];
+            for (int j = i; j < Math.min(i + LARGURA, tamanho); j++) {
+                folha[j - i] = elementos.get(j);
             }
+            nivel.add(folha);
+        }
 
-            // Mostrar erros se houver
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(run.getErrorStream()));
-            while ((line = errorReader.readLine()) != null) {
-                System.err.println(line);
+        int deslocamento = 0;
+        while (nivel.size() > 1) {
+            List<Object[]> acima = new ArrayList<>();
+            for (int i = 0; i < nivel.size(); i += LARGURA) {
+                Object[] no = new Object[LARGURA];
+                for (int j = i; j < Math.min(i + LARGURA, nivel.size()); j++) {
+                    no[j - i] = nivel.get(j);
+                }
+                acima.add(no);
             }
+            nivel = acima;
+            deslocamento += BITS;
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, nivel.get(0));
+    }
 
-            run.waitFor();
-        } else {
-            System.err.println("Erro na compilação!");
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(compile.getErrorStream()));
-            String line;
-            while ((line = errorReader.readLine()) != null) {
-                System.err.println(line);
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E obter(int indice) {
+        if (indice < 0 || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de tamanho " + tamanho);
+        }
+        Object[] no = raiz;
+        for (int s = deslocamento; s > 0; s -= BITS) {
+            no = (Object[]) no[(indice >>> s) & MASCARA];
+        }
+        return (E) no[indice & MASCARA];
+    }
+
+    public VetorPersistente<E> definir(int indice, E valor) {
+        if (indice < 0 || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de tamanho " + tamanho);
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, gravar(raiz, deslocamento, indice, valor));
+    }
+
+    public VetorPersistente<E> adicionar(E valor) {
+        if (tamanho == 1 << (deslocamento + BITS)) {
+            Object[] novaRaiz = new Object[LARGURA];
+            novaRaiz[0] = raiz;
+            return new VetorPersistente<>(tamanho + 1, deslocamento + BITS,
+                    gravar(novaRaiz, deslocamento + BITS, tamanho, valor));
+        }
+        return new VetorPersistente<>(tamanho + 1, deslocamento, gravar(raiz, deslocamento, tamanho, valor));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void paraCada(Consumer<? super E> acao) {
+        percorrer(raiz, deslocamento, 0, (Consumer<Object>) acao);
+    }
+
+    private int percorrer(Object[] no, int s, int inicio, Consumer<Object> acao) {
+        int indice = inicio;
+        for (int i = 0; i < LARGURA && indice < tamanho; i++) {
+            if (s == 0) {
+                acao.accept(no[i]);
+                indice++;
+            } else {
+                indice = percorrer((Object[]) no[i], s - BITS, indice, acao);
             }
         }
+        return indice;
     }
 
-    private static void criarMoeda() throws IOException {
+    // Copia apenas o caminho da raiz até a folha alterada; o resto da árvore é compartilhado
+    private static Object[] gravar(Object[] no, int s, int indice, Object valor) {
+        Object[] copia = no == null ? new Object[LARGURA] : no.clone();
+        if (s == 0) {
+            copia[indice & MASCARA] = valor;
+        } else {
+            int filho = (indice >>> s) & MASCARA;
+            copia[filho] = gravar((Object[]) copia[filho], s - BITS, indice, valor);
+        }
+        return copia;
+    }
+}
+""";
+        escrever("VetorPersistente.java", codigo);
+    }
+
+    private static void criarMapaPersistente() throws IOException {
         String codigo = """
-public enum Moeda {
-    BRL, USD, EUR
+import java.util.List;
+
+public final class MapaPersistente<K, V> {
+    private static final MapaPersistente<?, ?> VAZIO = new MapaPersistente<>(null, 0);
+
+    private final No raiz;
+    private final int tamanho;
+
+    private MapaPersistente(No raiz, int tamanho) {
+        this.raiz = raiz;
+        this.tamanho = tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> MapaPersistente<K, V> vazio() {
+        return (MapaPersistente<K, V>) VAZIO;
+    }
+
+    // Monta o trie de uma vez, distribuindo as chaves por fatias do hash (sem cópias de caminho)
+    public static <K, V> MapaPersistente<K, V> de(List<? extends K> chaves, List<? extends V> valores) {
+        if (chaves.size() != valores.size()) {
+            throw new IllegalArgumentException("Listas de chaves e valores com tamanhos diferentes");
+        }
+        int n = chaves.size();
+        if (n == 0) {
+            return vazio();
+        }
+
+        int[] hashes = new int[n];
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(chaves.get(i));
+            indices[i] = i;
+        }
+        int[] tamanho = new int[1];
+        No raiz = construir(indices, 0, n, new int[n], hashes, chaves.toArray(), valores.toArray(), 0, tamanho);
+        return new MapaPersistente<>(raiz, tamanho[0]);
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V obter(K chave) {
+        return raiz == null ? null : (V) raiz.obter(0, hash(chave), chave);
+    }
+
+    public MapaPersistente<K, V> associar(K chave, V valor) {
+        boolean[] novaFolha = new boolean[1];
+        No atual = raiz == null ? NoBitmap.VAZIO : raiz;
+        No novo = atual.associar(0, hash(chave), chave, valor, novaFolha);
+        if (novo == raiz) {
+            return this;
+        }
+        return new MapaPersistente<>(novo, novaFolha[0] ? tamanho + 1 : tamanho);
+    }
+
+    public MapaPersistente<K, V> remover(K chave) {
+        if (raiz == null) {
+            return this;
+        }
+        No novo = raiz.remover(0, hash(chave), chave);
+        if (novo == raiz) {
+            return this;
+        }
+        return new MapaPersistente<>(novo, tamanho - 1);
+    }
+
+    private static int hash(Object chave) {
+        int h = chave.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private interface No {
+        Object obter(int deslocamento, int hash, Object chave);
+
+        No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha);
+
+        No remover(int deslocamento, int hash, Object chave);
+    }
+
+    // Nó com até 32 posições compactadas por bitmap; pares (chave, valor) ou (null, subnó)
+    private static final class NoBitmap implements No {
+        static final NoBitmap VAZIO = new NoBitmap(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] pares;
+
+        NoBitmap(int bitmap, Object[] pares) {
+            this.bitmap = bitmap;
+            this.pares = pares;
+        }
+
+        @Override
+        public Object obter(int deslocamento, int hash, Object chave) {
+            int bit = bit(hash, deslocamento);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * indice(bit);
+            Object k = pares[i];
+            if (k == null) {
+                return ((No) pares[i + 1]).obter(deslocamento + 5, hash, chave);
+            }
+            return chave.equals(k) ? pares[i + 1] : null;
+        }
+
+        @Override
+        public No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha) {
+            int bit = bit(hash, deslocamento);
+            int i = 2 * indice(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] novos = new Object[pares.length + 2];
+                System.arraycopy(pares, 0, novos, 0, i);
+                novos[i] = chave;
+                novos[i + 1] = valor;
+                System.arraycopy(pares, i, novos, i + 2, pares.length - i);
+                novaFolha[0] = true;
+                return new NoBitmap(bitmap | bit, novos);
+            }
+
+            Object k = pares[i];
+            Object v = pares[i + 1];
+            if (k == null) {
+                No filho = ((No) v).associar(deslocamento + 5, hash, chave, valor, novaFolha);
+                return filho == v ? this : copiar(i + 1, filho);
+            }
+            if (chave.equals(k)) {
+                return v == valor ? this : copiar(i + 1, valor);
+            }
+            novaFolha[0] = true;
+            No filho = criarFilho(deslocamento + 5, k, v, hash, chave, valor);
+            Object[] novos = pares.clone();
+            novos[i] = null;
+            novos[i + 1] = filho;
+            return new NoBitmap(bitmap, novos);
+        }
+
+        @Override
+        public No remover(int deslocamento, int hash, Object chave) {
+            int bit = bit(hash, deslocamento);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * indice(bit);
+            Object k = pares[i];
+            if (k == null) {
+                No filho = (No) pares[i + 1];
+                No novoFilho = filho.remover(deslocamento + 5, hash, chave);
+                if (novoFilho == filho) {
+                    return this;
+                }
+                if (novoFilho != null) {
+                    return copiar(i + 1, novoFilho);
+                }
+            } else if (!chave.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] novos = new Object[pares.length - 2];
+            System.arraycopy(pares, 0, novos, 0, i);
+            System.arraycopy(pares, i + 2, novos, i, pares.length - i - 2);
+            return new NoBitmap(bitmap ^ bit, novos);
+        }
+
+        private NoBitmap copiar(int posicao, Object valor) {
+            Object[] novos = pares.clone();
+            novos[posicao] = valor;
+            return new NoBitmap(bitmap, novos);
+        }
+
+        private int indice(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int deslocamento) {
+            return 1 << ((hash >>> deslocamento) & 31);
+        }
+    }
+
+    // Chaves diferentes com o mesmo hash de 32 bits
+    private static final class NoColisao implements No {
+        final int hash;
+        final Object[] pares;
+
+        NoColisao(int hash, Object[] pares) {
+            this.hash = hash;
+            this.pares = pares;
+        }
+
+        @Override
+        public Object obter(int deslocamento, int hash, Object chave) {
+            int i = procurar(chave);
+            return i < 0 ? null : pares[i + 1];
+        }
+
+        @Override
+        public No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha) {
+            if (hash != this.hash) {
+                return new NoBitmap(NoBitmap.bit(this.hash, deslocamento), new Object[]{null, this})
+                        .associar(deslocamento, hash, chave, valor, novaFolha);
+            }
+            int i = procurar(chave);
+            if (i >= 0) {
+                if (pares[i + 1] == valor) {
+                    return this;
+                }
+                Object[] novos = pares.clone();
+                novos[i + 1] = valor;
+                return new NoColisao(hash, novos);
+            }
+            Object[] novos = new Object[pares.length + 2];
+            System.arraycopy(pares, 0, novos, 0, pares.length);
+            novos[pares.length] = chave;
+            novos[pares.length + 1] = valor;
+            novaFolha[0] = true;
+            return new NoColisao(hash, novos);
+        }
+
+        @Override
+        public No remover(int deslocamento, int hash, Object chave) {
+            int i = procurar(chave);
+            if (i < 0) {
+                return this;
+            }
+            if (pares.length == 2) {
+                return null;
+            }
+            Object[] novos = new Object[pares.length - 2];
+            System.arraycopy(pares, 0, novos, 0, i);
+            System.arraycopy(pares, i + 2, novos, i, pares.length - i - 2);
+            return new NoColisao(hash, novos);
+        }
+
+        private int procurar(Object chave) {
+            for (int i = 0; i < pares.length; i += 2) {
+                if (chave.equals(pares[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static No construir(int[] indices, int inicio, int fim, int[] auxiliar, int[] hashes,
+                                Object[] chaves, Object[] valores, int deslocamento, int[] tamanho) {
+        int[] limites = new int[33];
+        for (int i = inicio; i < fim; i++) {
+            limites[((hashes[indices[i]] >>> deslocamento) & 31) + 1]++;
+        }
+        int ocupados = 0;
+        for (int b = 0; b < 32; b++) {
+            if (limites[b + 1] > 0) {
+                ocupados++;
+            }
+            limites[b + 1] += limites[b];
+        }
+
+        // Ordenação estável por fatia: chaves repetidas mantêm a ordem original (a última vence)
+        int[] cursor = limites.clone();
+        for (int i = inicio; i < fim; i++) {
+            int b = (hashes[indices[i]] >>> deslocamento) & 31;
+            auxiliar[inicio + cursor[b]++] = indices[i];
+        }
+        System.arraycopy(auxiliar, inicio, indices, inicio, fim - inicio);
+
+        int bitmap = 0;
+        Object[] pares = new Object[2 * ocupados];
+        int j = 0;
+        for (int b = 0; b < 32; b++) {
+            int s = inicio + limites[b];
+            int e = inicio + limites[b + 1];
+            if (s == e) {
+                continue;
+            }
+            bitmap |= 1 << b;
+            if (e - s == 1) {
+                pares[j] = chaves[indices[s]];
+                pares[j + 1] = valores[indices[s]];
+                tamanho[0]++;
+            } else if (mesmoHash(indices, s, e, hashes)) {
+                NoColisao colisao = new NoColisao(hashes[indices[s]], new Object[0]);
+                boolean[] novaFolha = new boolean[1];
+                for (int i = s; i < e; i++) {
+                    novaFolha[0] = false;
+                    colisao = (NoColisao) colisao.associar(deslocamento, colisao.hash,
+                            chaves[indices[i]], valores[indices[i]], novaFolha);
+                    tamanho[0] += novaFolha[0] ? 1 : 0;
+                }
+                pares[j + 1] = colisao;
+            } else {
+                pares[j + 1] = construir(indices, s, e, auxiliar, hashes, chaves, valores, deslocamento + 5, tamanho);
+            }
+            j += 2;
+        }
+        return new NoBitmap(bitmap, pares);
+    }
+
+    private static boolean mesmoHash(int[] indices, int inicio, int fim, int[] hashes) {
+        for (int i = inicio + 1; i < fim; i++) {
+            if (hashes[indices[i]] != hashes[indices[inicio]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static No criarFilho(int deslocamento, Object chave1, Object valor1, int hash2, Object chave2, Object valor2) {
+        int hash1 = hash(chave1);
+        if (hash1 == hash2) {
+            return new NoColisao(hash1, new Object[]{chave1, valor1, chave2, valor2});
+        }
+        boolean[] ignorado = new boolean[1];
+        return NoBitmap.VAZIO
+                .associar(deslocamento, hash1, chave1, valor1, ignorado)
+                .associar(deslocamento, hash2, chave2, valor2, ignorado);
+    }
 }
 """;
-        Files.writeString(Paths.get("Moeda.java"), codigo);
+        escrever("MapaPersistente.java", codigo);
     }
 
     private static void criarDinheiro() throws IOException {
@@ -68,14 +544,30 @@ import java.math.RoundingMode;
 import java.util.Objects;
 
 public final class Dinheiro {
-    private final BigDecimal valor;
+    private static final BigDecimal DESCONTO_MAXIMO = new BigDecimal("30");
+    private static final BigDecimal CEM = new BigDecimal("100");
+    // Valores até 100,00 são compartilhados por moeda; o preenchimento preguiçoso pode correr entre
+    // threads sem problema porque Dinheiro é imutável e seus campos finais publicam o objeto com segurança
+    private static final int LIMITE_CACHE = 10_000;
+    private static final Dinheiro[][] CACHE = new Dinheiro[Moeda.values().length][LIMITE_CACHE + 1];
+
+    // Valor em centavos; só usa BigDecimal quando não cabe em um long
+    private final long centavos;
+    private final BigDecimal valorGrande;
     private final Moeda moeda;
 
     public Dinheiro(BigDecimal valor, Moeda moeda) {
         if (valor.compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException("Valor não pode ser negativo");
         }
-        this.valor = valor.setScale(2, RoundingMode.HALF_EVEN);
+        BigDecimal escalado = valor.setScale(2, RoundingMode.HALF_EVEN);
+        if (escalado.unscaledValue().bitLength() < Long.SIZE) {
+            this.centavos = escalado.unscaledValue().longValue();
+            this.valorGrande = null;
+        } else {
+            this.centavos = 0;
+            this.valorGrande = escalado;
+        }
         this.moeda = moeda;
     }
 
@@ -83,8 +575,51 @@ public final class Dinheiro {
         this(new BigDecimal(valor), moeda);
     }
 
+    private Dinheiro(long centavos, Moeda moeda) {
+        if (centavos < 0) {
+            throw new IllegalArgumentException("Valor não pode ser negativo");
+        }
+        this.centavos = centavos;
+        this.valorGrande = null;
+        this.moeda = moeda;
+    }
+
     public BigDecimal getValor() {
-        return valor;
+        return valorGrande != null ? valorGrande : BigDecimal.valueOf(centavos, 2);
+    }
+
+    // Acesso direto ao ponto fixo para o codec binário; -1 quando o valor não cabe em um long
+    long centavos() {
+        return valorGrande != null ? -1 : centavos;
+    }
+
+    static Dinheiro deCentavos(long centavos, Moeda moeda) {
+        return of(centavos, moeda);
+    }
+
+    public static Dinheiro of(long centavos, Moeda moeda) {
+        if (centavos < 0 || centavos > LIMITE_CACHE) {
+            return new Dinheiro(centavos, moeda);
+        }
+        Dinheiro[] porMoeda = CACHE[moeda.ordinal()];
+        Dinheiro dinheiro = porMoeda[(int) centavos];
+        if (dinheiro == null) {
+            dinheiro = new Dinheiro(centavos, moeda);
+            porMoeda[(int) centavos] = dinheiro;
+        }
+        return dinheiro;
+    }
+
+    public static Dinheiro of(BigDecimal valor, Moeda moeda) {
+        Dinheiro dinheiro = new Dinheiro(valor, moeda);
+        if (dinheiro.valorGrande == null && dinheiro.centavos <= LIMITE_CACHE) {
+            return of(dinheiro.centavos, moeda);
+        }
+        return dinheiro;
+    }
+
+    public static Dinheiro of(String valor, Moeda moeda) {
+        return of(new BigDecimal(valor), moeda);
     }
 
     public Moeda getMoeda() {
@@ -93,28 +628,83 @@ public final class Dinheiro {
 
     public Dinheiro somar(Dinheiro outro) {
         validarMoeda(outro);
-        return new Dinheiro(this.valor.add(outro.valor), this.moeda);
+        if (valorGrande == null && outro.valorGrande == null) {
+            long soma = centavos + outro.centavos;
+            if (((centavos ^ soma) & (outro.centavos ^ soma)) >= 0) {
+                return of(soma, moeda);
+            }
+        }
+        return new Dinheiro(this.getValor().add(outro.getValor()), this.moeda);
     }
 
     public Dinheiro subtrair(Dinheiro outro) {
         validarMoeda(outro);
-        return new Dinheiro(this.valor.subtract(outro.valor), this.moeda);
+        if (valorGrande == null && outro.valorGrande == null) {
+            return of(centavos - outro.centavos, moeda);
+        }
+        return new Dinheiro(this.getValor().subtract(outro.getValor()), this.moeda);
     }
 
     public Dinheiro multiplicar(BigDecimal fator) {
-        return new Dinheiro(this.valor.multiply(fator), this.moeda);
+        return new Dinheiro(this.getValor().multiply(fator), this.moeda);
     }
 
     public Dinheiro multiplicar(int quantidade) {
+        if (valorGrande == null) {
+            long produto = centavos * quantidade;
+            if (Math.multiplyHigh(centavos, quantidade) == (produto >> 63)) {
+                return of(produto, moeda);
+            }
+        }
         return multiplicar(new BigDecimal(quantidade));
     }
 
-    public Dinheiro aplicarDesconto(BigDecimal percentual) {
-        if (percentual.compareTo(new BigDecimal("30")) > 0) {
+    // valor * numerador / denominador, arredondado HALF_EVEN; usado pelas promoções (sem o teto de 30%)
+    Dinheiro fracao(long numerador, long denominador) {
+        if (valorGrande == null) {
+            long produto = centavos * numerador;
+            if (Math.multiplyHigh(centavos, numerador) == (produto >> 63)) {
+                return of(dividirHalfEven(produto, denominador), moeda);
+            }
+        }
+        return new Dinheiro(getValor().multiply(BigDecimal.valueOf(numerador))
+                .divide(BigDecimal.valueOf(denominador), 2, RoundingMode.HALF_EVEN), moeda);
+    }
+
+    boolean maiorQue(Dinheiro outro) {
+        validarMoeda(outro);
+        if (valorGrande == null && outro.valorGrande == null) {
+            return centavos > outro.centavos;
+        }
+        return getValor().compareTo(outro.getValor()) > 0;
+    }
+
+    public static void validarDesconto(BigDecimal percentual) {
+        if (percentual.compareTo(DESCONTO_MAXIMO) > 0) {
             throw new IllegalArgumentException("Desconto não pode ser maior que 30%");
         }
-        BigDecimal fatorDesconto = BigDecimal.ONE.subtract(percentual.divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN));
-        return new Dinheiro(this.valor.multiply(fatorDesconto), this.moeda);
+    }
+
+    public Dinheiro aplicarDesconto(BigDecimal percentual) {
+        validarDesconto(percentual);
+        // Percentual inteiro (caso comum): fator exato, calculado sem BigDecimal
+        if (valorGrande == null && percentual.scale() == 0 && percentual.signum() >= 0
+                && centavos <= Long.MAX_VALUE / 100) {
+            long fator = 100 - percentual.longValue();
+            return of(dividirHalfEven(centavos * fator, 100), moeda);
+        }
+        BigDecimal fatorDesconto = BigDecimal.ONE.subtract(percentual.divide(CEM, 4, RoundingMode.HALF_EVEN));
+        return new Dinheiro(this.getValor().multiply(fatorDesconto), this.moeda);
+    }
+
+    static long dividirHalfEven(long dividendo, long divisor) {
+        long quociente = Math.floorDiv(dividendo, divisor);
+        long resto = Math.floorMod(dividendo, divisor);
+        long dobro = resto * 2;
+        if (dobro > divisor || (dobro == divisor && (quociente & 1) != 0)) {
+            quociente++;
+        }
+        return quociente;
     }
 
     private void validarMoeda(Dinheiro outro) {
@@ -128,21 +718,23 @@ public final class Dinheiro {
         if (this == o) return true;
         if (!(o instanceof Dinheiro)) return false;
         Dinheiro dinheiro = (Dinheiro) o;
-        return valor.equals(dinheiro.valor) && moeda == dinheiro.moeda;
+        return centavos == dinheiro.centavos
+                && Objects.equals(valorGrande, dinheiro.valorGrande)
+                && moeda == dinheiro.moeda;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(valor, moeda);
+        return 31 * (31 * Long.hashCode(centavos) + Objects.hashCode(valorGrande)) + moeda.hashCode();
     }
 
     @Override
     public String toString() {
-        return moeda + " " + valor;
+        return moeda + " " + getValor();
     }
 }
 """;
-        Files.writeString(Paths.get("Dinheiro.java"), codigo);
+        escrever("Dinheiro.java", codigo);
     }
 
     private static void criarProduto() throws IOException {
@@ -151,11 +743,17 @@ public class Produto {
     private final Long id;
     private final String nome;
     private final Dinheiro preco;
+    private final String categoria;
 
     public Produto(Long id, String nome, Dinheiro preco) {
+        this(id, nome, preco, null);
+    }
+
+    public Produto(Long id, String nome, Dinheiro preco, String categoria) {
         this.id = id;
         this.nome = nome;
         this.preco = preco;
+        this.categoria = categoria;
     }
 
     public Long getId() {
@@ -169,9 +767,13 @@ public class Produto {
     public Dinheiro getPreco() {
         return preco;
     }
+
+    public String getCategoria() {
+        return categoria;
+    }
 }
 """;
-        Files.writeString(Paths.get("Produto.java"), codigo);
+        escrever("Produto.java", codigo);
     }
 
     private static void criarItemCarrinho() throws IOException {
@@ -220,7 +822,7 @@ public final class ItemCarrinho {
     }
 }
 """;
-        Files.writeString(Paths.get("ItemCarrinho.java"), codigo);
+        escrever("ItemCarrinho.java", codigo);
     }
 
     private static void criarCarrinho() throws IOException {
@@ -229,20 +831,35 @@ import java.math.BigDecimal;
 import java.util.*;
 
 public final class Carrinho {
-    private final List<ItemCarrinho> itens;
+    // Itens na ordem de inserção (posições removidas ficam nulas) e posição de cada produto nessa ordem
+    private final VetorPersistente<ItemCarrinho> ordem;
+    private final MapaPersistente<Long, Integer> posicoes;
     private final BigDecimal descontoCupom;
+    // Totais mantidos a cada operação; subtotal é nulo quando vazio ou com moedas diferentes
+    private final Dinheiro subtotal;
+    private final int totalItens;
+    private volatile List<ItemCarrinho> itens;
 
     public Carrinho() {
-        this(Collections.emptyList(), BigDecimal.ZERO);
+        this(VetorPersistente.vazio(), MapaPersistente.vazio(), BigDecimal.ZERO, null, 0);
     }
 
-    private Carrinho(List<ItemCarrinho> itens, BigDecimal descontoCupom) {
-        this.itens = Collections.unmodifiableList(new ArrayList<>(itens));
+    private Carrinho(VetorPersistente<ItemCarrinho> ordem, MapaPersistente<Long, Integer> posicoes,
+                     BigDecimal descontoCupom, Dinheiro subtotal, int totalItens) {
+        this.ordem = ordem;
+        this.posicoes = posicoes;
         this.descontoCupom = descontoCupom;
+        this.subtotal = subtotal;
+        this.totalItens = totalItens;
     }
 
     public List<ItemCarrinho> getItens() {
-        return itens;
+        List<ItemCarrinho> resultado = itens;
+        if (resultado == null) {
+            resultado = Collections.unmodifiableList(itensEmOrdem(ordem, posicoes.tamanho()));
+            itens = resultado;
+        }
+        return resultado;
     }
 
     public BigDecimal getDescontoCupom() {
@@ -250,77 +867,276 @@ public final class Carrinho {
     }
 
     public Carrinho adicionarItem(Produto produto, int quantidade) {
-        List<ItemCarrinho> novosItens = new ArrayList<>(itens);
-        Optional<ItemCarrinho> itemExistente = encontrarItem(produto.getId());
-
-        if (itemExistente.isPresent()) {
-            novosItens.remove(itemExistente.get());
-            novosItens.add(itemExistente.get().adicionarQuantidade(quantidade));
+        Integer posicao = posicoes.obter(produto.getId());
+        VetorPersistente<ItemCarrinho> novaOrdem = ordem;
+        ItemCarrinho itemAnterior = null;
+        ItemCarrinho novoItem;
+
+        if (posicao != null) {
+            itemAnterior = ordem.obter(posicao);
+            novoItem = itemAnterior.adicionarQuantidade(quantidade);
+            novaOrdem = novaOrdem.definir(posicao, null);
         } else {
-            novosItens.add(new ItemCarrinho(produto, quantidade));
+            novoItem = new ItemCarrinho(produto, quantidade);
         }
 
-        return new Carrinho(novosItens, descontoCupom);
+        MapaPersistente<Long, Integer> novasPosicoes = posicoes.associar(produto.getId(), novaOrdem.tamanho());
+        novaOrdem = novaOrdem.adicionar(novoItem);
+        int novoTotalItens = totalItens + novoItem.getQuantidade()
+                - (itemAnterior == null ? 0 : itemAnterior.getQuantidade());
+
+        return criar(novaOrdem, novasPosicoes, descontoCupom,
+                atualizarSubtotal(itemAnterior, novoItem, novaOrdem), novoTotalItens);
     }
 
     public Carrinho removerItem(Long produtoId) {
-        List<ItemCarrinho> novosItens = itens.stream()
-                .filter(item -> !item.getProduto().getId().equals(produtoId))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        Integer posicao = posicoes.obter(produtoId);
 
-        if (novosItens.size() == itens.size()) {
+        if (posicao == null) {
             throw new IllegalArgumentException("Produto não encontrado no carrinho");
         }
 
-        return new Carrinho(novosItens, descontoCupom);
+        ItemCarrinho removido = ordem.obter(posicao);
+        VetorPersistente<ItemCarrinho> novaOrdem = ordem.definir(posicao, null);
+        return criar(novaOrdem, posicoes.remover(produtoId), descontoCupom,
+                atualizarSubtotal(removido, null, novaOrdem), totalItens - removido.getQuantidade());
     }
 
     public Carrinho aplicarCupom(BigDecimal percentualDesconto) {
-        return new Carrinho(itens, percentualDesconto);
+        Dinheiro.validarDesconto(percentualDesconto);
+        return new Carrinho(ordem, posicoes, percentualDesconto, subtotal, totalItens);
+    }
+
+    public Edicao paraEdicao() {
+        return new Edicao(this);
     }
 
     public Dinheiro calcularTotal() {
-        if (itens.isEmpty()) {
-            return new Dinheiro(BigDecimal.ZERO, Moeda.BRL);
+        if (totalItens == 0) {
+            return Dinheiro.of(0, Moeda.BRL);
         }
 
-        Dinheiro subtotal = itens.stream()
-                .map(ItemCarrinho::getSubtotal)
-                .reduce(Dinheiro::somar)
-                .orElse(new Dinheiro(BigDecimal.ZERO, Moeda.BRL));
+        if (subtotal == null) {
+            // Moedas diferentes: o recálculo completo lança "Moedas incompatíveis"
+            return getItens().stream()
+                    .map(ItemCarrinho::getSubtotal)
+                    .reduce(Dinheiro::somar)
+                    .orElseThrow()
+                    .aplicarDesconto(descontoCupom);
+        }
 
         return subtotal.aplicarDesconto(descontoCupom);
     }
 
+    // Converte cada item para a moeda da conversão, permitindo carrinhos com moedas diferentes
+    public Dinheiro calcularTotal(TabelaCambio.Conversao conversao) {
+        return conversao.totalizar(this);
+    }
+
+    public Dinheiro calcularTotal(MotorPromocoes promocoes) {
+        return promocoes.avaliar(this).total();
+    }
+
     public int getTotalItens() {
-        return itens.stream().mapToInt(ItemCarrinho::getQuantidade).sum();
+        return totalItens;
+    }
+
+    int quantidadeDistinta() {
+        return posicoes.tamanho();
+    }
+
+    private Dinheiro atualizarSubtotal(ItemCarrinho removido, ItemCarrinho adicionado,
+                                       VetorPersistente<ItemCarrinho> novaOrdem) {
+        if (subtotal == null && totalItens > 0) {
+            return recalcularSubtotal(novaOrdem);
+        }
+
+        Dinheiro resultado = subtotal;
+        if (removido != null) {
+            resultado = resultado.subtrair(removido.getSubtotal());
+        }
+        if (adicionado != null) {
+            Dinheiro valor = adicionado.getSubtotal();
+            if (resultado == null || (removido == null && totalItens == 0)) {
+                resultado = valor;
+            } else if (resultado.getMoeda() != valor.getMoeda()) {
+                return null;
+            } else {
+                resultado = resultado.somar(valor);
+            }
+        }
+        return resultado;
+    }
+
+    private static Dinheiro recalcularSubtotal(VetorPersistente<ItemCarrinho> ordem) {
+        Dinheiro resultado = null;
+        for (ItemCarrinho item : itensEmOrdem(ordem, 0)) {
+            Dinheiro valor = item.getSubtotal();
+            if (resultado != null && resultado.getMoeda() != valor.getMoeda()) {
+                return null;
+            }
+            resultado = resultado == null ? valor : resultado.somar(valor);
+        }
+        return resultado;
+    }
+
+    // Reconstrói a ordem quando as posições vazias passam a dominar o vetor
+    private static Carrinho criar(VetorPersistente<ItemCarrinho> ordem, MapaPersistente<Long, Integer> posicoes,
+                                  BigDecimal descontoCupom, Dinheiro subtotal, int totalItens) {
+        if (ordem.tamanho() <= 32 || ordem.tamanho() <= 2 * posicoes.tamanho()) {
+            return new Carrinho(ordem, posicoes, descontoCupom, subtotal, totalItens);
+        }
+
+        List<ItemCarrinho> itens = itensEmOrdem(ordem, posicoes.tamanho());
+        return new Carrinho(VetorPersistente.de(itens), indexarPosicoes(itens), descontoCupom, subtotal, totalItens);
+    }
+
+    private static MapaPersistente<Long, Integer> indexarPosicoes(List<ItemCarrinho> itens) {
+        List<Long> ids = new ArrayList<>(itens.size());
+        List<Integer> indices = new ArrayList<>(itens.size());
+        for (int i = 0; i < itens.size(); i++) {
+            ids.add(itens.get(i).getProduto().getId());
+            indices.add(i);
+        }
+        return MapaPersistente.de(ids, indices);
+    }
+
+    private static List<ItemCarrinho> itensEmOrdem(VetorPersistente<ItemCarrinho> ordem, int quantidade) {
+        List<ItemCarrinho> lista = new ArrayList<>(quantidade);
+        ordem.paraCada(item -> {
+            if (item != null) {
+                lista.add(item);
+            }
+        });
+        return lista;
     }
 
-    private Optional<ItemCarrinho> encontrarItem(Long produtoId) {
-        return itens.stream()
-                .filter(item -> item.getProduto().getId().equals(produtoId))
-                .findFirst();
+    // Visão mutável de um único dono para montar carrinhos grandes sem criar uma versão por operação
+    public static final class Edicao {
+        private final Thread dono = Thread.currentThread();
+        private final List<ItemCarrinho> ordem;
+        private final Map<Long, Integer> posicoes = new HashMap<>();
+        private BigDecimal descontoCupom;
+        private boolean congelado;
+
+        private Edicao(Carrinho origem) {
+            this.ordem = new ArrayList<>(origem.getItens());
+            for (int i = 0; i < ordem.size(); i++) {
+                posicoes.put(ordem.get(i).getProduto().getId(), i);
+            }
+            this.descontoCupom = origem.descontoCupom;
+        }
+
+        public Edicao adicionarItem(Produto produto, int quantidade) {
+            verificarDono();
+            Integer posicao = posicoes.get(produto.getId());
+            ItemCarrinho novoItem;
+
+            if (posicao != null) {
+                novoItem = ordem.get(posicao).adicionarQuantidade(quantidade);
+                ordem.set(posicao, null);
+            } else {
+                novoItem = new ItemCarrinho(produto, quantidade);
+            }
+
+            posicoes.put(produto.getId(), ordem.size());
+            ordem.add(novoItem);
+            return this;
+        }
+
+        public Edicao removerItem(Long produtoId) {
+            verificarDono();
+            Integer posicao = posicoes.remove(produtoId);
+
+            if (posicao == null) {
+                throw new IllegalArgumentException("Produto não encontrado no carrinho");
+            }
+
+            ordem.set(posicao, null);
+            return this;
+        }
+
+        public Edicao aplicarCupom(BigDecimal percentualDesconto) {
+            verificarDono();
+            Dinheiro.validarDesconto(percentualDesconto);
+            this.descontoCupom = percentualDesconto;
+            return this;
+        }
+
+        public Carrinho congelar() {
+            verificarDono();
+            congelado = true;
+
+            List<ItemCarrinho> itens = new ArrayList<>(posicoes.size());
+            int totalItens = 0;
+            for (ItemCarrinho item : ordem) {
+                if (item != null) {
+                    itens.add(item);
+                    totalItens += item.getQuantidade();
+                }
+            }
+
+            VetorPersistente<ItemCarrinho> novaOrdem = VetorPersistente.de(itens);
+            return new Carrinho(novaOrdem, indexarPosicoes(itens), descontoCupom,
+                    recalcularSubtotal(novaOrdem), totalItens);
+        }
+
+        private void verificarDono() {
+            if (congelado) {
+                throw new IllegalStateException("Edição já congelada; use o Carrinho retornado por congelar()");
+            }
+            if (Thread.currentThread() != dono) {
+                throw new IllegalStateException("Carrinho em edição só pode ser usado pela thread que o criou");
+            }
+        }
     }
 }
 """;
-        Files.writeString(Paths.get("Carrinho.java"), codigo);
+        escrever("Carrinho.java", codigo);
     }
 
     private static void criarTestesCarrinho() throws IOException {
         String codigo = """
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class TestesCarrinho {
     public static void main(String[] args) {
         System.out.println("=========================================");
         System.out.println("    EXECUTANDO TESTES DO CARRINHO");
         System.out.println("=========================================");
-        
+
         testFluxoCompleto();
         testValidacoes();
         testOperacoesImutaveis();
         testCupomDesconto();
-        
+        testDinheiroPontoFixo();
+        testCarrinhoGrande();
+        testMoedasMistas();
+        testEdicaoEmLote();
+        testCodecBinario();
+        testArmazemSessoes();
+        testConversaoMoedas();
+        testPromocoes();
+        testReprecificacaoLote();
+        testFlyweights();
+
         System.out.println("\\n=========================================");
         System.out.println("✅ TODOS OS TESTES PASSARAM COM SUCESSO!");
         System.out.println("=========================================");
@@ -328,7 +1144,7 @@ public class TestesCarrinho {
 
     private static void testFluxoCompleto() {
         System.out.println("\\n=== Testando Fluxo Completo ===");
-        
+
         Produto notebook = new Produto(1L, "Notebook", new Dinheiro("2500.00", Moeda.BRL));
         Produto mouse = new Produto(2L, "Mouse", new Dinheiro("150.00", Moeda.BRL));
 
@@ -412,7 +1228,7 @@ public class TestesCarrinho {
         System.out.println("✓ Carrinho original permanece vazio: " + carrinho1.getItens().isEmpty());
         System.out.println("✓ Novo carrinho tem 1 item: " + (carrinho2.getTotalItens() == 1));
         System.out.println("✓ São objetos diferentes: " + (carrinho1 != carrinho2));
-        
+
         assert carrinho1.getItens().isEmpty();
         assert carrinho2.getTotalItens() == 1;
         assert carrinho1 != carrinho2;
@@ -421,7 +1237,7 @@ public class TestesCarrinho {
         System.out.println("✓ Carrinho2 sem desconto: " + carrinho2.getDescontoCupom().equals(BigDecimal.ZERO));
         System.out.println("✓ Carrinho3 com desconto 5%: " + carrinho3.getDescontoCupom().equals(new BigDecimal("5")));
         System.out.println("✓ Carrinhos 2 e 3 são diferentes: " + (carrinho2 != carrinho3));
-        
+
         assert carrinho2.getDescontoCupom().equals(BigDecimal.ZERO);
         assert carrinho3.getDescontoCupom().equals(new BigDecimal("5"));
         assert carrinho2 != carrinho3;
@@ -438,11 +1254,2616 @@ public class TestesCarrinho {
         Dinheiro total = carrinho.calcularTotal();
         System.out.println("✓ Produto R$ 100,00 com desconto 15.5555% = " + total);
         System.out.println("✓ Valor correto (R$ 84,44): " + total.equals(new Dinheiro("84.44", Moeda.BRL)));
-        
+
         assert total.equals(new Dinheiro("84.44", Moeda.BRL));
     }
+
+    private static void testDinheiroPontoFixo() {
+        System.out.println("\\n=== Testando Dinheiro em Ponto Fixo ===");
+
+        for (String valor : new String[]{"0.00", "0.01", "0.05", "0.15", "12.35", "99.99", "1234.56", "2500.00"}) {
+            for (int percentual = 0; percentual <= 30; percentual++) {
+                BigDecimal fator = BigDecimal.ONE.subtract(
+                        new BigDecimal(percentual).divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN));
+                BigDecimal esperado = new BigDecimal(valor).multiply(fator).setScale(2, RoundingMode.HALF_EVEN);
+                Dinheiro obtido = new Dinheiro(valor, Moeda.BRL).aplicarDesconto(new BigDecimal(percentual));
+                assert obtido.getValor().equals(esperado) : valor + " com " + percentual + "% = " + obtido;
+            }
+        }
+        System.out.println("✓ Descontos inteiros iguais ao cálculo em BigDecimal (arredondamento bancário)");
+
+        Dinheiro maximo = new Dinheiro(BigDecimal.valueOf(Long.MAX_VALUE, 2), Moeda.BRL);
+        Dinheiro soma = maximo.somar(new Dinheiro("0.01", Moeda.BRL));
+        System.out.println("✓ Soma acima de Long.MAX_VALUE centavos recai em BigDecimal: " + soma);
+        assert soma.getValor().equals(BigDecimal.valueOf(Long.MAX_VALUE, 2).add(new BigDecimal("0.01")));
+
+        Dinheiro triplo = maximo.multiplicar(3);
+        assert triplo.getValor().equals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(new BigDecimal(3)));
+        assert soma.subtrair(new Dinheiro("0.01", Moeda.BRL)).equals(maximo);
+        System.out.println("✓ Valores voltam ao ponto fixo quando cabem em um long");
+    }
+
+    private static void testCarrinhoGrande() {
+        System.out.println("\\n=== Testando Carrinho Grande (estrutura persistente) ===");
+        Random random = new Random(42);
+        List<Produto> catalogo = new ArrayList<>();
+        for (long id = 1; id <= 600; id++) {
+            catalogo.add(new Produto(id, "Produto " + id, new Dinheiro(random.nextInt(10_000) + ".99", Moeda.BRL)));
+        }
+
+        // Modelo de referência: lista simples com a mesma semântica de ordem do carrinho
+        List<ItemCarrinho> esperado = new ArrayList<>();
+        List<Carrinho> versoes = new ArrayList<>();
+        List<Integer> tamanhos = new ArrayList<>();
+        Carrinho carrinho = new Carrinho();
+
+        for (int operacao = 0; operacao < 5_000; operacao++) {
+            Produto produto = catalogo.get(random.nextInt(catalogo.size()));
+            int posicao = -1;
+            for (int i = 0; i < esperado.size(); i++) {
+                if (esperado.get(i).getProduto().getId().equals(produto.getId())) {
+                    posicao = i;
+                }
+            }
+
+            if (posicao >= 0 && random.nextInt(3) == 0) {
+                esperado.remove(posicao);
+                carrinho = carrinho.removerItem(produto.getId());
+            } else {
+                int quantidade = 1 + random.nextInt(5);
+                ItemCarrinho item = posicao >= 0
+                        ? esperado.remove(posicao).adicionarQuantidade(quantidade)
+                        : new ItemCarrinho(produto, quantidade);
+                esperado.add(item);
+                carrinho = carrinho.adicionarItem(produto, quantidade);
+            }
+
+            Dinheiro totalEsperado = esperado.stream()
+                    .map(ItemCarrinho::getSubtotal)
+                    .reduce(Dinheiro::somar)
+                    .orElse(new Dinheiro(BigDecimal.ZERO, Moeda.BRL));
+            assert carrinho.calcularTotal().equals(totalEsperado) : "Total divergente na operação " + operacao;
+            assert carrinho.getTotalItens() == esperado.stream().mapToInt(ItemCarrinho::getQuantidade).sum();
+
+            if (operacao % 500 == 0) {
+                versoes.add(carrinho);
+                tamanhos.add(esperado.size());
+            }
+        }
+
+        assert carrinho.getItens().equals(esperado);
+        System.out.println("✓ " + esperado.size() + " itens na mesma ordem do modelo de referência");
+        System.out.println("✓ Total e quantidade incrementais iguais ao recálculo completo em todas as operações");
+
+        for (int i = 0; i < versoes.size(); i++) {
+            assert versoes.get(i).getItens().size() == tamanhos.get(i);
+        }
+        System.out.println("✓ Versões antigas do carrinho permanecem intactas: " + versoes.size());
+
+        try {
+            carrinho.getItens().clear();
+            assert false : "Lista de itens deveria ser imutável";
+        } catch (UnsupportedOperationException e) {
+            System.out.println("✓ Lista de itens continua imutável");
+        }
+    }
+
+    private static void testMoedasMistas() {
+        System.out.println("\\n=== Testando Carrinho com Moedas Diferentes ===");
+        Produto livro = new Produto(1L, "Livro", new Dinheiro("80.00", Moeda.BRL));
+        Produto ebook = new Produto(2L, "E-book", new Dinheiro("10.00", Moeda.USD));
+
+        Carrinho carrinho = new Carrinho().adicionarItem(livro, 1).adicionarItem(ebook, 1);
+        try {
+            carrinho.calcularTotal();
+            assert false : "Deveria lançar exceção para moedas diferentes";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Total com moedas diferentes rejeitado: " + e.getMessage());
+        }
+
+        Dinheiro total = carrinho.removerItem(2L).adicionarItem(livro, 1).calcularTotal();
+        System.out.println("✓ Após remover o item em USD: " + total);
+        assert total.equals(new Dinheiro("160.00", Moeda.BRL));
+    }
+
+    private static void testEdicaoEmLote() {
+        System.out.println("\\n=== Testando Edição em Lote (paraEdicao/congelar) ===");
+        Random random = new Random(7);
+        Carrinho imutavel = new Carrinho().adicionarItem(new Produto(0L, "Base", new Dinheiro("1.00", Moeda.BRL)), 1);
+        Carrinho.Edicao edicao = imutavel.paraEdicao();
+        Carrinho esperado = imutavel;
+
+        for (int linha = 0; linha < 3_000; linha++) {
+            long id = random.nextInt(800);
+            Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id % 97) + ".45", Moeda.BRL));
+            if (linha % 7 == 0 && esperado.getItens().stream().anyMatch(i -> i.getProduto().getId() == id)) {
+                esperado = esperado.removerItem(id);
+                edicao.removerItem(id);
+            } else {
+                int quantidade = 1 + random.nextInt(3);
+                esperado = esperado.adicionarItem(produto, quantidade);
+                edicao.adicionarItem(produto, quantidade);
+            }
+        }
+        esperado = esperado.aplicarCupom(new BigDecimal("12"));
+        Carrinho congelado = edicao.aplicarCupom(new BigDecimal("12")).congelar();
+
+        assert congelado.getItens().equals(esperado.getItens());
+        assert congelado.calcularTotal().equals(esperado.calcularTotal());
+        assert congelado.getTotalItens() == esperado.getTotalItens();
+        assert imutavel.getTotalItens() == 1;
+        System.out.println("✓ Lote de 3000 linhas igual às operações imutáveis: " + congelado.getItens().size()
+                + " itens, " + congelado.calcularTotal());
+
+        Carrinho depois = congelado.adicionarItem(new Produto(5_000L, "Extra", new Dinheiro("2.00", Moeda.BRL)), 1);
+        assert depois.getTotalItens() == congelado.getTotalItens() + 1;
+        System.out.println("✓ Carrinho congelado segue imutável e operável");
+
+        try {
+            edicao.adicionarItem(new Produto(1L, "X", new Dinheiro("1.00", Moeda.BRL)), 1);
+            assert false : "Edição congelada não deveria aceitar alterações";
+        } catch (IllegalStateException e) {
+            System.out.println("✓ Edição congelada rejeitada: " + e.getMessage());
+        }
+
+        Carrinho.Edicao outraEdicao = new Carrinho().paraEdicao();
+        IllegalStateException[] erro = new IllegalStateException[1];
+        Thread outraThread = new Thread(() -> {
+            try {
+                outraEdicao.aplicarCupom(BigDecimal.ONE);
+            } catch (IllegalStateException e) {
+                erro[0] = e;
+            }
+        });
+        outraThread.start();
+        try {
+            outraThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assert erro[0] != null : "Edição deveria ser restrita à thread dona";
+        System.out.println("✓ Edição usada por outra thread rejeitada: " + erro[0].getMessage());
+    }
+
+    private static void testCodecBinario() {
+        System.out.println("\\n=== Testando Codec Binário ===");
+        Carrinho carrinho = new Carrinho()
+                .adicionarItem(new Produto(1L, "Café", new Dinheiro("18.90", Moeda.BRL)), 2)
+                .adicionarItem(new Produto(-7L, "Pão 🥖", new Dinheiro("0.35", Moeda.BRL)), 300)
+                .adicionarItem(new Produto(1L << 40, "Caro", new Dinheiro("92233720368547758.07", Moeda.BRL)), 1)
+                .aplicarCupom(new BigDecimal("12.5"));
+
+        byte[] dados = CodecCarrinho.codificar(carrinho);
+        assert dados.length == CodecCarrinho.tamanhoCodificado(carrinho);
+        Carrinho decodificado = CodecCarrinho.decodificar(dados);
+        assert decodificado.getItens().equals(carrinho.getItens());
+        assert decodificado.getItens().get(1).getProduto().getNome().equals("Pão 🥖");
+        assert decodificado.getDescontoCupom().equals(carrinho.getDescontoCupom());
+        assert decodificado.calcularTotal().equals(carrinho.calcularTotal());
+        System.out.println("✓ Ida e volta preservam itens, nomes, preços e cupom (" + dados.length + " bytes)");
+
+        Carrinho semNome = new Carrinho().adicionarItem(new Produto(5L, null, new Dinheiro("1.00", Moeda.BRL)), 2);
+        byte[] dadosSemNome = CodecCarrinho.codificar(semNome);
+        assert dadosSemNome.length == CodecCarrinho.tamanhoCodificado(semNome);
+        CodecCarrinho.Visao visaoSemNome = new CodecCarrinho.Visao(ByteBuffer.wrap(dadosSemNome));
+        assert visaoSemNome.getTotalItens() == 2 && visaoSemNome.contem(5L);
+        assert visaoSemNome.paraCarrinho().getItens().get(0).getProduto().getNome() == null;
+        assert CodecCarrinho.decodificar(dadosSemNome).getItens().equals(semNome.getItens());
+        // Versão 2: nome como tamanho e UTF-8, sem marcador de nulo
+        Carrinho versao2 = CodecCarrinho.decodificar(new byte[]{2, 0, 1, 0, 1, 10, 1, 'A', 0, 0, 100, 2});
+        assert versao2.getItens().get(0).getProduto().getNome().equals("A");
+        assert versao2.getItens().get(0).getQuantidade() == 2 && versao2.getTotalItens() == 2;
+        System.out.println("✓ Produto sem nome vai e volta como nulo; a versão 2 continua legível");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 + dados.length);
+        buffer.put((byte) 42);
+        CodecCarrinho.codificar(carrinho, buffer);
+        buffer.flip().position(1);
+        CodecCarrinho.Visao visao = new CodecCarrinho.Visao(buffer);
+        assert visao.getQuantidadeDeItens() == 3;
+        assert visao.getTotalItens() == carrinho.getTotalItens();
+        assert visao.contem(-7L) && !visao.contem(7L);
+        assert visao.paraCarrinho() == visao.paraCarrinho();
+        System.out.println("✓ Visão preguiçosa sobre buffer direto: total " + visao.getTotalItens() + " sem decodificar itens");
+
+        Dinheiro grande = new Dinheiro("123456789012345678901234.56", Moeda.EUR);
+        ByteBuffer dinheiro = ByteBuffer.allocate(CodecCarrinho.tamanhoCodificado(grande));
+        CodecCarrinho.codificar(grande, dinheiro);
+        assert !dinheiro.hasRemaining();
+        assert CodecCarrinho.decodificarDinheiro(dinheiro.flip()).equals(grande);
+        System.out.println("✓ Dinheiro acima de long usa BigInteger no codec");
+
+        dados[0] = 99;
+        try {
+            CodecCarrinho.decodificar(dados);
+            assert false : "Versão desconhecida deveria ser rejeitada";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Versão desconhecida rejeitada: " + e.getMessage());
+        }
+        try {
+            CodecCarrinho.decodificar(Arrays.copyOf(CodecCarrinho.codificar(carrinho), 10));
+            assert false : "Dados truncados deveriam ser rejeitados";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Dados truncados rejeitados: " + e.getMessage());
+        }
+    }
+
+    private static void testArmazemSessoes() {
+        System.out.println("\\n=== Testando Armazém de Sessões ===");
+        Produto cafe = new Produto(1L, "Café", new Dinheiro("18.90", Moeda.BRL));
+        Produto pao = new Produto(2L, "Pão", new Dinheiro("0.35", Moeda.BRL));
+        long[] agora = {0};
+        Path arquivo;
+        try {
+            arquivo = Files.createTempFile("testes-carrinho", ".derramados");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (ArmazemCarrinhos armazem = new ArmazemCarrinhos(arquivo, Duration.ofMinutes(5),
+                Duration.ofMinutes(30), 4, () -> agora[0])) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        armazem.atualizar("compartilhada", c -> c.adicionarItem(cafe, 1));
+                        armazem.atualizar("sessao-" + i, c -> c.adicionarItem(pao, 1));
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            assert armazem.obter("compartilhada").getTotalItens() == 2_000;
+            assert armazem.obter("sessao-499").getTotalItens() == 4;
+            assert armazem.obter("inexistente").getItens().isEmpty();
+            System.out.println("✓ 4 threads x 500 atualizações sem perdas: "
+                    + armazem.obter("compartilhada").getTotalItens() + " itens na sessão compartilhada");
+
+            agora[0] += Duration.ofMinutes(4).toNanos();
+            armazem.atualizar("ativa", c -> c.adicionarItem(cafe, 2).aplicarCupom(new BigDecimal("10")));
+            agora[0] += Duration.ofMinutes(2).toNanos();
+            assert armazem.varrerOciosos() == 501;
+            ArmazemCarrinhos.Estatisticas estatisticas = armazem.estatisticas();
+            assert estatisticas.quentes() == 1 && estatisticas.compactados() == 501;
+            assert estatisticas.bytesCompactos() > 0;
+            System.out.println("✓ Ociosas compactadas: " + estatisticas);
+
+            agora[0] += Duration.ofMinutes(30).toNanos();
+            armazem.varrerOciosos();
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.derramados() == 502 && estatisticas.bytesCompactos() == 0;
+            System.out.println("✓ Ociosas derramadas em disco: " + estatisticas.bytesEmDisco() + " bytes");
+
+            Carrinho ativa = armazem.obter("ativa");
+            assert ativa.getTotalItens() == 2;
+            assert ativa.calcularTotal().equals(new Dinheiro("34.02", Moeda.BRL));
+            assert armazem.atualizar("sessao-0", c -> c.removerItem(2L)).getItens().isEmpty();
+            armazem.remover("compartilhada");
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.quentes() == 2 && estatisticas.derramados() == 499;
+            assert armazem.obter("compartilhada").getItens().isEmpty();
+            System.out.println("✓ Sessões relidas do disco com cupom e itens preservados");
+
+            // Relidas e removidas deixaram registros mortos; a compactação devolve o espaço
+            long antes = estatisticas.bytesArquivo();
+            assert antes > estatisticas.bytesEmDisco();
+            armazem.compactar();
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.bytesArquivo() == estatisticas.bytesEmDisco() && estatisticas.bytesArquivo() < antes;
+            assert arquivo.toFile().length() == estatisticas.bytesArquivo();
+            for (int i = 1; i < 500; i++) {
+                assert armazem.obter("sessao-" + i).getTotalItens() == 4 : "sessao-" + i;
+            }
+            assert armazem.estatisticas().derramados() == 0 && armazem.estatisticas().bytesEmDisco() == 0;
+            System.out.println("✓ Arquivo compactado de " + antes + " para " + estatisticas.bytesArquivo()
+                    + " bytes; as 499 sessões em disco continuam íntegras");
+        } finally {
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException e) {
+                System.out.println("Aviso: não foi possível remover " + arquivo);
+            }
+        }
+    }
+
+    private static void testConversaoMoedas() {
+        System.out.println("\\n=== Testando Conversão de Moedas ===");
+        Path arquivo;
+        try {
+            arquivo = Files.createTempFile("cambio", ".txt");
+            Files.write(arquivo, List.of(
+                    "# data;origem;destino;taxa",
+                    "2026-01-01;USD;BRL;5.00",
+                    "2026-03-01;USD;BRL;5.50",
+                    "2026-01-01;EUR;USD;1.10"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            ConversorMoedas conversor = new ConversorMoedas(arquivo);
+            TabelaCambio.Conversao fevereiro = conversor.para(Moeda.BRL, LocalDate.of(2026, 2, 15));
+            TabelaCambio.Conversao marco = conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1));
+            Dinheiro dezDolares = new Dinheiro("10.00", Moeda.USD);
+            assert fevereiro.converter(dezDolares).equals(new Dinheiro("50.00", Moeda.BRL));
+            assert marco.converter(dezDolares).equals(new Dinheiro("55.00", Moeda.BRL));
+            assert marco.converter(new Dinheiro("10.00", Moeda.EUR)).equals(new Dinheiro("60.50", Moeda.BRL));
+            assert conversor.para(Moeda.USD, LocalDate.of(2026, 3, 1)).converter(new Dinheiro("11.00", Moeda.BRL))
+                    .equals(new Dinheiro("2.00", Moeda.USD));
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1)) == marco;
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 9, 30)) == marco;
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 1, 1)) == fevereiro;
+            System.out.println("✓ Taxas por vigência, inversa e cruzada (EUR→USD→BRL): 10 EUR = "
+                    + marco.converter(new Dinheiro("10.00", Moeda.EUR)));
+
+            Carrinho misto = new Carrinho()
+                    .adicionarItem(new Produto(1L, "Livro", new Dinheiro("100.00", Moeda.BRL)), 1)
+                    .adicionarItem(new Produto(2L, "Fone", new Dinheiro("20.00", Moeda.USD)), 2)
+                    .aplicarCupom(new BigDecimal("10"));
+            assert misto.calcularTotal(marco).equals(new Dinheiro("288.00", Moeda.BRL));
+            assert marco.converter(List.of(dezDolares, new Dinheiro("1.00", Moeda.BRL)))
+                    .equals(List.of(new Dinheiro("55.00", Moeda.BRL), new Dinheiro("1.00", Moeda.BRL)));
+            System.out.println("✓ Carrinho BRL + USD totalizado em BRL: " + misto.calcularTotal(marco));
+
+            try {
+                conversor.para(Moeda.BRL, LocalDate.of(2025, 12, 31)).converter(dezDolares);
+                assert false : "Data sem taxa vigente deveria ser rejeitada";
+            } catch (IllegalArgumentException e) {
+                System.out.println("✓ Conversão sem taxa vigente rejeitada: " + e.getMessage());
+            }
+
+            TabelaCambio anterior = conversor.tabela();
+            Files.write(arquivo, List.of("2026-01-01;USD;BRL;6.00"));
+            Files.setLastModifiedTime(arquivo, FileTime.fromMillis(
+                    Files.getLastModifiedTime(arquivo).toMillis() + 1_000));
+            assert conversor.recarregarSeAlterado();
+            assert !conversor.recarregarSeAlterado();
+            assert conversor.tabela() != anterior;
+            assert marco.converter(dezDolares).equals(new Dinheiro("55.00", Moeda.BRL));
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1)).converter(dezDolares)
+                    .equals(new Dinheiro("60.00", Moeda.BRL));
+            System.out.println("✓ Recarga troca o instantâneo sem afetar conversões já obtidas");
+
+            try {
+                TabelaCambio.de(List.of("2026-01-01;USD;XYZ;1.0"));
+                assert false : "Moeda desconhecida deveria ser rejeitada";
+            } catch (IllegalArgumentException e) {
+                System.out.println("✓ Linha inválida rejeitada: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException e) {
+                System.out.println("Aviso: não foi possível remover " + arquivo);
+            }
+        }
+    }
+
+    private static void testPromocoes() {
+        System.out.println("\\n=== Testando Motor de Promoções ===");
+        Produto cafe = new Produto(1L, "Café", new Dinheiro("10.00", Moeda.BRL), "mercearia");
+        Produto fone = new Produto(2L, "Fone", new Dinheiro("200.00", Moeda.BRL), "eletronicos");
+        Produto livro = new Produto(3L, "Livro", new Dinheiro("50.00", Moeda.BRL));
+
+        List<Promocao> promocoes = new ArrayList<>(List.of(
+                new Promocao.LevePague(1L, 3, 2),
+                new Promocao.DescontoCategoria("mercearia", new BigDecimal("20")),
+                new Promocao.DescontoProduto(2L, new BigDecimal("15")),
+                new Promocao.DescontoCategoria("eletronicos", new BigDecimal("10")),
+                new Promocao.DescontoProgressivo(new Dinheiro("500.00", Moeda.BRL), new BigDecimal("10")),
+                new Promocao.DescontoProgressivo(new Dinheiro("200.00", Moeda.BRL), new BigDecimal("5"))));
+        for (long id = 1_000; id < 20_000; id++) {
+            promocoes.add(new Promocao.DescontoProduto(id, new BigDecimal("50")));
+        }
+        MotorPromocoes motor = MotorPromocoes.compilar(promocoes);
+
+        Carrinho carrinho = new Carrinho()
+                .adicionarItem(cafe, 3)
+                .adicionarItem(fone, 1)
+                .adicionarItem(livro, 2)
+                .aplicarCupom(new BigDecimal("10"));
+        MotorPromocoes.Resultado resultado = motor.avaliar(carrinho);
+        assert resultado.subtotal().equals(new Dinheiro("330.00", Moeda.BRL));
+        assert resultado.descontoPromocoes().equals(new Dinheiro("40.00", Moeda.BRL));
+        assert resultado.descontoProgressivo().equals(new Dinheiro("14.50", Moeda.BRL));
+        assert resultado.total().equals(new Dinheiro("247.95", Moeda.BRL));
+        assert carrinho.calcularTotal(motor).equals(resultado.total());
+        System.out.println("✓ Leve 3 pague 2, produto, categoria, faixa de 5% e cupom: " + resultado);
+
+        Carrinho semPromocao = new Carrinho().adicionarItem(livro, 1);
+        assert motor.avaliar(semPromocao).total().equals(semPromocao.calcularTotal());
+        assert motor.avaliar(new Carrinho().adicionarItem(cafe, 2)).descontoPromocoes()
+                .equals(new Dinheiro("4.00", Moeda.BRL));
+        Carrinho grande = new Carrinho().adicionarItem(fone, 3);
+        assert motor.avaliar(grande).descontoProgressivo().equals(new Dinheiro("51.00", Moeda.BRL));
+        System.out.println("✓ Sem regras aplicáveis o total não muda; faixas escolhem o maior mínimo atingido");
+
+        Carrinho decodificado = CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho));
+        assert decodificado.getItens().get(0).getProduto().getCategoria().equals("mercearia");
+        assert decodificado.getItens().get(2).getProduto().getCategoria() == null;
+        assert motor.avaliar(decodificado).equals(resultado);
+        assert CodecCarrinho.decodificar(new byte[]{1, 0, 1, 0, 0}).getItens().isEmpty();
+        System.out.println("✓ Codec preserva a categoria e ainda lê a versão 1");
+
+        try {
+            new Promocao.LevePague(1L, 2, 2);
+            assert false : "Leve/pague sem brinde deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Regra inválida rejeitada: " + e.getMessage());
+        }
+    }
+
+    private static void testReprecificacaoLote() {
+        System.out.println("\\n=== Testando Reprecificação em Lote ===");
+        Random random = new Random(11);
+        Produto[] catalogo = new Produto[300];
+        for (int i = 0; i < catalogo.length; i++) {
+            catalogo[i] = new Produto((long) i, "Produto " + i,
+                    new Dinheiro(random.nextInt(200) + "." + (10 + random.nextInt(90)), Moeda.BRL), "cat-" + (i % 7));
+        }
+        List<Carrinho> carrinhos = new ArrayList<>();
+        for (int c = 0; c < 3_000; c++) {
+            Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+            for (int i = random.nextInt(8); i >= 0; i--) {
+                edicao.adicionarItem(catalogo[random.nextInt(catalogo.length)], 1 + random.nextInt(5));
+            }
+            carrinhos.add(edicao.aplicarCupom(new BigDecimal(random.nextInt(4) * 5)).congelar());
+        }
+        carrinhos.add(new Carrinho()
+                .adicionarItem(catalogo[0], 1)
+                .adicionarItem(new Produto(9_999L, "Importado", new Dinheiro("5.00", Moeda.USD)), 1));
+        carrinhos.add(new Carrinho().adicionarItem(
+                new Produto(8_888L, "Caro", new Dinheiro("92233720368547758.00", Moeda.BRL)), 3));
+
+        Map<Long, Dinheiro> novosPrecos = new HashMap<>();
+        for (int i = 0; i < catalogo.length; i += 3) {
+            novosPrecos.put((long) i, new Dinheiro(i + ".99", Moeda.BRL));
+        }
+        InstantaneoPrecos instantaneo = new InstantaneoPrecos(novosPrecos, MotorPromocoes.compilar(List.of(
+                new Promocao.LevePague(1L, 2, 1),
+                new Promocao.DescontoProduto(2L, new BigDecimal("33.33")),
+                new Promocao.DescontoCategoria("cat-3", new BigDecimal("15")),
+                new Promocao.DescontoProgressivo(new Dinheiro("300.00", Moeda.BRL), new BigDecimal("7.5")))));
+
+        Map<Carrinho, Dinheiro> totais = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ReprecificacaoLote.Resultado resultado = new ReprecificacaoLote(pool)
+                .executar(carrinhos.stream(), instantaneo, totais::put);
+
+        // Erro do destino não pode virar "falha por moedas": chega a quem chamou
+        try {
+            new ReprecificacaoLote(pool).executar(carrinhos.stream(), instantaneo, (carrinho, total) -> {
+                throw new IllegalArgumentException("Destino recusou");
+            });
+            assert false : "Exceção do destino foi engolida";
+        } catch (IllegalArgumentException e) {
+            // O ForkJoinPool pode relançar uma cópia com a original como causa
+            assert e.getMessage().contains("Destino recusou") : e.getMessage();
+        }
+        pool.shutdown();
+
+        assert resultado.carrinhos() == carrinhos.size() - 1 && resultado.falhas() == 1;
+        for (Carrinho carrinho : carrinhos.subList(0, carrinhos.size() - 2)) {
+            assert totais.get(carrinho).equals(ReprecificacaoLote.reprecificarComObjetos(carrinho, instantaneo));
+        }
+        Dinheiro caro = totais.get(carrinhos.get(carrinhos.size() - 1));
+        assert caro.equals(new Dinheiro("255948574022720028.45", Moeda.BRL)) : caro;
+        System.out.printf("✓ %d carrinhos reprecificados em paralelo iguais ao cálculo com objetos "
+                + "(%.0f carrinhos/s, %d falha por moedas diferentes)%n",
+                resultado.carrinhos(), resultado.carrinhosPorSegundo(), resultado.falhas());
+    }
+
+    private static void testFlyweights() {
+        System.out.println("\\n=== Testando Flyweights de Produto e Dinheiro ===");
+        assert Dinheiro.of("19.90", Moeda.BRL) == Dinheiro.of(1_990, Moeda.BRL);
+        assert Dinheiro.of("19.90", Moeda.BRL) != Dinheiro.of("19.90", Moeda.USD);
+        assert Dinheiro.of("0.00", Moeda.BRL) == new Carrinho().calcularTotal();
+        assert Dinheiro.of("5.00", Moeda.BRL).somar(Dinheiro.of("5.00", Moeda.BRL)) == Dinheiro.of(1_000, Moeda.BRL);
+        assert Dinheiro.of("100.01", Moeda.BRL) != Dinheiro.of("100.01", Moeda.BRL);
+        assert Dinheiro.of("100.01", Moeda.BRL).equals(new Dinheiro("100.01", Moeda.BRL));
+        System.out.println("✓ Dinheiro.of compartilha valores até 100,00 por moeda");
+
+        RegistroProdutos registro = new RegistroProdutos();
+        Produto[] vistos = new Produto[8];
+        Thread[] threads = new Thread[vistos.length];
+        for (int t = 0; t < threads.length; t++) {
+            int indice = t;
+            threads[t] = new Thread(() -> vistos[indice] = registro.obter(42L, 1,
+                    () -> new Produto(42L, "Caneca", Dinheiro.of("25.00", Moeda.BRL), "casa")));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Produto produto : vistos) {
+            assert produto == vistos[0];
+        }
+        System.out.println("✓ " + threads.length + " threads recebem a mesma instância de (id 42, versão 1)");
+
+        Carrinho carrinho = new Carrinho().adicionarItem(vistos[0], 2);
+        Carrinho decodificado = CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho), registro);
+        assert decodificado.getItens().get(0).getProduto() == vistos[0];
+        assert CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho)).getItens().get(0).getProduto() != vistos[0];
+
+        Produto versao2 = registro.obter(42L, 2,
+                () -> new Produto(42L, "Caneca", Dinheiro.of("27.00", Moeda.BRL), "casa"));
+        assert registro.obter(42L, 1, null) == vistos[0];
+        assert registro.canonizar(new Produto(42L, "Caneca", Dinheiro.of("27.00", Moeda.BRL), "casa")) == versao2;
+        Produto antigo = new Produto(42L, "Caneca", Dinheiro.of("25.00", Moeda.BRL), "casa");
+        assert registro.canonizar(antigo) == antigo;
+        registro.remover(42L, 2);
+        assert registro.tamanho() == 1;
+        // Sem a versão 2, a versão 1 que restou volta a ser a canônica
+        assert registro.canonizar(antigo) == vistos[0];
+        registro.remover(42L, 2);
+        assert registro.tamanho() == 1;
+        System.out.println("✓ Decodificação reaproveita o produto registrado; nova versão passa a ser a canônica");
+
+        Produto[] porThread = new Produto[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int indice = t;
+            threads[t] = new Thread(() -> {
+                for (long versao = 1; versao <= 200; versao++) {
+                    long id = 1_000 + indice % 2;
+                    long v = versao;
+                    porThread[indice] = registro.obter(id, v,
+                            () -> new Produto(id, "Versao " + v, Dinheiro.of(v, Moeda.BRL), "casa"));
+                    if (indice >= 2 && versao > 1) {
+                        registro.remover(id, versao - 1);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (long id = 1_000; id <= 1_001; id++) {
+            Produto ultima = new Produto(id, "Versao 200", Dinheiro.of(200, Moeda.BRL), "casa");
+            assert registro.canonizar(ultima) == registro.obter(id, 200, null);
+        }
+        System.out.println("✓ Registros e remoções concorrentes mantêm a versão mais recente como canônica");
+
+        try {
+            registro.obter(7L, 1, () -> new Produto(8L, "Errado", Dinheiro.of("1.00", Moeda.BRL)));
+            assert false : "Produto com id divergente deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Id divergente rejeitado: " + e.getMessage());
+        }
+    }
+}
+""";
+        escrever("TestesCarrinho.java", codigo);
+    }
+
+    private static void criarBenchmarkDinheiro() throws IOException {
+        String codigo = """
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class BenchmarkDinheiro {
+    private static final int OPERACOES = 5_000_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: DINHEIRO PONTO FIXO x BIGDECIMAL ===\\n");
+
+        Dinheiro preco = new Dinheiro("19.90", Moeda.BRL);
+        Dinheiro frete = new Dinheiro("7.35", Moeda.BRL);
+        BigDecimal cupom = new BigDecimal("10");
+        BigDecimal precoReferencia = new BigDecimal("19.90");
+        BigDecimal freteReferencia = new BigDecimal("7.35");
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  somar (ponto fixo)", () -> preco.somar(frete).hashCode());
+            medir("  somar (BigDecimal)", () -> precoReferencia.add(freteReferencia)
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+            medir("  multiplicar (ponto fixo)", () -> preco.multiplicar(3).hashCode());
+            medir("  multiplicar (BigDecimal)", () -> precoReferencia.multiply(new BigDecimal(3))
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+            medir("  aplicarDesconto (ponto fixo)", () -> preco.aplicarDesconto(cupom).hashCode());
+            medir("  aplicarDesconto (BigDecimal)", () -> precoReferencia.multiply(BigDecimal.ONE.subtract(
+                            cupom.divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN)))
+                    .setScale(2, RoundingMode.HALF_EVEN).hashCode());
+        }
+    }
+
+    private interface Operacao {
+        int executar();
+    }
+
+    private static void medir(String rotulo, Operacao operacao) {
+        long thread = Thread.currentThread().getId();
+        int checksum = 0;
+        long bytesAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += operacao.executar();
+        }
+        long duracao = System.nanoTime() - inicio;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesAntes;
+        System.out.printf("%-32s %6.1f ns/op %7.1f bytes/op (checksum %d)%n",
+                rotulo, (double) duracao / OPERACOES, (double) bytes / OPERACOES, checksum);
+    }
+}
+""";
+        escrever("BenchmarkDinheiro.java", codigo);
+    }
+
+    private static void criarCodecCarrinho() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Formato binário versionado do carrinho:
+//   versão (1 byte) | cupom | nº de itens (varint) | itens
+//   item    = id do produto (varint zigzag) | nome | categoria | preço | quantidade (varint)
+//   nome e categoria = 0 quando nulos, senão tamanho + 1 (varint) e UTF-8
+//   (até a versão 2 o nome era tamanho e UTF-8, sem nulo; a versão 1 não tinha categoria)
+//   dinheiro = moeda (1 byte, bit 7 marca valor grande) | centavos (varint) ou BigInteger (varint + bytes)
+//   cupom   = escala (varint zigzag) | BigInteger (varint + bytes)
+public final class CodecCarrinho {
+    public static final byte VERSAO = 3;
+
+    private static final Moeda[] MOEDAS = Moeda.values();
+    private static final int VALOR_GRANDE = 0x80;
+
+    private CodecCarrinho() {
+    }
+
+    public static byte[] codificar(Carrinho carrinho) {
+        ByteBuffer destino = ByteBuffer.allocate(tamanhoCodificado(carrinho));
+        codificar(carrinho, destino);
+        return destino.array();
+    }
+
+    public static void codificar(Carrinho carrinho, ByteBuffer destino) {
+        destino.put(VERSAO);
+        escreverDecimal(destino, carrinho.getDescontoCupom());
+        escreverVarLong(destino, carrinho.getItens().size());
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            escreverVarLong(destino, zigzag(idObrigatorio(produto)));
+            escreverOpcional(destino, produto.getNome());
+            escreverOpcional(destino, produto.getCategoria());
+            codificar(produto.getPreco(), destino);
+            escreverVarLong(destino, item.getQuantidade());
+        }
+    }
+
+    public static int tamanhoCodificado(Carrinho carrinho) {
+        int tamanho = 1 + tamanhoDecimal(carrinho.getDescontoCupom()) + tamanhoVarLong(carrinho.getItens().size());
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            tamanho += tamanhoVarLong(zigzag(idObrigatorio(produto)))
+                    + tamanhoOpcional(produto.getNome())
+                    + tamanhoOpcional(produto.getCategoria())
+                    + tamanhoCodificado(produto.getPreco())
+                    + tamanhoVarLong(item.getQuantidade());
+        }
+        return tamanho;
+    }
+
+    public static Carrinho decodificar(byte[] dados) {
+        return decodificar(ByteBuffer.wrap(dados));
+    }
+
+    public static Carrinho decodificar(ByteBuffer origem) {
+        return new Visao(origem).paraCarrinho();
+    }
+
+    // Produtos iguais aos do registro são trocados pela instância compartilhada do catálogo
+    public static Carrinho decodificar(byte[] dados, RegistroProdutos registro) {
+        return new Visao(ByteBuffer.wrap(dados), registro).paraCarrinho();
+    }
+
+    public static void codificar(Dinheiro dinheiro, ByteBuffer destino) {
+        long centavos = dinheiro.centavos();
+        if (centavos >= 0) {
+            destino.put((byte) dinheiro.getMoeda().ordinal());
+            escreverVarLong(destino, centavos);
+        } else {
+            destino.put((byte) (dinheiro.getMoeda().ordinal() | VALOR_GRANDE));
+            escreverInteiroGrande(destino, dinheiro.getValor().unscaledValue());
+        }
+    }
+
+    public static int tamanhoCodificado(Dinheiro dinheiro) {
+        long centavos = dinheiro.centavos();
+        if (centavos >= 0) {
+            return 1 + tamanhoVarLong(centavos);
+        }
+        int bytes = dinheiro.getValor().unscaledValue().bitLength() / 8 + 1;
+        return 1 + tamanhoVarLong(bytes) + bytes;
+    }
+
+    public static Dinheiro decodificarDinheiro(ByteBuffer origem) {
+        int cabecalho = origem.get() & 0xFF;
+        int ordinal = cabecalho & ~VALOR_GRANDE;
+        if (ordinal >= MOEDAS.length) {
+            throw new IllegalArgumentException("Moeda desconhecida no codec: " + ordinal);
+        }
+        Moeda moeda = MOEDAS[ordinal];
+        if ((cabecalho & VALOR_GRANDE) == 0) {
+            return Dinheiro.deCentavos(lerVarLong(origem), moeda);
+        }
+        return new Dinheiro(new BigDecimal(lerInteiroGrande(origem), 2), moeda);
+    }
+
+    // Leitura preguiçosa: só o cabeçalho é lido na criação; os itens são percorridos sob demanda
+    public static final class Visao {
+        private final ByteBuffer dados;
+        private final byte versao;
+        private final BigDecimal descontoCupom;
+        private final int quantidadeDeItens;
+        private final int inicioItens;
+        private final RegistroProdutos registro;
+        private Carrinho carrinho;
+
+        public Visao(ByteBuffer origem) {
+            this(origem, null);
+        }
+
+        public Visao(ByteBuffer origem, RegistroProdutos registro) {
+            this.registro = registro;
+            this.dados = origem.slice();
+            try {
+                this.versao = dados.get();
+                if (versao < 1 || versao > VERSAO) {
+                    throw new IllegalArgumentException("Versão de codec não suportada: " + versao);
+                }
+                this.descontoCupom = lerDecimal(dados);
+                this.quantidadeDeItens = Math.toIntExact(lerVarLong(dados));
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Dados do carrinho truncados", e);
+            }
+            this.inicioItens = dados.position();
+        }
+
+        public BigDecimal getDescontoCupom() {
+            return descontoCupom;
+        }
+
+        public int getQuantidadeDeItens() {
+            return quantidadeDeItens;
+        }
+
+        // Soma as quantidades pulando nomes e preços, sem montar nenhum objeto
+        public int getTotalItens() {
+            ByteBuffer leitura = dados.duplicate().position(inicioItens);
+            int total = 0;
+            for (int i = 0; i < quantidadeDeItens; i++) {
+                lerVarLong(leitura);
+                pularNome(leitura);
+                pularCategoria(leitura);
+                pularDinheiro(leitura);
+                total += (int) lerVarLong(leitura);
+            }
+            return total;
+        }
+
+        public boolean contem(long produtoId) {
+            ByteBuffer leitura = dados.duplicate().position(inicioItens);
+            long procurado = zigzag(produtoId);
+            for (int i = 0; i < quantidadeDeItens; i++) {
+                if (lerVarLong(leitura) == procurado) {
+                    return true;
+                }
+                pularNome(leitura);
+                pularCategoria(leitura);
+                pularDinheiro(leitura);
+                lerVarLong(leitura);
+            }
+            return false;
+        }
+
+        public synchronized Carrinho paraCarrinho() {
+            if (carrinho == null) {
+                ByteBuffer leitura = dados.duplicate().position(inicioItens);
+                try {
+                    Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+                    for (int i = 0; i < quantidadeDeItens; i++) {
+                        long id = dezigzag(lerVarLong(leitura));
+                        String nome = versao < 3 ? lerTexto(leitura) : lerOpcional(leitura);
+                        String categoria = versao == 1 ? null : lerOpcional(leitura);
+                        Dinheiro preco = decodificarDinheiro(leitura);
+                        int quantidade = Math.toIntExact(lerVarLong(leitura));
+                        Produto produto = new Produto(id, nome, preco, categoria);
+                        if (registro != null) {
+                            produto = registro.canonizar(produto);
+                        }
+                        edicao.adicionarItem(produto, quantidade);
+                    }
+                    carrinho = edicao.aplicarCupom(descontoCupom).congelar();
+                } catch (BufferUnderflowException e) {
+                    throw new IllegalArgumentException("Dados do carrinho truncados", e);
+                }
+            }
+            return carrinho;
+        }
+
+        private void pularNome(ByteBuffer leitura) {
+            if (versao < 3) {
+                pularTexto(leitura);
+            } else {
+                pularOpcional(leitura);
+            }
+        }
+
+        private void pularCategoria(ByteBuffer leitura) {
+            if (versao != 1) {
+                pularOpcional(leitura);
+            }
+        }
+    }
+
+    private static Long idObrigatorio(Produto produto) {
+        if (produto.getId() == null) {
+            throw new IllegalArgumentException("Produto sem id não pode ser codificado");
+        }
+        return produto.getId();
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static void escreverVarLong(ByteBuffer destino, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            destino.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        destino.put((byte) valor);
+    }
+
+    private static long lerVarLong(ByteBuffer origem) {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            byte b = origem.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint malformado");
+    }
+
+    private static int tamanhoVarLong(long valor) {
+        return valor == 0 ? 1 : (63 - Long.numberOfLeadingZeros(valor)) / 7 + 1;
+    }
+
+    private static void escreverInteiroGrande(ByteBuffer destino, BigInteger valor) {
+        byte[] bytes = valor.toByteArray();
+        escreverVarLong(destino, bytes.length);
+        destino.put(bytes);
+    }
+
+    private static BigInteger lerInteiroGrande(ByteBuffer origem) {
+        byte[] bytes = new byte[Math.toIntExact(lerVarLong(origem))];
+        origem.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private static void escreverDecimal(ByteBuffer destino, BigDecimal valor) {
+        escreverVarLong(destino, zigzag(valor.scale()));
+        escreverInteiroGrande(destino, valor.unscaledValue());
+    }
+
+    private static BigDecimal lerDecimal(ByteBuffer origem) {
+        int escala = Math.toIntExact(dezigzag(lerVarLong(origem)));
+        return new BigDecimal(lerInteiroGrande(origem), escala);
+    }
+
+    private static int tamanhoDecimal(BigDecimal valor) {
+        int bytes = valor.unscaledValue().bitLength() / 8 + 1;
+        return tamanhoVarLong(zigzag(valor.scale())) + tamanhoVarLong(bytes) + bytes;
+    }
+
+    private static void escreverOpcional(ByteBuffer destino, String texto) {
+        if (texto == null) {
+            destino.put((byte) 0);
+        } else {
+            escreverVarLong(destino, comprimentoUtf8(texto) + 1L);
+            escreverUtf8(destino, texto);
+        }
+    }
+
+    private static int tamanhoOpcional(String texto) {
+        if (texto == null) {
+            return 1;
+        }
+        int bytes = comprimentoUtf8(texto);
+        return tamanhoVarLong(bytes + 1L) + bytes;
+    }
+
+    private static String lerOpcional(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        return bytes == 0 ? null : lerUtf8(origem, bytes - 1);
+    }
+
+    private static void pularOpcional(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        if (bytes > 0) {
+            origem.position(origem.position() + bytes - 1);
+        }
+    }
+
+    private static void pularDinheiro(ByteBuffer origem) {
+        if ((origem.get() & VALOR_GRANDE) == 0) {
+            lerVarLong(origem);
+        } else {
+            pularTexto(origem);
+        }
+    }
+
+    private static void pularTexto(ByteBuffer origem) {
+        int bytes = Math.toIntExact(lerVarLong(origem));
+        origem.position(origem.position() + bytes);
+    }
+
+    // UTF-8 escrito direto no buffer, sem o byte[] intermediário de String.getBytes
+    private static void escreverUtf8(ByteBuffer destino, String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                destino.put((byte) c);
+            } else if (c < 0x800) {
+                destino.put((byte) (0xC0 | (c >> 6)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                destino.put((byte) (0xF0 | (codigo >> 18)));
+                destino.put((byte) (0x80 | ((codigo >> 12) & 0x3F)));
+                destino.put((byte) (0x80 | ((codigo >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (codigo & 0x3F)));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    c = '\\uFFFD';
+                }
+                destino.put((byte) (0xE0 | (c >> 12)));
+                destino.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static int comprimentoUtf8(String texto) {
+        int bytes = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String lerTexto(ByteBuffer origem) {
+        return lerUtf8(origem, Math.toIntExact(lerVarLong(origem)));
+    }
+
+    private static String lerUtf8(ByteBuffer origem, int bytes) {
+        if (origem.hasArray()) {
+            int inicio = origem.arrayOffset() + origem.position();
+            origem.position(origem.position() + bytes);
+            return new String(origem.array(), inicio, bytes, StandardCharsets.UTF_8);
+        }
+        byte[] copia = new byte[bytes];
+        origem.get(copia);
+        return new String(copia, StandardCharsets.UTF_8);
+    }
+}
+""";
+        escrever("CodecCarrinho.java", codigo);
+    }
+
+    private static void criarBenchmarkCodecCarrinho() throws IOException {
+        String codigo = """
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BenchmarkCodecCarrinho {
+    private static final int OPERACOES = 20_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: CODEC BINÁRIO x SERIALIZAÇÃO JAVA x JSON ===\\n");
+
+        Carrinho carrinho = new Carrinho();
+        for (long id = 1; id <= 20; id++) {
+            Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id * 13 % 500) + ".90", Moeda.BRL));
+            carrinho = carrinho.adicionarItem(produto, (int) (id % 4) + 1);
+        }
+        Carrinho exemplo = carrinho.aplicarCupom(new BigDecimal("10"));
+
+        byte[] binario = CodecCarrinho.codificar(exemplo);
+        byte[] serializado = serializar(exemplo);
+        byte[] json = paraJson(exemplo).getBytes(StandardCharsets.UTF_8);
+        System.out.println("Carrinho com " + exemplo.getItens().size() + " itens:");
+        System.out.printf("  binário:          %5d bytes%n", binario.length);
+        System.out.printf("  serialização Java: %5d bytes%n", serializado.length);
+        System.out.printf("  JSON:             %5d bytes%n%n", json.length);
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  codificar (binário)", () -> CodecCarrinho.codificar(exemplo).length);
+            medir("  codificar (serialização Java)", () -> serializar(exemplo).length);
+            medir("  codificar (JSON)", () -> paraJson(exemplo).length());
+            medir("  decodificar (binário)", () -> CodecCarrinho.decodificar(binario).getTotalItens());
+            medir("  decodificar (serialização Java)", () -> desserializar(serializado).size());
+            medir("  decodificar (JSON)", () -> deJson(new String(json, StandardCharsets.UTF_8)).getTotalItens());
+            medir("  total de itens sem decodificar", () ->
+                    new CodecCarrinho.Visao(ByteBuffer.wrap(binario)).getTotalItens());
+        }
+    }
+
+    private interface Operacao {
+        int executar();
+    }
+
+    private static void medir(String rotulo, Operacao operacao) {
+        long thread = Thread.currentThread().getId();
+        int checksum = 0;
+        long bytesAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += operacao.executar();
+        }
+        long duracao = System.nanoTime() - inicio;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesAntes;
+        System.out.printf("%-36s %8.1f ns/op %9.1f bytes/op (checksum %d)%n",
+                rotulo, (double) duracao / OPERACOES, (double) bytes / OPERACOES, checksum);
+    }
+
+    // As classes do carrinho não são Serializable: a comparação usa o grafo equivalente em tipos do JDK
+    private static List<Map<String, Object>> paraGrafo(Carrinho carrinho) {
+        List<Map<String, Object>> itens = new ArrayList<>();
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Map<String, Object> linha = new HashMap<>();
+            linha.put("id", item.getProduto().getId());
+            linha.put("nome", item.getProduto().getNome());
+            linha.put("preco", item.getProduto().getPreco().getValor());
+            linha.put("moeda", item.getProduto().getPreco().getMoeda());
+            linha.put("quantidade", item.getQuantidade());
+            itens.add(linha);
+        }
+        Map<String, Object> cupom = new HashMap<>();
+        cupom.put("descontoCupom", carrinho.getDescontoCupom());
+        itens.add(cupom);
+        return itens;
+    }
+
+    private static byte[] serializar(Carrinho carrinho) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream saida = new ObjectOutputStream(bytes)) {
+            saida.writeObject(paraGrafo(carrinho));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> desserializar(byte[] dados) {
+        try (ObjectInputStream entrada = new ObjectInputStream(new ByteArrayInputStream(dados))) {
+            return (List<Map<String, Object>>) entrada.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String paraJson(Carrinho carrinho) {
+        StringBuilder json = new StringBuilder("{\\"descontoCupom\\":").append(carrinho.getDescontoCupom())
+                .append(",\\"itens\\":[");
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            json.append("{\\"id\\":").append(produto.getId())
+                    .append(",\\"nome\\":\\"").append(produto.getNome())
+                    .append("\\",\\"preco\\":").append(produto.getPreco().getValor())
+                    .append(",\\"moeda\\":\\"").append(produto.getPreco().getMoeda())
+                    .append("\\",\\"quantidade\\":").append(item.getQuantidade()).append("},");
+        }
+        if (json.charAt(json.length() - 1) == ',') {
+            json.setLength(json.length() - 1);
+        }
+        return json.append("]}").toString();
+    }
+
+    // Leitor feito à mão para o formato de paraJson (sem escapes), no mesmo espírito do codec binário
+    private static Carrinho deJson(String json) {
+        BigDecimal cupom = new BigDecimal(campo(json, 0, "\\"descontoCupom\\":", ','));
+        Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+        for (int item = json.indexOf("{\\"id\\":"); item >= 0; item = json.indexOf("{\\"id\\":", item + 1)) {
+            long id = Long.parseLong(campo(json, item, "\\"id\\":", ','));
+            String nome = campo(json, item, "\\"nome\\":\\"", '"');
+            BigDecimal preco = new BigDecimal(campo(json, item, "\\"preco\\":", ','));
+            Moeda moeda = Moeda.valueOf(campo(json, item, "\\"moeda\\":\\"", '"'));
+            int quantidade = Integer.parseInt(campo(json, item, "\\"quantidade\\":", '}'));
+            edicao.adicionarItem(new Produto(id, nome, new Dinheiro(preco, moeda)), quantidade);
+        }
+        return edicao.aplicarCupom(cupom).congelar();
+    }
+
+    private static String campo(String json, int de, String chave, char fim) {
+        int inicio = json.indexOf(chave, de) + chave.length();
+        return json.substring(inicio, json.indexOf(fim, inicio));
+    }
+}
+""";
+        escrever("BenchmarkCodecCarrinho.java", codigo);
+    }
+
+    private static void criarArmazemCarrinhos() throws IOException {
+        String codigo = """
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+// Carrinhos por sessão: quentes como objetos, ociosos no formato do CodecCarrinho em byte[],
+// e os muito ociosos em um arquivo de derramamento. Cada sessão pertence a uma faixa com trava própria.
+// Registros relidos ou removidos ficam mortos no arquivo até a compactação, que regrava só os vivos.
+public final class ArmazemCarrinhos implements Closeable {
+    // Estimativas de heap: chave, entrada e nó do mapa por sessão; carrinho quente (objeto + tries)
+    // e cada item (item, produto, preço, nó); calibradas com BenchmarkArmazemCarrinhos
+    static final long BYTES_POR_SESSAO = 170;
+    static final long BYTES_CARRINHO = 160;
+    static final long BYTES_POR_ITEM = 200;
+    // Com menos mortos que isso, reescrever o arquivo custa mais do que o espaço devolvido
+    static final long MINIMO_COMPACTACAO = 1 << 20;
+
+    private final Faixa[] faixas;
+    private final FileChannel derramamento;
+    // Gravações compartilham a trava, cada uma na posição que reservou; a compactação a toma exclusiva.
+    // Quem precisa das duas pega a do arquivo antes da faixa.
+    private final ReentrantReadWriteLock travaArquivo = new ReentrantReadWriteLock();
+    private final AtomicLong fimArquivo = new AtomicLong();
+    private final AtomicLong bytesMortos = new AtomicLong();
+    private final long tempoOcioso;
+    private final long tempoDerramamento;
+    private final LongSupplier relogio;
+
+    public ArmazemCarrinhos(Path arquivoDerramamento, Duration tempoOcioso, Duration tempoDerramamento) {
+        this(arquivoDerramamento, tempoOcioso, tempoDerramamento, 64, System::nanoTime);
+    }
+
+    public ArmazemCarrinhos(Path arquivoDerramamento, Duration tempoOcioso, Duration tempoDerramamento,
+                            int quantidadeFaixas, LongSupplier relogioNanos) {
+        if (tempoDerramamento.compareTo(tempoOcioso) < 0) {
+            throw new IllegalArgumentException("Tempo de derramamento deve ser maior ou igual ao tempo ocioso");
+        }
+        if (quantidadeFaixas <= 0 || Integer.bitCount(quantidadeFaixas) != 1) {
+            throw new IllegalArgumentException("Quantidade de faixas deve ser uma potência de 2");
+        }
+        this.faixas = new Faixa[quantidadeFaixas];
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new Faixa();
+        }
+        this.tempoOcioso = tempoOcioso.toNanos();
+        this.tempoDerramamento = tempoDerramamento.toNanos();
+        this.relogio = relogioNanos;
+        try {
+            this.derramamento = FileChannel.open(arquivoDerramamento, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Carrinho obter(String sessao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.get(sessao);
+            return entrada == null ? new Carrinho() : aquecer(faixa, entrada);
+        }
+    }
+
+    // A operação roda com a faixa travada: atualizações da mesma sessão nunca se perdem
+    public Carrinho atualizar(String sessao, UnaryOperator<Carrinho> operacao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.get(sessao);
+            if (entrada == null) {
+                entrada = new Entrada();
+                entrada.carrinho = new Carrinho();
+                faixa.sessoes.put(sessao, entrada);
+                faixa.bytesQuentes += estimarBytes(entrada.carrinho);
+            }
+            Carrinho atual = aquecer(faixa, entrada);
+            Carrinho novo = operacao.apply(atual);
+            faixa.bytesQuentes += estimarBytes(novo) - estimarBytes(atual);
+            entrada.carrinho = novo;
+            return novo;
+        }
+    }
+
+    public void remover(String sessao) {
+        Faixa faixa = faixa(sessao);
+        synchronized (faixa) {
+            Entrada entrada = faixa.sessoes.remove(sessao);
+            if (entrada != null) {
+                descontar(faixa, entrada);
+                // Uma gravação em andamento para ela vê a mudança e descarta o registro
+                entrada.compacto = null;
+            }
+        }
+    }
+
+    // Compacta os quentes ociosos e derrama os compactados ociosos há mais tempo; retorna quantos mudaram.
+    // Compacta também o arquivo quando mais da metade dele está morta.
+    public int varrerOciosos() {
+        long agora = relogio.getAsLong();
+        int alterados = 0;
+        for (Faixa faixa : faixas) {
+            List<Pendente> pendentes = new ArrayList<>();
+            synchronized (faixa) {
+                for (Entrada entrada : faixa.sessoes.values()) {
+                    long ocioso = agora - entrada.ultimoAcesso;
+                    if (entrada.carrinho != null && ocioso >= tempoOcioso) {
+                        faixa.bytesQuentes -= estimarBytes(entrada.carrinho);
+                        entrada.compacto = CodecCarrinho.codificar(entrada.carrinho);
+                        entrada.carrinho = null;
+                        faixa.bytesCompactos += entrada.compacto.length;
+                        alterados++;
+                    }
+                    if (entrada.compacto != null && ocioso >= tempoDerramamento) {
+                        pendentes.add(new Pendente(entrada, entrada.compacto));
+                    }
+                }
+            }
+            if (!pendentes.isEmpty()) {
+                alterados += derramar(faixa, pendentes);
+            }
+        }
+        long mortos = bytesMortos.get();
+        if (mortos >= MINIMO_COMPACTACAO && mortos * 2 > fimArquivo.get()) {
+            compactar();
+        }
+        return alterados;
+    }
+
+    // Regrava os registros vivos no começo do arquivo, na ordem em que estão, e corta o resto.
+    // Para o armazém inteiro: trava o arquivo e depois todas as faixas, em ordem.
+    public void compactar() {
+        travaArquivo.writeLock().lock();
+        try {
+            travarFaixas(0, this::moverRegistrosVivos);
+        } finally {
+            travaArquivo.writeLock().unlock();
+        }
+    }
+
+    public Estatisticas estatisticas() {
+        int quentes = 0;
+        int compactados = 0;
+        int derramados = 0;
+        long bytesQuentes = 0;
+        long bytesCompactos = 0;
+        long bytesEmDisco = 0;
+        for (Faixa faixa : faixas) {
+            synchronized (faixa) {
+                for (Entrada entrada : faixa.sessoes.values()) {
+                    if (entrada.carrinho != null) {
+                        quentes++;
+                    } else if (entrada.compacto != null) {
+                        compactados++;
+                    } else {
+                        derramados++;
+                    }
+                }
+                bytesQuentes += faixa.bytesQuentes;
+                bytesCompactos += faixa.bytesCompactos;
+                bytesEmDisco += faixa.bytesEmDisco;
+            }
+        }
+        long bytesSessoes = BYTES_POR_SESSAO * (quentes + compactados + derramados);
+        return new Estatisticas(quentes, compactados, derramados, bytesSessoes, bytesQuentes, bytesCompactos,
+                bytesEmDisco, fimArquivo.get());
+    }
+
+    @Override
+    public void close() {
+        try {
+            derramamento.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // bytesEmDisco conta só os registros vivos; bytesArquivo inclui os mortos ainda não compactados
+    public record Estatisticas(int quentes, int compactados, int derramados, long bytesSessoes,
+                               long bytesQuentesEstimados, long bytesCompactos, long bytesEmDisco,
+                               long bytesArquivo) {
+        public long bytesEmMemoria() {
+            return bytesSessoes + bytesQuentesEstimados + bytesCompactos;
+        }
+    }
+
+    private Carrinho aquecer(Faixa faixa, Entrada entrada) {
+        entrada.ultimoAcesso = relogio.getAsLong();
+        if (entrada.carrinho == null) {
+            byte[] dados = entrada.compacto;
+            if (dados == null) {
+                dados = ler(entrada.posicaoArquivo, entrada.tamanhoArquivo);
+                faixa.bytesEmDisco -= entrada.tamanhoArquivo;
+                bytesMortos.addAndGet(entrada.tamanhoArquivo);
+                entrada.posicaoArquivo = -1;
+            } else {
+                faixa.bytesCompactos -= dados.length;
+                entrada.compacto = null;
+            }
+            entrada.carrinho = CodecCarrinho.decodificar(dados);
+            faixa.bytesQuentes += estimarBytes(entrada.carrinho);
+        }
+        return entrada.carrinho;
+    }
+
+    private void descontar(Faixa faixa, Entrada entrada) {
+        if (entrada.carrinho != null) {
+            faixa.bytesQuentes -= estimarBytes(entrada.carrinho);
+        } else if (entrada.compacto != null) {
+            faixa.bytesCompactos -= entrada.compacto.length;
+        } else {
+            faixa.bytesEmDisco -= entrada.tamanhoArquivo;
+            bytesMortos.addAndGet(entrada.tamanhoArquivo);
+        }
+    }
+
+    // Grava fora da trava da faixa, que segue atendendo as outras sessões; só a publicação a retoma.
+    // A sessão usada ou removida durante a gravação fica como estava, e o registro já nasce morto.
+    private int derramar(Faixa faixa, List<Pendente> pendentes) {
+        int derramados = 0;
+        travaArquivo.readLock().lock();
+        try {
+            long[] posicoes = new long[pendentes.size()];
+            for (int i = 0; i < posicoes.length; i++) {
+                byte[] dados = pendentes.get(i).dados();
+                posicoes[i] = fimArquivo.getAndAdd(dados.length);
+                escrever(dados, posicoes[i]);
+            }
+            synchronized (faixa) {
+                for (int i = 0; i < posicoes.length; i++) {
+                    Entrada entrada = pendentes.get(i).entrada();
+                    byte[] dados = pendentes.get(i).dados();
+                    if (entrada.compacto != dados) {
+                        bytesMortos.addAndGet(dados.length);
+                        continue;
+                    }
+                    entrada.posicaoArquivo = posicoes[i];
+                    entrada.tamanhoArquivo = dados.length;
+                    faixa.bytesCompactos -= dados.length;
+                    faixa.bytesEmDisco += dados.length;
+                    entrada.compacto = null;
+                    derramados++;
+                }
+            }
+        } finally {
+            travaArquivo.readLock().unlock();
+        }
+        return derramados;
+    }
+
+    private void travarFaixas(int indice, Runnable acao) {
+        if (indice == faixas.length) {
+            acao.run();
+            return;
+        }
+        synchronized (faixas[indice]) {
+            travarFaixas(indice + 1, acao);
+        }
+    }
+
+    // Em ordem de posição cada registro só desce, então nunca sobrescreve um que ainda não foi movido
+    private void moverRegistrosVivos() {
+        List<Entrada> emDisco = new ArrayList<>();
+        for (Faixa faixa : faixas) {
+            for (Entrada entrada : faixa.sessoes.values()) {
+                if (entrada.posicaoArquivo >= 0) {
+                    emDisco.add(entrada);
+                }
+            }
+        }
+        emDisco.sort(Comparator.comparingLong((Entrada entrada) -> entrada.posicaoArquivo));
+        long destino = 0;
+        for (Entrada entrada : emDisco) {
+            if (entrada.posicaoArquivo != destino) {
+                escrever(ler(entrada.posicaoArquivo, entrada.tamanhoArquivo), destino);
+                entrada.posicaoArquivo = destino;
+            }
+            destino += entrada.tamanhoArquivo;
+        }
+        try {
+            derramamento.truncate(destino);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fimArquivo.set(destino);
+        bytesMortos.set(0);
+    }
+
+    private void escrever(byte[] dados, long posicao) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(dados);
+            while (buffer.hasRemaining()) {
+                derramamento.write(buffer, posicao + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] ler(long posicao, int tamanho) {
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        try {
+            while (buffer.hasRemaining()) {
+                if (derramamento.read(buffer, posicao + buffer.position()) < 0) {
+                    throw new IllegalStateException("Arquivo de derramamento truncado");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.array();
+    }
+
+    private static long estimarBytes(Carrinho carrinho) {
+        return BYTES_CARRINHO + BYTES_POR_ITEM * carrinho.quantidadeDistinta();
+    }
+
+    private Faixa faixa(String sessao) {
+        int h = sessao.hashCode();
+        return faixas[(h ^ (h >>> 16)) & (faixas.length - 1)];
+    }
+
+    private static final class Faixa {
+        private final Map<String, Entrada> sessoes = new HashMap<>();
+        private long bytesQuentes;
+        private long bytesCompactos;
+        private long bytesEmDisco;
+    }
+
+    private record Pendente(Entrada entrada, byte[] dados) {
+    }
+
+    private static final class Entrada {
+        private Carrinho carrinho;
+        private byte[] compacto;
+        private long posicaoArquivo = -1;
+        private int tamanhoArquivo;
+        private long ultimoAcesso;
+    }
+}
+""";
+        escrever("ArmazemCarrinhos.java", codigo);
+    }
+
+    private static void criarBenchmarkArmazemCarrinhos() throws IOException {
+        String codigo = """
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class BenchmarkArmazemCarrinhos {
+    private static final int SESSOES = 200_000;
+    private static final int ITENS_POR_CARRINHO = 5;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== BENCHMARK: ARMAZÉM DE CARRINHOS (QUENTE x COMPACTO x DISCO) ===\\n");
+
+        Path arquivo = Files.createTempFile("carrinhos", ".derramados");
+        long[] agora = {0};
+        try (ArmazemCarrinhos armazem = new ArmazemCarrinhos(arquivo, Duration.ofMinutes(5),
+                Duration.ofMinutes(30), 64, () -> agora[0])) {
+            long base = heapUsado();
+            for (int s = 0; s < SESSOES; s++) {
+                for (int i = 0; i < ITENS_POR_CARRINHO; i++) {
+                    long id = (s * 31L + i * 7L) % 5_000;
+                    Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id % 300) + ".99", Moeda.BRL));
+                    armazem.atualizar("sessao-" + s, c -> c.adicionarItem(produto, 1));
+                }
+            }
+            relatar("Todos quentes", armazem, heapUsado() - base);
+
+            agora[0] += Duration.ofMinutes(10).toNanos();
+            long inicio = System.nanoTime();
+            armazem.varrerOciosos();
+            System.out.printf("  (compactação: %.1f ms)%n", (System.nanoTime() - inicio) / 1e6);
+            relatar("Ociosos compactados", armazem, heapUsado() - base);
+
+            agora[0] += Duration.ofMinutes(30).toNanos();
+            inicio = System.nanoTime();
+            armazem.varrerOciosos();
+            System.out.printf("  (derramamento: %.1f ms)%n", (System.nanoTime() - inicio) / 1e6);
+            relatar("Ociosos em disco", armazem, heapUsado() - base);
+
+            inicio = System.nanoTime();
+            int total = 0;
+            for (int s = 0; s < SESSOES; s += 100) {
+                total += armazem.obter("sessao-" + s).getTotalItens();
+            }
+            System.out.printf("%nReativar %d sessões do disco: %.1f us/sessão (checksum %d)%n",
+                    SESSOES / 100, (System.nanoTime() - inicio) / 1e3 / (SESSOES / 100), total);
+        } finally {
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    private static void relatar(String rotulo, ArmazemCarrinhos armazem, long heapMedido) {
+        ArmazemCarrinhos.Estatisticas e = armazem.estatisticas();
+        System.out.printf("%-22s quentes=%d compactados=%d em disco=%d | heap medido %.1f MB (%.0f B/sessão),"
+                        + " contabilizado %.1f MB, disco %.1f MB%n",
+                rotulo, e.quentes(), e.compactados(), e.derramados(), heapMedido / 1e6,
+                (double) heapMedido / SESSOES, e.bytesEmMemoria() / 1e6, e.bytesEmDisco() / 1e6);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+""";
+        escrever("BenchmarkArmazemCarrinhos.java", codigo);
+    }
+
+    private static void criarTabelaCambio() throws IOException {
+        String codigo = """
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Instantâneo imutável das taxas de câmbio. Formato do arquivo, uma taxa por linha:
+//   data de vigência;moeda origem;moeda destino;taxa      ex.: 2026-01-01;USD;BRL;5.4321
+public final class TabelaCambio {
+    // Fatores em ponto fixo com 8 casas: taxas mais precisas são arredondadas ao carregar
+    static final long ESCALA_FATOR = 100_000_000L;
+    private static final int CASAS_FATOR = 8;
+    private static final Moeda[] MOEDAS = Moeda.values();
+
+    private final Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas;
+    // Datas em que alguma taxa passa a valer: entre duas delas, todas as taxas ficam iguais
+    private final NavigableSet<LocalDate> vigencias = new TreeSet<>();
+    // No máximo uma conversão por destino e vigência, por mais datas que sejam pedidas
+    private final Map<Chave, Conversao> conversoes = new ConcurrentHashMap<>();
+
+    private TabelaCambio(Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas) {
+        this.taxas = taxas;
+        for (Map<Moeda, NavigableMap<LocalDate, BigDecimal>> porDestino : taxas.values()) {
+            for (NavigableMap<LocalDate, BigDecimal> historico : porDestino.values()) {
+                vigencias.addAll(historico.keySet());
+            }
+        }
+    }
+
+    public static TabelaCambio carregar(Path arquivo) throws IOException {
+        return de(Files.readAllLines(arquivo, StandardCharsets.UTF_8));
+    }
+
+    public static TabelaCambio de(List<String> linhas) {
+        Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas = new EnumMap<>(Moeda.class);
+        for (int i = 0; i < linhas.size(); i++) {
+            String linha = linhas.get(i).strip();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            String[] campos = linha.split(";");
+            if (campos.length != 4) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " da tabela de câmbio inválida: " + linha);
+            }
+            try {
+                LocalDate vigencia = LocalDate.parse(campos[0].strip());
+                Moeda origem = Moeda.valueOf(campos[1].strip());
+                Moeda destino = Moeda.valueOf(campos[2].strip());
+                BigDecimal taxa = new BigDecimal(campos[3].strip());
+                if (taxa.signum() <= 0) {
+                    throw new IllegalArgumentException("Taxa deve ser positiva");
+                }
+                taxas.computeIfAbsent(origem, m -> new EnumMap<>(Moeda.class))
+                        .computeIfAbsent(destino, m -> new TreeMap<>())
+                        .put(vigencia, taxa);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " da tabela de câmbio inválida: "
+                        + e.getMessage(), e);
+            }
+        }
+        return new TabelaCambio(taxas);
+    }
+
+    // Fatores para todas as moedas de origem calculados uma vez e reutilizados pelas datas da mesma vigência
+    public Conversao para(Moeda destino, LocalDate data) {
+        return conversoes.computeIfAbsent(new Chave(destino, vigencias.floor(data)), chave -> {
+            LocalDate consulta = chave.vigencia() == null ? LocalDate.MIN : chave.vigencia();
+            BigDecimal[] taxasPorMoeda = new BigDecimal[MOEDAS.length];
+            for (Moeda origem : MOEDAS) {
+                taxasPorMoeda[origem.ordinal()] = taxa(origem, destino, consulta);
+            }
+            return new Conversao(destino, chave.vigencia(), taxasPorMoeda);
+        });
+    }
+
+    // Taxa direta, inversa ou cruzada por uma moeda intermediária; nula quando não há caminho
+    public BigDecimal taxa(Moeda origem, Moeda destino, LocalDate data) {
+        if (origem == destino) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal direta = taxaDireta(origem, destino, data);
+        if (direta != null) {
+            return direta;
+        }
+        for (Moeda intermediaria : MOEDAS) {
+            if (intermediaria == origem || intermediaria == destino) {
+                continue;
+            }
+            BigDecimal primeira = taxaDireta(origem, intermediaria, data);
+            BigDecimal segunda = taxaDireta(intermediaria, destino, data);
+            if (primeira != null && segunda != null) {
+                return primeira.multiply(segunda);
+            }
+        }
+        return null;
+    }
+
+    private BigDecimal taxaDireta(Moeda origem, Moeda destino, LocalDate data) {
+        BigDecimal taxa = vigente(origem, destino, data);
+        if (taxa != null) {
+            return taxa;
+        }
+        BigDecimal inversa = vigente(destino, origem, data);
+        return inversa == null ? null : BigDecimal.ONE.divide(inversa, CASAS_FATOR + 4, RoundingMode.HALF_EVEN);
+    }
+
+    private BigDecimal vigente(Moeda origem, Moeda destino, LocalDate data) {
+        NavigableMap<LocalDate, BigDecimal> historico =
+                taxas.getOrDefault(origem, Collections.emptyMap()).get(destino);
+        if (historico == null) {
+            return null;
+        }
+        Map.Entry<LocalDate, BigDecimal> entrada = historico.floorEntry(data);
+        return entrada == null ? null : entrada.getValue();
+    }
+
+    // vigencia é nula para datas anteriores a todas as taxas da tabela
+    private record Chave(Moeda destino, LocalDate vigencia) {
+    }
+
+    // Conversão para um destino em uma data: o caminho quente só indexa um long[] pelo ordinal da moeda
+    public static final class Conversao {
+        private final Moeda destino;
+        private final LocalDate vigencia;
+        private final long[] fatores;
+        private final BigDecimal[] taxas;
+
+        private Conversao(Moeda destino, LocalDate vigencia, BigDecimal[] taxas) {
+            this.destino = destino;
+            this.vigencia = vigencia;
+            this.taxas = taxas;
+            this.fatores = new long[taxas.length];
+            for (int i = 0; i < taxas.length; i++) {
+                fatores[i] = taxas[i] == null ? -1
+                        : taxas[i].setScale(CASAS_FATOR, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+            }
+        }
+
+        public Moeda getDestino() {
+            return destino;
+        }
+
+        public BigDecimal getTaxa(Moeda origem) {
+            return taxas[origem.ordinal()];
+        }
+
+        public Dinheiro converter(Dinheiro valor) {
+            if (valor.getMoeda() == destino) {
+                return valor;
+            }
+            long centavos = converterCentavos(valor);
+            if (centavos >= 0) {
+                return Dinheiro.deCentavos(centavos, destino);
+            }
+            BigDecimal fator = BigDecimal.valueOf(fatores[valor.getMoeda().ordinal()], CASAS_FATOR);
+            return new Dinheiro(valor.getValor().multiply(fator), destino);
+        }
+
+        public List<Dinheiro> converter(List<Dinheiro> valores) {
+            List<Dinheiro> convertidos = new ArrayList<>(valores.size());
+            for (Dinheiro valor : valores) {
+                convertidos.add(converter(valor));
+            }
+            return convertidos;
+        }
+
+        // Soma os subtotais já convertidos em centavos e aplica o cupom uma única vez no final
+        public Dinheiro totalizar(Carrinho carrinho) {
+            long total = 0;
+            Dinheiro totalGrande = null;
+            for (ItemCarrinho item : carrinho.getItens()) {
+                Dinheiro subtotal = item.getSubtotal();
+                long centavos = subtotal.getMoeda() == destino ? subtotal.centavos() : converterCentavos(subtotal);
+                long soma = total + centavos;
+                if (totalGrande == null && centavos >= 0 && soma >= 0) {
+                    total = soma;
+                } else {
+                    if (totalGrande == null) {
+                        totalGrande = Dinheiro.deCentavos(total, destino);
+                    }
+                    totalGrande = totalGrande.somar(converter(subtotal));
+                }
+            }
+            Dinheiro resultado = totalGrande != null ? totalGrande : Dinheiro.deCentavos(total, destino);
+            return resultado.aplicarDesconto(carrinho.getDescontoCupom());
+        }
+
+        // -1 quando o valor ou o produto pelo fator não cabem em um long
+        private long converterCentavos(Dinheiro valor) {
+            long fator = fatores[valor.getMoeda().ordinal()];
+            if (fator < 0) {
+                throw new IllegalArgumentException("Sem taxa de câmbio de " + valor.getMoeda() + " para " + destino
+                        + (vigencia == null ? " antes da primeira vigência" : " na vigência de " + vigencia));
+            }
+            long centavos = valor.centavos();
+            if (centavos < 0) {
+                return -1;
+            }
+            long produto = centavos * fator;
+            if (Math.multiplyHigh(centavos, fator) != 0 || produto < 0) {
+                return -1;
+            }
+            return Dinheiro.dividirHalfEven(produto, ESCALA_FATOR);
+        }
+    }
+}
+""";
+        escrever("TabelaCambio.java", codigo);
+    }
+
+    private static void criarConversorMoedas() throws IOException {
+        String codigo = """
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+
+// Mantém a TabelaCambio vigente; recarregar troca o instantâneo inteiro de uma vez,
+// e quem já pegou uma Conversao continua usando a tabela antiga até terminar o lote
+public final class ConversorMoedas {
+    private final Path arquivo;
+    private volatile TabelaCambio tabela;
+    private FileTime versaoCarregada;
+
+    public ConversorMoedas(Path arquivo) {
+        this.arquivo = arquivo;
+        recarregar();
+    }
+
+    public TabelaCambio tabela() {
+        return tabela;
+    }
+
+    public TabelaCambio.Conversao para(Moeda destino, LocalDate data) {
+        return tabela.para(destino, data);
+    }
+
+    public synchronized void recarregar() {
+        try {
+            FileTime versao = Files.getLastModifiedTime(arquivo);
+            tabela = TabelaCambio.carregar(arquivo);
+            versaoCarregada = versao;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized boolean recarregarSeAlterado() {
+        try {
+            if (Files.getLastModifiedTime(arquivo).equals(versaoCarregada)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recarregar();
+        return true;
+    }
+}
+""";
+        escrever("ConversorMoedas.java", codigo);
+    }
+
+    private static void criarPromocao() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+
+public sealed interface Promocao {
+    // Leve N unidades e pague M: a cada grupo completo de N, N - M saem de graça
+    record LevePague(long produtoId, int leve, int pague) implements Promocao {
+        public LevePague {
+            if (pague <= 0 || leve <= pague) {
+                throw new IllegalArgumentException("Leve/pague exige leve > pague > 0");
+            }
+        }
+    }
+
+    record DescontoProduto(long produtoId, BigDecimal percentual) implements Promocao {
+        public DescontoProduto {
+            validarPercentual(percentual);
+        }
+    }
+
+    record DescontoCategoria(String categoria, BigDecimal percentual) implements Promocao {
+        public DescontoCategoria {
+            if (categoria == null) {
+                throw new IllegalArgumentException("Categoria é obrigatória");
+            }
+            validarPercentual(percentual);
+        }
+    }
+
+    // Desconto sobre o total (após as promoções por item) quando ele atinge o mínimo da faixa
+    record DescontoProgressivo(Dinheiro subtotalMinimo, BigDecimal percentual) implements Promocao {
+        public DescontoProgressivo {
+            validarPercentual(percentual);
+        }
+    }
+
+    private static void validarPercentual(BigDecimal percentual) {
+        if (percentual.signum() <= 0 || percentual.compareTo(new BigDecimal("100")) > 0) {
+            throw new IllegalArgumentException("Percentual de promoção deve estar entre 0 e 100");
+        }
+        if (percentual.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Percentual de promoção aceita no máximo 2 casas decimais");
+        }
+    }
+}
+""";
+        escrever("Promocao.java", codigo);
+    }
+
+    private static void criarMotorPromocoes() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Plano de avaliação compilado uma vez: regras por item indexadas por produto e por categoria,
+// faixas progressivas ordenadas por moeda. Avaliar um carrinho só visita as regras dos seus itens.
+public final class MotorPromocoes {
+    private static final RegraItem[] NENHUMA = new RegraItem[0];
+
+    private final Map<Long, RegraItem[]> porProduto;
+    private final Map<String, RegraItem[]> porCategoria;
+    private final Map<Moeda, Faixas> faixas;
+
+    private MotorPromocoes(Map<Long, RegraItem[]> porProduto, Map<String, RegraItem[]> porCategoria,
+                           Map<Moeda, Faixas> faixas) {
+        this.porProduto = porProduto;
+        this.porCategoria = porCategoria;
+        this.faixas = faixas;
+    }
+
+    public static MotorPromocoes compilar(Collection<? extends Promocao> promocoes) {
+        Map<Long, List<RegraItem>> porProduto = new HashMap<>();
+        Map<String, List<RegraItem>> porCategoria = new HashMap<>();
+        Map<Moeda, List<Promocao.DescontoProgressivo>> progressivos = new EnumMap<>(Moeda.class);
+
+        for (Promocao promocao : promocoes) {
+            if (promocao instanceof Promocao.LevePague p) {
+                porProduto.computeIfAbsent(p.produtoId(), k -> new ArrayList<>())
+                        .add(new RegraItem(p.leve(), p.pague(), 0));
+            } else if (promocao instanceof Promocao.DescontoProduto p) {
+                porProduto.computeIfAbsent(p.produtoId(), k -> new ArrayList<>())
+                        .add(new RegraItem(0, 0, pontosBase(p.percentual())));
+            } else if (promocao instanceof Promocao.DescontoCategoria p) {
+                porCategoria.computeIfAbsent(p.categoria(), k -> new ArrayList<>())
+                        .add(new RegraItem(0, 0, pontosBase(p.percentual())));
+            } else if (promocao instanceof Promocao.DescontoProgressivo p) {
+                progressivos.computeIfAbsent(p.subtotalMinimo().getMoeda(), k -> new ArrayList<>()).add(p);
+            }
+        }
+
+        Map<Moeda, Faixas> faixas = new EnumMap<>(Moeda.class);
+        progressivos.forEach((moeda, lista) -> faixas.put(moeda, Faixas.de(lista)));
+        return new MotorPromocoes(paraArrays(porProduto), paraArrays(porCategoria), faixas);
+    }
+
+    // Por item vale a regra de maior desconto (não acumulam); a faixa progressiva incide depois,
+    // e o cupom do carrinho por último
+    public Resultado avaliar(Carrinho carrinho) {
+        List<ItemCarrinho> itens = carrinho.getItens();
+        if (itens.isEmpty()) {
+            Dinheiro zero = Dinheiro.of(0, Moeda.BRL);
+            return new Resultado(zero, zero, zero, zero);
+        }
+
+        Dinheiro subtotal = null;
+        Dinheiro descontoItens = null;
+        for (ItemCarrinho item : itens) {
+            Dinheiro valorItem = item.getSubtotal();
+            Dinheiro desconto = melhorDesconto(item, valorItem);
+            subtotal = subtotal == null ? valorItem : subtotal.somar(valorItem);
+            descontoItens = descontoItens == null ? desconto : descontoItens.somar(desconto);
+        }
+
+        Dinheiro base = subtotal.subtrair(descontoItens);
+        Faixas faixasMoeda = faixas.get(base.getMoeda());
+        long pontos = faixasMoeda == null ? 0 : faixasMoeda.pontosAtingidos(base);
+        Dinheiro descontoProgressivo = base.fracao(pontos, 10_000);
+        Dinheiro total = base.subtrair(descontoProgressivo).aplicarDesconto(carrinho.getDescontoCupom());
+        return new Resultado(subtotal, descontoItens, descontoProgressivo, total);
+    }
+
+    // Mesmas regras de avaliar, em centavos sobre buffers do chamador e sem o cupom; lança
+    // ArithmeticException quando algum valor não cabe em long (o chamador recorre a avaliar)
+    long baseCentavos(long[] ids, String[] categorias, long[] precos, int[] quantidades, int quantidade,
+                      Moeda moeda) {
+        long base = 0;
+        for (int i = 0; i < quantidade; i++) {
+            long valorItem = Math.multiplyExact(precos[i], quantidades[i]);
+            long desconto = maiorDesconto(porProduto.getOrDefault(ids[i], NENHUMA), precos[i], quantidades[i],
+                    valorItem, 0);
+            if (categorias[i] != null) {
+                desconto = maiorDesconto(porCategoria.getOrDefault(categorias[i], NENHUMA), precos[i],
+                        quantidades[i], valorItem, desconto);
+            }
+            base = Math.addExact(base, valorItem - desconto);
+        }
+        Faixas faixasMoeda = faixas.get(moeda);
+        long pontos = faixasMoeda == null ? 0 : faixasMoeda.pontosAtingidos(base);
+        return base - Dinheiro.dividirHalfEven(Math.multiplyExact(base, pontos), 10_000);
+    }
+
+    public record Resultado(Dinheiro subtotal, Dinheiro descontoPromocoes, Dinheiro descontoProgressivo,
+                            Dinheiro total) {
+    }
+
+    private Dinheiro melhorDesconto(ItemCarrinho item, Dinheiro valorItem) {
+        Produto produto = item.getProduto();
+        Dinheiro melhor = maiorDesconto(porProduto.getOrDefault(produto.getId(), NENHUMA), item, valorItem, null);
+        if (produto.getCategoria() != null) {
+            RegraItem[] regrasCategoria = porCategoria.getOrDefault(produto.getCategoria(), NENHUMA);
+            melhor = maiorDesconto(regrasCategoria, item, valorItem, melhor);
+        }
+        return melhor != null ? melhor : valorItem.fracao(0, 1);
+    }
+
+    private static Dinheiro maiorDesconto(RegraItem[] regras, ItemCarrinho item, Dinheiro valorItem, Dinheiro atual) {
+        for (RegraItem regra : regras) {
+            Dinheiro desconto = regra.desconto(item.getProduto().getPreco(), item.getQuantidade(), valorItem);
+            if (atual == null || desconto.maiorQue(atual)) {
+                atual = desconto;
+            }
+        }
+        return atual;
+    }
+
+    private static long maiorDesconto(RegraItem[] regras, long preco, int quantidade, long valorItem, long atual) {
+        for (RegraItem regra : regras) {
+            atual = Math.max(atual, regra.descontoCentavos(preco, quantidade, valorItem));
+        }
+        return atual;
+    }
+
+    private static long pontosBase(BigDecimal percentual) {
+        return percentual.movePointRight(2).longValueExact();
+    }
+
+    private static <K> Map<K, RegraItem[]> paraArrays(Map<K, List<RegraItem>> regras) {
+        Map<K, RegraItem[]> resultado = new HashMap<>(regras.size() * 2);
+        regras.forEach((chave, lista) -> resultado.put(chave, lista.toArray(NENHUMA)));
+        return resultado;
+    }
+
+    // Leve/pague quando leve > 0; senão percentual em pontos-base (1% = 100)
+    private static final class RegraItem {
+        private final int leve;
+        private final int pague;
+        private final long pontosBase;
+
+        private RegraItem(int leve, int pague, long pontosBase) {
+            this.leve = leve;
+            this.pague = pague;
+            this.pontosBase = pontosBase;
+        }
+
+        private Dinheiro desconto(Dinheiro preco, int quantidade, Dinheiro valorItem) {
+            if (leve > 0) {
+                return preco.multiplicar((quantidade / leve) * (leve - pague));
+            }
+            return valorItem.fracao(pontosBase, 10_000);
+        }
+
+        private long descontoCentavos(long preco, int quantidade, long valorItem) {
+            if (leve > 0) {
+                return Math.multiplyExact(preco, (long) (quantidade / leve) * (leve - pague));
+            }
+            return Dinheiro.dividirHalfEven(Math.multiplyExact(valorItem, pontosBase), 10_000);
+        }
+    }
+
+    private static final class Faixas {
+        private final long[] minimos;
+        private final long[] pontosBase;
+        private final BigDecimal[] minimosGrandes;
+
+        private Faixas(long[] minimos, long[] pontosBase, BigDecimal[] minimosGrandes) {
+            this.minimos = minimos;
+            this.pontosBase = pontosBase;
+            this.minimosGrandes = minimosGrandes;
+        }
+
+        private static Faixas de(List<Promocao.DescontoProgressivo> lista) {
+            List<Promocao.DescontoProgressivo> ordenada = new ArrayList<>(lista);
+            ordenada.sort((a, b) -> a.subtotalMinimo().getValor().compareTo(b.subtotalMinimo().getValor()));
+            long[] minimos = new long[ordenada.size()];
+            long[] pontos = new long[ordenada.size()];
+            BigDecimal[] grandes = new BigDecimal[ordenada.size()];
+            for (int i = 0; i < ordenada.size(); i++) {
+                Dinheiro minimo = ordenada.get(i).subtotalMinimo();
+                minimos[i] = minimo.centavos() >= 0 ? minimo.centavos() : Long.MAX_VALUE;
+                grandes[i] = minimo.getValor();
+                pontos[i] = pontosBase(ordenada.get(i).percentual());
+            }
+            return new Faixas(minimos, pontos, grandes);
+        }
+
+        // Maior faixa cujo mínimo foi atingido, por busca binária
+        private long pontosAtingidos(Dinheiro valor) {
+            if (valor.centavos() >= 0) {
+                return pontosAtingidos(valor.centavos());
+            }
+            int indice = minimosGrandes.length - 1;
+            while (indice >= 0 && minimosGrandes[indice].compareTo(valor.getValor()) > 0) {
+                indice--;
+            }
+            return indice < 0 ? 0 : pontosBase[indice];
+        }
+
+        private long pontosAtingidos(long centavos) {
+            int indice = Arrays.binarySearch(minimos, centavos);
+            if (indice < 0) {
+                indice = -indice - 2;
+            } else {
+                while (indice + 1 < minimos.length && minimos[indice + 1] == centavos) {
+                    indice++;
+                }
+            }
+            return indice < 0 ? 0 : pontosBase[indice];
+        }
+    }
+}
+""";
+        escrever("MotorPromocoes.java", codigo);
+    }
+
+    private static void criarInstantaneoPrecos() throws IOException {
+        String codigo = """
+import java.util.List;
+import java.util.Map;
+
+// Preços vigentes por produto e promoções compiladas usados numa reprecificação; produtos fora do
+// mapa mantêm o preço que já têm no carrinho
+public record InstantaneoPrecos(Map<Long, Dinheiro> precos, MotorPromocoes promocoes) {
+    public InstantaneoPrecos {
+        precos = Map.copyOf(precos);
+        if (promocoes == null) {
+            promocoes = MotorPromocoes.compilar(List.of());
+        }
+    }
+
+    public Dinheiro precoDe(Produto produto) {
+        Dinheiro preco = precos.get(produto.getId());
+        return preco != null ? preco : produto.getPreco();
+    }
+}
+""";
+        escrever("InstantaneoPrecos.java", codigo);
+    }
+
+    private static void criarReprecificacaoLote() throws IOException {
+        String codigo = """
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+// Recalcula o total de muitos carrinhos com um InstantaneoPrecos. O fluxo é lido em lotes que viram
+// tarefas do ForkJoinPool, divididas ao meio até um limiar para que threads ociosas roubem trabalho.
+// Cada thread reaproveita seus buffers: nenhum Dinheiro é criado por item, só um por carrinho.
+public final class ReprecificacaoLote {
+    static final int TAMANHO_LOTE = 4_096;
+    static final int LIMIAR_DIVISAO = 256;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Rascunho> rascunhos = ThreadLocal.withInitial(Rascunho::new);
+
+    public ReprecificacaoLote(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // O destino é chamado em paralelo pelas threads do pool; carrinhos com moedas diferentes contam como falha
+    public Resultado executar(Stream<Carrinho> carrinhos, InstantaneoPrecos instantaneo,
+                              BiConsumer<Carrinho, Dinheiro> destino) {
+        LongAdder processados = new LongAdder();
+        LongAdder falhas = new LongAdder();
+        long inicio = System.nanoTime();
+
+        // Limita os lotes em voo para não trazer o fluxo inteiro para a memória
+        Deque<ForkJoinTask<?>> pendentes = new ArrayDeque<>();
+        Iterator<Carrinho> iterador = carrinhos.iterator();
+        while (iterador.hasNext()) {
+            Carrinho[] lote = new Carrinho[TAMANHO_LOTE];
+            int tamanho = 0;
+            while (tamanho < TAMANHO_LOTE && iterador.hasNext()) {
+                lote[tamanho++] = iterador.next();
+            }
+            pendentes.add(pool.submit(new Tarefa(lote, 0, tamanho, instantaneo, destino, processados, falhas)));
+            if (pendentes.size() > 2 * pool.getParallelism()) {
+                pendentes.poll().join();
+            }
+        }
+        while (!pendentes.isEmpty()) {
+            pendentes.poll().join();
+        }
+
+        return new Resultado(processados.sum(), falhas.sum(), System.nanoTime() - inicio, pool.getParallelism());
+    }
+
+    public record Resultado(long carrinhos, long falhas, long duracaoNanos, int paralelismo) {
+        public double carrinhosPorSegundo() {
+            return duracaoNanos == 0 ? 0 : carrinhos * 1e9 / duracaoNanos;
+        }
+    }
+
+    Dinheiro reprecificar(Carrinho carrinho, InstantaneoPrecos instantaneo) {
+        List<ItemCarrinho> itens = carrinho.getItens();
+        if (itens.isEmpty()) {
+            return carrinho.calcularTotal();
+        }
+
+        Rascunho rascunho = rascunhos.get();
+        rascunho.garantir(itens.size());
+        Moeda moeda = null;
+        boolean cabeEmLong = true;
+        for (int i = 0; i < itens.size(); i++) {
+            ItemCarrinho item = itens.get(i);
+            Produto produto = item.getProduto();
+            Dinheiro preco = instantaneo.precoDe(produto);
+            if (moeda == null) {
+                moeda = preco.getMoeda();
+            } else if (moeda != preco.getMoeda()) {
+                throw new IllegalArgumentException("Moedas incompatíveis");
+            }
+            rascunho.ids[i] = produto.getId();
+            rascunho.categorias[i] = produto.getCategoria();
+            rascunho.precos[i] = preco.centavos();
+            rascunho.quantidades[i] = item.getQuantidade();
+            cabeEmLong &= rascunho.precos[i] >= 0;
+        }
+
+        try {
+            if (cabeEmLong) {
+                long base = instantaneo.promocoes().baseCentavos(rascunho.ids, rascunho.categorias,
+                        rascunho.precos, rascunho.quantidades, itens.size(), moeda);
+                return Dinheiro.deCentavos(base, moeda).aplicarDesconto(carrinho.getDescontoCupom());
+            }
+        } catch (ArithmeticException e) {
+            // Estouro de long: segue pelo caminho com BigDecimal
+        } finally {
+            Arrays.fill(rascunho.categorias, 0, itens.size(), null);
+        }
+        return reprecificarComObjetos(carrinho, instantaneo);
+    }
+
+    // Caminho de referência: reconstrói o carrinho com os novos preços e avalia com objetos
+    static Dinheiro reprecificarComObjetos(Carrinho carrinho, InstantaneoPrecos instantaneo) {
+        Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            edicao.adicionarItem(new Produto(produto.getId(), produto.getNome(), instantaneo.precoDe(produto),
+                    produto.getCategoria()), item.getQuantidade());
+        }
+        return instantaneo.promocoes().avaliar(edicao.aplicarCupom(carrinho.getDescontoCupom()).congelar()).total();
+    }
+
+    private final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Carrinho[] lote;
+        private final int inicio;
+        private final int fim;
+        private final InstantaneoPrecos instantaneo;
+        private final BiConsumer<Carrinho, Dinheiro> destino;
+        private final LongAdder processados;
+        private final LongAdder falhas;
+
+        private Tarefa(Carrinho[] lote, int inicio, int fim, InstantaneoPrecos instantaneo,
+                       BiConsumer<Carrinho, Dinheiro> destino, LongAdder processados, LongAdder falhas) {
+            this.lote = lote;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.instantaneo = instantaneo;
+            this.destino = destino;
+            this.processados = processados;
+            this.falhas = falhas;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio > LIMIAR_DIVISAO) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new Tarefa(lote, inicio, meio, instantaneo, destino, processados, falhas),
+                        new Tarefa(lote, meio, fim, instantaneo, destino, processados, falhas));
+                return;
+            }
+            for (int i = inicio; i < fim; i++) {
+                Dinheiro total;
+                try {
+                    total = reprecificar(lote[i], instantaneo);
+                } catch (IllegalArgumentException e) {
+                    falhas.increment();
+                    continue;
+                }
+                // Exceções do consumidor não são falhas de reprecificação: sobem para quem chamou
+                destino.accept(lote[i], total);
+                processados.increment();
+            }
+        }
+    }
+
+    private static final class Rascunho {
+        private long[] ids = new long[16];
+        private String[] categorias = new String[16];
+        private long[] precos = new long[16];
+        private int[] quantidades = new int[16];
+
+        private void garantir(int tamanho) {
+            if (ids.length < tamanho) {
+                int novo = Math.max(tamanho, ids.length * 2);
+                ids = new long[novo];
+                categorias = new String[novo];
+                precos = new long[novo];
+                quantidades = new int[novo];
+            }
+        }
+    }
+}
+""";
+        escrever("ReprecificacaoLote.java", codigo);
+    }
+
+    private static void criarBenchmarkReprecificacao() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class BenchmarkReprecificacao {
+    private static final int CARRINHOS = 200_000;
+    private static final int PRODUTOS = 10_000;
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: REPRECIFICAÇÃO EM LOTE ===\\n");
+
+        Random random = new Random(42);
+        Produto[] catalogo = new Produto[PRODUTOS];
+        for (int i = 0; i < PRODUTOS; i++) {
+            catalogo[i] = new Produto((long) i, "Produto " + i,
+                    new Dinheiro((1 + random.nextInt(500)) + "." + (10 + random.nextInt(90)), Moeda.BRL),
+                    "categoria-" + (i % 50));
+        }
+        List<Carrinho> carrinhos = new ArrayList<>(CARRINHOS);
+        for (int c = 0; c < CARRINHOS; c++) {
+            Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+            int itens = 1 + random.nextInt(10);
+            for (int i = 0; i < itens; i++) {
+                edicao.adicionarItem(catalogo[random.nextInt(PRODUTOS)], 1 + random.nextInt(4));
+            }
+            carrinhos.add(edicao.aplicarCupom(new BigDecimal(random.nextInt(3) * 5)).congelar());
+        }
+
+        Map<Long, Dinheiro> novosPrecos = new HashMap<>();
+        for (int i = 0; i < PRODUTOS; i += 10) {
+            novosPrecos.put((long) i, catalogo[i].getPreco().fracao(11, 10));
+        }
+        List<Promocao> promocoes = new ArrayList<>();
+        for (int i = 0; i < PRODUTOS; i += 7) {
+            promocoes.add(i % 2 == 0 ? new Promocao.LevePague(i, 3, 2)
+                    : new Promocao.DescontoProduto(i, new BigDecimal("12.5")));
+        }
+        promocoes.add(new Promocao.DescontoCategoria("categoria-3", new BigDecimal("20")));
+        promocoes.add(new Promocao.DescontoProgressivo(new Dinheiro("1000.00", Moeda.BRL), new BigDecimal("5")));
+        InstantaneoPrecos instantaneo = new InstantaneoPrecos(novosPrecos, MotorPromocoes.compilar(promocoes));
+
+        long inicio = System.nanoTime();
+        long checksumReferencia = 0;
+        for (Carrinho carrinho : carrinhos) {
+            checksumReferencia += ReprecificacaoLote.reprecificarComObjetos(carrinho, instantaneo).hashCode();
+        }
+        double referencia = CARRINHOS * 1e9 / (System.nanoTime() - inicio);
+        System.out.printf("Referência (1 thread, objetos por item): %,.0f carrinhos/s (checksum %d)%n%n",
+                referencia, checksumReferencia);
+
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        double base = 0;
+        for (int paralelismo = 1; paralelismo <= nucleos; paralelismo *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(paralelismo);
+            ReprecificacaoLote job = new ReprecificacaoLote(pool);
+            ReprecificacaoLote.Resultado resultado = null;
+            long[] checksum = new long[1];
+            for (int rodada = 0; rodada < 3; rodada++) {
+                checksum[0] = 0;
+                resultado = job.executar(carrinhos.stream(), instantaneo, (c, total) -> {
+                    synchronized (checksum) {
+                        checksum[0] += total.hashCode();
+                    }
+                });
+            }
+            pool.shutdown();
+            if (paralelismo == 1) {
+                base = resultado.carrinhosPorSegundo();
+            }
+            System.out.printf("%2d thread(s): %,12.0f carrinhos/s  escala %.2fx  falhas %d (checksum %d)%n",
+                    paralelismo, resultado.carrinhosPorSegundo(), resultado.carrinhosPorSegundo() / base,
+                    resultado.falhas(), checksum[0]);
+        }
+    }
+}
+""";
+        escrever("BenchmarkReprecificacao.java", codigo);
+    }
+
+    private static void criarRegistroProdutos() throws IOException {
+        String codigo = """
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Uma instância de Produto por (id, versão), compartilhada por todos os carrinhos que a usam
+public final class RegistroProdutos {
+    // Todas as versões de um id ficam numa só entrada: obter e remover as trocam juntas, num compute
+    private final Map<Long, Versoes> porId = new ConcurrentHashMap<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
+
+    public Produto obter(long id, long versao, Supplier<Produto> criar) {
+        Versoes versoes = porId.get(id);
+        Produto produto = versoes == null ? null : versoes.porVersao().get(versao);
+        if (produto != null) {
+            return produto;
+        }
+        return porId.compute(id, (chave, atuais) -> {
+            if (atuais != null && atuais.porVersao().containsKey(versao)) {
+                return atuais;
+            }
+            Produto novo = criar.get();
+            if (novo.getId() == null || novo.getId() != id) {
+                throw new IllegalArgumentException("Produto criado com id diferente de " + id);
+            }
+            tamanho.incrementAndGet();
+            return Versoes.com(atuais, versao, novo);
+        }).porVersao().get(versao);
+    }
+
+    // Troca um produto recém-decodificado pela instância registrada quando o conteúdo é o mesmo
+    public Produto canonizar(Produto produto) {
+        Versoes versoes = porId.get(produto.getId());
+        Produto registrado = versoes == null ? null : versoes.maisRecente();
+        if (registrado != null && registrado.getNome().equals(produto.getNome())
+                && registrado.getPreco().equals(produto.getPreco())
+                && Objects.equals(registrado.getCategoria(), produto.getCategoria())) {
+            return registrado;
+        }
+        return produto;
+    }
+
+    // Removida a versão mais recente, a canônica passa a ser a maior versão que restou
+    public void remover(long id, long versao) {
+        porId.computeIfPresent(id, (chave, atuais) -> {
+            if (!atuais.porVersao().containsKey(versao)) {
+                return atuais;
+            }
+            tamanho.decrementAndGet();
+            return atuais.sem(versao);
+        });
+    }
+
+    public int tamanho() {
+        return tamanho.get();
+    }
+
+    // Imutável: canonizar e o caminho rápido de obter leem sem trava um conjunto de versões sempre inteiro
+    private record Versoes(NavigableMap<Long, Produto> porVersao) {
+        private static Versoes com(Versoes atuais, long versao, Produto produto) {
+            NavigableMap<Long, Produto> copia = atuais == null ? new TreeMap<>() : new TreeMap<>(atuais.porVersao());
+            copia.put(versao, produto);
+            return new Versoes(copia);
+        }
+
+        // Nulo quando não sobra versão, o que tira o id do mapa
+        private Versoes sem(long versao) {
+            if (porVersao.size() == 1) {
+                return null;
+            }
+            NavigableMap<Long, Produto> copia = new TreeMap<>(porVersao);
+            copia.remove(versao);
+            return new Versoes(copia);
+        }
+
+        private Produto maisRecente() {
+            return porVersao.lastEntry().getValue();
+        }
+    }
+}
+""";
+        escrever("RegistroProdutos.java", codigo);
+    }
+
+    private static void criarBenchmarkFlyweight() throws IOException {
+        String codigo = """
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BenchmarkFlyweight {
+    private static final int PRODUTOS = 100_000;
+    private static final int ITENS_POR_CARRINHO = 3;
+
+    public static void main(String[] args) {
+        int quantidadeCarrinhos = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("=== BENCHMARK: FLYWEIGHT DE PRODUTO E DINHEIRO ===\\n");
+
+        RegistroProdutos registro = new RegistroProdutos();
+        Random random = new Random(3);
+        for (int i = 0; i < PRODUTOS; i++) {
+            long id = i;
+            String preco = random.nextInt(120) + "." + (10 + random.nextInt(90));
+            registro.obter(id, 1, () -> new Produto(id, "Produto " + id, Dinheiro.of(preco, Moeda.BRL),
+                    "categoria-" + (id % 40)));
+        }
+
+        long semFlyweight = medir(quantidadeCarrinhos, null, registro);
+        long comFlyweight = medir(quantidadeCarrinhos, registro, registro);
+        System.out.printf("%,d carrinhos de %d itens sobre catálogo de %,d produtos:%n",
+                quantidadeCarrinhos, ITENS_POR_CARRINHO, PRODUTOS);
+        System.out.printf("  sem flyweight: %8.1f MB (%.0f B/carrinho)%n",
+                semFlyweight / 1e6, (double) semFlyweight / quantidadeCarrinhos);
+        System.out.printf("  com flyweight: %8.1f MB (%.0f B/carrinho)%n",
+                comFlyweight / 1e6, (double) comFlyweight / quantidadeCarrinhos);
+        System.out.printf("  redução:       %8.1f%%%n", 100.0 * (semFlyweight - comFlyweight) / semFlyweight);
+    }
+
+    // Carrinhos montados como chegam do armazém de sessões: decodificados do formato binário
+    private static long medir(int quantidadeCarrinhos, RegistroProdutos canonizador, RegistroProdutos catalogo) {
+        Random random = new Random(5);
+        long base = heapUsado();
+        List<Carrinho> carrinhos = new ArrayList<>(quantidadeCarrinhos);
+        for (int c = 0; c < quantidadeCarrinhos; c++) {
+            Carrinho carrinho = new Carrinho();
+            for (int i = 0; i < ITENS_POR_CARRINHO; i++) {
+                long id = random.nextInt(PRODUTOS);
+                carrinho = carrinho.adicionarItem(catalogo.obter(id, 1, null), 1 + random.nextInt(3));
+            }
+            byte[] dados = CodecCarrinho.codificar(carrinho);
+            carrinhos.add(canonizador == null ? CodecCarrinho.decodificar(dados)
+                    : CodecCarrinho.decodificar(dados, canonizador));
+        }
+        long usado = heapUsado() - base;
+        if (carrinhos.get(random.nextInt(carrinhos.size())).getItens().isEmpty()) {
+            System.out.println("inesperado");
+        }
+        return usado;
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
 """;
-        Files.writeString(Paths.get("TestesCarrinho.java"), codigo);
+        escrever("BenchmarkFlyweight.java", codigo);
     }
 }
\ No newline at end of file
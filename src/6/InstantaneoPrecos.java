@@ -0,0 +1,18 @@
+import java.util.List;
+import java.util.Map;
+
+// Preços vigentes por produto e promoções compiladas usados numa reprecificação; produtos fora do
+// mapa mantêm o preço que já têm no carrinho
+public record InstantaneoPrecos(Map<Long, Dinheiro> precos, MotorPromocoes promocoes) {
+    public InstantaneoPrecos {
+        precos = Map.copyOf(precos);
+        if (promocoes == null) {
+            promocoes = MotorPromocoes.compilar(List.of());
+        }
+    }
+
+    public Dinheiro precoDe(Produto produto) {
+        Dinheiro preco = precos.get(produto.getId());
+        return preco != null ? preco : produto.getPreco();
+    }
+}
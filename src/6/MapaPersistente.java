@@ -0,0 +1,321 @@
+import java.util.List;
+
+public final class MapaPersistente<K, V> {
+    private static final MapaPersistente<?, ?> VAZIO = new MapaPersistente<>(null, 0);
+
+    private final No raiz;
+    private final int tamanho;
+
+    private MapaPersistente(No raiz, int tamanho) {
+        this.raiz = raiz;
+        this.tamanho = tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> MapaPersistente<K, V> vazio() {
+        return (MapaPersistente<K, V>) VAZIO;
+    }
+
+    // Monta o trie de uma vez, distribuindo as chaves por fatias do hash (sem cópias de caminho)
+    public static <K, V> MapaPersistente<K, V> de(List<? extends K> chaves, List<? extends V> valores) {
+        if (chaves.size() != valores.size()) {
+            throw new IllegalArgumentException("Listas de chaves e valores com tamanhos diferentes");
+        }
+        int n = chaves.size();
+        if (n == 0) {
+            return vazio();
+        }
+
+        int[] hashes = new int[n];
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(chaves.get(i));
+            indices[i] = i;
+        }
+        int[] tamanho = new int[1];
+        No raiz = construir(indices, 0, n, new int[n], hashes, chaves.toArray(), valores.toArray(), 0, tamanho);
+        return new MapaPersistente<>(raiz, tamanho[0]);
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V obter(K chave) {
+        return raiz == null ? null : (V) raiz.obter(0, hash(chave), chave);
+    }
+
+    public MapaPersistente<K, V> associar(K chave, V valor) {
+        boolean[] novaFolha = new boolean[1];
+        No atual = raiz == null ? NoBitmap.VAZIO : raiz;
+        No novo = atual.associar(0, hash(chave), chave, valor, novaFolha);
+        if (novo == raiz) {
+            return this;
+        }
+        return new MapaPersistente<>(novo, novaFolha[0] ? tamanho + 1 : tamanho);
+    }
+
+    public MapaPersistente<K, V> remover(K chave) {
+        if (raiz == null) {
+            return this;
+        }
+        No novo = raiz.remover(0, hash(chave), chave);
+        if (novo == raiz) {
+            return this;
+        }
+        return new MapaPersistente<>(novo, tamanho - 1);
+    }
+
+    private static int hash(Object chave) {
+        int h = chave.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private interface No {
+        Object obter(int deslocamento, int hash, Object chave);
+
+        No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha);
+
+        No remover(int deslocamento, int hash, Object chave);
+    }
+
+    // Nó com até 32 posições compactadas por bitmap; pares (chave, valor) ou (null, subnó)
+    private static final class NoBitmap implements No {
+        static final NoBitmap VAZIO = new NoBitmap(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] pares;
+
+        NoBitmap(int bitmap, Object[] pares) {
+            this.bitmap = bitmap;
+            this.pares = pares;
+        }
+
+        @Override
+        public Object obter(int deslocamento, int hash, Object chave) {
+            int bit = bit(hash, deslocamento);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * indice(bit);
+            Object k = pares[i];
+            if (k == null) {
+                return ((No) pares[i + 1]).obter(deslocamento + 5, hash, chave);
+            }
+            return chave.equals(k) ? pares[i + 1] : null;
+        }
+
+        @Override
+        public No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha) {
+            int bit = bit(hash, deslocamento);
+            int i = 2 * indice(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] novos = new Object[pares.length + 2];
+                System.arraycopy(pares, 0, novos, 0, i);
+                novos[i] = chave;
+                novos[i + 1] = valor;
+                System.arraycopy(pares, i, novos, i + 2, pares.length - i);
+                novaFolha[0] = true;
+                return new NoBitmap(bitmap | bit, novos);
+            }
+
+            Object k = pares[i];
+            Object v = pares[i + 1];
+            if (k == null) {
+                No filho = ((No) v).associar(deslocamento + 5, hash, chave, valor, novaFolha);
+                return filho == v ? this : copiar(i + 1, filho);
+            }
+            if (chave.equals(k)) {
+                return v == valor ? this : copiar(i + 1, valor);
+            }
+            novaFolha[0] = true;
+            No filho = criarFilho(deslocamento + 5, k, v, hash, chave, valor);
+            Object[] novos = pares.clone();
+            novos[i] = null;
+            novos[i + 1] = filho;
+            return new NoBitmap(bitmap, novos);
+        }
+
+        @Override
+        public No remover(int deslocamento, int hash, Object chave) {
+            int bit = bit(hash, deslocamento);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * indice(bit);
+            Object k = pares[i];
+            if (k == null) {
+                No filho = (No) pares[i + 1];
+                No novoFilho = filho.remover(deslocamento + 5, hash, chave);
+                if (novoFilho == filho) {
+                    return this;
+                }
+                if (novoFilho != null) {
+                    return copiar(i + 1, novoFilho);
+                }
+            } else if (!chave.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] novos = new Object[pares.length - 2];
+            System.arraycopy(pares, 0, novos, 0, i);
+            System.arraycopy(pares, i + 2, novos, i, pares.length - i - 2);
+            return new NoBitmap(bitmap ^ bit, novos);
+        }
+
+        private NoBitmap copiar(int posicao, Object valor) {
+            Object[] novos = pares.clone();
+            novos[posicao] = valor;
+            return new NoBitmap(bitmap, novos);
+        }
+
+        private int indice(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int deslocamento) {
+            return 1 << ((hash >>> deslocamento) & 31);
+        }
+    }
+
+    // Chaves diferentes com o mesmo hash de 32 bits
+    private static final class NoColisao implements No {
+        final int hash;
+        final Object[] pares;
+
+        NoColisao(int hash, Object[] pares) {
+            this.hash = hash;
+            this.pares = pares;
+        }
+
+        @Override
+        public Object obter(int deslocamento, int hash, Object chave) {
+            int i = procurar(chave);
+            return i < 0 ? null : pares[i + 1];
+        }
+
+        @Override
+        public No associar(int deslocamento, int hash, Object chave, Object valor, boolean[] novaFolha) {
+            if (hash != this.hash) {
+                return new NoBitmap(NoBitmap.bit(this.hash, deslocamento), new Object[]{null, this})
+                        .associar(deslocamento, hash, chave, valor, novaFolha);
+            }
+            int i = procurar(chave);
+            if (i >= 0) {
+                if (pares[i + 1] == valor) {
+                    return this;
+                }
+                Object[] novos = pares.clone();
+                novos[i + 1] = valor;
+                return new NoColisao(hash, novos);
+            }
+            Object[] novos = new Object[pares.length + 2];
+            System.arraycopy(pares, 0, novos, 0, pares.length);
+            novos[pares.length] = chave;
+            novos[pares.length + 1] = valor;
+            novaFolha[0] = true;
+            return new NoColisao(hash, novos);
+        }
+
+        @Override
+        public No remover(int deslocamento, int hash, Object chave) {
+            int i = procurar(chave);
+            if (i < 0) {
+                return this;
+            }
+            if (pares.length == 2) {
+                return null;
+            }
+            Object[] novos = new Object[pares.length - 2];
+            System.arraycopy(pares, 0, novos, 0, i);
+            System.arraycopy(pares, i + 2, novos, i, pares.length - i - 2);
+            return new NoColisao(hash, novos);
+        }
+
+        private int procurar(Object chave) {
+            for (int i = 0; i < pares.length; i += 2) {
+                if (chave.equals(pares[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static No construir(int[] indices, int inicio, int fim, int[] auxiliar, int[] hashes,
+                                Object[] chaves, Object[] valores, int deslocamento, int[] tamanho) {
+        int[] limites = new int[33];
+        for (int i = inicio; i < fim; i++) {
+            limites[((hashes[indices[i]] >>> deslocamento) & 31) + 1]++;
+        }
+        int ocupados = 0;
+        for (int b = 0; b < 32; b++) {
+            if (limites[b + 1] > 0) {
+                ocupados++;
+            }
+            limites[b + 1] += limites[b];
+        }
+
+        // Ordenação estável por fatia: chaves repetidas mantêm a ordem original (a última vence)
+        int[] cursor = limites.clone();
+        for (int i = inicio; i < fim; i++) {
+            int b = (hashes[indices[i]] >>> deslocamento) & 31;
+            auxiliar[inicio + cursor[b]++] = indices[i];
+        }
+        System.arraycopy(auxiliar, inicio, indices, inicio, fim - inicio);
+
+        int bitmap = 0;
+        Object[] pares = new Object[2 * ocupados];
+        int j = 0;
+        for (int b = 0; b < 32; b++) {
+            int s = inicio + limites[b];
+            int e = inicio + limites[b + 1];
+            if (s == e) {
+                continue;
+            }
+            bitmap |= 1 << b;
+            if (e - s == 1) {
+                pares[j] = chaves[indices[s]];
+                pares[j + 1] = valores[indices[s]];
+                tamanho[0]++;
+            } else if (mesmoHash(indices, s, e, hashes)) {
+                NoColisao colisao = new NoColisao(hashes[indices[s]], new Object[0]);
+                boolean[] novaFolha = new boolean[1];
+                for (int i = s; i < e; i++) {
+                    novaFolha[0] = false;
+                    colisao = (NoColisao) colisao.associar(deslocamento, colisao.hash,
+                            chaves[indices[i]], valores[indices[i]], novaFolha);
+                    tamanho[0] += novaFolha[0] ? 1 : 0;
+                }
+                pares[j + 1] = colisao;
+            } else {
+                pares[j + 1] = construir(indices, s, e, auxiliar, hashes, chaves, valores, deslocamento + 5, tamanho);
+            }
+            j += 2;
+        }
+        return new NoBitmap(bitmap, pares);
+    }
+
+    private static boolean mesmoHash(int[] indices, int inicio, int fim, int[] hashes) {
+        for (int i = inicio + 1; i < fim; i++) {
+            if (hashes[indices[i]] != hashes[indices[inicio]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static No criarFilho(int deslocamento, Object chave1, Object valor1, int hash2, Object chave2, Object valor2) {
+        int hash1 = hash(chave1);
+        if (hash1 == hash2) {
+            return new NoColisao(hash1, new Object[]{chave1, valor1, chave2, valor2});
+        }
+        boolean[] ignorado = new boolean[1];
+        return NoBitmap.VAZIO
+                .associar(deslocamento, hash1, chave1, valor1, ignorado)
+                .associar(deslocamento, hash2, chave2, valor2, ignorado);
+    }
+}
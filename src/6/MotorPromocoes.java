@@ -0,0 +1,215 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Plano de avaliação compilado uma vez: regras por item indexadas por produto e por categoria,
+// faixas progressivas ordenadas por moeda. Avaliar um carrinho só visita as regras dos seus itens.
+public final class MotorPromocoes {
+    private static final RegraItem[] NENHUMA = new RegraItem[0];
+
+    private final Map<Long, RegraItem[]> porProduto;
+    private final Map<String, RegraItem[]> porCategoria;
+    private final Map<Moeda, Faixas> faixas;
+
+    private MotorPromocoes(Map<Long, RegraItem[]> porProduto, Map<String, RegraItem[]> porCategoria,
+                           Map<Moeda, Faixas> faixas) {
+        this.porProduto = porProduto;
+        this.porCategoria = porCategoria;
+        this.faixas = faixas;
+    }
+
+    public static MotorPromocoes compilar(Collection<? extends Promocao> promocoes) {
+        Map<Long, List<RegraItem>> porProduto = new HashMap<>();
+        Map<String, List<RegraItem>> porCategoria = new HashMap<>();
+        Map<Moeda, List<Promocao.DescontoProgressivo>> progressivos = new EnumMap<>(Moeda.class);
+
+        for (Promocao promocao : promocoes) {
+            if (promocao instanceof Promocao.LevePague p) {
+                porProduto.computeIfAbsent(p.produtoId(), k -> new ArrayList<>())
+                        .add(new RegraItem(p.leve(), p.pague(), 0));
+            } else if (promocao instanceof Promocao.DescontoProduto p) {
+                porProduto.computeIfAbsent(p.produtoId(), k -> new ArrayList<>())
+                        .add(new RegraItem(0, 0, pontosBase(p.percentual())));
+            } else if (promocao instanceof Promocao.DescontoCategoria p) {
+                porCategoria.computeIfAbsent(p.categoria(), k -> new ArrayList<>())
+                        .add(new RegraItem(0, 0, pontosBase(p.percentual())));
+            } else if (promocao instanceof Promocao.DescontoProgressivo p) {
+                progressivos.computeIfAbsent(p.subtotalMinimo().getMoeda(), k -> new ArrayList<>()).add(p);
+            }
+        }
+
+        Map<Moeda, Faixas> faixas = new EnumMap<>(Moeda.class);
+        progressivos.forEach((moeda, lista) -> faixas.put(moeda, Faixas.de(lista)));
+        return new MotorPromocoes(paraArrays(porProduto), paraArrays(porCategoria), faixas);
+    }
+
+    // Por item vale a regra de maior desconto (não acumulam); a faixa progressiva incide depois,
+    // e o cupom do carrinho por último
+    public Resultado avaliar(Carrinho carrinho) {
+        List<ItemCarrinho> itens = carrinho.getItens();
+        if (itens.isEmpty()) {
+            Dinheiro zero = Dinheiro.of(0, Moeda.BRL);
+            return new Resultado(zero, zero, zero, zero);
+        }
+
+        Dinheiro subtotal = null;
+        Dinheiro descontoItens = null;
+        for (ItemCarrinho item : itens) {
+            Dinheiro valorItem = item.getSubtotal();
+            Dinheiro desconto = melhorDesconto(item, valorItem);
+            subtotal = subtotal == null ? valorItem : subtotal.somar(valorItem);
+            descontoItens = descontoItens == null ? desconto : descontoItens.somar(desconto);
+        }
+
+        Dinheiro base = subtotal.subtrair(descontoItens);
+        Faixas faixasMoeda = faixas.get(base.getMoeda());
+        long pontos = faixasMoeda == null ? 0 : faixasMoeda.pontosAtingidos(base);
+        Dinheiro descontoProgressivo = base.fracao(pontos, 10_000);
+        Dinheiro total = base.subtrair(descontoProgressivo).aplicarDesconto(carrinho.getDescontoCupom());
+        return new Resultado(subtotal, descontoItens, descontoProgressivo, total);
+    }
+
+    // Mesmas regras de avaliar, em centavos sobre buffers do chamador e sem o cupom; lança
+    // ArithmeticException quando algum valor não cabe em long (o chamador recorre a avaliar)
+    long baseCentavos(long[] ids, String[] categorias, long[] precos, int[] quantidades, int quantidade,
+                      Moeda moeda) {
+        long base = 0;
+        for (int i = 0; i < quantidade; i++) {
+            long valorItem = Math.multiplyExact(precos[i], quantidades[i]);
+            long desconto = maiorDesconto(porProduto.getOrDefault(ids[i], NENHUMA), precos[i], quantidades[i],
+                    valorItem, 0);
+            if (categorias[i] != null) {
+                desconto = maiorDesconto(porCategoria.getOrDefault(categorias[i], NENHUMA), precos[i],
+                        quantidades[i], valorItem, desconto);
+            }
+            base = Math.addExact(base, valorItem - desconto);
+        }
+        Faixas faixasMoeda = faixas.get(moeda);
+        long pontos = faixasMoeda == null ? 0 : faixasMoeda.pontosAtingidos(base);
+        return base - Dinheiro.dividirHalfEven(Math.multiplyExact(base, pontos), 10_000);
+    }
+
+    public record Resultado(Dinheiro subtotal, Dinheiro descontoPromocoes, Dinheiro descontoProgressivo,
+                            Dinheiro total) {
+    }
+
+    private Dinheiro melhorDesconto(ItemCarrinho item, Dinheiro valorItem) {
+        Produto produto = item.getProduto();
+        Dinheiro melhor = maiorDesconto(porProduto.getOrDefault(produto.getId(), NENHUMA), item, valorItem, null);
+        if (produto.getCategoria() != null) {
+            RegraItem[] regrasCategoria = porCategoria.getOrDefault(produto.getCategoria(), NENHUMA);
+            melhor = maiorDesconto(regrasCategoria, item, valorItem, melhor);
+        }
+        return melhor != null ? melhor : valorItem.fracao(0, 1);
+    }
+
+    private static Dinheiro maiorDesconto(RegraItem[] regras, ItemCarrinho item, Dinheiro valorItem, Dinheiro atual) {
+        for (RegraItem regra : regras) {
+            Dinheiro desconto = regra.desconto(item.getProduto().getPreco(), item.getQuantidade(), valorItem);
+            if (atual == null || desconto.maiorQue(atual)) {
+                atual = desconto;
+            }
+        }
+        return atual;
+    }
+
+    private static long maiorDesconto(RegraItem[] regras, long preco, int quantidade, long valorItem, long atual) {
+        for (RegraItem regra : regras) {
+            atual = Math.max(atual, regra.descontoCentavos(preco, quantidade, valorItem));
+        }
+        return atual;
+    }
+
+    private static long pontosBase(BigDecimal percentual) {
+        return percentual.movePointRight(2).longValueExact();
+    }
+
+    private static <K> Map<K, RegraItem[]> paraArrays(Map<K, List<RegraItem>> regras) {
+        Map<K, RegraItem[]> resultado = new HashMap<>(regras.size() * 2);
+        regras.forEach((chave, lista) -> resultado.put(chave, lista.toArray(NENHUMA)));
+        return resultado;
+    }
+
+    // Leve/pague quando leve > 0; senão percentual em pontos-base (1% = 100)
+    private static final class RegraItem {
+        private final int leve;
+        private final int pague;
+        private final long pontosBase;
+
+        private RegraItem(int leve, int pague, long pontosBase) {
+            this.leve = leve;
+            this.pague = pague;
+            this.pontosBase = pontosBase;
+        }
+
+        private Dinheiro desconto(Dinheiro preco, int quantidade, Dinheiro valorItem) {
+            if (leve > 0) {
+                return preco.multiplicar((quantidade / leve) * (leve - pague));
+            }
+            return valorItem.fracao(pontosBase, 10_000);
+        }
+
+        private long descontoCentavos(long preco, int quantidade, long valorItem) {
+            if (leve > 0) {
+                return Math.multiplyExact(preco, (long) (quantidade / leve) * (leve - pague));
+            }
+            return Dinheiro.dividirHalfEven(Math.multiplyExact(valorItem, pontosBase), 10_000);
+        }
+    }
+
+    private static final class Faixas {
+        private final long[] minimos;
+        private final long[] pontosBase;
+        private final BigDecimal[] minimosGrandes;
+
+        private Faixas(long[] minimos, long[] pontosBase, BigDecimal[] minimosGrandes) {
+            this.minimos = minimos;
+            this.pontosBase = pontosBase;
+            this.minimosGrandes = minimosGrandes;
+        }
+
+        private static Faixas de(List<Promocao.DescontoProgressivo> lista) {
+            List<Promocao.DescontoProgressivo> ordenada = new ArrayList<>(lista);
+            ordenada.sort((a, b) -> a.subtotalMinimo().getValor().compareTo(b.subtotalMinimo().getValor()));
+            long[] minimos = new long[ordenada.size()];
+            long[] pontos = new long[ordenada.size()];
+            BigDecimal[] grandes = new BigDecimal[ordenada.size()];
+            for (int i = 0; i < ordenada.size(); i++) {
+                Dinheiro minimo = ordenada.get(i).subtotalMinimo();
+                minimos[i] = minimo.centavos() >= 0 ? minimo.centavos() : Long.MAX_VALUE;
+                grandes[i] = minimo.getValor();
+                pontos[i] = pontosBase(ordenada.get(i).percentual());
+            }
+            return new Faixas(minimos, pontos, grandes);
+        }
+
+        // Maior faixa cujo mínimo foi atingido, por busca binária
+        private long pontosAtingidos(Dinheiro valor) {
+            if (valor.centavos() >= 0) {
+                return pontosAtingidos(valor.centavos());
+            }
+            int indice = minimosGrandes.length - 1;
+            while (indice >= 0 && minimosGrandes[indice].compareTo(valor.getValor()) > 0) {
+                indice--;
+            }
+            return indice < 0 ? 0 : pontosBase[indice];
+        }
+
+        private long pontosAtingidos(long centavos) {
+            int indice = Arrays.binarySearch(minimos, centavos);
+            if (indice < 0) {
+                indice = -indice - 2;
+            } else {
+                while (indice + 1 < minimos.length && minimos[indice + 1] == centavos) {
+                    indice++;
+                }
+            }
+            return indice < 0 ? 0 : pontosBase[indice];
+        }
+    }
+}
@@ -2,11 +2,17 @@ public class Produto {
     private final Long id;
     private final String nome;
     private final Dinheiro preco;
+    private final String categoria;
 
     public Produto(Long id, String nome, Dinheiro preco) {
+        this(id, nome, preco, null);
+    }
+
+    public Produto(Long id, String nome, Dinheiro preco, String categoria) {
         this.id = id;
         this.nome = nome;
         this.preco = preco;
+        this.categoria = categoria;
     }
 
     public Long getId() {
@@ -20,4 +26,8 @@ public class Produto {
     public Dinheiro getPreco() {
         return preco;
     }
+
+    public String getCategoria() {
+        return categoria;
+    }
 }
@@ -0,0 +1,43 @@
+import java.math.BigDecimal;
+
+public sealed interface Promocao {
+    // Leve N unidades e pague M: a cada grupo completo de N, N - M saem de graça
+    record LevePague(long produtoId, int leve, int pague) implements Promocao {
+        public LevePague {
+            if (pague <= 0 || leve <= pague) {
+                throw new IllegalArgumentException("Leve/pague exige leve > pague > 0");
+            }
+        }
+    }
+
+    record DescontoProduto(long produtoId, BigDecimal percentual) implements Promocao {
+        public DescontoProduto {
+            validarPercentual(percentual);
+        }
+    }
+
+    record DescontoCategoria(String categoria, BigDecimal percentual) implements Promocao {
+        public DescontoCategoria {
+            if (categoria == null) {
+                throw new IllegalArgumentException("Categoria é obrigatória");
+            }
+            validarPercentual(percentual);
+        }
+    }
+
+    // Desconto sobre o total (após as promoções por item) quando ele atinge o mínimo da faixa
+    record DescontoProgressivo(Dinheiro subtotalMinimo, BigDecimal percentual) implements Promocao {
+        public DescontoProgressivo {
+            validarPercentual(percentual);
+        }
+    }
+
+    private static void validarPercentual(BigDecimal percentual) {
+        if (percentual.signum() <= 0 || percentual.compareTo(new BigDecimal("100")) > 0) {
+            throw new IllegalArgumentException("Percentual de promoção deve estar entre 0 e 100");
+        }
+        if (percentual.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Percentual de promoção aceita no máximo 2 casas decimais");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Uma instância de Produto por (id, versão), compartilhada por todos os carrinhos que a usam
+public final class RegistroProdutos {
+    // Todas as versões de um id ficam numa só entrada: obter e remover as trocam juntas, num compute
+    private final Map<Long, Versoes> porId = new ConcurrentHashMap<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
+
+    public Produto obter(long id, long versao, Supplier<Produto> criar) {
+        Versoes versoes = porId.get(id);
+        Produto produto = versoes == null ? null : versoes.porVersao().get(versao);
+        if (produto != null) {
+            return produto;
+        }
+        return porId.compute(id, (chave, atuais) -> {
+            if (atuais != null && atuais.porVersao().containsKey(versao)) {
+                return atuais;
+            }
+            Produto novo = criar.get();
+            if (novo.getId() == null || novo.getId() != id) {
+                throw new IllegalArgumentException("Produto criado com id diferente de " + id);
+            }
+            tamanho.incrementAndGet();
+            return Versoes.com(atuais, versao, novo);
+        }).porVersao().get(versao);
+    }
+
+    // Troca um produto recém-decodificado pela instância registrada quando o conteúdo é o mesmo
+    public Produto canonizar(Produto produto) {
+        Versoes versoes = porId.get(produto.getId());
+        Produto registrado = versoes == null ? null : versoes.maisRecente();
+        if (registrado != null && registrado.getNome().equals(produto.getNome())
+                && registrado.getPreco().equals(produto.getPreco())
+                && Objects.equals(registrado.getCategoria(), produto.getCategoria())) {
+            return registrado;
+        }
+        return produto;
+    }
+
+    // Removida a versão mais recente, a canônica passa a ser a maior versão que restou
+    public void remover(long id, long versao) {
+        porId.computeIfPresent(id, (chave, atuais) -> {
+            if (!atuais.porVersao().containsKey(versao)) {
+                return atuais;
+            }
+            tamanho.decrementAndGet();
+            return atuais.sem(versao);
+        });
+    }
+
+    public int tamanho() {
+        return tamanho.get();
+    }
+
+    // Imutável: canonizar e o caminho rápido de obter leem sem trava um conjunto de versões sempre inteiro
+    private record Versoes(NavigableMap<Long, Produto> porVersao) {
+        private static Versoes com(Versoes atuais, long versao, Produto produto) {
+            NavigableMap<Long, Produto> copia = atuais == null ? new TreeMap<>() : new TreeMap<>(atuais.porVersao());
+            copia.put(versao, produto);
+            return new Versoes(copia);
+        }
+
+        // Nulo quando não sobra versão, o que tira o id do mapa
+        private Versoes sem(long versao) {
+            if (porVersao.size() == 1) {
+                return null;
+            }
+            NavigableMap<Long, Produto> copia = new TreeMap<>(porVersao);
+            copia.remove(versao);
+            return new Versoes(copia);
+        }
+
+        private Produto maisRecente() {
+            return porVersao.lastEntry().getValue();
+        }
+    }
+}
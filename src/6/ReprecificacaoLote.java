@@ -0,0 +1,173 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+// Recalcula o total de muitos carrinhos com um InstantaneoPrecos. O fluxo é lido em lotes que viram
+// tarefas do ForkJoinPool, divididas ao meio até um limiar para que threads ociosas roubem trabalho.
+// Cada thread reaproveita seus buffers: nenhum Dinheiro é criado por item, só um por carrinho.
+public final class ReprecificacaoLote {
+    static final int TAMANHO_LOTE = 4_096;
+    static final int LIMIAR_DIVISAO = 256;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Rascunho> rascunhos = ThreadLocal.withInitial(Rascunho::new);
+
+    public ReprecificacaoLote(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // O destino é chamado em paralelo pelas threads do pool; carrinhos com moedas diferentes contam como falha
+    public Resultado executar(Stream<Carrinho> carrinhos, InstantaneoPrecos instantaneo,
+                              BiConsumer<Carrinho, Dinheiro> destino) {
+        LongAdder processados = new LongAdder();
+        LongAdder falhas = new LongAdder();
+        long inicio = System.nanoTime();
+
+        // Limita os lotes em voo para não trazer o fluxo inteiro para a memória
+        Deque<ForkJoinTask<?>> pendentes = new ArrayDeque<>();
+        Iterator<Carrinho> iterador = carrinhos.iterator();
+        while (iterador.hasNext()) {
+            Carrinho[] lote = new Carrinho[TAMANHO_LOTE];
+            int tamanho = 0;
+            while (tamanho < TAMANHO_LOTE && iterador.hasNext()) {
+                lote[tamanho++] = iterador.next();
+            }
+            pendentes.add(pool.submit(new Tarefa(lote, 0, tamanho, instantaneo, destino, processados, falhas)));
+            if (pendentes.size() > 2 * pool.getParallelism()) {
+                pendentes.poll().join();
+            }
+        }
+        while (!pendentes.isEmpty()) {
+            pendentes.poll().join();
+        }
+
+        return new Resultado(processados.sum(), falhas.sum(), System.nanoTime() - inicio, pool.getParallelism());
+    }
+
+    public record Resultado(long carrinhos, long falhas, long duracaoNanos, int paralelismo) {
+        public double carrinhosPorSegundo() {
+            return duracaoNanos == 0 ? 0 : carrinhos * 1e9 / duracaoNanos;
+        }
+    }
+
+    Dinheiro reprecificar(Carrinho carrinho, InstantaneoPrecos instantaneo) {
+        List<ItemCarrinho> itens = carrinho.getItens();
+        if (itens.isEmpty()) {
+            return carrinho.calcularTotal();
+        }
+
+        Rascunho rascunho = rascunhos.get();
+        rascunho.garantir(itens.size());
+        Moeda moeda = null;
+        boolean cabeEmLong = true;
+        for (int i = 0; i < itens.size(); i++) {
+            ItemCarrinho item = itens.get(i);
+            Produto produto = item.getProduto();
+            Dinheiro preco = instantaneo.precoDe(produto);
+            if (moeda == null) {
+                moeda = preco.getMoeda();
+            } else if (moeda != preco.getMoeda()) {
+                throw new IllegalArgumentException("Moedas incompatíveis");
+            }
+            rascunho.ids[i] = produto.getId();
+            rascunho.categorias[i] = produto.getCategoria();
+            rascunho.precos[i] = preco.centavos();
+            rascunho.quantidades[i] = item.getQuantidade();
+            cabeEmLong &= rascunho.precos[i] >= 0;
+        }
+
+        try {
+            if (cabeEmLong) {
+                long base = instantaneo.promocoes().baseCentavos(rascunho.ids, rascunho.categorias,
+                        rascunho.precos, rascunho.quantidades, itens.size(), moeda);
+                return Dinheiro.deCentavos(base, moeda).aplicarDesconto(carrinho.getDescontoCupom());
+            }
+        } catch (ArithmeticException e) {
+            // Estouro de long: segue pelo caminho com BigDecimal
+        } finally {
+            Arrays.fill(rascunho.categorias, 0, itens.size(), null);
+        }
+        return reprecificarComObjetos(carrinho, instantaneo);
+    }
+
+    // Caminho de referência: reconstrói o carrinho com os novos preços e avalia com objetos
+    static Dinheiro reprecificarComObjetos(Carrinho carrinho, InstantaneoPrecos instantaneo) {
+        Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+        for (ItemCarrinho item : carrinho.getItens()) {
+            Produto produto = item.getProduto();
+            edicao.adicionarItem(new Produto(produto.getId(), produto.getNome(), instantaneo.precoDe(produto),
+                    produto.getCategoria()), item.getQuantidade());
+        }
+        return instantaneo.promocoes().avaliar(edicao.aplicarCupom(carrinho.getDescontoCupom()).congelar()).total();
+    }
+
+    private final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Carrinho[] lote;
+        private final int inicio;
+        private final int fim;
+        private final InstantaneoPrecos instantaneo;
+        private final BiConsumer<Carrinho, Dinheiro> destino;
+        private final LongAdder processados;
+        private final LongAdder falhas;
+
+        private Tarefa(Carrinho[] lote, int inicio, int fim, InstantaneoPrecos instantaneo,
+                       BiConsumer<Carrinho, Dinheiro> destino, LongAdder processados, LongAdder falhas) {
+            this.lote = lote;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.instantaneo = instantaneo;
+            this.destino = destino;
+            this.processados = processados;
+            this.falhas = falhas;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio > LIMIAR_DIVISAO) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new Tarefa(lote, inicio, meio, instantaneo, destino, processados, falhas),
+                        new Tarefa(lote, meio, fim, instantaneo, destino, processados, falhas));
+                return;
+            }
+            for (int i = inicio; i < fim; i++) {
+                Dinheiro total;
+                try {
+                    total = reprecificar(lote[i], instantaneo);
+                } catch (IllegalArgumentException e) {
+                    falhas.increment();
+                    continue;
+                }
+                // Exceções do consumidor não são falhas de reprecificação: sobem para quem chamou
+                destino.accept(lote[i], total);
+                processados.increment();
+            }
+        }
+    }
+
+    private static final class Rascunho {
+        private long[] ids = new long[16];
+        private String[] categorias = new String[16];
+        private long[] precos = new long[16];
+        private int[] quantidades = new int[16];
+
+        private void garantir(int tamanho) {
+            if (ids.length < tamanho) {
+                int novo = Math.max(tamanho, ids.length * 2);
+                ids = new long[novo];
+                categorias = new String[novo];
+                precos = new long[novo];
+                quantidades = new int[novo];
+            }
+        }
+    }
+}
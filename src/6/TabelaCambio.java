@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Instantâneo imutável das taxas de câmbio. Formato do arquivo, uma taxa por linha:
+//   data de vigência;moeda origem;moeda destino;taxa      ex.: 2026-01-01;USD;BRL;5.4321
+public final class TabelaCambio {
+    // Fatores em ponto fixo com 8 casas: taxas mais precisas são arredondadas ao carregar
+    static final long ESCALA_FATOR = 100_000_000L;
+    private static final int CASAS_FATOR = 8;
+    private static final Moeda[] MOEDAS = Moeda.values();
+
+    private final Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas;
+    // Datas em que alguma taxa passa a valer: entre duas delas, todas as taxas ficam iguais
+    private final NavigableSet<LocalDate> vigencias = new TreeSet<>();
+    // No máximo uma conversão por destino e vigência, por mais datas que sejam pedidas
+    private final Map<Chave, Conversao> conversoes = new ConcurrentHashMap<>();
+
+    private TabelaCambio(Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas) {
+        this.taxas = taxas;
+        for (Map<Moeda, NavigableMap<LocalDate, BigDecimal>> porDestino : taxas.values()) {
+            for (NavigableMap<LocalDate, BigDecimal> historico : porDestino.values()) {
+                vigencias.addAll(historico.keySet());
+            }
+        }
+    }
+
+    public static TabelaCambio carregar(Path arquivo) throws IOException {
+        return de(Files.readAllLines(arquivo, StandardCharsets.UTF_8));
+    }
+
+    public static TabelaCambio de(List<String> linhas) {
+        Map<Moeda, Map<Moeda, NavigableMap<LocalDate, BigDecimal>>> taxas = new EnumMap<>(Moeda.class);
+        for (int i = 0; i < linhas.size(); i++) {
+            String linha = linhas.get(i).strip();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            String[] campos = linha.split(";");
+            if (campos.length != 4) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " da tabela de câmbio inválida: " + linha);
+            }
+            try {
+                LocalDate vigencia = LocalDate.parse(campos[0].strip());
+                Moeda origem = Moeda.valueOf(campos[1].strip());
+                Moeda destino = Moeda.valueOf(campos[2].strip());
+                BigDecimal taxa = new BigDecimal(campos[3].strip());
+                if (taxa.signum() <= 0) {
+                    throw new IllegalArgumentException("Taxa deve ser positiva");
+                }
+                taxas.computeIfAbsent(origem, m -> new EnumMap<>(Moeda.class))
+                        .computeIfAbsent(destino, m -> new TreeMap<>())
+                        .put(vigencia, taxa);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " da tabela de câmbio inválida: "
+                        + e.getMessage(), e);
+            }
+        }
+        return new TabelaCambio(taxas);
+    }
+
+    // Fatores para todas as moedas de origem calculados uma vez e reutilizados pelas datas da mesma vigência
+    public Conversao para(Moeda destino, LocalDate data) {
+        return conversoes.computeIfAbsent(new Chave(destino, vigencias.floor(data)), chave -> {
+            LocalDate consulta = chave.vigencia() == null ? LocalDate.MIN : chave.vigencia();
+            BigDecimal[] taxasPorMoeda = new BigDecimal[MOEDAS.length];
+            for (Moeda origem : MOEDAS) {
+                taxasPorMoeda[origem.ordinal()] = taxa(origem, destino, consulta);
+            }
+            return new Conversao(destino, chave.vigencia(), taxasPorMoeda);
+        });
+    }
+
+    // Taxa direta, inversa ou cruzada por uma moeda intermediária; nula quando não há caminho
+    public BigDecimal taxa(Moeda origem, Moeda destino, LocalDate data) {
+        if (origem == destino) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal direta = taxaDireta(origem, destino, data);
+        if (direta != null) {
+            return direta;
+        }
+        for (Moeda intermediaria : MOEDAS) {
+            if (intermediaria == origem || intermediaria == destino) {
+                continue;
+            }
+            BigDecimal primeira = taxaDireta(origem, intermediaria, data);
+            BigDecimal segunda = taxaDireta(intermediaria, destino, data);
+            if (primeira != null && segunda != null) {
+                return primeira.multiply(segunda);
+            }
+        }
+        return null;
+    }
+
+    private BigDecimal taxaDireta(Moeda origem, Moeda destino, LocalDate data) {
+        BigDecimal taxa = vigente(origem, destino, data);
+        if (taxa != null) {
+            return taxa;
+        }
+        BigDecimal inversa = vigente(destino, origem, data);
+        return inversa == null ? null : BigDecimal.ONE.divide(inversa, CASAS_FATOR + 4, RoundingMode.HALF_EVEN);
+    }
+
+    private BigDecimal vigente(Moeda origem, Moeda destino, LocalDate data) {
+        NavigableMap<LocalDate, BigDecimal> historico =
+                taxas.getOrDefault(origem, Collections.emptyMap()).get(destino);
+        if (historico == null) {
+            return null;
+        }
+        Map.Entry<LocalDate, BigDecimal> entrada = historico.floorEntry(data);
+        return entrada == null ? null : entrada.getValue();
+    }
+
+    // vigencia é nula para datas anteriores a todas as taxas da tabela
+    private record Chave(Moeda destino, LocalDate vigencia) {
+    }
+
+    // Conversão para um destino em uma data: o caminho quente só indexa um long[] pelo ordinal da moeda
+    public static final class Conversao {
+        private final Moeda destino;
+        private final LocalDate vigencia;
+        private final long[] fatores;
+        private final BigDecimal[] taxas;
+
+        private Conversao(Moeda destino, LocalDate vigencia, BigDecimal[] taxas) {
+            this.destino = destino;
+            this.vigencia = vigencia;
+            this.taxas = taxas;
+            this.fatores = new long[taxas.length];
+            for (int i = 0; i < taxas.length; i++) {
+                fatores[i] = taxas[i] == null ? -1
+                        : taxas[i].setScale(CASAS_FATOR, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+            }
+        }
+
+        public Moeda getDestino() {
+            return destino;
+        }
+
+        public BigDecimal getTaxa(Moeda origem) {
+            return taxas[origem.ordinal()];
+        }
+
+        public Dinheiro converter(Dinheiro valor) {
+            if (valor.getMoeda() == destino) {
+                return valor;
+            }
+            long centavos = converterCentavos(valor);
+            if (centavos >= 0) {
+                return Dinheiro.deCentavos(centavos, destino);
+            }
+            BigDecimal fator = BigDecimal.valueOf(fatores[valor.getMoeda().ordinal()], CASAS_FATOR);
+            return new Dinheiro(valor.getValor().multiply(fator), destino);
+        }
+
+        public List<Dinheiro> converter(List<Dinheiro> valores) {
+            List<Dinheiro> convertidos = new ArrayList<>(valores.size());
+            for (Dinheiro valor : valores) {
+                convertidos.add(converter(valor));
+            }
+            return convertidos;
+        }
+
+        // Soma os subtotais já convertidos em centavos e aplica o cupom uma única vez no final
+        public Dinheiro totalizar(Carrinho carrinho) {
+            long total = 0;
+            Dinheiro totalGrande = null;
+            for (ItemCarrinho item : carrinho.getItens()) {
+                Dinheiro subtotal = item.getSubtotal();
+                long centavos = subtotal.getMoeda() == destino ? subtotal.centavos() : converterCentavos(subtotal);
+                long soma = total + centavos;
+                if (totalGrande == null && centavos >= 0 && soma >= 0) {
+                    total = soma;
+                } else {
+                    if (totalGrande == null) {
+                        totalGrande = Dinheiro.deCentavos(total, destino);
+                    }
+                    totalGrande = totalGrande.somar(converter(subtotal));
+                }
+            }
+            Dinheiro resultado = totalGrande != null ? totalGrande : Dinheiro.deCentavos(total, destino);
+            return resultado.aplicarDesconto(carrinho.getDescontoCupom());
+        }
+
+        // -1 quando o valor ou o produto pelo fator não cabem em um long
+        private long converterCentavos(Dinheiro valor) {
+            long fator = fatores[valor.getMoeda().ordinal()];
+            if (fator < 0) {
+                throw new IllegalArgumentException("Sem taxa de câmbio de " + valor.getMoeda() + " para " + destino
+                        + (vigencia == null ? " antes da primeira vigência" : " na vigência de " + vigencia));
+            }
+            long centavos = valor.centavos();
+            if (centavos < 0) {
+                return -1;
+            }
+            long produto = centavos * fator;
+            if (Math.multiplyHigh(centavos, fator) != 0 || produto < 0) {
+                return -1;
+            }
+            return Dinheiro.dividirHalfEven(produto, ESCALA_FATOR);
+        }
+    }
+}
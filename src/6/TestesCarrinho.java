@@ -1,4 +1,21 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class TestesCarrinho {
     public static void main(String[] args) {
@@ -10,6 +27,16 @@ public class TestesCarrinho {
         testValidacoes();
         testOperacoesImutaveis();
         testCupomDesconto();
+        testDinheiroPontoFixo();
+        testCarrinhoGrande();
+        testMoedasMistas();
+        testEdicaoEmLote();
+        testCodecBinario();
+        testArmazemSessoes();
+        testConversaoMoedas();
+        testPromocoes();
+        testReprecificacaoLote();
+        testFlyweights();
 
         System.out.println("\n=========================================");
         System.out.println("✅ TODOS OS TESTES PASSARAM COM SUCESSO!");
@@ -131,4 +158,594 @@ public class TestesCarrinho {
 
         assert total.equals(new Dinheiro("84.44", Moeda.BRL));
     }
+
+    private static void testDinheiroPontoFixo() {
+        System.out.println("\n=== Testando Dinheiro em Ponto Fixo ===");
+
+        for (String valor : new String[]{"0.00", "0.01", "0.05", "0.15", "12.35", "99.99", "1234.56", "2500.00"}) {
+            for (int percentual = 0; percentual <= 30; percentual++) {
+                BigDecimal fator = BigDecimal.ONE.subtract(
+                        new BigDecimal(percentual).divide(new BigDecimal("100"), 4, RoundingMode.HALF_EVEN));
+                BigDecimal esperado = new BigDecimal(valor).multiply(fator).setScale(2, RoundingMode.HALF_EVEN);
+                Dinheiro obtido = new Dinheiro(valor, Moeda.BRL).aplicarDesconto(new BigDecimal(percentual));
+                assert obtido.getValor().equals(esperado) : valor + " com " + percentual + "% = " + obtido;
+            }
+        }
+        System.out.println("✓ Descontos inteiros iguais ao cálculo em BigDecimal (arredondamento bancário)");
+
+        Dinheiro maximo = new Dinheiro(BigDecimal.valueOf(Long.MAX_VALUE, 2), Moeda.BRL);
+        Dinheiro soma = maximo.somar(new Dinheiro("0.01", Moeda.BRL));
+        System.out.println("✓ Soma acima de Long.MAX_VALUE centavos recai em BigDecimal: " + soma);
+        assert soma.getValor().equals(BigDecimal.valueOf(Long.MAX_VALUE, 2).add(new BigDecimal("0.01")));
+
+        Dinheiro triplo = maximo.multiplicar(3);
+        assert triplo.getValor().equals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(new BigDecimal(3)));
+        assert soma.subtrair(new Dinheiro("0.01", Moeda.BRL)).equals(maximo);
+        System.out.println("✓ Valores voltam ao ponto fixo quando cabem em um long");
+    }
+
+    private static void testCarrinhoGrande() {
+        System.out.println("\n=== Testando Carrinho Grande (estrutura persistente) ===");
+        Random random = new Random(42);
+        List<Produto> catalogo = new ArrayList<>();
+        for (long id = 1; id <= 600; id++) {
+            catalogo.add(new Produto(id, "Produto " + id, new Dinheiro(random.nextInt(10_000) + ".99", Moeda.BRL)));
+        }
+
+        // Modelo de referência: lista simples com a mesma semântica de ordem do carrinho
+        List<ItemCarrinho> esperado = new ArrayList<>();
+        List<Carrinho> versoes = new ArrayList<>();
+        List<Integer> tamanhos = new ArrayList<>();
+        Carrinho carrinho = new Carrinho();
+
+        for (int operacao = 0; operacao < 5_000; operacao++) {
+            Produto produto = catalogo.get(random.nextInt(catalogo.size()));
+            int posicao = -1;
+            for (int i = 0; i < esperado.size(); i++) {
+                if (esperado.get(i).getProduto().getId().equals(produto.getId())) {
+                    posicao = i;
+                }
+            }
+
+            if (posicao >= 0 && random.nextInt(3) == 0) {
+                esperado.remove(posicao);
+                carrinho = carrinho.removerItem(produto.getId());
+            } else {
+                int quantidade = 1 + random.nextInt(5);
+                ItemCarrinho item = posicao >= 0
+                        ? esperado.remove(posicao).adicionarQuantidade(quantidade)
+                        : new ItemCarrinho(produto, quantidade);
+                esperado.add(item);
+                carrinho = carrinho.adicionarItem(produto, quantidade);
+            }
+
+            Dinheiro totalEsperado = esperado.stream()
+                    .map(ItemCarrinho::getSubtotal)
+                    .reduce(Dinheiro::somar)
+                    .orElse(new Dinheiro(BigDecimal.ZERO, Moeda.BRL));
+            assert carrinho.calcularTotal().equals(totalEsperado) : "Total divergente na operação " + operacao;
+            assert carrinho.getTotalItens() == esperado.stream().mapToInt(ItemCarrinho::getQuantidade).sum();
+
+            if (operacao % 500 == 0) {
+                versoes.add(carrinho);
+                tamanhos.add(esperado.size());
+            }
+        }
+
+        assert carrinho.getItens().equals(esperado);
+        System.out.println("✓ " + esperado.size() + " itens na mesma ordem do modelo de referência");
+        System.out.println("✓ Total e quantidade incrementais iguais ao recálculo completo em todas as operações");
+
+        for (int i = 0; i < versoes.size(); i++) {
+            assert versoes.get(i).getItens().size() == tamanhos.get(i);
+        }
+        System.out.println("✓ Versões antigas do carrinho permanecem intactas: " + versoes.size());
+
+        try {
+            carrinho.getItens().clear();
+            assert false : "Lista de itens deveria ser imutável";
+        } catch (UnsupportedOperationException e) {
+            System.out.println("✓ Lista de itens continua imutável");
+        }
+    }
+
+    private static void testMoedasMistas() {
+        System.out.println("\n=== Testando Carrinho com Moedas Diferentes ===");
+        Produto livro = new Produto(1L, "Livro", new Dinheiro("80.00", Moeda.BRL));
+        Produto ebook = new Produto(2L, "E-book", new Dinheiro("10.00", Moeda.USD));
+
+        Carrinho carrinho = new Carrinho().adicionarItem(livro, 1).adicionarItem(ebook, 1);
+        try {
+            carrinho.calcularTotal();
+            assert false : "Deveria lançar exceção para moedas diferentes";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Total com moedas diferentes rejeitado: " + e.getMessage());
+        }
+
+        Dinheiro total = carrinho.removerItem(2L).adicionarItem(livro, 1).calcularTotal();
+        System.out.println("✓ Após remover o item em USD: " + total);
+        assert total.equals(new Dinheiro("160.00", Moeda.BRL));
+    }
+
+    private static void testEdicaoEmLote() {
+        System.out.println("\n=== Testando Edição em Lote (paraEdicao/congelar) ===");
+        Random random = new Random(7);
+        Carrinho imutavel = new Carrinho().adicionarItem(new Produto(0L, "Base", new Dinheiro("1.00", Moeda.BRL)), 1);
+        Carrinho.Edicao edicao = imutavel.paraEdicao();
+        Carrinho esperado = imutavel;
+
+        for (int linha = 0; linha < 3_000; linha++) {
+            long id = random.nextInt(800);
+            Produto produto = new Produto(id, "Produto " + id, new Dinheiro((id % 97) + ".45", Moeda.BRL));
+            if (linha % 7 == 0 && esperado.getItens().stream().anyMatch(i -> i.getProduto().getId() == id)) {
+                esperado = esperado.removerItem(id);
+                edicao.removerItem(id);
+            } else {
+                int quantidade = 1 + random.nextInt(3);
+                esperado = esperado.adicionarItem(produto, quantidade);
+                edicao.adicionarItem(produto, quantidade);
+            }
+        }
+        esperado = esperado.aplicarCupom(new BigDecimal("12"));
+        Carrinho congelado = edicao.aplicarCupom(new BigDecimal("12")).congelar();
+
+        assert congelado.getItens().equals(esperado.getItens());
+        assert congelado.calcularTotal().equals(esperado.calcularTotal());
+        assert congelado.getTotalItens() == esperado.getTotalItens();
+        assert imutavel.getTotalItens() == 1;
+        System.out.println("✓ Lote de 3000 linhas igual às operações imutáveis: " + congelado.getItens().size()
+                + " itens, " + congelado.calcularTotal());
+
+        Carrinho depois = congelado.adicionarItem(new Produto(5_000L, "Extra", new Dinheiro("2.00", Moeda.BRL)), 1);
+        assert depois.getTotalItens() == congelado.getTotalItens() + 1;
+        System.out.println("✓ Carrinho congelado segue imutável e operável");
+
+        try {
+            edicao.adicionarItem(new Produto(1L, "X", new Dinheiro("1.00", Moeda.BRL)), 1);
+            assert false : "Edição congelada não deveria aceitar alterações";
+        } catch (IllegalStateException e) {
+            System.out.println("✓ Edição congelada rejeitada: " + e.getMessage());
+        }
+
+        Carrinho.Edicao outraEdicao = new Carrinho().paraEdicao();
+        IllegalStateException[] erro = new IllegalStateException[1];
+        Thread outraThread = new Thread(() -> {
+            try {
+                outraEdicao.aplicarCupom(BigDecimal.ONE);
+            } catch (IllegalStateException e) {
+                erro[0] = e;
+            }
+        });
+        outraThread.start();
+        try {
+            outraThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assert erro[0] != null : "Edição deveria ser restrita à thread dona";
+        System.out.println("✓ Edição usada por outra thread rejeitada: " + erro[0].getMessage());
+    }
+
+    private static void testCodecBinario() {
+        System.out.println("\n=== Testando Codec Binário ===");
+        Carrinho carrinho = new Carrinho()
+                .adicionarItem(new Produto(1L, "Café", new Dinheiro("18.90", Moeda.BRL)), 2)
+                .adicionarItem(new Produto(-7L, "Pão 🥖", new Dinheiro("0.35", Moeda.BRL)), 300)
+                .adicionarItem(new Produto(1L << 40, "Caro", new Dinheiro("92233720368547758.07", Moeda.BRL)), 1)
+                .aplicarCupom(new BigDecimal("12.5"));
+
+        byte[] dados = CodecCarrinho.codificar(carrinho);
+        assert dados.length == CodecCarrinho.tamanhoCodificado(carrinho);
+        Carrinho decodificado = CodecCarrinho.decodificar(dados);
+        assert decodificado.getItens().equals(carrinho.getItens());
+        assert decodificado.getItens().get(1).getProduto().getNome().equals("Pão 🥖");
+        assert decodificado.getDescontoCupom().equals(carrinho.getDescontoCupom());
+        assert decodificado.calcularTotal().equals(carrinho.calcularTotal());
+        System.out.println("✓ Ida e volta preservam itens, nomes, preços e cupom (" + dados.length + " bytes)");
+
+        Carrinho semNome = new Carrinho().adicionarItem(new Produto(5L, null, new Dinheiro("1.00", Moeda.BRL)), 2);
+        byte[] dadosSemNome = CodecCarrinho.codificar(semNome);
+        assert dadosSemNome.length == CodecCarrinho.tamanhoCodificado(semNome);
+        CodecCarrinho.Visao visaoSemNome = new CodecCarrinho.Visao(ByteBuffer.wrap(dadosSemNome));
+        assert visaoSemNome.getTotalItens() == 2 && visaoSemNome.contem(5L);
+        assert visaoSemNome.paraCarrinho().getItens().get(0).getProduto().getNome() == null;
+        assert CodecCarrinho.decodificar(dadosSemNome).getItens().equals(semNome.getItens());
+        // Versão 2: nome como tamanho e UTF-8, sem marcador de nulo
+        Carrinho versao2 = CodecCarrinho.decodificar(new byte[]{2, 0, 1, 0, 1, 10, 1, 'A', 0, 0, 100, 2});
+        assert versao2.getItens().get(0).getProduto().getNome().equals("A");
+        assert versao2.getItens().get(0).getQuantidade() == 2 && versao2.getTotalItens() == 2;
+        System.out.println("✓ Produto sem nome vai e volta como nulo; a versão 2 continua legível");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 + dados.length);
+        buffer.put((byte) 42);
+        CodecCarrinho.codificar(carrinho, buffer);
+        buffer.flip().position(1);
+        CodecCarrinho.Visao visao = new CodecCarrinho.Visao(buffer);
+        assert visao.getQuantidadeDeItens() == 3;
+        assert visao.getTotalItens() == carrinho.getTotalItens();
+        assert visao.contem(-7L) && !visao.contem(7L);
+        assert visao.paraCarrinho() == visao.paraCarrinho();
+        System.out.println("✓ Visão preguiçosa sobre buffer direto: total " + visao.getTotalItens() + " sem decodificar itens");
+
+        Dinheiro grande = new Dinheiro("123456789012345678901234.56", Moeda.EUR);
+        ByteBuffer dinheiro = ByteBuffer.allocate(CodecCarrinho.tamanhoCodificado(grande));
+        CodecCarrinho.codificar(grande, dinheiro);
+        assert !dinheiro.hasRemaining();
+        assert CodecCarrinho.decodificarDinheiro(dinheiro.flip()).equals(grande);
+        System.out.println("✓ Dinheiro acima de long usa BigInteger no codec");
+
+        dados[0] = 99;
+        try {
+            CodecCarrinho.decodificar(dados);
+            assert false : "Versão desconhecida deveria ser rejeitada";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Versão desconhecida rejeitada: " + e.getMessage());
+        }
+        try {
+            CodecCarrinho.decodificar(Arrays.copyOf(CodecCarrinho.codificar(carrinho), 10));
+            assert false : "Dados truncados deveriam ser rejeitados";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Dados truncados rejeitados: " + e.getMessage());
+        }
+    }
+
+    private static void testArmazemSessoes() {
+        System.out.println("\n=== Testando Armazém de Sessões ===");
+        Produto cafe = new Produto(1L, "Café", new Dinheiro("18.90", Moeda.BRL));
+        Produto pao = new Produto(2L, "Pão", new Dinheiro("0.35", Moeda.BRL));
+        long[] agora = {0};
+        Path arquivo;
+        try {
+            arquivo = Files.createTempFile("testes-carrinho", ".derramados");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (ArmazemCarrinhos armazem = new ArmazemCarrinhos(arquivo, Duration.ofMinutes(5),
+                Duration.ofMinutes(30), 4, () -> agora[0])) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        armazem.atualizar("compartilhada", c -> c.adicionarItem(cafe, 1));
+                        armazem.atualizar("sessao-" + i, c -> c.adicionarItem(pao, 1));
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            assert armazem.obter("compartilhada").getTotalItens() == 2_000;
+            assert armazem.obter("sessao-499").getTotalItens() == 4;
+            assert armazem.obter("inexistente").getItens().isEmpty();
+            System.out.println("✓ 4 threads x 500 atualizações sem perdas: "
+                    + armazem.obter("compartilhada").getTotalItens() + " itens na sessão compartilhada");
+
+            agora[0] += Duration.ofMinutes(4).toNanos();
+            armazem.atualizar("ativa", c -> c.adicionarItem(cafe, 2).aplicarCupom(new BigDecimal("10")));
+            agora[0] += Duration.ofMinutes(2).toNanos();
+            assert armazem.varrerOciosos() == 501;
+            ArmazemCarrinhos.Estatisticas estatisticas = armazem.estatisticas();
+            assert estatisticas.quentes() == 1 && estatisticas.compactados() == 501;
+            assert estatisticas.bytesCompactos() > 0;
+            System.out.println("✓ Ociosas compactadas: " + estatisticas);
+
+            agora[0] += Duration.ofMinutes(30).toNanos();
+            armazem.varrerOciosos();
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.derramados() == 502 && estatisticas.bytesCompactos() == 0;
+            System.out.println("✓ Ociosas derramadas em disco: " + estatisticas.bytesEmDisco() + " bytes");
+
+            Carrinho ativa = armazem.obter("ativa");
+            assert ativa.getTotalItens() == 2;
+            assert ativa.calcularTotal().equals(new Dinheiro("34.02", Moeda.BRL));
+            assert armazem.atualizar("sessao-0", c -> c.removerItem(2L)).getItens().isEmpty();
+            armazem.remover("compartilhada");
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.quentes() == 2 && estatisticas.derramados() == 499;
+            assert armazem.obter("compartilhada").getItens().isEmpty();
+            System.out.println("✓ Sessões relidas do disco com cupom e itens preservados");
+
+            // Relidas e removidas deixaram registros mortos; a compactação devolve o espaço
+            long antes = estatisticas.bytesArquivo();
+            assert antes > estatisticas.bytesEmDisco();
+            armazem.compactar();
+            estatisticas = armazem.estatisticas();
+            assert estatisticas.bytesArquivo() == estatisticas.bytesEmDisco() && estatisticas.bytesArquivo() < antes;
+            assert arquivo.toFile().length() == estatisticas.bytesArquivo();
+            for (int i = 1; i < 500; i++) {
+                assert armazem.obter("sessao-" + i).getTotalItens() == 4 : "sessao-" + i;
+            }
+            assert armazem.estatisticas().derramados() == 0 && armazem.estatisticas().bytesEmDisco() == 0;
+            System.out.println("✓ Arquivo compactado de " + antes + " para " + estatisticas.bytesArquivo()
+                    + " bytes; as 499 sessões em disco continuam íntegras");
+        } finally {
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException e) {
+                System.out.println("Aviso: não foi possível remover " + arquivo);
+            }
+        }
+    }
+
+    private static void testConversaoMoedas() {
+        System.out.println("\n=== Testando Conversão de Moedas ===");
+        Path arquivo;
+        try {
+            arquivo = Files.createTempFile("cambio", ".txt");
+            Files.write(arquivo, List.of(
+                    "# data;origem;destino;taxa",
+                    "2026-01-01;USD;BRL;5.00",
+                    "2026-03-01;USD;BRL;5.50",
+                    "2026-01-01;EUR;USD;1.10"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            ConversorMoedas conversor = new ConversorMoedas(arquivo);
+            TabelaCambio.Conversao fevereiro = conversor.para(Moeda.BRL, LocalDate.of(2026, 2, 15));
+            TabelaCambio.Conversao marco = conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1));
+            Dinheiro dezDolares = new Dinheiro("10.00", Moeda.USD);
+            assert fevereiro.converter(dezDolares).equals(new Dinheiro("50.00", Moeda.BRL));
+            assert marco.converter(dezDolares).equals(new Dinheiro("55.00", Moeda.BRL));
+            assert marco.converter(new Dinheiro("10.00", Moeda.EUR)).equals(new Dinheiro("60.50", Moeda.BRL));
+            assert conversor.para(Moeda.USD, LocalDate.of(2026, 3, 1)).converter(new Dinheiro("11.00", Moeda.BRL))
+                    .equals(new Dinheiro("2.00", Moeda.USD));
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1)) == marco;
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 9, 30)) == marco;
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 1, 1)) == fevereiro;
+            System.out.println("✓ Taxas por vigência, inversa e cruzada (EUR→USD→BRL): 10 EUR = "
+                    + marco.converter(new Dinheiro("10.00", Moeda.EUR)));
+
+            Carrinho misto = new Carrinho()
+                    .adicionarItem(new Produto(1L, "Livro", new Dinheiro("100.00", Moeda.BRL)), 1)
+                    .adicionarItem(new Produto(2L, "Fone", new Dinheiro("20.00", Moeda.USD)), 2)
+                    .aplicarCupom(new BigDecimal("10"));
+            assert misto.calcularTotal(marco).equals(new Dinheiro("288.00", Moeda.BRL));
+            assert marco.converter(List.of(dezDolares, new Dinheiro("1.00", Moeda.BRL)))
+                    .equals(List.of(new Dinheiro("55.00", Moeda.BRL), new Dinheiro("1.00", Moeda.BRL)));
+            System.out.println("✓ Carrinho BRL + USD totalizado em BRL: " + misto.calcularTotal(marco));
+
+            try {
+                conversor.para(Moeda.BRL, LocalDate.of(2025, 12, 31)).converter(dezDolares);
+                assert false : "Data sem taxa vigente deveria ser rejeitada";
+            } catch (IllegalArgumentException e) {
+                System.out.println("✓ Conversão sem taxa vigente rejeitada: " + e.getMessage());
+            }
+
+            TabelaCambio anterior = conversor.tabela();
+            Files.write(arquivo, List.of("2026-01-01;USD;BRL;6.00"));
+            Files.setLastModifiedTime(arquivo, FileTime.fromMillis(
+                    Files.getLastModifiedTime(arquivo).toMillis() + 1_000));
+            assert conversor.recarregarSeAlterado();
+            assert !conversor.recarregarSeAlterado();
+            assert conversor.tabela() != anterior;
+            assert marco.converter(dezDolares).equals(new Dinheiro("55.00", Moeda.BRL));
+            assert conversor.para(Moeda.BRL, LocalDate.of(2026, 3, 1)).converter(dezDolares)
+                    .equals(new Dinheiro("60.00", Moeda.BRL));
+            System.out.println("✓ Recarga troca o instantâneo sem afetar conversões já obtidas");
+
+            try {
+                TabelaCambio.de(List.of("2026-01-01;USD;XYZ;1.0"));
+                assert false : "Moeda desconhecida deveria ser rejeitada";
+            } catch (IllegalArgumentException e) {
+                System.out.println("✓ Linha inválida rejeitada: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException e) {
+                System.out.println("Aviso: não foi possível remover " + arquivo);
+            }
+        }
+    }
+
+    private static void testPromocoes() {
+        System.out.println("\n=== Testando Motor de Promoções ===");
+        Produto cafe = new Produto(1L, "Café", new Dinheiro("10.00", Moeda.BRL), "mercearia");
+        Produto fone = new Produto(2L, "Fone", new Dinheiro("200.00", Moeda.BRL), "eletronicos");
+        Produto livro = new Produto(3L, "Livro", new Dinheiro("50.00", Moeda.BRL));
+
+        List<Promocao> promocoes = new ArrayList<>(List.of(
+                new Promocao.LevePague(1L, 3, 2),
+                new Promocao.DescontoCategoria("mercearia", new BigDecimal("20")),
+                new Promocao.DescontoProduto(2L, new BigDecimal("15")),
+                new Promocao.DescontoCategoria("eletronicos", new BigDecimal("10")),
+                new Promocao.DescontoProgressivo(new Dinheiro("500.00", Moeda.BRL), new BigDecimal("10")),
+                new Promocao.DescontoProgressivo(new Dinheiro("200.00", Moeda.BRL), new BigDecimal("5"))));
+        for (long id = 1_000; id < 20_000; id++) {
+            promocoes.add(new Promocao.DescontoProduto(id, new BigDecimal("50")));
+        }
+        MotorPromocoes motor = MotorPromocoes.compilar(promocoes);
+
+        Carrinho carrinho = new Carrinho()
+                .adicionarItem(cafe, 3)
+                .adicionarItem(fone, 1)
+                .adicionarItem(livro, 2)
+                .aplicarCupom(new BigDecimal("10"));
+        MotorPromocoes.Resultado resultado = motor.avaliar(carrinho);
+        assert resultado.subtotal().equals(new Dinheiro("330.00", Moeda.BRL));
+        assert resultado.descontoPromocoes().equals(new Dinheiro("40.00", Moeda.BRL));
+        assert resultado.descontoProgressivo().equals(new Dinheiro("14.50", Moeda.BRL));
+        assert resultado.total().equals(new Dinheiro("247.95", Moeda.BRL));
+        assert carrinho.calcularTotal(motor).equals(resultado.total());
+        System.out.println("✓ Leve 3 pague 2, produto, categoria, faixa de 5% e cupom: " + resultado);
+
+        Carrinho semPromocao = new Carrinho().adicionarItem(livro, 1);
+        assert motor.avaliar(semPromocao).total().equals(semPromocao.calcularTotal());
+        assert motor.avaliar(new Carrinho().adicionarItem(cafe, 2)).descontoPromocoes()
+                .equals(new Dinheiro("4.00", Moeda.BRL));
+        Carrinho grande = new Carrinho().adicionarItem(fone, 3);
+        assert motor.avaliar(grande).descontoProgressivo().equals(new Dinheiro("51.00", Moeda.BRL));
+        System.out.println("✓ Sem regras aplicáveis o total não muda; faixas escolhem o maior mínimo atingido");
+
+        Carrinho decodificado = CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho));
+        assert decodificado.getItens().get(0).getProduto().getCategoria().equals("mercearia");
+        assert decodificado.getItens().get(2).getProduto().getCategoria() == null;
+        assert motor.avaliar(decodificado).equals(resultado);
+        assert CodecCarrinho.decodificar(new byte[]{1, 0, 1, 0, 0}).getItens().isEmpty();
+        System.out.println("✓ Codec preserva a categoria e ainda lê a versão 1");
+
+        try {
+            new Promocao.LevePague(1L, 2, 2);
+            assert false : "Leve/pague sem brinde deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Regra inválida rejeitada: " + e.getMessage());
+        }
+    }
+
+    private static void testReprecificacaoLote() {
+        System.out.println("\n=== Testando Reprecificação em Lote ===");
+        Random random = new Random(11);
+        Produto[] catalogo = new Produto[300];
+        for (int i = 0; i < catalogo.length; i++) {
+            catalogo[i] = new Produto((long) i, "Produto " + i,
+                    new Dinheiro(random.nextInt(200) + "." + (10 + random.nextInt(90)), Moeda.BRL), "cat-" + (i % 7));
+        }
+        List<Carrinho> carrinhos = new ArrayList<>();
+        for (int c = 0; c < 3_000; c++) {
+            Carrinho.Edicao edicao = new Carrinho().paraEdicao();
+            for (int i = random.nextInt(8); i >= 0; i--) {
+                edicao.adicionarItem(catalogo[random.nextInt(catalogo.length)], 1 + random.nextInt(5));
+            }
+            carrinhos.add(edicao.aplicarCupom(new BigDecimal(random.nextInt(4) * 5)).congelar());
+        }
+        carrinhos.add(new Carrinho()
+                .adicionarItem(catalogo[0], 1)
+                .adicionarItem(new Produto(9_999L, "Importado", new Dinheiro("5.00", Moeda.USD)), 1));
+        carrinhos.add(new Carrinho().adicionarItem(
+                new Produto(8_888L, "Caro", new Dinheiro("92233720368547758.00", Moeda.BRL)), 3));
+
+        Map<Long, Dinheiro> novosPrecos = new HashMap<>();
+        for (int i = 0; i < catalogo.length; i += 3) {
+            novosPrecos.put((long) i, new Dinheiro(i + ".99", Moeda.BRL));
+        }
+        InstantaneoPrecos instantaneo = new InstantaneoPrecos(novosPrecos, MotorPromocoes.compilar(List.of(
+                new Promocao.LevePague(1L, 2, 1),
+                new Promocao.DescontoProduto(2L, new BigDecimal("33.33")),
+                new Promocao.DescontoCategoria("cat-3", new BigDecimal("15")),
+                new Promocao.DescontoProgressivo(new Dinheiro("300.00", Moeda.BRL), new BigDecimal("7.5")))));
+
+        Map<Carrinho, Dinheiro> totais = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ReprecificacaoLote.Resultado resultado = new ReprecificacaoLote(pool)
+                .executar(carrinhos.stream(), instantaneo, totais::put);
+
+        // Erro do destino não pode virar "falha por moedas": chega a quem chamou
+        try {
+            new ReprecificacaoLote(pool).executar(carrinhos.stream(), instantaneo, (carrinho, total) -> {
+                throw new IllegalArgumentException("Destino recusou");
+            });
+            assert false : "Exceção do destino foi engolida";
+        } catch (IllegalArgumentException e) {
+            // O ForkJoinPool pode relançar uma cópia com a original como causa
+            assert e.getMessage().contains("Destino recusou") : e.getMessage();
+        }
+        pool.shutdown();
+
+        assert resultado.carrinhos() == carrinhos.size() - 1 && resultado.falhas() == 1;
+        for (Carrinho carrinho : carrinhos.subList(0, carrinhos.size() - 2)) {
+            assert totais.get(carrinho).equals(ReprecificacaoLote.reprecificarComObjetos(carrinho, instantaneo));
+        }
+        Dinheiro caro = totais.get(carrinhos.get(carrinhos.size() - 1));
+        assert caro.equals(new Dinheiro("255948574022720028.45", Moeda.BRL)) : caro;
+        System.out.printf("✓ %d carrinhos reprecificados em paralelo iguais ao cálculo com objetos "
+                + "(%.0f carrinhos/s, %d falha por moedas diferentes)%n",
+                resultado.carrinhos(), resultado.carrinhosPorSegundo(), resultado.falhas());
+    }
+
+    private static void testFlyweights() {
+        System.out.println("\n=== Testando Flyweights de Produto e Dinheiro ===");
+        assert Dinheiro.of("19.90", Moeda.BRL) == Dinheiro.of(1_990, Moeda.BRL);
+        assert Dinheiro.of("19.90", Moeda.BRL) != Dinheiro.of("19.90", Moeda.USD);
+        assert Dinheiro.of("0.00", Moeda.BRL) == new Carrinho().calcularTotal();
+        assert Dinheiro.of("5.00", Moeda.BRL).somar(Dinheiro.of("5.00", Moeda.BRL)) == Dinheiro.of(1_000, Moeda.BRL);
+        assert Dinheiro.of("100.01", Moeda.BRL) != Dinheiro.of("100.01", Moeda.BRL);
+        assert Dinheiro.of("100.01", Moeda.BRL).equals(new Dinheiro("100.01", Moeda.BRL));
+        System.out.println("✓ Dinheiro.of compartilha valores até 100,00 por moeda");
+
+        RegistroProdutos registro = new RegistroProdutos();
+        Produto[] vistos = new Produto[8];
+        Thread[] threads = new Thread[vistos.length];
+        for (int t = 0; t < threads.length; t++) {
+            int indice = t;
+            threads[t] = new Thread(() -> vistos[indice] = registro.obter(42L, 1,
+                    () -> new Produto(42L, "Caneca", Dinheiro.of("25.00", Moeda.BRL), "casa")));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Produto produto : vistos) {
+            assert produto == vistos[0];
+        }
+        System.out.println("✓ " + threads.length + " threads recebem a mesma instância de (id 42, versão 1)");
+
+        Carrinho carrinho = new Carrinho().adicionarItem(vistos[0], 2);
+        Carrinho decodificado = CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho), registro);
+        assert decodificado.getItens().get(0).getProduto() == vistos[0];
+        assert CodecCarrinho.decodificar(CodecCarrinho.codificar(carrinho)).getItens().get(0).getProduto() != vistos[0];
+
+        Produto versao2 = registro.obter(42L, 2,
+                () -> new Produto(42L, "Caneca", Dinheiro.of("27.00", Moeda.BRL), "casa"));
+        assert registro.obter(42L, 1, null) == vistos[0];
+        assert registro.canonizar(new Produto(42L, "Caneca", Dinheiro.of("27.00", Moeda.BRL), "casa")) == versao2;
+        Produto antigo = new Produto(42L, "Caneca", Dinheiro.of("25.00", Moeda.BRL), "casa");
+        assert registro.canonizar(antigo) == antigo;
+        registro.remover(42L, 2);
+        assert registro.tamanho() == 1;
+        // Sem a versão 2, a versão 1 que restou volta a ser a canônica
+        assert registro.canonizar(antigo) == vistos[0];
+        registro.remover(42L, 2);
+        assert registro.tamanho() == 1;
+        System.out.println("✓ Decodificação reaproveita o produto registrado; nova versão passa a ser a canônica");
+
+        Produto[] porThread = new Produto[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int indice = t;
+            threads[t] = new Thread(() -> {
+                for (long versao = 1; versao <= 200; versao++) {
+                    long id = 1_000 + indice % 2;
+                    long v = versao;
+                    porThread[indice] = registro.obter(id, v,
+                            () -> new Produto(id, "Versao " + v, Dinheiro.of(v, Moeda.BRL), "casa"));
+                    if (indice >= 2 && versao > 1) {
+                        registro.remover(id, versao - 1);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (long id = 1_000; id <= 1_001; id++) {
+            Produto ultima = new Produto(id, "Versao 200", Dinheiro.of(200, Moeda.BRL), "casa");
+            assert registro.canonizar(ultima) == registro.obter(id, 200, null);
+        }
+        System.out.println("✓ Registros e remoções concorrentes mantêm a versão mais recente como canônica");
+
+        try {
+            registro.obter(7L, 1, () -> new Produto(8L, "Errado", Dinheiro.of("1.00", Moeda.BRL)));
+            assert false : "Produto com id divergente deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("✓ Id divergente rejeitado: " + e.getMessage());
+        }
+    }
 }
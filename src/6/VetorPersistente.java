@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class VetorPersistente<E> {
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS;
+    private static final int MASCARA = LARGURA - 1;
+    private static final VetorPersistente<?> VAZIO = new VetorPersistente<>(0, 0, new Object[LARGURA]);
+
+    private final int tamanho;
+    private final int deslocamento;
+    private final Object[] raiz;
+
+    private VetorPersistente(int tamanho, int deslocamento, Object[] raiz) {
+        this.tamanho = tamanho;
+        this.deslocamento = deslocamento;
+        this.raiz = raiz;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> VetorPersistente<E> vazio() {
+        return (VetorPersistente<E>) VAZIO;
+    }
+
+    // Monta a árvore de baixo para cima em O(n), sem cópias de caminho
+    public static <E> VetorPersistente<E> de(List<? extends E> elementos) {
+        int tamanho = elementos.size();
+        if (tamanho == 0) {
+            return vazio();
+        }
+
+        List<Object[]> nivel = new ArrayList<>();
+        for (int i = 0; i < tamanho; i += LARGURA) {
+            Object[] folha = new Object[LARGURA];
+            for (int j = i; j < Math.min(i + LARGURA, tamanho); j++) {
+                folha[j - i] = elementos.get(j);
+            }
+            nivel.add(folha);
+        }
+
+        int deslocamento = 0;
+        while (nivel.size() > 1) {
+            List<Object[]> acima = new ArrayList<>();
+            for (int i = 0; i < nivel.size(); i += LARGURA) {
+                Object[] no = new Object[LARGURA];
+                for (int j = i; j < Math.min(i + LARGURA, nivel.size()); j++) {
+                    no[j - i] = nivel.get(j);
+                }
+                acima.add(no);
+            }
+            nivel = acima;
+            deslocamento += BITS;
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, nivel.get(0));
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E obter(int indice) {
+        if (indice < 0 || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de tamanho " + tamanho);
+        }
+        Object[] no = raiz;
+        for (int s = deslocamento; s > 0; s -= BITS) {
+            no = (Object[]) no[(indice >>> s) & MASCARA];
+        }
+        return (E) no[indice & MASCARA];
+    }
+
+    public VetorPersistente<E> definir(int indice, E valor) {
+        if (indice < 0 || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de tamanho " + tamanho);
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, gravar(raiz, deslocamento, indice, valor));
+    }
+
+    public VetorPersistente<E> adicionar(E valor) {
+        if (tamanho == 1 << (deslocamento + BITS)) {
+            Object[] novaRaiz = new Object[LARGURA];
+            novaRaiz[0] = raiz;
+            return new VetorPersistente<>(tamanho + 1, deslocamento + BITS,
+                    gravar(novaRaiz, deslocamento + BITS, tamanho, valor));
+        }
+        return new VetorPersistente<>(tamanho + 1, deslocamento, gravar(raiz, deslocamento, tamanho, valor));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void paraCada(Consumer<? super E> acao) {
+        percorrer(raiz, deslocamento, 0, (Consumer<Object>) acao);
+    }
+
+    private int percorrer(Object[] no, int s, int inicio, Consumer<Object> acao) {
+        int indice = inicio;
+        for (int i = 0; i < LARGURA && indice < tamanho; i++) {
+            if (s == 0) {
+                acao.accept(no[i]);
+                indice++;
+            } else {
+                indice = percorrer((Object[]) no[i], s - BITS, indice, acao);
+            }
+        }
+        return indice;
+    }
+
+    // Copia apenas o caminho da raiz até a folha alterada; o resto da árvore é compartilhado
+    private static Object[] gravar(Object[] no, int s, int indice, Object valor) {
+        Object[] copia = no == null ? new Object[LARGURA] : no.clone();
+        if (s == 0) {
+            copia[indice & MASCARA] = valor;
+        } else {
+            int filho = (indice >>> s) & MASCARA;
+            copia[filho] = gravar((Object[]) copia[filho], s - BITS, indice, valor);
+        }
+        return copia;
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Function;
+
+public class BenchmarkRepositorios {
+    private static final int RODADAS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("=== BENCHMARK: REPOSITORIO GENERICO x ESPECIALIZADO (" + quantidade + " produtos) ===\n");
+
+        IRepository<Produto, Long> generico = new InMemoryRepository<>();
+        ProdutoRepository especializado = new ProdutoRepository();
+        for (int i = 0; i < quantidade; i++) {
+            Produto produto = new Produto((long) i, "Produto " + (i % 1000), new BigDecimal(i % 10_000 + ".90"));
+            generico.salvar(produto);
+            especializado.salvar(produto);
+        }
+
+        assert especializado.buscar(42L).getNome().equals("Produto 42");
+        assert especializado.buscarPorNome("Produto 7").size() == (quantidade + 992) / 1000;
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medirBusca("  busca generica (Long)", quantidade, () -> {
+                long soma = 0;
+                for (long id = 0; id < quantidade; id++) {
+                    soma += generico.buscarPorId(id).get().getId();
+                }
+                return soma;
+            });
+            medirBusca("  busca especializada (long)", quantidade, () -> {
+                long soma = 0;
+                for (long id = 0; id < quantidade; id++) {
+                    soma += especializado.buscar(id).getId();
+                }
+                return soma;
+            });
+            medirSerializacaoGenerica(generico, quantidade);
+            medirSerializacaoEspecializada(especializado, quantidade);
+        }
+    }
+
+    private interface Tarefa {
+        long executar();
+    }
+
+    private static void medirBusca(String rotulo, int quantidade, Tarefa tarefa) {
+        long inicio = System.nanoTime();
+        long resultado = tarefa.executar();
+        long duracao = System.nanoTime() - inicio;
+        System.out.printf("%-34s %7.1f ns/op (checksum %d)%n", rotulo, (double) duracao / quantidade, resultado);
+    }
+
+    private static void medirSerializacaoGenerica(IRepository<Produto, Long> repo, int quantidade) throws IOException {
+        Function<Produto, Object[]> linhas = new RegistroCampos<Produto>()
+                .registrar("id", Produto::getId)
+                .registrar("nome", Produto::getNome)
+                .registrar("preco", Produto::getPreco)
+                .projecao("id", "nome", "preco");
+
+        long inicio = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream saida = new ObjectOutputStream(bytes)) {
+            List<Object[]> projetadas = repo.projetar(linhas);
+            for (Object[] linha : projetadas) {
+                saida.writeUnshared(linha);
+            }
+        }
+        long duracao = System.nanoTime() - inicio;
+        System.out.printf("%-34s %7.1f ns/op %6.1f bytes/entidade%n", "  serializacao generica",
+                (double) duracao / quantidade, (double) bytes.size() / quantidade);
+    }
+
+    private static void medirSerializacaoEspecializada(ProdutoRepository repo, int quantidade) {
+        ByteBuffer buffer = ByteBuffer.allocate(quantidade * 64);
+
+        long inicio = System.nanoTime();
+        for (Produto produto : repo.listarTodos()) {
+            ProdutoCodec.escrever(produto, buffer);
+        }
+        long duracao = System.nanoTime() - inicio;
+        int tamanho = buffer.position();
+        System.out.printf("%-34s %7.1f ns/op %6.1f bytes/entidade%n", "  serializacao especializada",
+                (double) duracao / quantidade, (double) tamanho / quantidade);
+
+        buffer.flip();
+        Produto primeiro = ProdutoCodec.ler(buffer);
+        assert repo.buscar(primeiro.getId()).getPreco().equals(primeiro.getPreco());
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public interface Compactador<T> {
+    Object compactar(T entidade);
+    T materializar(Object compacto);
+
+    // Lê o campo direto da forma compacta, com o mesmo valor do getter de mesmo nome da entidade.
+    // Nulo quando o compactador não conhece o campo: o repositório materializa a entidade.
+    default Function<Object, ?> leitor(String campo) {
+        return null;
+    }
+
+    default ToLongFunction<Object> leitorLong(String campo) {
+        return null;
+    }
+
+    static <T> Compactador<T> identidade() {
+        return new Compactador<>() {
+            @Override
+            public Object compactar(T entidade) {
+                return entidade;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T materializar(Object compacto) {
+                return (T) compacto;
+            }
+        };
+    }
+}
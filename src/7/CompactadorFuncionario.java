@@ -0,0 +1,32 @@
+import java.util.function.Function;
+
+public class CompactadorFuncionario implements Compactador<Funcionario> {
+    private final DicionarioStrings departamentos = new DicionarioStrings();
+
+    private record FuncionarioCompacto(String id, String nome, int departamento) {
+    }
+
+    @Override
+    public Object compactar(Funcionario funcionario) {
+        return new FuncionarioCompacto(
+                funcionario.getId(),
+                funcionario.getNome(),
+                departamentos.codificar(funcionario.getDepartamento()));
+    }
+
+    @Override
+    public Funcionario materializar(Object compacto) {
+        FuncionarioCompacto f = (FuncionarioCompacto) compacto;
+        return new Funcionario(f.id(), f.nome(), departamentos.decodificar(f.departamento()));
+    }
+
+    @Override
+    public Function<Object, ?> leitor(String campo) {
+        return switch (campo) {
+            case "id" -> compacto -> ((FuncionarioCompacto) compacto).id();
+            case "nome" -> compacto -> ((FuncionarioCompacto) compacto).nome();
+            case "departamento" -> compacto -> departamentos.decodificar(((FuncionarioCompacto) compacto).departamento());
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,51 @@
+import java.math.BigDecimal;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public class CompactadorProduto implements Compactador<Produto> {
+    private record ProdutoCompacto(long id, String nome, long precoSemEscala, int escala) {
+    }
+
+    @Override
+    public Object compactar(Produto produto) {
+        BigDecimal preco = produto.getPreco();
+        if (produto.getId() == null || preco == null || preco.unscaledValue().bitLength() >= Long.SIZE) {
+            return new Produto(produto.getId(), produto.getNome(), preco);
+        }
+        return new ProdutoCompacto(
+                produto.getId(),
+                produto.getNome(),
+                preco.unscaledValue().longValue(),
+                preco.scale());
+    }
+
+    @Override
+    public Produto materializar(Object compacto) {
+        if (compacto instanceof Produto produto) {
+            return new Produto(produto.getId(), produto.getNome(), produto.getPreco());
+        }
+        ProdutoCompacto p = (ProdutoCompacto) compacto;
+        return new Produto(p.id(), p.nome(), BigDecimal.valueOf(p.precoSemEscala(), p.escala()));
+    }
+
+    // Produtos que não cabem na forma compacta ficam guardados como Produto e são lidos pelos getters
+    @Override
+    public Function<Object, ?> leitor(String campo) {
+        return switch (campo) {
+            case "id" -> compacto -> compacto instanceof ProdutoCompacto p ? (Long) p.id() : ((Produto) compacto).getId();
+            case "nome" -> compacto -> compacto instanceof ProdutoCompacto p ? p.nome() : ((Produto) compacto).getNome();
+            case "preco" -> compacto -> compacto instanceof ProdutoCompacto p
+                    ? BigDecimal.valueOf(p.precoSemEscala(), p.escala())
+                    : ((Produto) compacto).getPreco();
+            default -> null;
+        };
+    }
+
+    @Override
+    public ToLongFunction<Object> leitorLong(String campo) {
+        if (!campo.equals("id")) {
+            return null;
+        }
+        return compacto -> compacto instanceof ProdutoCompacto p ? p.id() : ((Produto) compacto).getId();
+    }
+}
@@ -0,0 +1,166 @@
+import javax.tools.*;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class CompiladorEmMemoria {
+
+    public record Compilacao(boolean sucesso, Map<String, byte[]> classes, Map<String, String> origens,
+                             String diagnosticos) {
+    }
+
+    public record Execucao(boolean sucesso, String saida, String erros) {
+    }
+
+    public static Compilacao compilar(Map<String, String> fontes) {
+        return compilar(fontes, List.of());
+    }
+
+    public static Compilacao compilar(Map<String, String> fontes, List<String> opcoes) {
+        JavaCompiler compilador = ToolProvider.getSystemJavaCompiler();
+        if (compilador == null) {
+            throw new IllegalStateException("Compilador Java indisponível (execute com um JDK, não um JRE)");
+        }
+
+        List<JavaFileObject> unidades = new ArrayList<>();
+        fontes.forEach((arquivo, codigo) -> unidades.add(new FonteEmMemoria(arquivo, codigo)));
+
+        Map<String, byte[]> classes = new HashMap<>();
+        Map<String, String> origens = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnosticos = new DiagnosticCollector<>();
+        StandardJavaFileManager padrao = compilador.getStandardFileManager(diagnosticos, null, StandardCharsets.UTF_8);
+
+        try (JavaFileManager gerenciador = new GerenciadorEmMemoria(padrao, classes, origens)) {
+            List<String> todasOpcoes = new ArrayList<>(List.of("-encoding", "UTF-8"));
+            todasOpcoes.addAll(opcoes);
+            boolean sucesso = compilador.getTask(null, gerenciador, diagnosticos,
+                    todasOpcoes, null, unidades).call();
+            return new Compilacao(sucesso, classes, origens, formatar(diagnosticos));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Execucao executar(Map<String, byte[]> classes, String classePrincipal, boolean assertions) {
+        ClassLoader carregador = new CarregadorEmMemoria(classes);
+        carregador.setDefaultAssertionStatus(assertions);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ByteArrayOutputStream erros = new ByteArrayOutputStream();
+        PrintStream outOriginal = System.out;
+        PrintStream errOriginal = System.err;
+        boolean sucesso = true;
+
+        try (PrintStream out = new PrintStream(saida, true, StandardCharsets.UTF_8);
+             PrintStream err = new PrintStream(erros, true, StandardCharsets.UTF_8)) {
+            System.setOut(out);
+            System.setErr(err);
+            try {
+                Method main = carregador.loadClass(classePrincipal).getMethod("main", String[].class);
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                sucesso = false;
+                e.getCause().printStackTrace(err);
+            } catch (ReflectiveOperationException e) {
+                sucesso = false;
+                e.printStackTrace(err);
+            }
+        } finally {
+            System.setOut(outOriginal);
+            System.setErr(errOriginal);
+        }
+
+        return new Execucao(sucesso,
+                saida.toString(StandardCharsets.UTF_8),
+                erros.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String formatar(DiagnosticCollector<JavaFileObject> diagnosticos) {
+        StringBuilder texto = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> d : diagnosticos.getDiagnostics()) {
+            String arquivo = d.getSource() == null ? "" : d.getSource().getName() + ":" + d.getLineNumber() + ": ";
+            texto.append(arquivo).append(d.getKind()).append(": ")
+                    .append(d.getMessage(Locale.getDefault())).append(System.lineSeparator());
+        }
+        return texto.toString();
+    }
+
+    private static class FonteEmMemoria extends SimpleJavaFileObject {
+        private final String arquivo;
+        private final String codigo;
+
+        FonteEmMemoria(String arquivo, String codigo) {
+            super(URI.create("string:///" + arquivo), Kind.SOURCE);
+            this.arquivo = arquivo;
+            this.codigo = codigo;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return codigo;
+        }
+    }
+
+    private static class ClasseEmMemoria extends SimpleJavaFileObject {
+        private final String nome;
+        private final Map<String, byte[]> destino;
+
+        ClasseEmMemoria(String nome, Map<String, byte[]> destino) {
+            super(URI.create("bytes:///" + nome.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.nome = nome;
+            this.destino = destino;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    destino.put(nome, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static class GerenciadorEmMemoria extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes;
+        private final Map<String, String> origens;
+
+        GerenciadorEmMemoria(StandardJavaFileManager padrao, Map<String, byte[]> classes,
+                             Map<String, String> origens) {
+            super(padrao);
+            this.classes = classes;
+            this.origens = origens;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location local, String nome, JavaFileObject.Kind tipo,
+                                                   FileObject irmao) {
+            if (irmao instanceof FonteEmMemoria fonte) {
+                origens.put(nome, fonte.arquivo);
+            }
+            return new ClasseEmMemoria(nome, classes);
+        }
+    }
+
+    private static class CarregadorEmMemoria extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        CarregadorEmMemoria(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String nome) throws ClassNotFoundException {
+            byte[] bytes = classes.get(nome);
+            if (bytes == null) {
+                throw new ClassNotFoundException(nome);
+            }
+            return defineClass(nome, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.List;
+
+public record DescricaoEntidade(String nome, Campo id, List<Campo> campos, List<String> indices) {
+
+    public enum TipoCampo {
+        LONG("Long"), STRING("String"), BIG_DECIMAL("BigDecimal");
+
+        private final String tipoJava;
+
+        TipoCampo(String tipoJava) {
+            this.tipoJava = tipoJava;
+        }
+
+        public String getTipoJava() {
+            return tipoJava;
+        }
+    }
+
+    public record Campo(String nome, TipoCampo tipo) {
+        public String getter() {
+            return "get" + Character.toUpperCase(nome.charAt(0)) + nome.substring(1);
+        }
+
+        public String sufixo() {
+            return Character.toUpperCase(nome.charAt(0)) + nome.substring(1);
+        }
+    }
+
+    public DescricaoEntidade {
+        if (id.tipo() == TipoCampo.BIG_DECIMAL) {
+            throw new IllegalArgumentException("ID não pode ser BigDecimal: " + nome);
+        }
+        for (String indice : indices) {
+            Campo campo = campos.stream()
+                    .filter(c -> c.nome().equals(indice))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Campo de índice inexistente: " + indice));
+            if (campo.tipo() != TipoCampo.STRING) {
+                throw new IllegalArgumentException("Índices secundários só suportam campos String: " + indice);
+            }
+        }
+        campos = List.copyOf(campos);
+        indices = List.copyOf(indices);
+    }
+
+    public Campo campo(String nomeCampo) {
+        return campos.stream().filter(c -> c.nome().equals(nomeCampo)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Códigos nunca são liberados: use só em campos de poucos valores distintos, como departamento.
+// Em campos como nome, com um valor por entidade, o dicionário ocupa mais que as próprias Strings
+// e cresce para sempre conforme entidades entram e saem.
+public class DicionarioStrings {
+    private final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[] valores = new String[16];
+    private int tamanho;
+
+    public int codificar(String valor) {
+        if (valor == null) {
+            return -1;
+        }
+        Integer codigo = codigos.get(valor);
+        return codigo != null ? codigo : registrar(valor);
+    }
+
+    public String decodificar(int codigo) {
+        return codigo < 0 ? null : valores[codigo];
+    }
+
+    public String canonico(String valor) {
+        return decodificar(codificar(valor));
+    }
+
+    public int tamanho() {
+        return codigos.size();
+    }
+
+    private synchronized int registrar(String valor) {
+        Integer existente = codigos.get(valor);
+        if (existente != null) {
+            return existente;
+        }
+        String[] atuais = valores;
+        if (tamanho == atuais.length) {
+            atuais = Arrays.copyOf(atuais, atuais.length * 2);
+        }
+        atuais[tamanho] = valor;
+        valores = atuais;
+        codigos.put(valor, tamanho);
+        return tamanho++;
+    }
+}
@@ -1,4 +1,6 @@
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 public class ExemploUso {
@@ -42,6 +44,20 @@ public class ExemploUso {
         System.out.println("\nListando todos os funcionarios:");
         funcionarioRepo.listarTodos().forEach(f -> System.out.println("  - " + f));
 
+        System.out.println("\nProjetando apenas id e nome:");
+        List<ResumoEntidade<Long>> resumos = produtoRepo.projetar(p -> new ResumoEntidade<>(p.getId(), p.getNome()));
+        resumos.forEach(r -> System.out.println("  - " + r));
+
+        long[] ids = produtoRepo.projetarLong(Produto::getId);
+        System.out.println("IDs dos produtos: " + Arrays.toString(ids));
+
+        RegistroCampos<Funcionario> camposFuncionario = new RegistroCampos<Funcionario>()
+                .registrar("id", Funcionario::getId)
+                .registrar("nome", Funcionario::getNome)
+                .registrar("departamento", Funcionario::getDepartamento);
+        funcionarioRepo.projetar(camposFuncionario.projecao("nome", "departamento"))
+                .forEach(linha -> System.out.println("  - " + Arrays.toString(linha)));
+
         System.out.println("\nTestando remocao com ID inexistente...");
         try {
             produtoRepo.remover(999L);
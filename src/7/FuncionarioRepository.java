@@ -0,0 +1,97 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class FuncionarioRepository implements IRepository<Funcionario, String> {
+    private final StampedLock trava = new StampedLock();
+    private final IndiceFuncionarioPorDepartamento indiceDepartamento = new IndiceFuncionarioPorDepartamento();
+    private final Map<String, Funcionario> dados = new ConcurrentHashMap<>();
+
+    @Override
+    public void salvar(Funcionario entidade) {
+        long carimbo = trava.writeLock();
+        try {
+            Funcionario anterior = dados.put(entidade.getId(), entidade);
+            if (anterior != null) {
+                desindexar(anterior);
+            }
+            indexar(entidade);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    @Override
+    public Optional<Funcionario> buscarPorId(String id) {
+        return Optional.ofNullable(dados.get(id));
+    }
+
+    @Override
+    public List<Funcionario> listarTodos() {
+        return new ArrayList<>(dados.values());
+    }
+
+    @Override
+    public void remover(String id) {
+        long carimbo = trava.writeLock();
+        try {
+            Funcionario removido = dados.remove(id);
+            if (removido == null) {
+                throw new EntidadeNaoEncontradaException("Entidade com ID " + id + " não encontrada");
+            }
+            desindexar(removido);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    // Percorre os valores sob a trava de leitura, sem a cópia de listarTodos: nenhuma escrita muda o mapa no meio
+    @Override
+    public <R> List<R> projetar(Function<? super Funcionario, ? extends R> projecao) {
+        long carimbo = trava.readLock();
+        try {
+            List<R> resultado = new ArrayList<>(dados.size());
+            for (Funcionario entidade : dados.values()) {
+                resultado.add(projecao.apply(entidade));
+            }
+            return Collections.unmodifiableList(resultado);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super Funcionario> campo) {
+        long carimbo = trava.readLock();
+        try {
+            long[] resultado = new long[dados.size()];
+            int i = 0;
+            for (Funcionario entidade : dados.values()) {
+                resultado[i++] = campo.applyAsLong(entidade);
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    private void indexar(Funcionario entidade) {
+        indiceDepartamento.adicionar(entidade);
+    }
+
+    private void desindexar(Funcionario entidade) {
+        indiceDepartamento.remover(entidade);
+    }
+
+    public List<Funcionario> buscarPorDepartamento(String departamento) {
+        long carimbo = trava.readLock();
+        try {
+            return indiceDepartamento.buscar(departamento);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+}
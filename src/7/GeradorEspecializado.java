@@ -0,0 +1,484 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GeradorEspecializado {
+
+    public static Map<String, String> gerar(DescricaoEntidade descricao) {
+        Map<String, String> fontes = new LinkedHashMap<>();
+        fontes.put(descricao.nome() + "Repository.java", gerarRepositorio(descricao));
+        for (String indice : descricao.indices()) {
+            DescricaoEntidade.Campo campo = descricao.campo(indice);
+            fontes.put(nomeIndice(descricao, campo) + ".java", gerarIndice(descricao, campo));
+        }
+        fontes.put(descricao.nome() + "Codec.java", gerarCodec(descricao));
+        return fontes;
+    }
+
+    private static String nomeIndice(DescricaoEntidade descricao, DescricaoEntidade.Campo campo) {
+        return "Indice" + descricao.nome() + "Por" + campo.sufixo();
+    }
+
+    private static String gerarRepositorio(DescricaoEntidade d) {
+        boolean idLong = d.id().tipo() == DescricaoEntidade.TipoCampo.LONG;
+        String tipoId = d.id().tipo().getTipoJava();
+
+        StringBuilder campos = new StringBuilder();
+        StringBuilder adicionarIndices = new StringBuilder();
+        StringBuilder removerIndices = new StringBuilder();
+        StringBuilder consultas = new StringBuilder();
+        for (String indice : d.indices()) {
+            DescricaoEntidade.Campo campo = d.campo(indice);
+            String classe = nomeIndice(d, campo);
+            String atributo = "indice" + campo.sufixo();
+            campos.append("    private final ").append(classe).append(' ').append(atributo)
+                    .append(" = new ").append(classe).append("();\n");
+            adicionarIndices.append("        ").append(atributo).append(".adicionar(entidade);\n");
+            removerIndices.append("        ").append(atributo).append(".remover(entidade);\n");
+            consultas.append("""
+
+    public List<$E> buscarPor$S(String $C) {
+        long carimbo = trava.readLock();
+        try {
+            return $A.buscar($C);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+""".replace("$S", campo.sufixo()).replace("$C", campo.nome()).replace("$A", atributo));
+        }
+
+        String armazenamento = idLong ? ARMAZENAMENTO_LONG : ARMAZENAMENTO_MAPA;
+        return ("""
+import java.util.*;
+$IMPORTSimport java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class $ERepository implements IRepository<$E, $ID> {
+    private final StampedLock trava = new StampedLock();
+$CAMPOS$ARMAZENAMENTO
+    private void indexar($E entidade) {
+$ADICIONAR    }
+
+    private void desindexar($E entidade) {
+$REMOVER    }
+$CONSULTAS}
+""")
+                .replace("$IMPORTS", idLong ? "" : "import java.util.concurrent.ConcurrentHashMap;\n")
+                .replace("$CAMPOS", campos)
+                .replace("$ARMAZENAMENTO", armazenamento)
+                .replace("$ADICIONAR", adicionarIndices)
+                .replace("$REMOVER", removerIndices)
+                .replace("$CONSULTAS", consultas)
+                .replace("$ID", tipoId)
+                .replace("$E", d.nome());
+    }
+
+    private static final String ARMAZENAMENTO_MAPA = """
+    private final Map<$ID, $E> dados = new ConcurrentHashMap<>();
+
+    @Override
+    public void salvar($E entidade) {
+        long carimbo = trava.writeLock();
+        try {
+            $E anterior = dados.put(entidade.getId(), entidade);
+            if (anterior != null) {
+                desindexar(anterior);
+            }
+            indexar(entidade);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    @Override
+    public Optional<$E> buscarPorId($ID id) {
+        return Optional.ofNullable(dados.get(id));
+    }
+
+    @Override
+    public List<$E> listarTodos() {
+        return new ArrayList<>(dados.values());
+    }
+
+    @Override
+    public void remover($ID id) {
+        long carimbo = trava.writeLock();
+        try {
+            $E removido = dados.remove(id);
+            if (removido == null) {
+                throw new EntidadeNaoEncontradaException("Entidade com ID " + id + " não encontrada");
+            }
+            desindexar(removido);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    // Percorre os valores sob a trava de leitura, sem a cópia de listarTodos: nenhuma escrita muda o mapa no meio
+    @Override
+    public <R> List<R> projetar(Function<? super $E, ? extends R> projecao) {
+        long carimbo = trava.readLock();
+        try {
+            List<R> resultado = new ArrayList<>(dados.size());
+            for ($E entidade : dados.values()) {
+                resultado.add(projecao.apply(entidade));
+            }
+            return Collections.unmodifiableList(resultado);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super $E> campo) {
+        long carimbo = trava.readLock();
+        try {
+            long[] resultado = new long[dados.size()];
+            int i = 0;
+            for ($E entidade : dados.values()) {
+                resultado[i++] = campo.applyAsLong(entidade);
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+""";
+
+    private static final String ARMAZENAMENTO_LONG = """
+    private volatile Tabela tabela = new Tabela(16);
+    private int tamanho;
+
+    // Chaves e valores trocados juntos no redimensionamento: leitores nunca veem arrays de tamanhos diferentes
+    private static final class Tabela {
+        final long[] chaves;
+        final $E[] valores;
+
+        Tabela(int capacidade) {
+            chaves = new long[capacidade];
+            valores = new $E[capacidade];
+        }
+
+        int posicao(long id) {
+            int mascara = valores.length - 1;
+            int i = espalhar(id) & mascara;
+            for (int sondagens = 0; sondagens < valores.length && valores[i] != null; sondagens++) {
+                if (chaves[i] == id) {
+                    return i;
+                }
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public void salvar($E entidade) {
+        long id = entidade.getId();
+        long carimbo = trava.writeLock();
+        try {
+            Tabela t = tabela;
+            int mascara = t.valores.length - 1;
+            int i = espalhar(id) & mascara;
+            while (t.valores[i] != null && t.chaves[i] != id) {
+                i = (i + 1) & mascara;
+            }
+            if (t.valores[i] != null) {
+                desindexar(t.valores[i]);
+            } else {
+                tamanho++;
+            }
+            t.chaves[i] = id;
+            t.valores[i] = entidade;
+            indexar(entidade);
+            if (tamanho * 4 >= t.valores.length * 3) {
+                redimensionar();
+            }
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    public $E buscar(long id) {
+        long carimbo = trava.tryOptimisticRead();
+        $E encontrado = procurar(id);
+        if (trava.validate(carimbo)) {
+            return encontrado;
+        }
+        carimbo = trava.readLock();
+        try {
+            return procurar(id);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public Optional<$E> buscarPorId($ID id) {
+        return Optional.ofNullable(buscar(id));
+    }
+
+    @Override
+    public List<$E> listarTodos() {
+        long carimbo = trava.readLock();
+        try {
+            List<$E> resultado = new ArrayList<>(tamanho);
+            for ($E entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado.add(entidade);
+                }
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public void remover($ID id) {
+        remover(id.longValue());
+    }
+
+    public void remover(long id) {
+        long carimbo = trava.writeLock();
+        try {
+            Tabela t = tabela;
+            int i = t.posicao(id);
+            if (i < 0) {
+                throw new EntidadeNaoEncontradaException("Entidade com ID " + id + " não encontrada");
+            }
+            desindexar(t.valores[i]);
+
+            // Remoção com deslocamento para trás: mantém as sequências de sondagem sem marcadores
+            int mascara = t.valores.length - 1;
+            int vazio = i;
+            for (int j = (i + 1) & mascara; t.valores[j] != null; j = (j + 1) & mascara) {
+                int ideal = espalhar(t.chaves[j]) & mascara;
+                boolean noLugar = vazio <= j ? (vazio < ideal && ideal <= j) : (vazio < ideal || ideal <= j);
+                if (!noLugar) {
+                    t.chaves[vazio] = t.chaves[j];
+                    t.valores[vazio] = t.valores[j];
+                    vazio = j;
+                }
+            }
+            t.valores[vazio] = null;
+            tamanho--;
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    // Percorre as posições da tabela sob a trava de leitura, sem a cópia de listarTodos
+    @Override
+    public <R> List<R> projetar(Function<? super $E, ? extends R> projecao) {
+        long carimbo = trava.readLock();
+        try {
+            List<R> resultado = new ArrayList<>(tamanho);
+            for ($E entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado.add(projecao.apply(entidade));
+                }
+            }
+            return Collections.unmodifiableList(resultado);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super $E> campo) {
+        long carimbo = trava.readLock();
+        try {
+            long[] resultado = new long[tamanho];
+            int i = 0;
+            for ($E entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado[i++] = campo.applyAsLong(entidade);
+                }
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    private $E procurar(long id) {
+        Tabela t = tabela;
+        int i = t.posicao(id);
+        return i < 0 ? null : t.valores[i];
+    }
+
+    private void redimensionar() {
+        Tabela antiga = tabela;
+        Tabela nova = new Tabela(antiga.valores.length * 2);
+        int mascara = nova.valores.length - 1;
+        for (int k = 0; k < antiga.valores.length; k++) {
+            if (antiga.valores[k] != null) {
+                int i = espalhar(antiga.chaves[k]) & mascara;
+                while (nova.valores[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                nova.chaves[i] = antiga.chaves[k];
+                nova.valores[i] = antiga.valores[k];
+            }
+        }
+        tabela = nova;
+    }
+
+    // Mesmo espalhamento de HashMap: IDs sequenciais caem em posições vizinhas (boa localidade de cache)
+    private static int espalhar(long id) {
+        int h = Long.hashCode(id);
+        return h ^ (h >>> 16);
+    }
+""";
+
+    private static String gerarIndice(DescricaoEntidade d, DescricaoEntidade.Campo campo) {
+        return """
+import java.util.*;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class $I {
+    private final Map<String, List<$E>> entradas = new HashMap<>();
+    // Chave com que cada entidade foi indexada: a entidade é mutável e pode ter mudado desde então
+    private final Map<$E, String> chaves = new IdentityHashMap<>();
+
+    void adicionar($E entidade) {
+        String chave = entidade.$G();
+        entradas.computeIfAbsent(chave, k -> new ArrayList<>()).add(entidade);
+        chaves.put(entidade, chave);
+    }
+
+    void remover($E entidade) {
+        if (!chaves.containsKey(entidade)) {
+            return;
+        }
+        String chave = chaves.remove(entidade);
+        List<$E> lista = entradas.get(chave);
+        lista.remove(entidade);
+        if (lista.isEmpty()) {
+            entradas.remove(chave);
+        }
+    }
+
+    public List<$E> buscar(String valor) {
+        List<$E> lista = entradas.get(valor);
+        return lista == null ? List.of() : List.copyOf(lista);
+    }
+}
+"""
+                .replace("$I", nomeIndice(d, campo))
+                .replace("$G", campo.getter())
+                .replace("$E", d.nome());
+    }
+
+    private static String gerarCodec(DescricaoEntidade d) {
+        StringBuilder escrita = new StringBuilder();
+        StringBuilder leitura = new StringBuilder();
+        StringBuilder argumentos = new StringBuilder();
+
+        DescricaoEntidade.Campo[] todos = new DescricaoEntidade.Campo[d.campos().size() + 1];
+        todos[0] = d.id();
+        for (int i = 0; i < d.campos().size(); i++) {
+            todos[i + 1] = d.campos().get(i);
+        }
+
+        for (DescricaoEntidade.Campo campo : todos) {
+            String valor = "entidade." + campo.getter() + "()";
+            switch (campo.tipo()) {
+                case LONG -> {
+                    escrita.append("        buffer.putLong(").append(valor).append(");\n");
+                    leitura.append("        long ").append(campo.nome()).append(" = buffer.getLong();\n");
+                }
+                case STRING -> {
+                    escrita.append("        escreverString(buffer, ").append(valor).append(");\n");
+                    leitura.append("        String ").append(campo.nome()).append(" = lerString(buffer);\n");
+                }
+                case BIG_DECIMAL -> {
+                    escrita.append("        escreverDecimal(buffer, ").append(valor).append(");\n");
+                    leitura.append("        BigDecimal ").append(campo.nome()).append(" = lerDecimal(buffer);\n");
+                }
+            }
+            argumentos.append(argumentos.length() == 0 ? "" : ", ").append(campo.nome());
+        }
+
+        return """
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public final class $ECodec {
+    private static final byte DECIMAL_NULO = 0;
+    private static final byte DECIMAL_LONG = 1;
+    private static final byte DECIMAL_GRANDE = 2;
+
+    private $ECodec() {
+    }
+
+    public static void escrever($E entidade, ByteBuffer buffer) {
+$ESCRITA    }
+
+    public static $E ler(ByteBuffer buffer) {
+$LEITURA        return new $E($ARGUMENTOS);
+    }
+
+    private static void escreverString(ByteBuffer buffer, String valor) {
+        if (valor == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String lerString(ByteBuffer buffer) {
+        int tamanho = buffer.getInt();
+        if (tamanho < 0) {
+            return null;
+        }
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[tamanho];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String valor = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), tamanho,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + tamanho);
+        return valor;
+    }
+
+    private static void escreverDecimal(ByteBuffer buffer, BigDecimal valor) {
+        if (valor == null) {
+            buffer.put(DECIMAL_NULO);
+        } else if (valor.unscaledValue().bitLength() < Long.SIZE) {
+            buffer.put(DECIMAL_LONG).putInt(valor.scale()).putLong(valor.unscaledValue().longValue());
+        } else {
+            byte[] bytes = valor.unscaledValue().toByteArray();
+            buffer.put(DECIMAL_GRANDE).putInt(valor.scale()).putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static BigDecimal lerDecimal(ByteBuffer buffer) {
+        byte tipo = buffer.get();
+        if (tipo == DECIMAL_NULO) {
+            return null;
+        }
+        int escala = buffer.getInt();
+        if (tipo == DECIMAL_LONG) {
+            return BigDecimal.valueOf(buffer.getLong(), escala);
+        }
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), escala);
+    }
+}
+"""
+                .replace("$ESCRITA", escrita)
+                .replace("$LEITURA", leitura)
+                .replace("$ARGUMENTOS", argumentos)
+                .replace("$E", d.nome());
+    }
+}
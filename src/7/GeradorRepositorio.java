@@ -1,9 +1,20 @@
 import java.io.*;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class GeradorRepositorio {
+    private static final Map<String, String> FONTES = new LinkedHashMap<>();
+    private static CacheGeracao cache;
 
     public static void main(String[] args) throws Exception {
+        // --incremental: só reescreve/recompila o que mudou, reaproveitando .gerador-cache
+        if (Arrays.asList(args).contains("--incremental")) {
+            cache = new CacheGeracao(Paths.get(".gerador-cache"));
+        }
+
         System.out.println("Gerando arquivos do Sistema de Repositório...");
 
         // Criar arquivos
@@ -11,47 +22,66 @@ public class GeradorRepositorio {
         criarIRepository();
         criarEntidadeNaoEncontradaException();
         criarInMemoryRepository();
+        criarResumoEntidade();
+        criarRegistroCampos();
+        criarCompactador();
+        criarDicionarioStrings();
+        criarCompactadorFuncionario();
+        criarCompactadorProduto();
+        criarRepositoriosEspecializados();
         criarProduto();
         criarFuncionario();
         criarExemploUso();
+        criarMedicaoCompactacao();
+        criarBenchmarkRepositorios();
+        criarTestesRepositorio();
 
         System.out.println("Arquivos criados com sucesso!");
         System.out.println("Compilando...");
 
-        // Compilar
-        Process compile = Runtime.getRuntime().exec("javac *.java");
-        compile.waitFor();
+        // Compilar em memória, sem iniciar outra JVM
+        CompiladorEmMemoria.Compilacao compilacao = cache != null
+                ? cache.compilar(FONTES)
+                : CompiladorEmMemoria.compilar(FONTES);
 
-        if (compile.exitValue() == 0) {
+        if (compilacao.sucesso()) {
             System.out.println("Compilação bem-sucedida!");
+            if (cache != null) {
+                System.out.println(cache.resumo());
+            }
             System.out.println("Executando exemplo...");
 
-            // Executar exemplo
-            Process run = Runtime.getRuntime().exec("java ExemploUso");
-
-            // Mostrar saída
-            BufferedReader reader = new BufferedReader(new InputStreamReader(run.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+            // Executar exemplo em um ClassLoader novo
+            CompiladorEmMemoria.Execucao execucao =
+                    CompiladorEmMemoria.executar(compilacao.classes(), "ExemploUso", false);
+            System.out.print(execucao.saida());
+            System.err.print(execucao.erros());
+            if (execucao.sucesso()) {
+                System.out.println("\nExecucao concluida com sucesso!");
             }
 
-            // Mostrar erros se houver
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(run.getErrorStream()));
-            while ((line = errorReader.readLine()) != null) {
-                System.err.println(line);
+            // Testes com assertions ligadas: sem elas os asserts não verificam nada
+            System.out.println("Executando testes...");
+            CompiladorEmMemoria.Execucao testes =
+                    CompiladorEmMemoria.executar(compilacao.classes(), "TestesRepositorio", true);
+            System.out.print(testes.saida());
+            System.err.print(testes.erros());
+            if (!testes.sucesso()) {
+                System.err.println("Testes dos repositorios falharam!");
             }
-
-            run.waitFor();
-            System.out.println("\nExecucao concluida com sucesso!");
         } else {
             System.err.println("Erro na compilação!");
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(compile.getErrorStream()));
-            String line;
-            while ((line = errorReader.readLine()) != null) {
-                System.err.println(line);
-            }
+            System.err.print(compilacao.diagnosticos());
+        }
+    }
+
+    private static void escrever(String arquivo, String codigo) throws IOException {
+        if (cache != null) {
+            cache.escrever(Paths.get(arquivo), codigo);
+        } else {
+            Files.writeString(Paths.get(arquivo), codigo);
         }
+        FONTES.put(arquivo, codigo);
     }
 
     private static void criarIdentificavel() throws IOException {
@@ -60,22 +90,26 @@ public interface Identificavel<ID> {
     ID getId();
 }
 """;
-        Files.writeString(Paths.get("Identificavel.java"), codigo);
+        escrever("Identificavel.java", codigo);
     }
 
     private static void criarIRepository() throws IOException {
         String codigo = """
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public interface IRepository<T extends Identificavel<ID>, ID> {
     void salvar(T entidade);
     Optional<T> buscarPorId(ID id);
     List<T> listarTodos();
     void remover(ID id);
+    <R> List<R> projetar(Function<? super T, ? extends R> projecao);
+    long[] projetarLong(ToLongFunction<? super T> campo);
 }
 """;
-        Files.writeString(Paths.get("IRepository.java"), codigo);
+        escrever("IRepository.java", codigo);
     }
 
     private static void criarEntidadeNaoEncontradaException() throws IOException {
@@ -86,30 +120,46 @@ public class EntidadeNaoEncontradaException extends RuntimeException {
     }
 }
 """;
-        Files.writeString(Paths.get("EntidadeNaoEncontradaException.java"), codigo);
+        escrever("EntidadeNaoEncontradaException.java", codigo);
     }
 
     private static void criarInMemoryRepository() throws IOException {
         String codigo = """
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class InMemoryRepository<T extends Identificavel<ID>, ID> implements IRepository<T, ID> {
-    private final Map<ID, T> dados = new ConcurrentHashMap<>();
+    private final Map<ID, Object> dados = new ConcurrentHashMap<>();
+    private final Compactador<T> compactador;
+
+    public InMemoryRepository() {
+        this(Compactador.identidade());
+    }
+
+    public InMemoryRepository(Compactador<T> compactador) {
+        this.compactador = compactador;
+    }
 
     @Override
     public void salvar(T entidade) {
-        dados.put(entidade.getId(), entidade);
+        dados.put(entidade.getId(), compactador.compactar(entidade));
     }
 
     @Override
     public Optional<T> buscarPorId(ID id) {
-        return Optional.ofNullable(dados.get(id));
+        Object compacto = dados.get(id);
+        return compacto == null ? Optional.empty() : Optional.of(compactador.materializar(compacto));
     }
 
     @Override
     public List<T> listarTodos() {
-        return new ArrayList<>(dados.values());
+        List<T> resultado = new ArrayList<>(dados.size());
+        for (Object compacto : dados.values()) {
+            resultado.add(compactador.materializar(compacto));
+        }
+        return resultado;
     }
 
     @Override
@@ -119,9 +169,367 @@ public class InMemoryRepository<T extends Identificavel<ID>, ID> implements IRep
         }
         dados.remove(id);
     }
+
+    @Override
+    public <R> List<R> projetar(Function<? super T, ? extends R> projecao) {
+        Function<Object, ? extends R> direta = projecaoDireta(projecao);
+        List<R> resultado = new ArrayList<>(dados.size());
+        for (Object compacto : dados.values()) {
+            resultado.add(direta != null
+                    ? direta.apply(compacto)
+                    : projecao.apply(compactador.materializar(compacto)));
+        }
+        return Collections.unmodifiableList(resultado);
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super T> campo) {
+        ToLongFunction<Object> direto = campo instanceof RegistroCampos.CampoLong<?> porNome
+                ? compactador.leitorLong(porNome.getCampo())
+                : null;
+        long[] resultado = new long[dados.size()];
+        int i = 0;
+        for (Object compacto : dados.values()) {
+            if (i == resultado.length) {
+                resultado = Arrays.copyOf(resultado, resultado.length * 2 + 1);
+            }
+            resultado[i++] = direto != null
+                    ? direto.applyAsLong(compacto)
+                    : campo.applyAsLong(compactador.materializar(compacto));
+        }
+        return i == resultado.length ? resultado : Arrays.copyOf(resultado, i);
+    }
+
+    // Projeção por nome de campo que o compactador sabe ler na forma compacta: nenhuma entidade é materializada
+    @SuppressWarnings("unchecked")
+    private <R> Function<Object, ? extends R> projecaoDireta(Function<? super T, ? extends R> projecao) {
+        if (!(projecao instanceof RegistroCampos.Projecao<?> porCampos)) {
+            return null;
+        }
+        List<String> campos = porCampos.getCampos();
+        List<Function<Object, ?>> leitores = new ArrayList<>(campos.size());
+        for (String campo : campos) {
+            Function<Object, ?> leitor = compactador.leitor(campo);
+            if (leitor == null) {
+                return null;
+            }
+            leitores.add(leitor);
+        }
+        // Projecao sempre produz Object[], então R é Object[] ou um supertipo
+        return compacto -> {
+            Object[] linha = new Object[leitores.size()];
+            for (int i = 0; i < linha.length; i++) {
+                linha[i] = leitores.get(i).apply(compacto);
+            }
+            return (R) linha;
+        };
+    }
+}
+""";
+        escrever("InMemoryRepository.java", codigo);
+    }
+
+    private static void criarResumoEntidade() throws IOException {
+        String codigo = """
+public record ResumoEntidade<ID>(ID id, String nome) {
+}
+""";
+        escrever("ResumoEntidade.java", codigo);
+    }
+
+    private static void criarRegistroCampos() throws IOException {
+        String codigo = """
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public class RegistroCampos<T> {
+    private final Map<String, Function<? super T, ?>> extratores = new LinkedHashMap<>();
+
+    public RegistroCampos<T> registrar(String campo, Function<? super T, ?> extrator) {
+        extratores.put(campo, extrator);
+        return this;
+    }
+
+    public Set<String> getCampos() {
+        return extratores.keySet();
+    }
+
+    public Projecao<T> projecao(String... campos) {
+        List<Function<? super T, ?>> selecionados = new ArrayList<>(campos.length);
+        for (String campo : campos) {
+            selecionados.add(extrator(campo));
+        }
+        return new Projecao<>(List.of(campos), selecionados);
+    }
+
+    // O campo precisa ter sido registrado com um extrator numérico
+    public CampoLong<T> campoLong(String campo) {
+        return new CampoLong<>(campo, extrator(campo));
+    }
+
+    private Function<? super T, ?> extrator(String campo) {
+        Function<? super T, ?> extrator = extratores.get(campo);
+        if (extrator == null) {
+            throw new IllegalArgumentException("Campo não registrado: " + campo);
+        }
+        return extrator;
+    }
+
+    // Projeção que conhece os nomes dos campos: repositórios compactados podem lê-los sem materializar a entidade
+    public static final class Projecao<T> implements Function<T, Object[]> {
+        private final List<String> campos;
+        private final List<Function<? super T, ?>> extratores;
+
+        private Projecao(List<String> campos, List<Function<? super T, ?>> extratores) {
+            this.campos = campos;
+            this.extratores = extratores;
+        }
+
+        public List<String> getCampos() {
+            return campos;
+        }
+
+        @Override
+        public Object[] apply(T entidade) {
+            Object[] linha = new Object[extratores.size()];
+            for (int i = 0; i < linha.length; i++) {
+                linha[i] = extratores.get(i).apply(entidade);
+            }
+            return linha;
+        }
+    }
+
+    public static final class CampoLong<T> implements ToLongFunction<T> {
+        private final String campo;
+        private final Function<? super T, ?> extrator;
+
+        private CampoLong(String campo, Function<? super T, ?> extrator) {
+            this.campo = campo;
+            this.extrator = extrator;
+        }
+
+        public String getCampo() {
+            return campo;
+        }
+
+        @Override
+        public long applyAsLong(T entidade) {
+            return ((Number) extrator.apply(entidade)).longValue();
+        }
+    }
+}
+""";
+        escrever("RegistroCampos.java", codigo);
+    }
+
+    private static void criarCompactador() throws IOException {
+        String codigo = """
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public interface Compactador<T> {
+    Object compactar(T entidade);
+    T materializar(Object compacto);
+
+    // Lê o campo direto da forma compacta, com o mesmo valor do getter de mesmo nome da entidade.
+    // Nulo quando o compactador não conhece o campo: o repositório materializa a entidade.
+    default Function<Object, ?> leitor(String campo) {
+        return null;
+    }
+
+    default ToLongFunction<Object> leitorLong(String campo) {
+        return null;
+    }
+
+    static <T> Compactador<T> identidade() {
+        return new Compactador<>() {
+            @Override
+            public Object compactar(T entidade) {
+                return entidade;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T materializar(Object compacto) {
+                return (T) compacto;
+            }
+        };
+    }
+}
+""";
+        escrever("Compactador.java", codigo);
+    }
+
+    private static void criarDicionarioStrings() throws IOException {
+        String codigo = """
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Códigos nunca são liberados: use só em campos de poucos valores distintos, como departamento.
+// Em campos como nome, com um valor por entidade, o dicionário ocupa mais que as próprias Strings
+// e cresce para sempre conforme entidades entram e saem.
+public class DicionarioStrings {
+    private final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[] valores = new String[16];
+    private int tamanho;
+
+    public int codificar(String valor) {
+        if (valor == null) {
+            return -1;
+        }
+        Integer codigo = codigos.get(valor);
+        return codigo != null ? codigo : registrar(valor);
+    }
+
+    public String decodificar(int codigo) {
+        return codigo < 0 ? null : valores[codigo];
+    }
+
+    public String canonico(String valor) {
+        return decodificar(codificar(valor));
+    }
+
+    public int tamanho() {
+        return codigos.size();
+    }
+
+    private synchronized int registrar(String valor) {
+        Integer existente = codigos.get(valor);
+        if (existente != null) {
+            return existente;
+        }
+        String[] atuais = valores;
+        if (tamanho == atuais.length) {
+            atuais = Arrays.copyOf(atuais, atuais.length * 2);
+        }
+        atuais[tamanho] = valor;
+        valores = atuais;
+        codigos.put(valor, tamanho);
+        return tamanho++;
+    }
+}
+""";
+        escrever("DicionarioStrings.java", codigo);
+    }
+
+    private static void criarCompactadorFuncionario() throws IOException {
+        String codigo = """
+import java.util.function.Function;
+
+public class CompactadorFuncionario implements Compactador<Funcionario> {
+    private final DicionarioStrings departamentos = new DicionarioStrings();
+
+    private record FuncionarioCompacto(String id, String nome, int departamento) {
+    }
+
+    @Override
+    public Object compactar(Funcionario funcionario) {
+        return new FuncionarioCompacto(
+                funcionario.getId(),
+                funcionario.getNome(),
+                departamentos.codificar(funcionario.getDepartamento()));
+    }
+
+    @Override
+    public Funcionario materializar(Object compacto) {
+        FuncionarioCompacto f = (FuncionarioCompacto) compacto;
+        return new Funcionario(f.id(), f.nome(), departamentos.decodificar(f.departamento()));
+    }
+
+    @Override
+    public Function<Object, ?> leitor(String campo) {
+        return switch (campo) {
+            case "id" -> compacto -> ((FuncionarioCompacto) compacto).id();
+            case "nome" -> compacto -> ((FuncionarioCompacto) compacto).nome();
+            case "departamento" -> compacto -> departamentos.decodificar(((FuncionarioCompacto) compacto).departamento());
+            default -> null;
+        };
+    }
+}
+""";
+        escrever("CompactadorFuncionario.java", codigo);
+    }
+
+    private static void criarCompactadorProduto() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public class CompactadorProduto implements Compactador<Produto> {
+    private record ProdutoCompacto(long id, String nome, long precoSemEscala, int escala) {
+    }
+
+    @Override
+    public Object compactar(Produto produto) {
+        BigDecimal preco = produto.getPreco();
+        if (produto.getId() == null || preco == null || preco.unscaledValue().bitLength() >= Long.SIZE) {
+            return new Produto(produto.getId(), produto.getNome(), preco);
+        }
+        return new ProdutoCompacto(
+                produto.getId(),
+                produto.getNome(),
+                preco.unscaledValue().longValue(),
+                preco.scale());
+    }
+
+    @Override
+    public Produto materializar(Object compacto) {
+        if (compacto instanceof Produto produto) {
+            return new Produto(produto.getId(), produto.getNome(), produto.getPreco());
+        }
+        ProdutoCompacto p = (ProdutoCompacto) compacto;
+        return new Produto(p.id(), p.nome(), BigDecimal.valueOf(p.precoSemEscala(), p.escala()));
+    }
+
+    // Produtos que não cabem na forma compacta ficam guardados como Produto e são lidos pelos getters
+    @Override
+    public Function<Object, ?> leitor(String campo) {
+        return switch (campo) {
+            case "id" -> compacto -> compacto instanceof ProdutoCompacto p ? (Long) p.id() : ((Produto) compacto).getId();
+            case "nome" -> compacto -> compacto instanceof ProdutoCompacto p ? p.nome() : ((Produto) compacto).getNome();
+            case "preco" -> compacto -> compacto instanceof ProdutoCompacto p
+                    ? BigDecimal.valueOf(p.precoSemEscala(), p.escala())
+                    : ((Produto) compacto).getPreco();
+            default -> null;
+        };
+    }
+
+    @Override
+    public ToLongFunction<Object> leitorLong(String campo) {
+        if (!campo.equals("id")) {
+            return null;
+        }
+        return compacto -> compacto instanceof ProdutoCompacto p ? p.id() : ((Produto) compacto).getId();
+    }
 }
 """;
-        Files.writeString(Paths.get("InMemoryRepository.java"), codigo);
+        escrever("CompactadorProduto.java", codigo);
+    }
+
+    private static void criarRepositoriosEspecializados() throws IOException {
+        DescricaoEntidade produto = new DescricaoEntidade("Produto",
+                new DescricaoEntidade.Campo("id", DescricaoEntidade.TipoCampo.LONG),
+                List.of(new DescricaoEntidade.Campo("nome", DescricaoEntidade.TipoCampo.STRING),
+                        new DescricaoEntidade.Campo("preco", DescricaoEntidade.TipoCampo.BIG_DECIMAL)),
+                List.of("nome"));
+        DescricaoEntidade funcionario = new DescricaoEntidade("Funcionario",
+                new DescricaoEntidade.Campo("id", DescricaoEntidade.TipoCampo.STRING),
+                List.of(new DescricaoEntidade.Campo("nome", DescricaoEntidade.TipoCampo.STRING),
+                        new DescricaoEntidade.Campo("departamento", DescricaoEntidade.TipoCampo.STRING)),
+                List.of("departamento"));
+
+        for (DescricaoEntidade descricao : List.of(produto, funcionario)) {
+            for (Map.Entry<String, String> fonte : GeradorEspecializado.gerar(descricao).entrySet()) {
+                escrever(fonte.getKey(), fonte.getValue());
+            }
+        }
     }
 
     private static void criarProduto() throws IOException {
@@ -166,7 +574,7 @@ public class Produto implements Identificavel<Long> {
     }
 }
 """;
-        Files.writeString(Paths.get("Produto.java"), codigo);
+        escrever("Produto.java", codigo);
     }
 
     private static void criarFuncionario() throws IOException {
@@ -209,18 +617,20 @@ public class Funcionario implements Identificavel<String> {
     }
 }
 """;
-        Files.writeString(Paths.get("Funcionario.java"), codigo);
+        escrever("Funcionario.java", codigo);
     }
 
     private static void criarExemploUso() throws IOException {
         String codigo = """
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 public class ExemploUso {
     public static void main(String[] args) {
         System.out.println("=== SISTEMA DE REPOSITORIO GENERICO ===\\n");
-        
+
         // Criando repositórios
         IRepository<Produto, Long> produtoRepo = new InMemoryRepository<>();
         IRepository<Funcionario, String> funcionarioRepo = new InMemoryRepository<>();
@@ -246,7 +656,7 @@ public class ExemploUso {
         if (produtoEncontrado.isPresent()) {
             System.out.println("Produto encontrado: " + produtoEncontrado.get());
         }
-        
+
         Optional<Funcionario> funcionarioEncontrado = funcionarioRepo.buscarPorId("F001");
         if (funcionarioEncontrado.isPresent()) {
             System.out.println("Funcionario encontrado: " + funcionarioEncontrado.get());
@@ -254,28 +664,466 @@ public class ExemploUso {
 
         System.out.println("\\nListando todos os produtos:");
         produtoRepo.listarTodos().forEach(p -> System.out.println("  - " + p));
-        
+
         System.out.println("\\nListando todos os funcionarios:");
         funcionarioRepo.listarTodos().forEach(f -> System.out.println("  - " + f));
 
+        System.out.println("\\nProjetando apenas id e nome:");
+        List<ResumoEntidade<Long>> resumos = produtoRepo.projetar(p -> new ResumoEntidade<>(p.getId(), p.getNome()));
+        resumos.forEach(r -> System.out.println("  - " + r));
+
+        long[] ids = produtoRepo.projetarLong(Produto::getId);
+        System.out.println("IDs dos produtos: " + Arrays.toString(ids));
+
+        RegistroCampos<Funcionario> camposFuncionario = new RegistroCampos<Funcionario>()
+                .registrar("id", Funcionario::getId)
+                .registrar("nome", Funcionario::getNome)
+                .registrar("departamento", Funcionario::getDepartamento);
+        funcionarioRepo.projetar(camposFuncionario.projecao("nome", "departamento"))
+                .forEach(linha -> System.out.println("  - " + Arrays.toString(linha)));
+
         System.out.println("\\nTestando remocao com ID inexistente...");
         try {
             produtoRepo.remover(999L);
         } catch (EntidadeNaoEncontradaException e) {
             System.out.println("Erro capturado corretamente: " + e.getMessage());
         }
-        
+
         System.out.println("\\nRemovendo produto existente...");
         produtoRepo.remover(2L); // Remove o mouse
         System.out.println("Produto removido. Total restante: " + produtoRepo.listarTodos().size());
-        
+
         System.out.println("\\nProdutos apos remocao:");
         produtoRepo.listarTodos().forEach(p -> System.out.println("  - " + p));
-        
+
         System.out.println("\\nDemonstracao do repositorio generico concluida!");
     }
 }
 """;
-        Files.writeString(Paths.get("ExemploUso.java"), codigo);
+        escrever("ExemploUso.java", codigo);
     }
-}
\ No newline at end of file
+
+    private static void criarMedicaoCompactacao() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+
+public class MedicaoCompactacao {
+    private static final String[] DEPARTAMENTOS = {"TI", "RH", "Financeiro", "Vendas", "Logistica", "Juridico"};
+    private static final String[] NOMES = {"Joao", "Maria", "Jose", "Ana", "Carlos", "Paula", "Pedro", "Lucia"};
+
+    public static void main(String[] args) {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("=== MEDICAO DE MEMORIA (" + quantidade + " entidades) ===\\n");
+
+        medirFuncionarios("Funcionarios (padrao)", new InMemoryRepository<>(), quantidade);
+        medirFuncionarios("Funcionarios (compacto)", new InMemoryRepository<>(new CompactadorFuncionario()), quantidade);
+        medirProdutos("Produtos (padrao)", new InMemoryRepository<>(), quantidade);
+        medirProdutos("Produtos (compacto)", new InMemoryRepository<>(new CompactadorProduto()), quantidade);
+    }
+
+    private static void medirFuncionarios(String rotulo, IRepository<Funcionario, String> repo, int quantidade) {
+        long antes = memoriaUsada();
+        for (int i = 0; i < quantidade; i++) {
+            // Nome único por funcionário; new String simula departamentos vindos de fontes externas
+            String nome = NOMES[i % NOMES.length] + " " + NOMES[(i / NOMES.length) % NOMES.length] + " " + i;
+            String departamento = new String(DEPARTAMENTOS[i % DEPARTAMENTOS.length]);
+            repo.salvar(new Funcionario("F" + i, nome, departamento));
+        }
+        imprimir(rotulo, memoriaUsada() - antes, quantidade);
+        assert repo.buscarPorId("F7").get().getDepartamento().equals(DEPARTAMENTOS[7 % DEPARTAMENTOS.length]);
+    }
+
+    private static void medirProdutos(String rotulo, IRepository<Produto, Long> repo, int quantidade) {
+        long antes = memoriaUsada();
+        for (int i = 0; i < quantidade; i++) {
+            String nome = "Produto " + NOMES[i % NOMES.length] + " " + i;
+            repo.salvar(new Produto((long) i, nome, new BigDecimal(i % 10_000 + ".90")));
+        }
+        imprimir(rotulo, memoriaUsada() - antes, quantidade);
+        assert repo.buscarPorId(42L).get().getPreco().equals(new BigDecimal("42.90"));
+    }
+
+    private static void imprimir(String rotulo, long bytes, int quantidade) {
+        System.out.printf("%-26s %8.1f MB  %6.1f bytes/entidade%n",
+                rotulo, bytes / (1024.0 * 1024.0), (double) bytes / quantidade);
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+""";
+        escrever("MedicaoCompactacao.java", codigo);
+    }
+
+    private static void criarBenchmarkRepositorios() throws IOException {
+        String codigo = """
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Function;
+
+public class BenchmarkRepositorios {
+    private static final int RODADAS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("=== BENCHMARK: REPOSITORIO GENERICO x ESPECIALIZADO (" + quantidade + " produtos) ===\\n");
+
+        IRepository<Produto, Long> generico = new InMemoryRepository<>();
+        ProdutoRepository especializado = new ProdutoRepository();
+        for (int i = 0; i < quantidade; i++) {
+            Produto produto = new Produto((long) i, "Produto " + (i % 1000), new BigDecimal(i % 10_000 + ".90"));
+            generico.salvar(produto);
+            especializado.salvar(produto);
+        }
+
+        assert especializado.buscar(42L).getNome().equals("Produto 42");
+        assert especializado.buscarPorNome("Produto 7").size() == (quantidade + 992) / 1000;
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medirBusca("  busca generica (Long)", quantidade, () -> {
+                long soma = 0;
+                for (long id = 0; id < quantidade; id++) {
+                    soma += generico.buscarPorId(id).get().getId();
+                }
+                return soma;
+            });
+            medirBusca("  busca especializada (long)", quantidade, () -> {
+                long soma = 0;
+                for (long id = 0; id < quantidade; id++) {
+                    soma += especializado.buscar(id).getId();
+                }
+                return soma;
+            });
+            medirSerializacaoGenerica(generico, quantidade);
+            medirSerializacaoEspecializada(especializado, quantidade);
+        }
+    }
+
+    private interface Tarefa {
+        long executar();
+    }
+
+    private static void medirBusca(String rotulo, int quantidade, Tarefa tarefa) {
+        long inicio = System.nanoTime();
+        long resultado = tarefa.executar();
+        long duracao = System.nanoTime() - inicio;
+        System.out.printf("%-34s %7.1f ns/op (checksum %d)%n", rotulo, (double) duracao / quantidade, resultado);
+    }
+
+    private static void medirSerializacaoGenerica(IRepository<Produto, Long> repo, int quantidade) throws IOException {
+        Function<Produto, Object[]> linhas = new RegistroCampos<Produto>()
+                .registrar("id", Produto::getId)
+                .registrar("nome", Produto::getNome)
+                .registrar("preco", Produto::getPreco)
+                .projecao("id", "nome", "preco");
+
+        long inicio = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream saida = new ObjectOutputStream(bytes)) {
+            List<Object[]> projetadas = repo.projetar(linhas);
+            for (Object[] linha : projetadas) {
+                saida.writeUnshared(linha);
+            }
+        }
+        long duracao = System.nanoTime() - inicio;
+        System.out.printf("%-34s %7.1f ns/op %6.1f bytes/entidade%n", "  serializacao generica",
+                (double) duracao / quantidade, (double) bytes.size() / quantidade);
+    }
+
+    private static void medirSerializacaoEspecializada(ProdutoRepository repo, int quantidade) {
+        ByteBuffer buffer = ByteBuffer.allocate(quantidade * 64);
+
+        long inicio = System.nanoTime();
+        for (Produto produto : repo.listarTodos()) {
+            ProdutoCodec.escrever(produto, buffer);
+        }
+        long duracao = System.nanoTime() - inicio;
+        int tamanho = buffer.position();
+        System.out.printf("%-34s %7.1f ns/op %6.1f bytes/entidade%n", "  serializacao especializada",
+                (double) duracao / quantidade, (double) tamanho / quantidade);
+
+        buffer.flip();
+        Produto primeiro = ProdutoCodec.ler(buffer);
+        assert repo.buscar(primeiro.getId()).getPreco().equals(primeiro.getPreco());
+    }
+}
+""";
+        escrever("BenchmarkRepositorios.java", codigo);
+    }
+
+    private static void criarTestesRepositorio() throws IOException {
+        String codigo = """
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+public class TestesRepositorio {
+    public static void main(String[] args) {
+        System.out.println("=== TESTES DOS REPOSITORIOS ESPECIALIZADOS ===");
+
+        testSobrescritaReindexa();
+        testRenomearMesmaInstancia();
+        testRemocaoNoMeioDoAgrupamento();
+        testRedimensionamento();
+        testComparacaoComHashMap();
+        testRepositorioPorMapa();
+        testCodecs();
+        testProjecaoCompacta();
+
+        System.out.println("\\nTodos os testes dos repositorios passaram!");
+    }
+
+    private static void testSobrescritaReindexa() {
+        System.out.println("\\n1. Sobrescrita reindexa a entidade...");
+        ProdutoRepository repo = new ProdutoRepository();
+        repo.salvar(new Produto(1L, "Mouse", new BigDecimal("50.00")));
+        repo.salvar(new Produto(2L, "Mouse", new BigDecimal("60.00")));
+        repo.salvar(new Produto(1L, "Teclado", new BigDecimal("120.00")));
+
+        assert repo.listarTodos().size() == 2;
+        assert repo.buscar(1L).getNome().equals("Teclado");
+        assert repo.buscarPorNome("Mouse").size() == 1 && repo.buscarPorNome("Mouse").get(0).getId() == 2L;
+        assert repo.buscarPorNome("Teclado").size() == 1;
+        System.out.println("   OK indice acompanha a versao salva por ultimo");
+    }
+
+    private static void testRenomearMesmaInstancia() {
+        System.out.println("\\n2. Renomear e salvar a mesma instancia...");
+        ProdutoRepository repo = new ProdutoRepository();
+        Produto produto = new Produto(7L, "Monitor", new BigDecimal("900.00"));
+        repo.salvar(produto);
+        produto.setNome("Monitor 4K");
+        repo.salvar(produto);
+
+        assert repo.buscarPorNome("Monitor").isEmpty() : "Nome antigo ficou no indice";
+        assert repo.buscarPorNome("Monitor 4K").size() == 1;
+
+        repo.remover(7L);
+        assert repo.buscarPorNome("Monitor 4K").isEmpty();
+        assert repo.buscar(7L) == null;
+        System.out.println("   OK nome antigo sai do indice; remocao limpa o nome novo");
+    }
+
+    private static void testRemocaoNoMeioDoAgrupamento() {
+        System.out.println("\\n3. Remocao no meio de um agrupamento de sondagem...");
+        // Com 16 posicoes, IDs que diferem por multiplos de 16 disputam a mesma posicao ideal
+        ProdutoRepository repo = new ProdutoRepository();
+        long[] ids = {1, 17, 33, 49, 2, 65};
+        for (long id : ids) {
+            repo.salvar(new Produto(id, "P" + id, BigDecimal.ONE));
+        }
+        repo.remover(17L);
+        assert repo.buscar(17L) == null;
+        for (long id : new long[]{1, 33, 49, 2, 65}) {
+            assert repo.buscar(id) != null && repo.buscar(id).getId() == id : "ID " + id + " ficou inalcancavel";
+        }
+        repo.remover(1L);
+        repo.remover(49L);
+        for (long id : new long[]{33, 2, 65}) {
+            assert repo.buscar(id) != null : "ID " + id + " ficou inalcancavel";
+        }
+
+        // Agrupamento que dá a volta no fim da tabela: 15 -> 15, 31 -> 0, 47 -> 1
+        ProdutoRepository volta = new ProdutoRepository();
+        for (long id : new long[]{15, 31, 47, 0}) {
+            volta.salvar(new Produto(id, "P" + id, BigDecimal.ONE));
+        }
+        volta.remover(15L);
+        for (long id : new long[]{31, 47, 0}) {
+            assert volta.buscar(id) != null : "ID " + id + " ficou inalcancavel apos a volta";
+        }
+        assert volta.listarTodos().size() == 3;
+        System.out.println("   OK chaves seguintes continuam alcancaveis, inclusive com volta na tabela");
+    }
+
+    private static void testRedimensionamento() {
+        System.out.println("\\n4. Redimensionamento...");
+        ProdutoRepository repo = new ProdutoRepository();
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 10_000; i++) {
+            ids.add(i * 31 - 5_000);
+        }
+        ids.add(Long.MIN_VALUE);
+        ids.add(Long.MAX_VALUE);
+        for (long id : ids) {
+            repo.salvar(new Produto(id, "P" + (id & 7), BigDecimal.valueOf(id)));
+        }
+        assert repo.listarTodos().size() == ids.size();
+        for (long id : ids) {
+            assert repo.buscar(id).getPreco().equals(BigDecimal.valueOf(id));
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            repo.remover(ids.get(i).longValue());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            assert (repo.buscar(ids.get(i)) == null) == (i % 2 == 0);
+        }
+        assert repo.listarTodos().size() == ids.size() / 2;
+        System.out.println("   OK " + ids.size() + " IDs (inclusive extremos) sobrevivem ao crescimento e a remocoes");
+    }
+
+    private static void testComparacaoComHashMap() {
+        System.out.println("\\n5. Operacoes aleatorias comparadas com HashMap...");
+        ProdutoRepository repo = new ProdutoRepository();
+        Map<Long, Produto> esperado = new HashMap<>();
+        Random aleatorio = new Random(42);
+        for (int operacao = 0; operacao < 200_000; operacao++) {
+            long id = aleatorio.nextInt(512) * 16L + aleatorio.nextInt(3);
+            int tipo = aleatorio.nextInt(10);
+            if (tipo < 5) {
+                Produto produto = new Produto(id, "N" + aleatorio.nextInt(20), BigDecimal.valueOf(operacao));
+                repo.salvar(produto);
+                esperado.put(id, produto);
+            } else if (tipo < 8) {
+                boolean existia = esperado.remove(id) != null;
+                try {
+                    repo.remover(id);
+                    assert existia : "Removeu ID inexistente " + id;
+                } catch (EntidadeNaoEncontradaException e) {
+                    assert !existia : "Nao achou ID " + id + " para remover";
+                }
+            } else {
+                assert repo.buscar(id) == esperado.get(id) : "Divergencia no ID " + id;
+            }
+            if (operacao % 20_000 == 0) {
+                verificarIndice(repo, esperado);
+            }
+        }
+        verificarIndice(repo, esperado);
+        assert repo.listarTodos().size() == esperado.size();
+        System.out.println("   OK 200000 operacoes iguais ao HashMap, indice por nome consistente");
+    }
+
+    private static void verificarIndice(ProdutoRepository repo, Map<Long, Produto> esperado) {
+        Map<String, Integer> porNome = new HashMap<>();
+        for (Produto produto : esperado.values()) {
+            porNome.merge(produto.getNome(), 1, Integer::sum);
+        }
+        for (int n = 0; n < 20; n++) {
+            String nome = "N" + n;
+            List<Produto> encontrados = repo.buscarPorNome(nome);
+            assert encontrados.size() == porNome.getOrDefault(nome, 0) : "Indice divergente para " + nome;
+            for (Produto produto : encontrados) {
+                assert esperado.get(produto.getId()) == produto;
+            }
+        }
+    }
+
+    private static void testRepositorioPorMapa() {
+        System.out.println("\\n6. Repositorio com ID texto e indice por departamento...");
+        FuncionarioRepository repo = new FuncionarioRepository();
+        Funcionario ana = new Funcionario("F1", "Ana", "TI");
+        repo.salvar(ana);
+        repo.salvar(new Funcionario("F2", "Bruno", "TI"));
+        ana.setDepartamento("RH");
+        repo.salvar(ana);
+        assert repo.buscarPorDepartamento("TI").size() == 1;
+        assert repo.buscarPorDepartamento("RH").size() == 1;
+        repo.remover("F2");
+        assert repo.buscarPorDepartamento("TI").isEmpty();
+        System.out.println("   OK mudanca de departamento e remocao refletidas no indice");
+    }
+
+    private static void testProjecaoCompacta() {
+        System.out.println("\\n8. Projecao direto da forma compacta...");
+        int[] materializacoes = {0};
+        IRepository<Produto, Long> repo = new InMemoryRepository<>(new CompactadorProduto() {
+            @Override
+            public Produto materializar(Object compacto) {
+                materializacoes[0]++;
+                return super.materializar(compacto);
+            }
+        });
+        BigDecimal grande = new BigDecimal(new BigInteger("123456789012345678901234567890"), 2);
+        repo.salvar(new Produto(1L, "Notebook", new BigDecimal("2500.00")));
+        repo.salvar(new Produto(2L, null, new BigDecimal("-0.5")));
+        repo.salvar(new Produto(3L, "Servidor", grande));
+
+        RegistroCampos<Produto> campos = new RegistroCampos<Produto>()
+                .registrar("id", Produto::getId)
+                .registrar("nome", Produto::getNome)
+                .registrar("preco", Produto::getPreco);
+        Map<Long, Object[]> linhas = new HashMap<>();
+        for (Object[] linha : repo.projetar(campos.projecao("id", "nome", "preco"))) {
+            linhas.put((Long) linha[0], linha);
+        }
+        long[] ids = repo.projetarLong(campos.campoLong("id"));
+        assert materializacoes[0] == 0 : materializacoes[0] + " entidades materializadas";
+
+        assert linhas.size() == 3 && ids.length == 3;
+        assert Arrays.equals(linhas.get(1L), new Object[]{1L, "Notebook", new BigDecimal("2500.00")});
+        assert Arrays.equals(linhas.get(2L), new Object[]{2L, null, new BigDecimal("-0.5")});
+        assert Arrays.equals(linhas.get(3L), new Object[]{3L, "Servidor", grande});
+        Arrays.sort(ids);
+        assert Arrays.equals(ids, new long[]{1, 2, 3});
+
+        // Projecoes opacas continuam funcionando, materializando cada linha
+        List<String> nomes = repo.projetar(p -> String.valueOf(p.getNome()));
+        assert nomes.size() == 3 && materializacoes[0] == 3;
+
+        IRepository<Funcionario, String> funcionarios = new InMemoryRepository<>(new CompactadorFuncionario());
+        funcionarios.salvar(new Funcionario("F1", "Ana", "TI"));
+        List<Object[]> departamentos = funcionarios.projetar(new RegistroCampos<Funcionario>()
+                .registrar("departamento", Funcionario::getDepartamento)
+                .registrar("id", Funcionario::getId)
+                .projecao("departamento", "id"));
+        assert Arrays.equals(departamentos.get(0), new Object[]{"TI", "F1"});
+        System.out.println("   OK linhas e IDs lidos sem materializar entidades, iguais aos getters");
+    }
+
+    private static void testCodecs() {
+        System.out.println("\\n7. Codecs binarios...");
+        BigDecimal grande = new BigDecimal(new BigInteger("123456789012345678901234567890"), 4);
+        Produto[] produtos = {
+                new Produto(1L, "Notebook", new BigDecimal("2500.00")),
+                new Produto(2L, null, null),
+                new Produto(3L, "Câmera ção", grande),
+                new Produto(-4L, "", grande.negate()),
+                new Produto(Long.MAX_VALUE, "Limite", new BigDecimal("1E+3"))
+        };
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1_024), ByteBuffer.allocateDirect(1_024)}) {
+            for (Produto produto : produtos) {
+                ProdutoCodec.escrever(produto, buffer);
+            }
+            buffer.flip();
+            for (Produto produto : produtos) {
+                Produto lido = ProdutoCodec.ler(buffer);
+                assert lido.getId().equals(produto.getId());
+                assert Objects.equals(lido.getNome(), produto.getNome());
+                assert Objects.equals(lido.getPreco(), produto.getPreco()) : lido.getPreco();
+            }
+            assert !buffer.hasRemaining();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        FuncionarioCodec.escrever(new Funcionario("F9", null, "TI"), buffer);
+        FuncionarioCodec.escrever(new Funcionario(null, "Sem ID", null), buffer);
+        buffer.flip();
+        Funcionario primeiro = FuncionarioCodec.ler(buffer);
+        Funcionario segundo = FuncionarioCodec.ler(buffer);
+        assert primeiro.getId().equals("F9") && primeiro.getNome() == null && primeiro.getDepartamento().equals("TI");
+        assert segundo.getId() == null && segundo.getNome().equals("Sem ID") && segundo.getDepartamento() == null;
+        System.out.println("   OK nulos, BigDecimal acima de 64 bits, escala negativa e UTF-8 em buffers heap e direto");
+    }
+}
+""";
+        escrever("TestesRepositorio.java", codigo);
+    }
+}
@@ -1,9 +1,13 @@
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public interface IRepository<T extends Identificavel<ID>, ID> {
     void salvar(T entidade);
     Optional<T> buscarPorId(ID id);
     List<T> listarTodos();
     void remover(ID id);
+    <R> List<R> projetar(Function<? super T, ? extends R> projecao);
+    long[] projetarLong(ToLongFunction<? super T> campo);
 }
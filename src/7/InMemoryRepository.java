@@ -1,22 +1,38 @@
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class InMemoryRepository<T extends Identificavel<ID>, ID> implements IRepository<T, ID> {
-    private final Map<ID, T> dados = new ConcurrentHashMap<>();
+    private final Map<ID, Object> dados = new ConcurrentHashMap<>();
+    private final Compactador<T> compactador;
+
+    public InMemoryRepository() {
+        this(Compactador.identidade());
+    }
+
+    public InMemoryRepository(Compactador<T> compactador) {
+        this.compactador = compactador;
+    }
 
     @Override
     public void salvar(T entidade) {
-        dados.put(entidade.getId(), entidade);
+        dados.put(entidade.getId(), compactador.compactar(entidade));
     }
 
     @Override
     public Optional<T> buscarPorId(ID id) {
-        return Optional.ofNullable(dados.get(id));
+        Object compacto = dados.get(id);
+        return compacto == null ? Optional.empty() : Optional.of(compactador.materializar(compacto));
     }
 
     @Override
     public List<T> listarTodos() {
-        return new ArrayList<>(dados.values());
+        List<T> resultado = new ArrayList<>(dados.size());
+        for (Object compacto : dados.values()) {
+            resultado.add(compactador.materializar(compacto));
+        }
+        return resultado;
     }
 
     @Override
@@ -26,4 +42,59 @@ public class InMemoryRepository<T extends Identificavel<ID>, ID> implements IRep
         }
         dados.remove(id);
     }
+
+    @Override
+    public <R> List<R> projetar(Function<? super T, ? extends R> projecao) {
+        Function<Object, ? extends R> direta = projecaoDireta(projecao);
+        List<R> resultado = new ArrayList<>(dados.size());
+        for (Object compacto : dados.values()) {
+            resultado.add(direta != null
+                    ? direta.apply(compacto)
+                    : projecao.apply(compactador.materializar(compacto)));
+        }
+        return Collections.unmodifiableList(resultado);
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super T> campo) {
+        ToLongFunction<Object> direto = campo instanceof RegistroCampos.CampoLong<?> porNome
+                ? compactador.leitorLong(porNome.getCampo())
+                : null;
+        long[] resultado = new long[dados.size()];
+        int i = 0;
+        for (Object compacto : dados.values()) {
+            if (i == resultado.length) {
+                resultado = Arrays.copyOf(resultado, resultado.length * 2 + 1);
+            }
+            resultado[i++] = direto != null
+                    ? direto.applyAsLong(compacto)
+                    : campo.applyAsLong(compactador.materializar(compacto));
+        }
+        return i == resultado.length ? resultado : Arrays.copyOf(resultado, i);
+    }
+
+    // Projeção por nome de campo que o compactador sabe ler na forma compacta: nenhuma entidade é materializada
+    @SuppressWarnings("unchecked")
+    private <R> Function<Object, ? extends R> projecaoDireta(Function<? super T, ? extends R> projecao) {
+        if (!(projecao instanceof RegistroCampos.Projecao<?> porCampos)) {
+            return null;
+        }
+        List<String> campos = porCampos.getCampos();
+        List<Function<Object, ?>> leitores = new ArrayList<>(campos.size());
+        for (String campo : campos) {
+            Function<Object, ?> leitor = compactador.leitor(campo);
+            if (leitor == null) {
+                return null;
+            }
+            leitores.add(leitor);
+        }
+        // Projecao sempre produz Object[], então R é Object[] ou um supertipo
+        return compacto -> {
+            Object[] linha = new Object[leitores.size()];
+            for (int i = 0; i < linha.length; i++) {
+                linha[i] = leitores.get(i).apply(compacto);
+            }
+            return (R) linha;
+        };
+    }
 }
@@ -0,0 +1,31 @@
+import java.util.*;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class IndiceFuncionarioPorDepartamento {
+    private final Map<String, List<Funcionario>> entradas = new HashMap<>();
+    // Chave com que cada entidade foi indexada: a entidade é mutável e pode ter mudado desde então
+    private final Map<Funcionario, String> chaves = new IdentityHashMap<>();
+
+    void adicionar(Funcionario entidade) {
+        String chave = entidade.getDepartamento();
+        entradas.computeIfAbsent(chave, k -> new ArrayList<>()).add(entidade);
+        chaves.put(entidade, chave);
+    }
+
+    void remover(Funcionario entidade) {
+        if (!chaves.containsKey(entidade)) {
+            return;
+        }
+        String chave = chaves.remove(entidade);
+        List<Funcionario> lista = entradas.get(chave);
+        lista.remove(entidade);
+        if (lista.isEmpty()) {
+            entradas.remove(chave);
+        }
+    }
+
+    public List<Funcionario> buscar(String valor) {
+        List<Funcionario> lista = entradas.get(valor);
+        return lista == null ? List.of() : List.copyOf(lista);
+    }
+}
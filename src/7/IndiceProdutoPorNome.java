@@ -0,0 +1,31 @@
+import java.util.*;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class IndiceProdutoPorNome {
+    private final Map<String, List<Produto>> entradas = new HashMap<>();
+    // Chave com que cada entidade foi indexada: a entidade é mutável e pode ter mudado desde então
+    private final Map<Produto, String> chaves = new IdentityHashMap<>();
+
+    void adicionar(Produto entidade) {
+        String chave = entidade.getNome();
+        entradas.computeIfAbsent(chave, k -> new ArrayList<>()).add(entidade);
+        chaves.put(entidade, chave);
+    }
+
+    void remover(Produto entidade) {
+        if (!chaves.containsKey(entidade)) {
+            return;
+        }
+        String chave = chaves.remove(entidade);
+        List<Produto> lista = entradas.get(chave);
+        lista.remove(entidade);
+        if (lista.isEmpty()) {
+            entradas.remove(chave);
+        }
+    }
+
+    public List<Produto> buscar(String valor) {
+        List<Produto> lista = entradas.get(valor);
+        return lista == null ? List.of() : List.copyOf(lista);
+    }
+}
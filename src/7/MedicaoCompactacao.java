@@ -0,0 +1,51 @@
+import java.math.BigDecimal;
+
+public class MedicaoCompactacao {
+    private static final String[] DEPARTAMENTOS = {"TI", "RH", "Financeiro", "Vendas", "Logistica", "Juridico"};
+    private static final String[] NOMES = {"Joao", "Maria", "Jose", "Ana", "Carlos", "Paula", "Pedro", "Lucia"};
+
+    public static void main(String[] args) {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("=== MEDICAO DE MEMORIA (" + quantidade + " entidades) ===\n");
+
+        medirFuncionarios("Funcionarios (padrao)", new InMemoryRepository<>(), quantidade);
+        medirFuncionarios("Funcionarios (compacto)", new InMemoryRepository<>(new CompactadorFuncionario()), quantidade);
+        medirProdutos("Produtos (padrao)", new InMemoryRepository<>(), quantidade);
+        medirProdutos("Produtos (compacto)", new InMemoryRepository<>(new CompactadorProduto()), quantidade);
+    }
+
+    private static void medirFuncionarios(String rotulo, IRepository<Funcionario, String> repo, int quantidade) {
+        long antes = memoriaUsada();
+        for (int i = 0; i < quantidade; i++) {
+            // Nome único por funcionário; new String simula departamentos vindos de fontes externas
+            String nome = NOMES[i % NOMES.length] + " " + NOMES[(i / NOMES.length) % NOMES.length] + " " + i;
+            String departamento = new String(DEPARTAMENTOS[i % DEPARTAMENTOS.length]);
+            repo.salvar(new Funcionario("F" + i, nome, departamento));
+        }
+        imprimir(rotulo, memoriaUsada() - antes, quantidade);
+        assert repo.buscarPorId("F7").get().getDepartamento().equals(DEPARTAMENTOS[7 % DEPARTAMENTOS.length]);
+    }
+
+    private static void medirProdutos(String rotulo, IRepository<Produto, Long> repo, int quantidade) {
+        long antes = memoriaUsada();
+        for (int i = 0; i < quantidade; i++) {
+            String nome = "Produto " + NOMES[i % NOMES.length] + " " + i;
+            repo.salvar(new Produto((long) i, nome, new BigDecimal(i % 10_000 + ".90")));
+        }
+        imprimir(rotulo, memoriaUsada() - antes, quantidade);
+        assert repo.buscarPorId(42L).get().getPreco().equals(new BigDecimal("42.90"));
+    }
+
+    private static void imprimir(String rotulo, long bytes, int quantidade) {
+        System.out.printf("%-26s %8.1f MB  %6.1f bytes/entidade%n",
+                rotulo, bytes / (1024.0 * 1024.0), (double) bytes / quantidade);
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
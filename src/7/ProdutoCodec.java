@@ -0,0 +1,77 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public final class ProdutoCodec {
+    private static final byte DECIMAL_NULO = 0;
+    private static final byte DECIMAL_LONG = 1;
+    private static final byte DECIMAL_GRANDE = 2;
+
+    private ProdutoCodec() {
+    }
+
+    public static void escrever(Produto entidade, ByteBuffer buffer) {
+        buffer.putLong(entidade.getId());
+        escreverString(buffer, entidade.getNome());
+        escreverDecimal(buffer, entidade.getPreco());
+    }
+
+    public static Produto ler(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        String nome = lerString(buffer);
+        BigDecimal preco = lerDecimal(buffer);
+        return new Produto(id, nome, preco);
+    }
+
+    private static void escreverString(ByteBuffer buffer, String valor) {
+        if (valor == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String lerString(ByteBuffer buffer) {
+        int tamanho = buffer.getInt();
+        if (tamanho < 0) {
+            return null;
+        }
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[tamanho];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String valor = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), tamanho,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + tamanho);
+        return valor;
+    }
+
+    private static void escreverDecimal(ByteBuffer buffer, BigDecimal valor) {
+        if (valor == null) {
+            buffer.put(DECIMAL_NULO);
+        } else if (valor.unscaledValue().bitLength() < Long.SIZE) {
+            buffer.put(DECIMAL_LONG).putInt(valor.scale()).putLong(valor.unscaledValue().longValue());
+        } else {
+            byte[] bytes = valor.unscaledValue().toByteArray();
+            buffer.put(DECIMAL_GRANDE).putInt(valor.scale()).putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static BigDecimal lerDecimal(ByteBuffer buffer) {
+        byte tipo = buffer.get();
+        if (tipo == DECIMAL_NULO) {
+            return null;
+        }
+        int escala = buffer.getInt();
+        if (tipo == DECIMAL_LONG) {
+            return BigDecimal.valueOf(buffer.getLong(), escala);
+        }
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), escala);
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Gerado por GeradorRepositorio a partir de DescricaoEntidade - não editar manualmente
+public class ProdutoRepository implements IRepository<Produto, Long> {
+    private final StampedLock trava = new StampedLock();
+    private final IndiceProdutoPorNome indiceNome = new IndiceProdutoPorNome();
+    private volatile Tabela tabela = new Tabela(16);
+    private int tamanho;
+
+    // Chaves e valores trocados juntos no redimensionamento: leitores nunca veem arrays de tamanhos diferentes
+    private static final class Tabela {
+        final long[] chaves;
+        final Produto[] valores;
+
+        Tabela(int capacidade) {
+            chaves = new long[capacidade];
+            valores = new Produto[capacidade];
+        }
+
+        int posicao(long id) {
+            int mascara = valores.length - 1;
+            int i = espalhar(id) & mascara;
+            for (int sondagens = 0; sondagens < valores.length && valores[i] != null; sondagens++) {
+                if (chaves[i] == id) {
+                    return i;
+                }
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public void salvar(Produto entidade) {
+        long id = entidade.getId();
+        long carimbo = trava.writeLock();
+        try {
+            Tabela t = tabela;
+            int mascara = t.valores.length - 1;
+            int i = espalhar(id) & mascara;
+            while (t.valores[i] != null && t.chaves[i] != id) {
+                i = (i + 1) & mascara;
+            }
+            if (t.valores[i] != null) {
+                desindexar(t.valores[i]);
+            } else {
+                tamanho++;
+            }
+            t.chaves[i] = id;
+            t.valores[i] = entidade;
+            indexar(entidade);
+            if (tamanho * 4 >= t.valores.length * 3) {
+                redimensionar();
+            }
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    public Produto buscar(long id) {
+        long carimbo = trava.tryOptimisticRead();
+        Produto encontrado = procurar(id);
+        if (trava.validate(carimbo)) {
+            return encontrado;
+        }
+        carimbo = trava.readLock();
+        try {
+            return procurar(id);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public Optional<Produto> buscarPorId(Long id) {
+        return Optional.ofNullable(buscar(id));
+    }
+
+    @Override
+    public List<Produto> listarTodos() {
+        long carimbo = trava.readLock();
+        try {
+            List<Produto> resultado = new ArrayList<>(tamanho);
+            for (Produto entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado.add(entidade);
+                }
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public void remover(Long id) {
+        remover(id.longValue());
+    }
+
+    public void remover(long id) {
+        long carimbo = trava.writeLock();
+        try {
+            Tabela t = tabela;
+            int i = t.posicao(id);
+            if (i < 0) {
+                throw new EntidadeNaoEncontradaException("Entidade com ID " + id + " não encontrada");
+            }
+            desindexar(t.valores[i]);
+
+            // Remoção com deslocamento para trás: mantém as sequências de sondagem sem marcadores
+            int mascara = t.valores.length - 1;
+            int vazio = i;
+            for (int j = (i + 1) & mascara; t.valores[j] != null; j = (j + 1) & mascara) {
+                int ideal = espalhar(t.chaves[j]) & mascara;
+                boolean noLugar = vazio <= j ? (vazio < ideal && ideal <= j) : (vazio < ideal || ideal <= j);
+                if (!noLugar) {
+                    t.chaves[vazio] = t.chaves[j];
+                    t.valores[vazio] = t.valores[j];
+                    vazio = j;
+                }
+            }
+            t.valores[vazio] = null;
+            tamanho--;
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    // Percorre as posições da tabela sob a trava de leitura, sem a cópia de listarTodos
+    @Override
+    public <R> List<R> projetar(Function<? super Produto, ? extends R> projecao) {
+        long carimbo = trava.readLock();
+        try {
+            List<R> resultado = new ArrayList<>(tamanho);
+            for (Produto entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado.add(projecao.apply(entidade));
+                }
+            }
+            return Collections.unmodifiableList(resultado);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public long[] projetarLong(ToLongFunction<? super Produto> campo) {
+        long carimbo = trava.readLock();
+        try {
+            long[] resultado = new long[tamanho];
+            int i = 0;
+            for (Produto entidade : tabela.valores) {
+                if (entidade != null) {
+                    resultado[i++] = campo.applyAsLong(entidade);
+                }
+            }
+            return resultado;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    private Produto procurar(long id) {
+        Tabela t = tabela;
+        int i = t.posicao(id);
+        return i < 0 ? null : t.valores[i];
+    }
+
+    private void redimensionar() {
+        Tabela antiga = tabela;
+        Tabela nova = new Tabela(antiga.valores.length * 2);
+        int mascara = nova.valores.length - 1;
+        for (int k = 0; k < antiga.valores.length; k++) {
+            if (antiga.valores[k] != null) {
+                int i = espalhar(antiga.chaves[k]) & mascara;
+                while (nova.valores[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                nova.chaves[i] = antiga.chaves[k];
+                nova.valores[i] = antiga.valores[k];
+            }
+        }
+        tabela = nova;
+    }
+
+    // Mesmo espalhamento de HashMap: IDs sequenciais caem em posições vizinhas (boa localidade de cache)
+    private static int espalhar(long id) {
+        int h = Long.hashCode(id);
+        return h ^ (h >>> 16);
+    }
+
+    private void indexar(Produto entidade) {
+        indiceNome.adicionar(entidade);
+    }
+
+    private void desindexar(Produto entidade) {
+        indiceNome.remover(entidade);
+    }
+
+    public List<Produto> buscarPorNome(String nome) {
+        long carimbo = trava.readLock();
+        try {
+            return indiceNome.buscar(nome);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+public class RegistroCampos<T> {
+    private final Map<String, Function<? super T, ?>> extratores = new LinkedHashMap<>();
+
+    public RegistroCampos<T> registrar(String campo, Function<? super T, ?> extrator) {
+        extratores.put(campo, extrator);
+        return this;
+    }
+
+    public Set<String> getCampos() {
+        return extratores.keySet();
+    }
+
+    public Projecao<T> projecao(String... campos) {
+        List<Function<? super T, ?>> selecionados = new ArrayList<>(campos.length);
+        for (String campo : campos) {
+            selecionados.add(extrator(campo));
+        }
+        return new Projecao<>(List.of(campos), selecionados);
+    }
+
+    // O campo precisa ter sido registrado com um extrator numérico
+    public CampoLong<T> campoLong(String campo) {
+        return new CampoLong<>(campo, extrator(campo));
+    }
+
+    private Function<? super T, ?> extrator(String campo) {
+        Function<? super T, ?> extrator = extratores.get(campo);
+        if (extrator == null) {
+            throw new IllegalArgumentException("Campo não registrado: " + campo);
+        }
+        return extrator;
+    }
+
+    // Projeção que conhece os nomes dos campos: repositórios compactados podem lê-los sem materializar a entidade
+    public static final class Projecao<T> implements Function<T, Object[]> {
+        private final List<String> campos;
+        private final List<Function<? super T, ?>> extratores;
+
+        private Projecao(List<String> campos, List<Function<? super T, ?>> extratores) {
+            this.campos = campos;
+            this.extratores = extratores;
+        }
+
+        public List<String> getCampos() {
+            return campos;
+        }
+
+        @Override
+        public Object[] apply(T entidade) {
+            Object[] linha = new Object[extratores.size()];
+            for (int i = 0; i < linha.length; i++) {
+                linha[i] = extratores.get(i).apply(entidade);
+            }
+            return linha;
+        }
+    }
+
+    public static final class CampoLong<T> implements ToLongFunction<T> {
+        private final String campo;
+        private final Function<? super T, ?> extrator;
+
+        private CampoLong(String campo, Function<? super T, ?> extrator) {
+            this.campo = campo;
+            this.extrator = extrator;
+        }
+
+        public String getCampo() {
+            return campo;
+        }
+
+        @Override
+        public long applyAsLong(T entidade) {
+            return ((Number) extrator.apply(entidade)).longValue();
+        }
+    }
+}
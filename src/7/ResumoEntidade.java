@@ -0,0 +1,2 @@
+public record ResumoEntidade<ID>(ID id, String nome) {
+}
@@ -0,0 +1,260 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+public class TestesRepositorio {
+    public static void main(String[] args) {
+        System.out.println("=== TESTES DOS REPOSITORIOS ESPECIALIZADOS ===");
+
+        testSobrescritaReindexa();
+        testRenomearMesmaInstancia();
+        testRemocaoNoMeioDoAgrupamento();
+        testRedimensionamento();
+        testComparacaoComHashMap();
+        testRepositorioPorMapa();
+        testCodecs();
+        testProjecaoCompacta();
+
+        System.out.println("\nTodos os testes dos repositorios passaram!");
+    }
+
+    private static void testSobrescritaReindexa() {
+        System.out.println("\n1. Sobrescrita reindexa a entidade...");
+        ProdutoRepository repo = new ProdutoRepository();
+        repo.salvar(new Produto(1L, "Mouse", new BigDecimal("50.00")));
+        repo.salvar(new Produto(2L, "Mouse", new BigDecimal("60.00")));
+        repo.salvar(new Produto(1L, "Teclado", new BigDecimal("120.00")));
+
+        assert repo.listarTodos().size() == 2;
+        assert repo.buscar(1L).getNome().equals("Teclado");
+        assert repo.buscarPorNome("Mouse").size() == 1 && repo.buscarPorNome("Mouse").get(0).getId() == 2L;
+        assert repo.buscarPorNome("Teclado").size() == 1;
+        System.out.println("   OK indice acompanha a versao salva por ultimo");
+    }
+
+    private static void testRenomearMesmaInstancia() {
+        System.out.println("\n2. Renomear e salvar a mesma instancia...");
+        ProdutoRepository repo = new ProdutoRepository();
+        Produto produto = new Produto(7L, "Monitor", new BigDecimal("900.00"));
+        repo.salvar(produto);
+        produto.setNome("Monitor 4K");
+        repo.salvar(produto);
+
+        assert repo.buscarPorNome("Monitor").isEmpty() : "Nome antigo ficou no indice";
+        assert repo.buscarPorNome("Monitor 4K").size() == 1;
+
+        repo.remover(7L);
+        assert repo.buscarPorNome("Monitor 4K").isEmpty();
+        assert repo.buscar(7L) == null;
+        System.out.println("   OK nome antigo sai do indice; remocao limpa o nome novo");
+    }
+
+    private static void testRemocaoNoMeioDoAgrupamento() {
+        System.out.println("\n3. Remocao no meio de um agrupamento de sondagem...");
+        // Com 16 posicoes, IDs que diferem por multiplos de 16 disputam a mesma posicao ideal
+        ProdutoRepository repo = new ProdutoRepository();
+        long[] ids = {1, 17, 33, 49, 2, 65};
+        for (long id : ids) {
+            repo.salvar(new Produto(id, "P" + id, BigDecimal.ONE));
+        }
+        repo.remover(17L);
+        assert repo.buscar(17L) == null;
+        for (long id : new long[]{1, 33, 49, 2, 65}) {
+            assert repo.buscar(id) != null && repo.buscar(id).getId() == id : "ID " + id + " ficou inalcancavel";
+        }
+        repo.remover(1L);
+        repo.remover(49L);
+        for (long id : new long[]{33, 2, 65}) {
+            assert repo.buscar(id) != null : "ID " + id + " ficou inalcancavel";
+        }
+
+        // Agrupamento que dá a volta no fim da tabela: 15 -> 15, 31 -> 0, 47 -> 1
+        ProdutoRepository volta = new ProdutoRepository();
+        for (long id : new long[]{15, 31, 47, 0}) {
+            volta.salvar(new Produto(id, "P" + id, BigDecimal.ONE));
+        }
+        volta.remover(15L);
+        for (long id : new long[]{31, 47, 0}) {
+            assert volta.buscar(id) != null : "ID " + id + " ficou inalcancavel apos a volta";
+        }
+        assert volta.listarTodos().size() == 3;
+        System.out.println("   OK chaves seguintes continuam alcancaveis, inclusive com volta na tabela");
+    }
+
+    private static void testRedimensionamento() {
+        System.out.println("\n4. Redimensionamento...");
+        ProdutoRepository repo = new ProdutoRepository();
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 10_000; i++) {
+            ids.add(i * 31 - 5_000);
+        }
+        ids.add(Long.MIN_VALUE);
+        ids.add(Long.MAX_VALUE);
+        for (long id : ids) {
+            repo.salvar(new Produto(id, "P" + (id & 7), BigDecimal.valueOf(id)));
+        }
+        assert repo.listarTodos().size() == ids.size();
+        for (long id : ids) {
+            assert repo.buscar(id).getPreco().equals(BigDecimal.valueOf(id));
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            repo.remover(ids.get(i).longValue());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            assert (repo.buscar(ids.get(i)) == null) == (i % 2 == 0);
+        }
+        assert repo.listarTodos().size() == ids.size() / 2;
+        System.out.println("   OK " + ids.size() + " IDs (inclusive extremos) sobrevivem ao crescimento e a remocoes");
+    }
+
+    private static void testComparacaoComHashMap() {
+        System.out.println("\n5. Operacoes aleatorias comparadas com HashMap...");
+        ProdutoRepository repo = new ProdutoRepository();
+        Map<Long, Produto> esperado = new HashMap<>();
+        Random aleatorio = new Random(42);
+        for (int operacao = 0; operacao < 200_000; operacao++) {
+            long id = aleatorio.nextInt(512) * 16L + aleatorio.nextInt(3);
+            int tipo = aleatorio.nextInt(10);
+            if (tipo < 5) {
+                Produto produto = new Produto(id, "N" + aleatorio.nextInt(20), BigDecimal.valueOf(operacao));
+                repo.salvar(produto);
+                esperado.put(id, produto);
+            } else if (tipo < 8) {
+                boolean existia = esperado.remove(id) != null;
+                try {
+                    repo.remover(id);
+                    assert existia : "Removeu ID inexistente " + id;
+                } catch (EntidadeNaoEncontradaException e) {
+                    assert !existia : "Nao achou ID " + id + " para remover";
+                }
+            } else {
+                assert repo.buscar(id) == esperado.get(id) : "Divergencia no ID " + id;
+            }
+            if (operacao % 20_000 == 0) {
+                verificarIndice(repo, esperado);
+            }
+        }
+        verificarIndice(repo, esperado);
+        assert repo.listarTodos().size() == esperado.size();
+        System.out.println("   OK 200000 operacoes iguais ao HashMap, indice por nome consistente");
+    }
+
+    private static void verificarIndice(ProdutoRepository repo, Map<Long, Produto> esperado) {
+        Map<String, Integer> porNome = new HashMap<>();
+        for (Produto produto : esperado.values()) {
+            porNome.merge(produto.getNome(), 1, Integer::sum);
+        }
+        for (int n = 0; n < 20; n++) {
+            String nome = "N" + n;
+            List<Produto> encontrados = repo.buscarPorNome(nome);
+            assert encontrados.size() == porNome.getOrDefault(nome, 0) : "Indice divergente para " + nome;
+            for (Produto produto : encontrados) {
+                assert esperado.get(produto.getId()) == produto;
+            }
+        }
+    }
+
+    private static void testRepositorioPorMapa() {
+        System.out.println("\n6. Repositorio com ID texto e indice por departamento...");
+        FuncionarioRepository repo = new FuncionarioRepository();
+        Funcionario ana = new Funcionario("F1", "Ana", "TI");
+        repo.salvar(ana);
+        repo.salvar(new Funcionario("F2", "Bruno", "TI"));
+        ana.setDepartamento("RH");
+        repo.salvar(ana);
+        assert repo.buscarPorDepartamento("TI").size() == 1;
+        assert repo.buscarPorDepartamento("RH").size() == 1;
+        repo.remover("F2");
+        assert repo.buscarPorDepartamento("TI").isEmpty();
+        System.out.println("   OK mudanca de departamento e remocao refletidas no indice");
+    }
+
+    private static void testProjecaoCompacta() {
+        System.out.println("\n8. Projecao direto da forma compacta...");
+        int[] materializacoes = {0};
+        IRepository<Produto, Long> repo = new InMemoryRepository<>(new CompactadorProduto() {
+            @Override
+            public Produto materializar(Object compacto) {
+                materializacoes[0]++;
+                return super.materializar(compacto);
+            }
+        });
+        BigDecimal grande = new BigDecimal(new BigInteger("123456789012345678901234567890"), 2);
+        repo.salvar(new Produto(1L, "Notebook", new BigDecimal("2500.00")));
+        repo.salvar(new Produto(2L, null, new BigDecimal("-0.5")));
+        repo.salvar(new Produto(3L, "Servidor", grande));
+
+        RegistroCampos<Produto> campos = new RegistroCampos<Produto>()
+                .registrar("id", Produto::getId)
+                .registrar("nome", Produto::getNome)
+                .registrar("preco", Produto::getPreco);
+        Map<Long, Object[]> linhas = new HashMap<>();
+        for (Object[] linha : repo.projetar(campos.projecao("id", "nome", "preco"))) {
+            linhas.put((Long) linha[0], linha);
+        }
+        long[] ids = repo.projetarLong(campos.campoLong("id"));
+        assert materializacoes[0] == 0 : materializacoes[0] + " entidades materializadas";
+
+        assert linhas.size() == 3 && ids.length == 3;
+        assert Arrays.equals(linhas.get(1L), new Object[]{1L, "Notebook", new BigDecimal("2500.00")});
+        assert Arrays.equals(linhas.get(2L), new Object[]{2L, null, new BigDecimal("-0.5")});
+        assert Arrays.equals(linhas.get(3L), new Object[]{3L, "Servidor", grande});
+        Arrays.sort(ids);
+        assert Arrays.equals(ids, new long[]{1, 2, 3});
+
+        // Projecoes opacas continuam funcionando, materializando cada linha
+        List<String> nomes = repo.projetar(p -> String.valueOf(p.getNome()));
+        assert nomes.size() == 3 && materializacoes[0] == 3;
+
+        IRepository<Funcionario, String> funcionarios = new InMemoryRepository<>(new CompactadorFuncionario());
+        funcionarios.salvar(new Funcionario("F1", "Ana", "TI"));
+        List<Object[]> departamentos = funcionarios.projetar(new RegistroCampos<Funcionario>()
+                .registrar("departamento", Funcionario::getDepartamento)
+                .registrar("id", Funcionario::getId)
+                .projecao("departamento", "id"));
+        assert Arrays.equals(departamentos.get(0), new Object[]{"TI", "F1"});
+        System.out.println("   OK linhas e IDs lidos sem materializar entidades, iguais aos getters");
+    }
+
+    private static void testCodecs() {
+        System.out.println("\n7. Codecs binarios...");
+        BigDecimal grande = new BigDecimal(new BigInteger("123456789012345678901234567890"), 4);
+        Produto[] produtos = {
+                new Produto(1L, "Notebook", new BigDecimal("2500.00")),
+                new Produto(2L, null, null),
+                new Produto(3L, "Câmera ção", grande),
+                new Produto(-4L, "", grande.negate()),
+                new Produto(Long.MAX_VALUE, "Limite", new BigDecimal("1E+3"))
+        };
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1_024), ByteBuffer.allocateDirect(1_024)}) {
+            for (Produto produto : produtos) {
+                ProdutoCodec.escrever(produto, buffer);
+            }
+            buffer.flip();
+            for (Produto produto : produtos) {
+                Produto lido = ProdutoCodec.ler(buffer);
+                assert lido.getId().equals(produto.getId());
+                assert Objects.equals(lido.getNome(), produto.getNome());
+                assert Objects.equals(lido.getPreco(), produto.getPreco()) : lido.getPreco();
+            }
+            assert !buffer.hasRemaining();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        FuncionarioCodec.escrever(new Funcionario("F9", null, "TI"), buffer);
+        FuncionarioCodec.escrever(new Funcionario(null, "Sem ID", null), buffer);
+        buffer.flip();
+        Funcionario primeiro = FuncionarioCodec.ler(buffer);
+        Funcionario segundo = FuncionarioCodec.ler(buffer);
+        assert primeiro.getId().equals("F9") && primeiro.getNome() == null && primeiro.getDepartamento().equals("TI");
+        assert segundo.getId() == null && segundo.getNome().equals("Sem ID") && segundo.getDepartamento() == null;
+        System.out.println("   OK nulos, BigDecimal acima de 64 bits, escala negativa e UTF-8 em buffers heap e direto");
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Base de faixas de CEP em um arquivo binário mapeado em memória:
+//   cabeçalho: "CEPB" | versão | nº de faixas | início dos textos       (4 ints)
+//   faixas:    início | fim | posição da localidade | UF (byte) + 3 bytes livres, ordenadas por início
+//   textos:    tamanho (short) + UTF-8 de cada localidade
+// Abrir só mapeia o arquivo; a busca é binária direto no buffer e não aloca.
+final class BaseCEP {
+    private static final int MAGICO = 0x43455042;
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int TAMANHO_FAIXA = 16;
+    private static final UF[] UFS = UF.values();
+
+    private final MappedByteBuffer dados;
+    private final int quantidade;
+    // Localidades decodificadas sob demanda; String é imutável, então a corrida ao preencher é inofensiva
+    private final String[] localidades;
+
+    private BaseCEP(MappedByteBuffer dados) {
+        this.dados = dados;
+        if (dados.getInt(0) != MAGICO || dados.getInt(4) != VERSAO) {
+            throw new IllegalArgumentException("Arquivo não é uma base de CEP na versão " + VERSAO);
+        }
+        this.quantidade = dados.getInt(8);
+        this.localidades = new String[quantidade];
+    }
+
+    // Recompila o binário só quando a fonte em texto é mais nova que ele
+    public static BaseCEP carregar(Path fonte, Path binario) {
+        try {
+            if (!Files.exists(binario)
+                    || Files.getLastModifiedTime(binario).compareTo(Files.getLastModifiedTime(fonte)) < 0) {
+                compilar(fonte, binario);
+            }
+            return abrir(binario);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static BaseCEP abrir(Path binario) throws IOException {
+        try (FileChannel canal = FileChannel.open(binario, StandardOpenOption.READ)) {
+            MappedByteBuffer mapeado = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            mapeado.order(ByteOrder.BIG_ENDIAN);
+            return new BaseCEP(mapeado);
+        }
+    }
+
+    // Formato da fonte: início;fim;UF;localidade por linha, '#' para comentários; faixas não podem se sobrepor
+    public static void compilar(Path fonte, Path binario) throws IOException {
+        List<Faixa> faixas = new ArrayList<>();
+        List<String> linhas = Files.readAllLines(fonte, StandardCharsets.UTF_8);
+        for (int i = 0; i < linhas.size(); i++) {
+            String linha = linhas.get(i).strip();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            String[] campos = linha.split(";", 4);
+            if (campos.length != 4) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " da base de CEP inválida: " + linha);
+            }
+            int inicio = CEP.analisar(campos[0].strip());
+            int fim = CEP.analisar(campos[1].strip());
+            if (inicio < 0 || fim < inicio) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " com faixa de CEP inválida: " + linha);
+            }
+            UF uf;
+            try {
+                uf = UF.valueOf(campos[2].strip());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " com UF desconhecida: " + campos[2], e);
+            }
+            faixas.add(new Faixa(inicio, fim, uf, campos[3].strip()));
+        }
+        faixas.sort(Comparator.comparingInt(Faixa::inicio));
+        for (int i = 1; i < faixas.size(); i++) {
+            if (faixas.get(i).inicio() <= faixas.get(i - 1).fim()) {
+                throw new IllegalArgumentException("Faixas de CEP sobrepostas: " + faixas.get(i - 1).localidade()
+                        + " e " + faixas.get(i).localidade());
+            }
+        }
+
+        int inicioTextos = TAMANHO_CABECALHO + faixas.size() * TAMANHO_FAIXA;
+        List<byte[]> textos = new ArrayList<>();
+        int tamanhoTextos = 0;
+        for (Faixa faixa : faixas) {
+            byte[] texto = faixa.localidade().getBytes(StandardCharsets.UTF_8);
+            if (texto.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Localidade longa demais: " + faixa.localidade());
+            }
+            textos.add(texto);
+            tamanhoTextos += 2 + texto.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(inicioTextos + tamanhoTextos);
+        buffer.putInt(MAGICO).putInt(VERSAO).putInt(faixas.size()).putInt(inicioTextos);
+        int posicaoTexto = inicioTextos;
+        for (int i = 0; i < faixas.size(); i++) {
+            Faixa faixa = faixas.get(i);
+            buffer.putInt(faixa.inicio()).putInt(faixa.fim()).putInt(posicaoTexto)
+                    .put((byte) faixa.uf().ordinal()).put((byte) 0).putShort((short) 0);
+            posicaoTexto += 2 + textos.get(i).length;
+        }
+        for (byte[] texto : textos) {
+            buffer.putShort((short) texto.length).put(texto);
+        }
+
+        // Grava ao lado e troca de uma vez, para quem mapeou o arquivo antigo não ler metade do novo
+        Path temporario = binario.resolveSibling(binario.getFileName() + ".tmp");
+        Files.write(temporario, buffer.array());
+        Files.move(temporario, binario, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Índice da faixa que contém o CEP (já convertido por CEP.analisar) ou -1
+    public int localizar(int cep) {
+        int baixo = 0;
+        int alto = quantidade - 1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (dados.getInt(TAMANHO_CABECALHO + meio * TAMANHO_FAIXA) <= cep) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        if (alto < 0 || dados.getInt(TAMANHO_CABECALHO + alto * TAMANHO_FAIXA + 4) < cep) {
+            return -1;
+        }
+        return alto;
+    }
+
+    public UF uf(int indice) {
+        return UFS[dados.get(TAMANHO_CABECALHO + indice * TAMANHO_FAIXA + 12)];
+    }
+
+    public Regiao regiao(int indice) {
+        return uf(indice).getRegiao();
+    }
+
+    public String localidade(int indice) {
+        String localidade = localidades[indice];
+        if (localidade == null) {
+            int posicao = dados.getInt(TAMANHO_CABECALHO + indice * TAMANHO_FAIXA + 8);
+            byte[] texto = new byte[dados.getShort(posicao)];
+            dados.get(posicao + 2, texto);
+            localidade = new String(texto, StandardCharsets.UTF_8);
+            localidades[indice] = localidade;
+        }
+        return localidade;
+    }
+
+    public int quantidade() {
+        return quantidade;
+    }
+
+    private record Faixa(int inicio, int fim, UF uf, String localidade) {
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class BenchmarkCEP {
+    private static final int OPERACOES = 5_000_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String[] CEPS = {"01310-100", "90210-001", "40020000", "69005-040", "70040-010",
+            "22041-001", "80010-000", "60165-121"};
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== BENCHMARK: ANÁLISE DE CEP (ARRAY x REGEX + HASHMAP) ===\n");
+
+        Path binario = Files.createTempFile("faixas-cep", ".bin");
+        Files.delete(binario);
+        BaseCEP base = BaseCEP.carregar(Path.of(args.length > 0 ? args[0] : "faixas-cep.csv"), binario);
+        System.out.println("Base de CEP: " + base.quantidade() + " faixas, " + Files.size(binario) + " bytes\n");
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  analisar + regiaoDe (sem alocação)", i -> CEP.regiaoDe(CEP.analisar(CEPS[i & 7])).ordinal());
+            medir("  new CEP (atual)", i -> new CEP(CEPS[i & 7]).getRegiao().ordinal());
+            medir("  CEP anterior (regex + HashMap)", i -> new CEPAnterior(CEPS[i & 7]).regiao.ordinal());
+            medir("  analisar + BaseCEP.localizar (mmap)", i -> base.uf(base.localizar(CEP.analisar(CEPS[i & 7]))).ordinal());
+            medir("  new CEP com BaseCEP", i -> new CEP(CEPS[i & 7], base).getUf().ordinal());
+        }
+        Files.deleteIfExists(binario);
+    }
+
+    private interface Operacao {
+        int executar(int i);
+    }
+
+    private static void medir(String rotulo, Operacao operacao) {
+        long thread = Thread.currentThread().getId();
+        int checksum = 0;
+        long bytesAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += operacao.executar(i);
+        }
+        long duracao = System.nanoTime() - inicio;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesAntes;
+        System.out.printf("%-40s %6.1f ns/op %7.1f bytes/op %6.1f M/s (checksum %d)%n", rotulo,
+                (double) duracao / OPERACOES, (double) bytes / OPERACOES, OPERACOES * 1e3 / duracao, checksum);
+    }
+
+    // Implementação anterior, mantida apenas como referência de comparação
+    private static final class CEPAnterior {
+        private static final Pattern CEP_PATTERN = Pattern.compile("\\d{5}-?\\d{3}");
+        private static final Map<String, Regiao> REGIOES_CEP = new HashMap<>();
+
+        static {
+            for (String prefixo : new String[]{"01", "02", "03", "04", "05", "20", "21", "22", "23", "24"}) {
+                REGIOES_CEP.put(prefixo, Regiao.SUDESTE);
+            }
+            for (String prefixo : new String[]{"80", "81", "82", "90", "91"}) {
+                REGIOES_CEP.put(prefixo, Regiao.SUL);
+            }
+            for (String prefixo : new String[]{"40", "41", "50", "51", "60"}) {
+                REGIOES_CEP.put(prefixo, Regiao.NORDESTE);
+            }
+            REGIOES_CEP.put("68", Regiao.NORTE);
+            REGIOES_CEP.put("69", Regiao.NORTE);
+            for (String prefixo : new String[]{"70", "71", "72", "78"}) {
+                REGIOES_CEP.put(prefixo, Regiao.CENTRO_OESTE);
+            }
+        }
+
+        private final String codigo;
+        private final Regiao regiao;
+
+        private CEPAnterior(String codigo) {
+            if (codigo == null || !CEP_PATTERN.matcher(codigo.replace("-", "")).matches()) {
+                throw new IllegalArgumentException("CEP inválido: " + codigo);
+            }
+            this.codigo = codigo.replace("-", "");
+            this.regiao = REGIOES_CEP.get(this.codigo.substring(0, 2));
+            if (this.regiao == null) {
+                throw new IllegalArgumentException("CEP não mapeado para região: " + codigo);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class BenchmarkCotacaoFrete {
+    private static final int OPERACOES = 2_000_000;
+
+    public static void main(String[] args) {
+        System.out.println("=== BENCHMARK: COTAÇÃO DE FRETE (DIRETA x CACHE, MATRIZ x GEOMETRIA) ===\n");
+
+        // Pesos de produtos de página de catálogo: poucos valores distintos, muitas consultas
+        Regiao[] regioes = Regiao.values();
+        ContextoCotacao[] contextos = new ContextoCotacao[1_024];
+        Dinheiro subtotal = new Dinheiro("100.00", Moeda.BRL);
+        for (int i = 0; i < contextos.length; i++) {
+            contextos[i] = new ContextoCotacao(regioes[i % regioes.length], BigDecimal.valueOf(i % 200, 1), subtotal);
+        }
+
+        SedexStrategy sedex = new SedexStrategy();
+        CacheCotacoesFrete cache = new CacheCotacoesFrete(4_096);
+        CalculadoraFreteContextual sedexComCache = cache.envolver("SEDEX", sedex);
+
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            System.out.println("Rodada " + rodada + ":");
+            medir("  SedexStrategy direta", sedex, contextos);
+            medir("  SedexStrategy com cache", sedexComCache, contextos);
+        }
+
+        // Distância por setor: leitura na matriz pré-calculada x haversine a cada cotação
+        double[][] centros = {{-23.355, -46.877}, {-8.113, -35.015}, {-29.944, -50.992}, {-15.79, -47.88}};
+        List<MatrizDistancias.Centro> lista = new ArrayList<>();
+        for (double[] centro : centros) {
+            lista.add(new MatrizDistancias.Centro("CD" + lista.size(), centro[0], centro[1], Set.of()));
+        }
+        List<String> coordenadas = new ArrayList<>();
+        for (int setor = 10; setor < 1_000; setor++) {
+            coordenadas.add(setor + ";" + setor + ";" + (-30 + setor * 0.03) + ";" + (-60 + setor * 0.02));
+        }
+        MatrizDistancias matriz = MatrizDistancias.de(coordenadas, lista);
+        for (int rodada = 1; rodada <= 3; rodada++) {
+            long checksum = 0;
+            long inicio = System.nanoTime();
+            for (int i = 0; i < OPERACOES; i++) {
+                int setor = 10 + i % 990;
+                int menor = Integer.MAX_VALUE;
+                for (int c = 0; c < centros.length; c++) {
+                    menor = Math.min(menor, matriz.distanciaKm(setor, c));
+                }
+                checksum += menor;
+            }
+            long matrizNanos = System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            for (int i = 0; i < OPERACOES; i++) {
+                int setor = 10 + i % 990;
+                long menor = Long.MAX_VALUE;
+                for (double[] centro : centros) {
+                    menor = Math.min(menor, Math.round(MatrizDistancias.distanciaKm(-30 + setor * 0.03,
+                            -60 + setor * 0.02, centro[0], centro[1])));
+                }
+                checksum -= menor;
+            }
+            long geometriaNanos = System.nanoTime() - inicio;
+            System.out.printf("Centro mais próximo (%d centros): matriz %.1f ns/op, haversine %.1f ns/op "
+                    + "(checksum %d)%n", centros.length, (double) matrizNanos / OPERACOES,
+                    (double) geometriaNanos / OPERACOES, checksum);
+        }
+
+        CacheCotacoesFrete.Estatisticas estatisticas = cache.estatisticas();
+        // O ganho do cache é a diferença de ns/op entre as duas medições acima, não uma latência por consulta
+        System.out.printf("%nCache: %d entradas, acerto %.2f%%%n", estatisticas.tamanho(),
+                estatisticas.taxaAcerto() * 100);
+    }
+
+    private static void medir(String rotulo, CalculadoraFreteContextual calculadora, ContextoCotacao[] contextos) {
+        long checksum = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACOES; i++) {
+            checksum += calculadora.calcular(contextos[i & (contextos.length - 1)]).unscaledValue().longValue();
+        }
+        long duracao = System.nanoTime() - inicio;
+        System.out.printf("%-30s %6.1f ns/op (checksum %d)%n", rotulo, (double) duracao / OPERACOES, checksum);
+    }
+}
@@ -0,0 +1,98 @@
+class CEP {
+    private final int numero;
+    private final Regiao regiao;
+    // Só preenchidos quando o CEP é resolvido por uma BaseCEP
+    private final UF uf;
+    private final String localidade;
+    // Região indexada pelos dois primeiros dígitos do CEP
+    private static final Regiao[] REGIOES_POR_PREFIXO = new Regiao[100];
+
+    static {
+        for (int prefixo : new int[]{1, 2, 3, 4, 5, 20, 21, 22, 23, 24}) {
+            REGIOES_POR_PREFIXO[prefixo] = Regiao.SUDESTE;
+        }
+        for (int prefixo : new int[]{80, 81, 82, 90, 91}) {
+            REGIOES_POR_PREFIXO[prefixo] = Regiao.SUL;
+        }
+        for (int prefixo : new int[]{40, 41, 50, 51, 60}) {
+            REGIOES_POR_PREFIXO[prefixo] = Regiao.NORDESTE;
+        }
+        for (int prefixo : new int[]{68, 69}) {
+            REGIOES_POR_PREFIXO[prefixo] = Regiao.NORTE;
+        }
+        for (int prefixo : new int[]{70, 71, 72, 78}) {
+            REGIOES_POR_PREFIXO[prefixo] = Regiao.CENTRO_OESTE;
+        }
+    }
+
+    public CEP(String codigo) {
+        this.numero = codigo == null ? -1 : analisar(codigo);
+        if (numero < 0) {
+            throw new IllegalArgumentException("CEP inválido: " + codigo);
+        }
+
+        this.regiao = regiaoDe(numero);
+        if (this.regiao == null) {
+            throw new IllegalArgumentException("CEP não mapeado para região: " + codigo);
+        }
+        this.uf = null;
+        this.localidade = null;
+    }
+
+    public CEP(String codigo, BaseCEP base) {
+        this.numero = codigo == null ? -1 : analisar(codigo);
+        if (numero < 0) {
+            throw new IllegalArgumentException("CEP inválido: " + codigo);
+        }
+
+        int faixa = base.localizar(numero);
+        if (faixa < 0) {
+            throw new IllegalArgumentException("CEP não mapeado para região: " + codigo);
+        }
+        this.regiao = base.regiao(faixa);
+        this.uf = base.uf(faixa);
+        this.localidade = base.localidade(faixa);
+    }
+
+    // Valida e converte em uma passada, sem alocar: 8 dígitos, hífens ignorados; -1 se inválido
+    static int analisar(CharSequence codigo) {
+        int numero = 0;
+        int digitos = 0;
+        for (int i = 0; i < codigo.length(); i++) {
+            char c = codigo.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digitos > 8) {
+                return -1;
+            }
+            numero = numero * 10 + (c - '0');
+        }
+        return digitos == 8 ? numero : -1;
+    }
+
+    static Regiao regiaoDe(int numero) {
+        return REGIOES_POR_PREFIXO[numero / 1_000_000];
+    }
+
+    public String getCodigo() {
+        String digitos = Integer.toString(numero);
+        return "00000000".substring(digitos.length()) + digitos;
+    }
+
+    public int getNumero() {
+        return numero;
+    }
+
+    public Regiao getRegiao() {
+        return regiao;
+    }
+
+    public UF getUf() {
+        return uf;
+    }
+
+    public String getLocalidade() {
+        return localidade;
+    }
+}
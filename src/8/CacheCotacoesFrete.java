@@ -0,0 +1,93 @@
+import java.math.BigDecimal;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache de frete para estratégias contextuais: elas só dependem do ContextoCotacao, então o
+// contexto inteiro (região, peso e subtotal exatos) é a chave e o valor devolvido é sempre o
+// mesmo que a estratégia devolveria. Compensa quando muitos pedidos repetem o mesmo contexto,
+// como os de um produto só em página de catálogo. Leituras não travam; acima da capacidade,
+// as entradas mais antigas saem primeiro (FIFO).
+final class CacheCotacoesFrete {
+    private final int capacidade;
+    private final ConcurrentHashMap<Chave, BigDecimal> valores = new ConcurrentHashMap<>();
+    // Ordem de inserção; pode guardar chaves que já saíram do mapa, que são só ignoradas
+    private final Queue<Chave> ordem = new ConcurrentLinkedQueue<>();
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    // Incrementada a cada invalidação: valores calculados antes dela não ficam no cache
+    private final AtomicLong geracao = new AtomicLong();
+
+    public CacheCotacoesFrete(int capacidade) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade do cache deve ser positiva");
+        }
+        this.capacidade = capacidade;
+    }
+
+    // Calculadora para registrar no lugar da original, por exemplo no ServicoCotacaoFrete
+    public CalculadoraFreteContextual envolver(String estrategia, CalculadoraFreteContextual calculadora) {
+        return contexto -> cotar(estrategia, calculadora, contexto);
+    }
+
+    public BigDecimal cotar(String estrategia, CalculadoraFreteContextual calculadora, ContextoCotacao contexto) {
+        Chave chave = new Chave(estrategia, contexto);
+        BigDecimal valor = valores.get(chave);
+        if (valor != null) {
+            acertos.increment();
+            return valor;
+        }
+
+        long geracaoInicial = geracao.get();
+        valor = calculadora.calcular(contexto);
+        if (valores.put(chave, valor) == null) {
+            ordem.add(chave);
+            descartarExcedente();
+        }
+        if (geracao.get() != geracaoInicial) {
+            // Uma invalidação começou durante o cálculo: o valor pode ter vindo da tarifa antiga
+            valores.remove(chave, valor);
+        }
+        faltas.increment();
+        return valor;
+    }
+
+    // Chamar depois que as novas tarifas já estiverem publicadas
+    public void invalidar() {
+        geracao.incrementAndGet();
+        valores.clear();
+        ordem.clear();
+    }
+
+    public void invalidar(String estrategia) {
+        geracao.incrementAndGet();
+        valores.keySet().removeIf(chave -> chave.estrategia().equals(estrategia));
+        ordem.removeIf(chave -> chave.estrategia().equals(estrategia));
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(acertos.sum(), faltas.sum(), valores.size());
+    }
+
+    public record Estatisticas(long acertos, long faltas, int tamanho) {
+        public double taxaAcerto() {
+            long total = acertos + faltas;
+            return total == 0 ? 0 : (double) acertos / total;
+        }
+    }
+
+    private void descartarExcedente() {
+        while (valores.size() > capacidade) {
+            Chave maisAntiga = ordem.poll();
+            if (maisAntiga == null) {
+                return;
+            }
+            valores.remove(maisAntiga);
+        }
+    }
+
+    private record Chave(String estrategia, ContextoCotacao contexto) {
+    }
+}
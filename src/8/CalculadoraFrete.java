@@ -0,0 +1,6 @@
+import java.math.BigDecimal;
+
+@FunctionalInterface
+interface CalculadoraFrete {
+    BigDecimal calcular(Pedido pedido);
+}
@@ -0,0 +1,12 @@
+import java.math.BigDecimal;
+
+// Estratégia que só depende do contexto da cotação, nunca dos itens do pedido
+@FunctionalInterface
+interface CalculadoraFreteContextual extends CalculadoraFrete {
+    BigDecimal calcular(ContextoCotacao contexto);
+
+    @Override
+    default BigDecimal calcular(Pedido pedido) {
+        return calcular(pedido.getContextoCotacao());
+    }
+}
@@ -0,0 +1,39 @@
+import java.math.BigDecimal;
+import java.util.List;
+
+// Agregados do pedido que as estratégias de frete consultam, calculados uma única vez por pedido.
+// O subtotal é nulo quando os itens misturam moedas: o peso, e com ele o frete, não depende disso.
+// A região é nula em pedido sem CEP, que só as estratégias sem região (como a retirada) cotam.
+record ContextoCotacao(Regiao regiao, BigDecimal pesoTotal, Dinheiro subtotal) {
+    static ContextoCotacao de(List<ItemCarrinho> itens, CEP cep) {
+        BigDecimal peso = BigDecimal.ZERO;
+        Dinheiro subtotal = null;
+        boolean moedaUnica = true;
+        for (ItemCarrinho item : itens) {
+            peso = peso.add(item.getPesoTotal());
+            if (!moedaUnica) {
+                continue;
+            }
+            Dinheiro parcial = item.getSubtotal();
+            if (subtotal == null) {
+                subtotal = parcial;
+            } else if (subtotal.getMoeda() == parcial.getMoeda()) {
+                subtotal = subtotal.somar(parcial);
+            } else {
+                moedaUnica = false;
+                subtotal = null;
+            }
+        }
+        if (itens.isEmpty()) {
+            subtotal = new Dinheiro(BigDecimal.ZERO, Moeda.BRL);
+        }
+        return new ContextoCotacao(cep == null ? null : cep.getRegiao(), peso, subtotal);
+    }
+
+    Regiao regiaoObrigatoria() {
+        if (regiao == null) {
+            throw new IllegalArgumentException("Pedido sem CEP: esta cotação depende da região");
+        }
+        return regiao;
+    }
+}
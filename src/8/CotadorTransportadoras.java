@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cota todas as transportadoras ao mesmo tempo, cada chamada em sua própria thread (virtual quando
+// o JDK oferece). Cada transportadora tem um prazo; se a primeira tentativa passa do p95 recente
+// dela, uma segunda é disparada e vale a que responder antes. Estourado o prazo, ou falhando as
+// duas, entra a calculadora de reserva (tabela ou cache) e a chamada lenta é interrompida.
+// O agendador só dispara repetições e reservas; todas rodam no executor das cotações.
+final class CotadorTransportadoras implements Closeable {
+    // Sem amostras suficientes para um p95 confiável, a repetição sai na metade do prazo
+    static final int AMOSTRAS_MINIMAS = 20;
+    private static final int JANELA_LATENCIAS = 1_024;
+    // O p95 que dispara a repetição é recalculado a cada tantas respostas novas, não a cada cotação
+    static final int RECALCULO_P95 = 64;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService agendador;
+    private final List<Transportadora> transportadoras = new ArrayList<>();
+    private final Map<String, JanelaLatencias> latencias = new ConcurrentHashMap<>();
+
+    public CotadorTransportadoras() {
+        this(Executores.porTarefa("cotacao-transportadora"));
+    }
+
+    public CotadorTransportadoras(ExecutorService executor) {
+        this.executor = executor;
+        this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "cotacao-agendador");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // reserva pode ser nula: sem resposta no prazo, a transportadora fica indisponível na cotação
+    public synchronized CotadorTransportadoras registrar(String nome, CalculadoraFrete calculadora, Duration prazo,
+                                                         CalculadoraFrete reserva) {
+        if (nome == null || calculadora == null || prazo == null || prazo.isNegative() || prazo.isZero()) {
+            throw new IllegalArgumentException("Transportadora exige nome, calculadora e prazo positivo");
+        }
+        if (latencias.putIfAbsent(nome, new JanelaLatencias(JANELA_LATENCIAS)) != null) {
+            throw new IllegalArgumentException("Transportadora já registrada: " + nome);
+        }
+        transportadoras.add(new Transportadora(nome, calculadora, prazo.toNanos(), reserva));
+        return this;
+    }
+
+    public List<Cotacao> cotar(Pedido pedido) {
+        return cotarAsync(pedido).join();
+    }
+
+    // Completa quando todas as transportadoras responderam ou tiveram o prazo estourado
+    public CompletableFuture<List<Cotacao>> cotarAsync(Pedido pedido) {
+        List<Transportadora> vigentes;
+        synchronized (this) {
+            vigentes = List.copyOf(transportadoras);
+        }
+        List<CompletableFuture<Cotacao>> cotacoes = new ArrayList<>();
+        for (Transportadora transportadora : vigentes) {
+            cotacoes.add(cotar(transportadora, pedido));
+        }
+        return CompletableFuture.allOf(cotacoes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nada -> cotacoes.stream().map(CompletableFuture::join).toList());
+    }
+
+    public Percentis percentis(String transportadora) {
+        JanelaLatencias janela = latencias.get(transportadora);
+        if (janela == null) {
+            throw new IllegalArgumentException("Transportadora não registrada: " + transportadora);
+        }
+        return janela.percentis();
+    }
+
+    @Override
+    public void close() {
+        agendador.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    enum Origem {
+        PRIMARIA, REPETICAO, RESERVA, INDISPONIVEL
+    }
+
+    // valor é nulo quando a origem é INDISPONIVEL
+    record Cotacao(String transportadora, BigDecimal valor, Origem origem, long latenciaNanos) {
+    }
+
+    record Percentis(int amostras, long p50Nanos, long p95Nanos, long p99Nanos) {
+    }
+
+    private CompletableFuture<Cotacao> cotar(Transportadora transportadora, Pedido pedido) {
+        long inicio = System.nanoTime();
+        CompletableFuture<Cotacao> resultado = new CompletableFuture<>();
+        JanelaLatencias janela = latencias.get(transportadora.nome());
+        List<Future<?>> tentativas = new ArrayList<>(2);
+        List<Future<?>> agendadas = new ArrayList<>(2);
+
+        long p95 = janela.p95Recente();
+        long atrasoRepeticao = p95 >= 0 ? p95 : transportadora.prazoNanos() / 2;
+        boolean comRepeticao = atrasoRepeticao < transportadora.prazoNanos();
+        Tentativa tentativa = new Tentativa(transportadora, pedido, inicio, janela, resultado, comRepeticao ? 2 : 1);
+
+        synchronized (tentativas) {
+            tentativas.add(executor.submit(() -> tentativa.executar(Origem.PRIMARIA)));
+            if (comRepeticao) {
+                agendadas.add(agendador.schedule(() -> {
+                    synchronized (tentativas) {
+                        if (!resultado.isDone()) {
+                            tentativas.add(executor.submit(() -> tentativa.executar(Origem.REPETICAO)));
+                        }
+                    }
+                }, atrasoRepeticao, TimeUnit.NANOSECONDS));
+            }
+            // Estourado o prazo, a reserva vai para o executor; as tentativas param quando ela responder
+            agendadas.add(agendador.schedule(() -> {
+                synchronized (tentativas) {
+                    if (!resultado.isDone()) {
+                        agendadas.add(executor.submit(tentativa::recorrerAReserva));
+                    }
+                }
+            }, transportadora.prazoNanos(), TimeUnit.NANOSECONDS));
+        }
+
+        // Quem perdeu a corrida, ou passou do prazo, é interrompido
+        resultado.whenComplete((cotacao, erro) -> {
+            synchronized (tentativas) {
+                tentativas.forEach(futura -> futura.cancel(true));
+                agendadas.forEach(futura -> futura.cancel(false));
+            }
+        });
+        return resultado;
+    }
+
+    private static final class Tentativa {
+        private final Transportadora transportadora;
+        private final Pedido pedido;
+        private final long inicio;
+        private final JanelaLatencias janela;
+        private final CompletableFuture<Cotacao> resultado;
+        private final AtomicInteger falhasRestantes;
+
+        private Tentativa(Transportadora transportadora, Pedido pedido, long inicio, JanelaLatencias janela,
+                          CompletableFuture<Cotacao> resultado, int tentativasPrevistas) {
+            this.transportadora = transportadora;
+            this.pedido = pedido;
+            this.inicio = inicio;
+            this.janela = janela;
+            this.resultado = resultado;
+            this.falhasRestantes = new AtomicInteger(tentativasPrevistas);
+        }
+
+        private void executar(Origem origem) {
+            long inicioTentativa = System.nanoTime();
+            try {
+                BigDecimal valor = transportadora.calculadora().calcular(pedido);
+                long fim = System.nanoTime();
+                janela.registrar(fim - inicioTentativa);
+                resultado.complete(new Cotacao(transportadora.nome(), valor, origem, fim - inicio));
+            } catch (RuntimeException e) {
+                // Todas as tentativas previstas falharam: não espera o prazo para usar a reserva
+                if (falhasRestantes.decrementAndGet() == 0) {
+                    recorrerAReserva();
+                }
+            }
+        }
+
+        private void recorrerAReserva() {
+            if (!resultado.isDone()) {
+                resultado.complete(reserva(transportadora, pedido, inicio));
+            }
+        }
+    }
+
+    private static Cotacao reserva(Transportadora transportadora, Pedido pedido, long inicio) {
+        if (transportadora.reserva() == null) {
+            return new Cotacao(transportadora.nome(), null, Origem.INDISPONIVEL, System.nanoTime() - inicio);
+        }
+        try {
+            return new Cotacao(transportadora.nome(), transportadora.reserva().calcular(pedido), Origem.RESERVA,
+                    System.nanoTime() - inicio);
+        } catch (RuntimeException e) {
+            return new Cotacao(transportadora.nome(), null, Origem.INDISPONIVEL, System.nanoTime() - inicio);
+        }
+    }
+
+    private record Transportadora(String nome, CalculadoraFrete calculadora, long prazoNanos,
+                                  CalculadoraFrete reserva) {
+    }
+
+    // Últimas latências de respostas bem-sucedidas, em buffer circular
+    private static final class JanelaLatencias {
+        private final long[] amostras;
+        private int proxima;
+        private int quantidade;
+        private long p95 = -1;
+        private int novasDesdeP95;
+
+        private JanelaLatencias(int tamanho) {
+            this.amostras = new long[tamanho];
+        }
+
+        private synchronized void registrar(long nanos) {
+            amostras[proxima] = nanos;
+            proxima = (proxima + 1) % amostras.length;
+            quantidade = Math.min(quantidade + 1, amostras.length);
+            novasDesdeP95++;
+        }
+
+        // -1 enquanto não há amostras suficientes; senão o p95 do último recálculo
+        private synchronized long p95Recente() {
+            if (quantidade < AMOSTRAS_MINIMAS) {
+                return -1;
+            }
+            if (p95 < 0 || novasDesdeP95 >= RECALCULO_P95) {
+                p95 = percentis().p95Nanos();
+                novasDesdeP95 = 0;
+            }
+            return p95;
+        }
+
+        private Percentis percentis() {
+            long[] ordenadas;
+            synchronized (this) {
+                ordenadas = Arrays.copyOf(amostras, quantidade);
+            }
+            if (ordenadas.length == 0) {
+                return new Percentis(0, 0, 0, 0);
+            }
+            Arrays.sort(ordenadas);
+            return new Percentis(ordenadas.length, percentil(ordenadas, 50), percentil(ordenadas, 95),
+                    percentil(ordenadas, 99));
+        }
+
+        private static long percentil(long[] ordenadas, int percentil) {
+            int indice = (int) Math.ceil(percentil / 100.0 * ordenadas.length) - 1;
+            return ordenadas[Math.max(0, indice)];
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executor de uma thread por tarefa para trabalho que passa a maior parte do tempo esperando I/O.
+// Em JDKs com threads virtuais (21+) usa Executors.newVirtualThreadPerTaskExecutor; no Java 17
+// do projeto cai para um pool de threads daemon sob demanda, com o mesmo contrato.
+final class Executores {
+    private Executores() {
+    }
+
+    static ExecutorService porTarefa(String nome) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger contador = new AtomicInteger();
+            return Executors.newCachedThreadPool(tarefa -> {
+                Thread thread = new Thread(tarefa, nome + "-" + contador.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static boolean virtuais() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
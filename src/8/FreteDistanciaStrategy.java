@@ -0,0 +1,54 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+// Frete pela distância até o centro de distribuição mais próximo que tem todos os itens do pedido:
+// valor base + valor por km + valor por kg. As distâncias vêm prontas da MatrizDistancias.
+class FreteDistanciaStrategy implements CalculadoraFrete {
+    private final MatrizDistancias matriz;
+    private final BigDecimal valorBase;
+    private final BigDecimal valorPorKm;
+    private final BigDecimal valorPorKg;
+
+    public FreteDistanciaStrategy(MatrizDistancias matriz, BigDecimal valorBase, BigDecimal valorPorKm,
+                                  BigDecimal valorPorKg) {
+        this.matriz = matriz;
+        this.valorBase = valorBase;
+        this.valorPorKm = valorPorKm;
+        this.valorPorKg = valorPorKg;
+    }
+
+    @Override
+    public BigDecimal calcular(Pedido pedido) {
+        Rota rota = rota(pedido);
+        return valorBase.add(valorPorKm.multiply(BigDecimal.valueOf(rota.distanciaKm())))
+                .add(valorPorKg.multiply(pedido.getPesoTotal()))
+                .setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    public Rota rota(Pedido pedido) {
+        int setor = MatrizDistancias.setorDe(pedido.getCep());
+        List<MatrizDistancias.Centro> centros = matriz.centros();
+        List<ItemCarrinho> itens = pedido.getItens();
+        int melhor = -1;
+        int menorDistancia = Integer.MAX_VALUE;
+        for (int c = 0; c < centros.size(); c++) {
+            int distancia = matriz.distanciaKm(setor, c);
+            if (distancia < 0) {
+                throw new IllegalArgumentException("CEP sem coordenadas para cálculo de distância: "
+                        + pedido.getCep().getCodigo());
+            }
+            if (distancia < menorDistancia && centros.get(c).temEstoque(itens)) {
+                melhor = c;
+                menorDistancia = distancia;
+            }
+        }
+        if (melhor < 0) {
+            throw new IllegalArgumentException("Nenhum centro de distribuição tem todos os itens do pedido");
+        }
+        return new Rota(centros.get(melhor), menorDistancia);
+    }
+
+    record Rota(MatrizDistancias.Centro centro, int distanciaKm) {
+    }
+}
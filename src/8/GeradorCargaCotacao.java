@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Carga fechada contra o endpoint de cotação: N clientes, cada um mandando a próxima requisição assim
+// que recebe a anterior. Mede requisições por segundo e percentis de latência depois do aquecimento.
+//   java GeradorCargaCotacao [url|local] [clientes] [segundos]
+// Com "local" ou sem argumentos, sobe um ServidorCotacao na mesma JVM (cliente e servidor disputam
+// a mesma máquina).
+public class GeradorCargaCotacao {
+    private static final long AQUECIMENTO_NANOS = 2_000_000_000L;
+
+    // Pedidos variados: regiões diferentes, com e sem estratégia escolhida, um e vários itens
+    private static final String[] PEDIDOS = {
+            "{\"cep\":\"01310-100\",\"itens\":[{\"id\":1,\"nome\":\"Notebook\",\"preco\":\"2500.00\","
+                    + "\"peso\":2.5,\"quantidade\":1}]}",
+            "{\"cep\":\"80010-000\",\"estrategia\":\"PAC\",\"itens\":[{\"id\":2,\"nome\":\"Mouse\","
+                    + "\"preco\":\"150.00\",\"peso\":0.2,\"quantidade\":2},{\"id\":3,\"nome\":\"Teclado\","
+                    + "\"preco\":\"320.00\",\"peso\":0.9,\"quantidade\":1}]}",
+            "{\"cep\":\"40010-000\",\"estrategia\":\"SEDEX\",\"itens\":[{\"id\":4,\"nome\":\"Livro\","
+                    + "\"preco\":\"59.90\",\"peso\":0.5,\"quantidade\":3}]}",
+            "{\"cep\":\"69010-000\",\"itens\":[{\"id\":5,\"nome\":\"Monitor\",\"preco\":\"1200.00\","
+                    + "\"peso\":4.8,\"quantidade\":1},{\"id\":6,\"nome\":\"Cabo\",\"preco\":\"25.00\","
+                    + "\"peso\":0.1,\"quantidade\":4},{\"id\":7,\"nome\":\"Suporte\",\"preco\":\"180.00\","
+                    + "\"peso\":1.6,\"quantidade\":1}]}"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 && !args[0].equals("local") ? args[0] : null;
+        int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        ServidorCotacao local = null;
+        if (url == null) {
+            local = new ServidorCotacao(ServicoCotacaoFrete.padrao(ForkJoinPool.commonPool()), null)
+                    .iniciar(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            url = "http://127.0.0.1:" + local.porta() + ServidorCotacao.CAMINHO;
+        }
+        System.out.println("=== GERADOR DE CARGA: COTAÇÃO DE FRETE POR HTTP ===\n");
+        System.out.println("Alvo: " + url);
+        System.out.println("Clientes: " + clientes + ", duração: " + segundos + " s (+2 s de aquecimento)");
+        System.out.println("Threads por requisição: " + (Executores.virtuais() ? "virtuais" : "de plataforma"));
+
+        ExecutorService executor = Executores.porTarefa("gerador-carga");
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+        HttpRequest[] requisicoes = new HttpRequest[PEDIDOS.length];
+        for (int i = 0; i < PEDIDOS.length; i++) {
+            requisicoes[i] = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(PEDIDOS[i]))
+                    .build();
+        }
+
+        long inicioMedicao = System.nanoTime() + AQUECIMENTO_NANOS;
+        long fim = inicioMedicao + segundos * 1_000_000_000L;
+        List<Future<Cliente>> resultados = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            int deslocamento = c;
+            resultados.add(executor.submit(() -> executar(cliente, requisicoes, deslocamento, inicioMedicao, fim)));
+        }
+
+        long[] latencias = new long[0];
+        long erros = 0;
+        for (Future<Cliente> resultado : resultados) {
+            Cliente parcial = resultado.get();
+            int anterior = latencias.length;
+            latencias = Arrays.copyOf(latencias, anterior + parcial.quantidade);
+            System.arraycopy(parcial.latencias, 0, latencias, anterior, parcial.quantidade);
+            erros += parcial.erros;
+        }
+        executor.shutdownNow();
+        if (local != null) {
+            local.close();
+        }
+
+        Arrays.sort(latencias);
+        System.out.printf("%nRequisições: %d em %d s (%d erros)%n", latencias.length, segundos, erros);
+        System.out.printf("Vazão: %.0f req/s%n", latencias.length / (double) segundos);
+        if (latencias.length > 0) {
+            System.out.printf("Latência: p50 %.3f ms | p95 %.3f ms | p99 %.3f ms | máx %.3f ms%n",
+                    percentil(latencias, 50) / 1e6, percentil(latencias, 95) / 1e6,
+                    percentil(latencias, 99) / 1e6, latencias[latencias.length - 1] / 1e6);
+        }
+    }
+
+    private static Cliente executar(HttpClient cliente, HttpRequest[] requisicoes, int deslocamento,
+                                    long inicioMedicao, long fim) {
+        Cliente resultado = new Cliente();
+        for (long i = deslocamento; ; i++) {
+            long inicio = System.nanoTime();
+            if (inicio >= fim) {
+                return resultado;
+            }
+            boolean ok;
+            try {
+                HttpResponse<String> resposta = cliente.send(requisicoes[(int) (i % requisicoes.length)],
+                        HttpResponse.BodyHandlers.ofString());
+                ok = resposta.statusCode() == 200;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return resultado;
+            }
+            long duracao = System.nanoTime() - inicio;
+            // Só conta o que começou depois do aquecimento e terminou dentro da janela
+            if (inicio >= inicioMedicao && inicio + duracao <= fim) {
+                if (ok) {
+                    resultado.registrar(duracao);
+                } else {
+                    resultado.erros++;
+                }
+            }
+        }
+    }
+
+    private static long percentil(long[] ordenadas, int percentil) {
+        int indice = (int) Math.ceil(percentil / 100.0 * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)];
+    }
+
+    // Latências de um cliente, sem sincronização: cada cliente só escreve nas próprias
+    private static final class Cliente {
+        private long[] latencias = new long[4_096];
+        private int quantidade;
+        private long erros;
+
+        private void registrar(long nanos) {
+            if (quantidade == latencias.length) {
+                latencias = Arrays.copyOf(latencias, quantidade * 2);
+            }
+            latencias[quantidade++] = nanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import java.math.BigDecimal;
+
+final class ItemCarrinho {
+    private final Produto produto;
+    private final int quantidade;
+
+    public ItemCarrinho(Produto produto, int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser maior que zero");
+        }
+        this.produto = produto;
+        this.quantidade = quantidade;
+    }
+
+    public Produto getProduto() {
+        return produto;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public Dinheiro getSubtotal() {
+        return produto.getPreco().multiplicar(new BigDecimal(quantidade));
+    }
+
+    public BigDecimal getPesoTotal() {
+        return produto.getPeso().multiply(new BigDecimal(quantidade));
+    }
+}
@@ -0,0 +1,340 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+// Leitor de JSON por demanda (pull): devolve um token por vez direto do Reader, sem montar árvore.
+// Números chegam como texto, para virar BigDecimal sem passar por double. Quem lê um NOME que não
+// conhece chama pular() para descartar o valor, com tudo que houver dentro dele. Textos e números têm
+// tamanho limitado, e lerNumero recusa precisão ou expoente grandes: "1e999999999" é curto, mas
+// setScale ou toPlainString sobre ele montam um número de um bilhão de dígitos.
+final class LeitorJson {
+    enum Token {
+        INICIO_OBJETO, FIM_OBJETO, INICIO_LISTA, FIM_LISTA, NOME, TEXTO, NUMERO, VERDADEIRO, FALSO, NULO, FIM
+    }
+
+    static final int PROFUNDIDADE_MAXIMA = 64;
+    static final int TAMANHO_MAXIMO_TEXTO = 1_024;
+    // Cabe com folga qualquer valor monetário ou peso; BigDecimal aceitaria expoentes de até 2^31
+    static final int PRECISAO_MAXIMA = 34;
+    static final int ESCALA_MAXIMA = 34;
+
+    private static final byte OBJETO = 0;
+    private static final byte LISTA = 1;
+    // Estados de cada nível aberto
+    private static final byte PRIMEIRO = 0;
+    private static final byte VALOR = 1;
+    private static final byte VIRGULA_OU_FIM = 2;
+
+    private final Reader entrada;
+    private final char[] buffer = new char[8_192];
+    private int posicaoBuffer;
+    private int limiteBuffer;
+    private long posicao;
+
+    private final byte[] tipos = new byte[PROFUNDIDADE_MAXIMA];
+    private final byte[] estados = new byte[PROFUNDIDADE_MAXIMA];
+    private int profundidade;
+    private boolean raizLida;
+
+    private final StringBuilder texto = new StringBuilder();
+    private Token atual;
+
+    LeitorJson(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    public Token proximo() {
+        pularEspacos();
+        if (profundidade == 0) {
+            if (raizLida) {
+                if (espiar() != -1) {
+                    throw erro("conteúdo após o fim do documento");
+                }
+                return atual = Token.FIM;
+            }
+            raizLida = true;
+            return atual = lerValor();
+        }
+
+        int nivel = profundidade - 1;
+        int c = espiar();
+        if (tipos[nivel] == OBJETO) {
+            if (estados[nivel] == VALOR) {
+                estados[nivel] = VIRGULA_OU_FIM;
+                return atual = lerValor();
+            }
+            if (c == '}') {
+                ler();
+                profundidade--;
+                return atual = Token.FIM_OBJETO;
+            }
+            if (estados[nivel] == VIRGULA_OU_FIM) {
+                esperar(',');
+                pularEspacos();
+            }
+            if (espiar() != '"') {
+                throw erro("esperado nome de campo");
+            }
+            ler();
+            lerTexto();
+            pularEspacos();
+            esperar(':');
+            estados[nivel] = VALOR;
+            return atual = Token.NOME;
+        }
+
+        if (c == ']') {
+            ler();
+            profundidade--;
+            return atual = Token.FIM_LISTA;
+        }
+        if (estados[nivel] == VIRGULA_OU_FIM) {
+            esperar(',');
+            pularEspacos();
+        }
+        estados[nivel] = VIRGULA_OU_FIM;
+        return atual = lerValor();
+    }
+
+    // Texto do NOME, TEXTO ou NUMERO atual
+    public String texto() {
+        if (atual != Token.NOME && atual != Token.TEXTO && atual != Token.NUMERO) {
+            throw new IllegalStateException("Token atual não tem texto: " + atual);
+        }
+        return texto.toString();
+    }
+
+    // Descarta o próximo valor inteiro (escalar, objeto ou lista)
+    public void pular() {
+        Token token = proximo();
+        if (token == Token.INICIO_OBJETO || token == Token.INICIO_LISTA) {
+            int alvo = profundidade - 1;
+            while (profundidade > alvo) {
+                proximo();
+            }
+        } else if (token == Token.FIM_OBJETO || token == Token.FIM_LISTA || token == Token.FIM) {
+            throw erro("esperado um valor");
+        }
+    }
+
+    public String lerTexto(String campo) {
+        Token token = proximo();
+        if (token == Token.NULO) {
+            return null;
+        }
+        if (token != Token.TEXTO) {
+            throw new IllegalArgumentException("Campo '" + campo + "' deve ser texto");
+        }
+        return texto();
+    }
+
+    // Aceita número ou texto com número ("2500.00"), como é comum para valores monetários
+    public BigDecimal lerNumero(String campo) {
+        Token token = proximo();
+        if (token != Token.NUMERO && token != Token.TEXTO) {
+            throw new IllegalArgumentException("Campo '" + campo + "' deve ser numérico");
+        }
+        String numero = texto.toString();
+        BigDecimal valor;
+        try {
+            valor = new BigDecimal(numero);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Campo '" + campo + "' deve ser numérico: " + numero);
+        }
+        if (valor.precision() > PRECISAO_MAXIMA || Math.abs(valor.scale()) > ESCALA_MAXIMA) {
+            throw new IllegalArgumentException("Campo '" + campo + "' fora do intervalo aceito: " + numero);
+        }
+        return valor;
+    }
+
+    public void esperar(Token esperado) {
+        Token token = proximo();
+        if (token != esperado) {
+            throw erro("esperado " + esperado + ", encontrado " + token);
+        }
+    }
+
+    private Token lerValor() {
+        int c = ler();
+        switch (c) {
+            case '{':
+                abrir(OBJETO);
+                return Token.INICIO_OBJETO;
+            case '[':
+                abrir(LISTA);
+                return Token.INICIO_LISTA;
+            case '"':
+                lerTexto();
+                return Token.TEXTO;
+            case 't':
+                lerLiteral("rue");
+                return Token.VERDADEIRO;
+            case 'f':
+                lerLiteral("alse");
+                return Token.FALSO;
+            case 'n':
+                lerLiteral("ull");
+                return Token.NULO;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    lerNumero(c);
+                    return Token.NUMERO;
+                }
+                throw erro(c == -1 ? "fim inesperado" : "caractere inesperado '" + (char) c + "'");
+        }
+    }
+
+    private void abrir(byte tipo) {
+        if (profundidade == PROFUNDIDADE_MAXIMA) {
+            throw erro("aninhamento acima de " + PROFUNDIDADE_MAXIMA + " níveis");
+        }
+        tipos[profundidade] = tipo;
+        estados[profundidade] = PRIMEIRO;
+        profundidade++;
+    }
+
+    // Lê até a aspa final; a aspa inicial já foi consumida
+    private void lerTexto() {
+        texto.setLength(0);
+        while (true) {
+            int c = ler();
+            if (c == '"') {
+                return;
+            }
+            if (c == -1) {
+                throw erro("texto sem aspa final");
+            }
+            if (c < 0x20) {
+                throw erro("caractere de controle em texto");
+            }
+            if (c != '\\') {
+                acrescentar(c);
+                continue;
+            }
+            int escape = ler();
+            switch (escape) {
+                case '"', '\\', '/' -> acrescentar(escape);
+                case 'b' -> acrescentar('\b');
+                case 'f' -> acrescentar('\f');
+                case 'n' -> acrescentar('\n');
+                case 'r' -> acrescentar('\r');
+                case 't' -> acrescentar('\t');
+                case 'u' -> {
+                    int codigo = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digito = Character.digit(ler(), 16);
+                        if (digito < 0) {
+                            throw erro("escape \\u inválido");
+                        }
+                        codigo = codigo * 16 + digito;
+                    }
+                    acrescentar(codigo);
+                }
+                default -> throw erro("escape inválido");
+            }
+        }
+    }
+
+    // -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+    private void lerNumero(int primeiro) {
+        texto.setLength(0);
+        acrescentar(primeiro);
+        int c = primeiro;
+        if (c == '-') {
+            c = ler();
+            if (c < '0' || c > '9') {
+                throw erro("número inválido");
+            }
+            acrescentar(c);
+        }
+        if (c != '0') {
+            lerDigitos(false);
+        }
+        if (espiar() == '.') {
+            acrescentar(ler());
+            lerDigitos(true);
+        }
+        if (espiar() == 'e' || espiar() == 'E') {
+            acrescentar(ler());
+            if (espiar() == '+' || espiar() == '-') {
+                acrescentar(ler());
+            }
+            lerDigitos(true);
+        }
+    }
+
+    private void lerDigitos(boolean obrigatorio) {
+        boolean algum = false;
+        while (espiar() >= '0' && espiar() <= '9') {
+            acrescentar(ler());
+            algum = true;
+        }
+        if (obrigatorio && !algum) {
+            throw erro("número inválido");
+        }
+    }
+
+    private void acrescentar(int c) {
+        if (texto.length() == TAMANHO_MAXIMO_TEXTO) {
+            throw erro("texto ou número acima de " + TAMANHO_MAXIMO_TEXTO + " caracteres");
+        }
+        texto.append((char) c);
+    }
+
+    private void lerLiteral(String resto) {
+        for (int i = 0; i < resto.length(); i++) {
+            if (ler() != resto.charAt(i)) {
+                throw erro("literal inválido");
+            }
+        }
+    }
+
+    private void esperar(char esperado) {
+        int c = ler();
+        if (c != esperado) {
+            throw erro("esperado '" + esperado + "'");
+        }
+    }
+
+    private void pularEspacos() {
+        int c = espiar();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            ler();
+            c = espiar();
+        }
+    }
+
+    private int espiar() {
+        if (posicaoBuffer == limiteBuffer && !encher()) {
+            return -1;
+        }
+        return buffer[posicaoBuffer];
+    }
+
+    private int ler() {
+        if (posicaoBuffer == limiteBuffer && !encher()) {
+            return -1;
+        }
+        posicao++;
+        return buffer[posicaoBuffer++];
+    }
+
+    private boolean encher() {
+        try {
+            int lidos = entrada.read(buffer);
+            if (lidos <= 0) {
+                return false;
+            }
+            posicaoBuffer = 0;
+            limiteBuffer = lidos;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private IllegalArgumentException erro(String motivo) {
+        return new IllegalArgumentException("JSON inválido na posição " + posicao + ": " + motivo);
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// Distâncias em km de cada setor de CEP (três primeiros dígitos) a cada centro de distribuição,
+// calculadas uma vez ao montar a matriz. Cotar vira uma leitura de short por centro, sem
+// trigonometria por pedido: 1.000 setores × 2 bytes por centro. Formato das coordenadas:
+//   setor inicial;setor final;latitude;longitude[;referência]
+final class MatrizDistancias {
+    static final int SETORES = 1_000;
+    private static final short SEM_COORDENADAS = -1;
+    private static final double RAIO_TERRA_KM = 6_371.0;
+
+    private final List<Centro> centros;
+    private final short[] distanciasKm;
+
+    private MatrizDistancias(List<Centro> centros, short[] distanciasKm) {
+        this.centros = centros;
+        this.distanciasKm = distanciasKm;
+    }
+
+    public static MatrizDistancias carregar(Path coordenadas, List<Centro> centros) throws IOException {
+        return de(Files.readAllLines(coordenadas, StandardCharsets.UTF_8), centros);
+    }
+
+    public static MatrizDistancias de(List<String> linhas, List<Centro> centros) {
+        if (centros.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos um centro de distribuição");
+        }
+        double[] latitudes = new double[SETORES];
+        double[] longitudes = new double[SETORES];
+        Arrays.fill(latitudes, Double.NaN);
+        for (int i = 0; i < linhas.size(); i++) {
+            String linha = linhas.get(i).strip();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            String[] campos = linha.split(";");
+            try {
+                if (campos.length < 4) {
+                    throw new IllegalArgumentException("esperado setor inicial;setor final;latitude;longitude");
+                }
+                int inicio = Integer.parseInt(campos[0].strip());
+                int fim = Integer.parseInt(campos[1].strip());
+                double latitude = Double.parseDouble(campos[2].strip());
+                double longitude = Double.parseDouble(campos[3].strip());
+                if (inicio < 0 || fim >= SETORES || fim < inicio) {
+                    throw new IllegalArgumentException("setores devem estar entre 000 e 999");
+                }
+                if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                    throw new IllegalArgumentException("coordenadas fora do globo");
+                }
+                for (int setor = inicio; setor <= fim; setor++) {
+                    if (!Double.isNaN(latitudes[setor])) {
+                        throw new IllegalArgumentException("setor " + setor + " repetido");
+                    }
+                    latitudes[setor] = latitude;
+                    longitudes[setor] = longitude;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + " das coordenadas de CEP inválida: "
+                        + e.getMessage(), e);
+            }
+        }
+
+        short[] distancias = new short[SETORES * centros.size()];
+        for (int setor = 0; setor < SETORES; setor++) {
+            for (int c = 0; c < centros.size(); c++) {
+                Centro centro = centros.get(c);
+                distancias[setor * centros.size() + c] = Double.isNaN(latitudes[setor]) ? SEM_COORDENADAS
+                        : (short) Math.round(distanciaKm(latitudes[setor], longitudes[setor],
+                        centro.latitude(), centro.longitude()));
+            }
+        }
+        return new MatrizDistancias(List.copyOf(centros), distancias);
+    }
+
+    public static int setorDe(CEP cep) {
+        return cep.getNumero() / 100_000;
+    }
+
+    // Distância em km ou -1 quando o setor não tem coordenadas
+    public int distanciaKm(int setor, int centro) {
+        return distanciasKm[setor * centros.size() + centro];
+    }
+
+    public List<Centro> centros() {
+        return centros;
+    }
+
+    // Distância pelo círculo máximo (haversine); usada só ao montar a matriz
+    static double distanciaKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RAIO_TERRA_KM * Math.asin(Math.sqrt(a));
+    }
+
+    record Centro(String codigo, double latitude, double longitude, Set<Long> produtos) {
+        Centro {
+            if (codigo == null || produtos == null) {
+                throw new IllegalArgumentException("Centro de distribuição exige código e produtos em estoque");
+            }
+            produtos = Set.copyOf(produtos);
+        }
+
+        boolean temEstoque(List<ItemCarrinho> itens) {
+            for (ItemCarrinho item : itens) {
+                if (!produtos.contains(item.getProduto().getId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
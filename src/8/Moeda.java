@@ -0,0 +1,3 @@
+enum Moeda {
+    BRL, USD, EUR
+}
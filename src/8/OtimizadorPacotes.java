@@ -0,0 +1,342 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+// Divide os itens de um pedido em pacotes que respeitem o peso máximo de cada transportadora,
+// escolhendo para cada pacote a opção mais barata que o aceita (misturando PAC e SEDEX, por exemplo).
+// Parte do first-fit decrescente para cada peso máximo e, enquanto houver orçamento de tempo,
+// tenta ordens e capacidades sorteadas; pedidos grandes repartem essas tentativas pelo ForkJoinPool.
+// As unidades de um mesmo item andam juntas (peso × quantidade), então o custo não cresce com a
+// quantidade pedida, e o prazo vale para todas as fases: passado ele, sai o melhor plano já montado.
+// O custo de um pacote é cotado só pelo peso e pela região, então as estratégias devem depender
+// apenas deles (como SEDEX, PAC e a TabelaFreteStrategy).
+final class OtimizadorPacotes {
+    static final int LIMIAR_PARALELO = 256;
+    private static final int TENTATIVAS_MAXIMAS_SEQUENCIAL = 2_000;
+
+    private final ForkJoinPool pool;
+    private final List<Opcao> opcoes = new ArrayList<>();
+
+    public OtimizadorPacotes(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public OtimizadorPacotes registrar(String estrategia, CalculadoraFreteContextual calculadora,
+                                       BigDecimal pesoMaximoKg) {
+        if (pesoMaximoKg == null || pesoMaximoKg.signum() <= 0) {
+            throw new IllegalArgumentException("Peso máximo por pacote deve ser positivo");
+        }
+        opcoes.add(new Opcao(estrategia, calculadora, gramas(pesoMaximoKg)));
+        return this;
+    }
+
+    public PlanoEnvio otimizar(Pedido pedido, Duration orcamento) {
+        if (opcoes.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma transportadora registrada");
+        }
+        Busca busca = new Busca(pedido, opcoes.toArray(new Opcao[0]));
+        long prazo = System.nanoTime() + orcamento.toNanos();
+
+        Solucao melhor = busca.inicial(prazo);
+        int tentativas = melhor.tentativas;
+        if (busca.unidades == 0) {
+            return busca.paraPlano(melhor, 0);
+        }
+        if (System.nanoTime() >= prazo) {
+            return busca.paraPlano(melhor, tentativas);
+        }
+        if (busca.unidades >= LIMIAR_PARALELO && pool.getParallelism() > 1) {
+            List<ForkJoinTask<Solucao>> tarefas = new ArrayList<>();
+            for (int i = 0; i < pool.getParallelism(); i++) {
+                long semente = i;
+                tarefas.add(pool.submit(() -> busca.buscar(new SplittableRandom(semente), prazo, Integer.MAX_VALUE)));
+            }
+            for (ForkJoinTask<Solucao> tarefa : tarefas) {
+                Solucao solucao = tarefa.join();
+                tentativas += solucao.tentativas;
+                melhor = busca.melhor(melhor, solucao);
+            }
+        } else {
+            Solucao solucao = busca.buscar(new SplittableRandom(0), prazo, TENTATIVAS_MAXIMAS_SEQUENCIAL);
+            tentativas += solucao.tentativas;
+            melhor = busca.melhor(melhor, solucao);
+        }
+        return busca.paraPlano(melhor, tentativas);
+    }
+
+    record Pacote(String estrategia, BigDecimal pesoKg, List<ItemCarrinho> itens, BigDecimal custo) {
+    }
+
+    // custoPacoteUnico é nulo quando o pedido está vazio ou não cabe inteiro em nenhuma transportadora
+    record PlanoEnvio(List<Pacote> pacotes, BigDecimal custoTotal, BigDecimal custoPacoteUnico, int tentativas) {
+        public BigDecimal economia() {
+            return custoPacoteUnico == null ? BigDecimal.ZERO : custoPacoteUnico.subtract(custoTotal);
+        }
+    }
+
+    private static long gramas(BigDecimal pesoKg) {
+        return pesoKg.movePointRight(3).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    private record Opcao(String estrategia, CalculadoraFreteContextual calculadora, long capacidadeGramas) {
+    }
+
+    // Pacotes montados, cada um com os grupos de unidades que carrega; absorvidos ficam com peso -1
+    private static final class Solucao {
+        private final Carga[] cargas;
+        private final BigDecimal custo;
+        private int tentativas;
+
+        private Solucao(Carga[] cargas, BigDecimal custo) {
+            this.cargas = cargas;
+            this.custo = custo;
+        }
+    }
+
+    // Conteúdo de um pacote: pares grupo → quantidade, para juntar pacotes sem varrer as unidades
+    private static final class Carga {
+        private long peso;
+        private int[] grupos = new int[2];
+        private int[] quantidades = new int[2];
+        private int tamanho;
+
+        private void adicionar(int grupo, int quantidade, long pesoGrupo) {
+            if (tamanho == grupos.length) {
+                grupos = Arrays.copyOf(grupos, tamanho * 2);
+                quantidades = Arrays.copyOf(quantidades, tamanho * 2);
+            }
+            grupos[tamanho] = grupo;
+            quantidades[tamanho++] = quantidade;
+            peso += pesoGrupo * quantidade;
+        }
+
+        private void absorver(Carga outra) {
+            for (int i = 0; i < outra.tamanho; i++) {
+                adicionar(outra.grupos[i], outra.quantidades[i], 0);
+            }
+            peso += outra.peso;
+            outra.peso = -1;
+        }
+    }
+
+    // Estado de uma otimização: grupos de unidades iguais em ordem decrescente de peso e cotações
+    // já feitas por peso
+    private static final class Busca {
+        private final Pedido pedido;
+        private final Opcao[] opcoes;
+        private final long[] capacidades;
+        private final long[] pesos;
+        private final int[] quantidades;
+        private final int[] itemDoGrupo;
+        private final int unidades;
+        private final Map<Long, Cotacao> cotacoes = new ConcurrentHashMap<>();
+        private final ContextoCotacao contexto;
+
+        private Busca(Pedido pedido, Opcao[] opcoes) {
+            this.pedido = pedido;
+            this.opcoes = opcoes;
+            this.contexto = pedido.getContextoCotacao();
+            this.capacidades = Arrays.stream(opcoes).mapToLong(Opcao::capacidadeGramas).distinct().sorted().toArray();
+
+            List<ItemCarrinho> itens = pedido.getItens();
+            long[] pesosItens = new long[itens.size()];
+            int total = 0;
+            for (int i = 0; i < itens.size(); i++) {
+                pesosItens[i] = gramas(itens.get(i).getProduto().getPeso());
+                if (pesosItens[i] > capacidades[capacidades.length - 1]) {
+                    throw new IllegalArgumentException("Item acima do peso máximo de todas as transportadoras: "
+                            + itens.get(i).getProduto().getNome());
+                }
+                total = Math.addExact(total, itens.get(i).getQuantidade());
+            }
+            this.unidades = total;
+            this.itemDoGrupo = IntStream.range(0, itens.size()).boxed()
+                    .sorted((a, b) -> Long.compare(pesosItens[b], pesosItens[a]))
+                    .mapToInt(Integer::intValue).toArray();
+            this.pesos = new long[itemDoGrupo.length];
+            this.quantidades = new int[itemDoGrupo.length];
+            for (int g = 0; g < itemDoGrupo.length; g++) {
+                pesos[g] = pesosItens[itemDoGrupo[g]];
+                quantidades[g] = itens.get(itemDoGrupo[g]).getQuantidade();
+            }
+        }
+
+        // First-fit decrescente em cada peso máximo registrado, enquanto houver prazo (ao menos um)
+        private Solucao inicial(long prazo) {
+            int[] ordem = new int[pesos.length];
+            Arrays.setAll(ordem, i -> i);
+            Solucao melhor = null;
+            int tentativas = 0;
+            for (long capacidade : capacidades) {
+                if (melhor != null && System.nanoTime() >= prazo) {
+                    break;
+                }
+                melhor = melhor(melhor, empacotar(ordem, capacidade, prazo));
+                tentativas++;
+            }
+            melhor.tentativas = tentativas;
+            return melhor;
+        }
+
+        private Solucao buscar(SplittableRandom aleatorio, long prazo, int tentativasMaximas) {
+            int[] ordem = new int[pesos.length];
+            Solucao melhor = null;
+            int tentativas = 0;
+            while (tentativas < tentativasMaximas && System.nanoTime() < prazo) {
+                Arrays.setAll(ordem, i -> i);
+                // Perturba a ordem decrescente trocando grupos vizinhos, para não perder o viés do FFD
+                for (int t = aleatorio.nextInt(pesos.length + 1); t > 0 && pesos.length > 1; t--) {
+                    int i = aleatorio.nextInt(pesos.length - 1);
+                    int troca = ordem[i];
+                    ordem[i] = ordem[i + 1];
+                    ordem[i + 1] = troca;
+                }
+                // Pacotes abaixo do máximo compensam quando a tarifa cresce aos saltos
+                long capacidade = capacidades[aleatorio.nextInt(capacidades.length)];
+                if (aleatorio.nextBoolean()) {
+                    capacidade = Math.max(pesos[0], (long) (capacidade * (0.3 + 0.7 * aleatorio.nextDouble())));
+                }
+                melhor = melhor(melhor, empacotar(ordem, capacidade, prazo));
+                tentativas++;
+            }
+            if (melhor == null) {
+                melhor = inicial(prazo);
+            }
+            melhor.tentativas = tentativas;
+            return melhor;
+        }
+
+        // Igual ao first-fit unidade a unidade: cada pacote recebe de uma vez quantas unidades do
+        // grupo ainda cabem nele, e as que sobram seguem para os próximos
+        private Solucao empacotar(int[] ordem, long capacidade, long prazo) {
+            List<Carga> cargas = new ArrayList<>();
+            for (int grupo : ordem) {
+                int restantes = quantidades[grupo];
+                for (int destino = 0; restantes > 0; destino++) {
+                    if (destino == cargas.size()) {
+                        cargas.add(new Carga());
+                    }
+                    Carga carga = cargas.get(destino);
+                    // Unidade acima desta capacidade vai sozinha, e outra transportadora a leva
+                    int cabem = pesos[grupo] == 0 ? restantes
+                            : (int) Math.min(restantes, (capacidade - carga.peso) / pesos[grupo]);
+                    if (carga.tamanho == 0) {
+                        cabem = Math.max(cabem, 1);
+                    }
+                    if (cabem > 0) {
+                        carga.adicionar(grupo, cabem, pesos[grupo]);
+                        restantes -= cabem;
+                    }
+                }
+            }
+            Carga[] pacotes = cargas.toArray(new Carga[0]);
+            juntarPacotes(pacotes, prazo);
+
+            BigDecimal custo = BigDecimal.ZERO;
+            for (Carga carga : pacotes) {
+                if (carga.peso >= 0) {
+                    custo = custo.add(cotar(carga.peso).valor());
+                }
+            }
+            return new Solucao(pacotes, custo);
+        }
+
+        // Junta dois pacotes quando o pacote combinado sai mais barato que os dois separados.
+        // É quadrático no número de pacotes, então para no prazo com o que já juntou
+        private void juntarPacotes(Carga[] pacotes, long prazo) {
+            for (int a = 0; a < pacotes.length && System.nanoTime() < prazo; a++) {
+                for (int b = a + 1; b < pacotes.length && pacotes[a].peso >= 0; b++) {
+                    if (pacotes[b].peso < 0) {
+                        continue;
+                    }
+                    long junto = pacotes[a].peso + pacotes[b].peso;
+                    if (junto > capacidades[capacidades.length - 1]) {
+                        continue;
+                    }
+                    BigDecimal separados = cotar(pacotes[a].peso).valor().add(cotar(pacotes[b].peso).valor());
+                    if (cotar(junto).valor().compareTo(separados) < 0) {
+                        pacotes[a].absorver(pacotes[b]);
+                    }
+                }
+            }
+        }
+
+        // Opção mais barata entre as que aceitam o peso
+        private Cotacao cotar(long gramas) {
+            Cotacao cotacao = cotacoes.get(gramas);
+            if (cotacao == null) {
+                ContextoCotacao pacote = new ContextoCotacao(contexto.regiao(), BigDecimal.valueOf(gramas, 3),
+                        contexto.subtotal());
+                for (Opcao opcao : opcoes) {
+                    if (opcao.capacidadeGramas() >= gramas) {
+                        BigDecimal valor = opcao.calculadora().calcular(pacote);
+                        if (cotacao == null || valor.compareTo(cotacao.valor()) < 0) {
+                            cotacao = new Cotacao(opcao.estrategia(), valor);
+                        }
+                    }
+                }
+                cotacoes.put(gramas, cotacao);
+            }
+            return cotacao;
+        }
+
+        private Solucao melhor(Solucao atual, Solucao candidata) {
+            if (atual == null) {
+                return candidata;
+            }
+            int comparacao = candidata.custo.compareTo(atual.custo);
+            // No empate fica o plano com menos pacotes
+            if (comparacao < 0 || (comparacao == 0 && pacotes(candidata) < pacotes(atual))) {
+                return candidata;
+            }
+            return atual;
+        }
+
+        private static long pacotes(Solucao solucao) {
+            return Arrays.stream(solucao.cargas).filter(carga -> carga.peso >= 0).count();
+        }
+
+        // Proporcional ao tamanho do plano devolvido, então roda mesmo com o prazo vencido
+        private PlanoEnvio paraPlano(Solucao solucao, int tentativas) {
+            List<ItemCarrinho> itens = pedido.getItens();
+            List<Pacote> pacotes = new ArrayList<>();
+            for (Carga carga : solucao.cargas) {
+                if (carga.peso < 0) {
+                    continue;
+                }
+                // Pacotes juntados podem trazer o mesmo grupo mais de uma vez
+                Map<Integer, Integer> porItem = new LinkedHashMap<>();
+                for (int i = 0; i < carga.tamanho; i++) {
+                    porItem.merge(itemDoGrupo[carga.grupos[i]], carga.quantidades[i], Integer::sum);
+                }
+                List<ItemCarrinho> doPacote = new ArrayList<>();
+                porItem.forEach((item, quantidade) ->
+                        doPacote.add(new ItemCarrinho(itens.get(item).getProduto(), quantidade)));
+                Cotacao cotacao = cotar(carga.peso);
+                pacotes.add(new Pacote(cotacao.estrategia(), BigDecimal.valueOf(carga.peso, 3),
+                        List.copyOf(doPacote), cotacao.valor()));
+            }
+
+            long pesoTotal = 0;
+            for (int g = 0; g < pesos.length; g++) {
+                pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact(pesos[g], quantidades[g]));
+            }
+            BigDecimal custoPacoteUnico = unidades > 0 && pesoTotal <= capacidades[capacidades.length - 1]
+                    ? cotar(pesoTotal).valor() : null;
+            return new PlanoEnvio(List.copyOf(pacotes), solucao.custo, custoPacoteUnico, tentativas);
+        }
+    }
+
+    private record Cotacao(String estrategia, BigDecimal valor) {
+    }
+}
@@ -0,0 +1,62 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class Pedido {
+    private final List<ItemCarrinho> itens;
+    private final CEP cep;
+    private CalculadoraFrete estrategiaFrete;
+    // Itens e CEP são imutáveis: o contexto é calculado na primeira consulta e reaproveitado.
+    // Threads concorrentes podem calculá-lo ao mesmo tempo, mas todas publicam o mesmo valor.
+    private volatile ContextoCotacao contextoCotacao;
+
+    public Pedido(List<ItemCarrinho> itens, CEP cep, CalculadoraFrete estrategiaFrete) {
+        this.itens = Collections.unmodifiableList(new ArrayList<>(itens));
+        this.cep = cep;
+        this.estrategiaFrete = estrategiaFrete;
+    }
+
+    public List<ItemCarrinho> getItens() {
+        return itens;
+    }
+
+    public CEP getCep() {
+        return cep;
+    }
+
+    public void setEstrategiaFrete(CalculadoraFrete estrategiaFrete) {
+        this.estrategiaFrete = estrategiaFrete;
+    }
+
+    public BigDecimal calcularFrete() {
+        return estrategiaFrete.calcular(this);
+    }
+
+    public ContextoCotacao getContextoCotacao() {
+        ContextoCotacao contexto = contextoCotacao;
+        if (contexto == null) {
+            contexto = ContextoCotacao.de(itens, cep);
+            contextoCotacao = contexto;
+        }
+        return contexto;
+    }
+
+    public Dinheiro calcularSubtotal() {
+        Dinheiro subtotal = getContextoCotacao().subtotal();
+        if (subtotal == null) {
+            throw new IllegalArgumentException("Moedas incompatíveis");
+        }
+        return subtotal;
+    }
+
+    public Dinheiro calcularTotal() {
+        Dinheiro subtotal = calcularSubtotal();
+        Dinheiro frete = new Dinheiro(calcularFrete(), subtotal.getMoeda());
+        return subtotal.somar(frete);
+    }
+
+    public BigDecimal getPesoTotal() {
+        return getContextoCotacao().pesoTotal();
+    }
+}
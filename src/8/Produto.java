@@ -0,0 +1,31 @@
+import java.math.BigDecimal;
+
+class Produto {
+    private final Long id;
+    private final String nome;
+    private final Dinheiro preco;
+    private final BigDecimal peso;
+
+    public Produto(Long id, String nome, Dinheiro preco, BigDecimal peso) {
+        this.id = id;
+        this.nome = nome;
+        this.preco = preco;
+        this.peso = peso;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public Dinheiro getPreco() {
+        return preco;
+    }
+
+    public BigDecimal getPeso() {
+        return peso;
+    }
+}
@@ -0,0 +1,3 @@
+enum Regiao {
+    SUDESTE, SUL, NORDESTE, NORTE, CENTRO_OESTE
+}
@@ -0,0 +1,9 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+class RetiradaNaLojaStrategy implements CalculadoraFreteContextual {
+    @Override
+    public BigDecimal calcular(ContextoCotacao contexto) {
+        return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,20 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+class SedexStrategy implements CalculadoraFreteContextual {
+    private static final Map<Regiao, BigDecimal> VALORES_BASE = Map.of(
+            Regiao.SUDESTE, new BigDecimal("15.00"),
+            Regiao.SUL, new BigDecimal("20.00"),
+            Regiao.NORDESTE, new BigDecimal("25.00"),
+            Regiao.NORTE, new BigDecimal("35.00"),
+            Regiao.CENTRO_OESTE, new BigDecimal("30.00")
+    );
+
+    @Override
+    public BigDecimal calcular(ContextoCotacao contexto) {
+        BigDecimal valorBase = VALORES_BASE.get(contexto.regiaoObrigatoria());
+        BigDecimal adicionalPeso = contexto.pesoTotal().multiply(new BigDecimal("2.50"));
+        return valorBase.add(adicionalPeso).setScale(2, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,164 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToIntFunction;
+
+// Cota todas as estratégias registradas contra um pedido de uma vez: o contexto do pedido é
+// calculado uma única vez e cada estratégia só faz a própria conta. Lotes grandes são divididos
+// em tarefas do ForkJoinPool; a ordem do resultado acompanha a ordem dos pedidos.
+final class ServicoCotacaoFrete {
+    static final int LIMIAR_PARALELO = 512;
+    static final int LIMIAR_DIVISAO = 128;
+
+    private static final Comparator<Cotacao> POR_PRECO = Comparator.comparing(Cotacao::valor)
+            .thenComparingInt(Cotacao::prazoDias)
+            .thenComparing(Cotacao::estrategia);
+    private static final Comparator<Cotacao> POR_PRAZO = Comparator.comparingInt(Cotacao::prazoDias)
+            .thenComparing(Cotacao::valor)
+            .thenComparing(Cotacao::estrategia);
+
+    private final ForkJoinPool pool;
+    // Copiado a cada registro, para que cotações em andamento nunca vejam a lista pela metade
+    private volatile Opcao[] opcoes = new Opcao[0];
+
+    public ServicoCotacaoFrete(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // SEDEX, PAC e retirada com prazos em dias úteis por região
+    public static ServicoCotacaoFrete padrao(ForkJoinPool pool) {
+        return new ServicoCotacaoFrete(pool)
+                .registrar("SEDEX", new SedexStrategy(), prazosPorRegiao(1, 2, 3, 4, 3))
+                .registrar("PAC", new PacStrategy(), prazosPorRegiao(5, 7, 9, 12, 8))
+                .registrar("RETIRADA", new RetiradaNaLojaStrategy(), contexto -> 1);
+    }
+
+    public synchronized ServicoCotacaoFrete registrar(String estrategia, CalculadoraFrete calculadora,
+                                                      ToIntFunction<ContextoCotacao> prazoDias) {
+        if (estrategia == null || calculadora == null || prazoDias == null) {
+            throw new IllegalArgumentException("Estratégia, calculadora e prazo são obrigatórios");
+        }
+        for (Opcao opcao : opcoes) {
+            if (opcao.estrategia().equals(estrategia)) {
+                throw new IllegalArgumentException("Estratégia já registrada: " + estrategia);
+            }
+        }
+        Opcao[] novas = Arrays.copyOf(opcoes, opcoes.length + 1);
+        novas[opcoes.length] = new Opcao(estrategia, calculadora, prazoDias);
+        opcoes = novas;
+        return this;
+    }
+
+    public TabelaCotacoes cotar(Pedido pedido) {
+        return cotar(pedido, opcoes);
+    }
+
+    // Só a estratégia pedida, sem calcular as demais
+    public Cotacao cotar(Pedido pedido, String estrategia) {
+        for (Opcao opcao : opcoes) {
+            if (opcao.estrategia().equals(estrategia)) {
+                return cotar(pedido, new Opcao[]{opcao}).maisBarata();
+            }
+        }
+        throw new IllegalArgumentException("Estratégia não registrada: " + estrategia);
+    }
+
+    public List<TabelaCotacoes> cotar(List<Pedido> pedidos) {
+        Opcao[] vigentes = opcoes;
+        TabelaCotacoes[] tabelas = new TabelaCotacoes[pedidos.size()];
+        Pedido[] lote = pedidos.toArray(new Pedido[0]);
+        if (lote.length < LIMIAR_PARALELO) {
+            for (int i = 0; i < lote.length; i++) {
+                tabelas[i] = cotar(lote[i], vigentes);
+            }
+        } else {
+            pool.invoke(new Tarefa(lote, tabelas, vigentes, 0, lote.length));
+        }
+        return Arrays.asList(tabelas);
+    }
+
+    private static TabelaCotacoes cotar(Pedido pedido, Opcao[] opcoes) {
+        ContextoCotacao contexto = pedido.getContextoCotacao();
+        Cotacao[] cotacoes = new Cotacao[opcoes.length];
+        for (int i = 0; i < opcoes.length; i++) {
+            Opcao opcao = opcoes[i];
+            BigDecimal valor = opcao.calculadora() instanceof CalculadoraFreteContextual contextual
+                    ? contextual.calcular(contexto)
+                    : opcao.calculadora().calcular(pedido);
+            cotacoes[i] = new Cotacao(opcao.estrategia(), valor, opcao.prazoDias().applyAsInt(contexto));
+        }
+        Arrays.sort(cotacoes, POR_PRECO);
+        return new TabelaCotacoes(pedido, List.of(cotacoes));
+    }
+
+    private static ToIntFunction<ContextoCotacao> prazosPorRegiao(int sudeste, int sul, int nordeste, int norte,
+                                                                  int centroOeste) {
+        Map<Regiao, Integer> prazos = new EnumMap<>(Regiao.class);
+        prazos.put(Regiao.SUDESTE, sudeste);
+        prazos.put(Regiao.SUL, sul);
+        prazos.put(Regiao.NORDESTE, nordeste);
+        prazos.put(Regiao.NORTE, norte);
+        prazos.put(Regiao.CENTRO_OESTE, centroOeste);
+        return contexto -> prazos.get(contexto.regiaoObrigatoria());
+    }
+
+    record Cotacao(String estrategia, BigDecimal valor, int prazoDias) {
+    }
+
+    // Cotações de um pedido, da mais barata para a mais cara
+    record TabelaCotacoes(Pedido pedido, List<Cotacao> porPreco) {
+        public Cotacao maisBarata() {
+            return porPreco.isEmpty() ? null : porPreco.get(0);
+        }
+
+        public Cotacao maisRapida() {
+            return porPreco.stream().min(POR_PRAZO).orElse(null);
+        }
+
+        public List<Cotacao> porPrazo() {
+            List<Cotacao> ordenadas = new ArrayList<>(porPreco);
+            ordenadas.sort(POR_PRAZO);
+            return ordenadas;
+        }
+    }
+
+    private record Opcao(String estrategia, CalculadoraFrete calculadora, ToIntFunction<ContextoCotacao> prazoDias) {
+    }
+
+    private static final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Pedido[] pedidos;
+        private final TabelaCotacoes[] tabelas;
+        private final Opcao[] opcoes;
+        private final int inicio;
+        private final int fim;
+
+        private Tarefa(Pedido[] pedidos, TabelaCotacoes[] tabelas, Opcao[] opcoes, int inicio, int fim) {
+            this.pedidos = pedidos;
+            this.tabelas = tabelas;
+            this.opcoes = opcoes;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio > LIMIAR_DIVISAO) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new Tarefa(pedidos, tabelas, opcoes, inicio, meio),
+                        new Tarefa(pedidos, tabelas, opcoes, meio, fim));
+                return;
+            }
+            for (int i = inicio; i < fim; i++) {
+                tabelas[i] = cotar(pedidos[i], opcoes);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Cotação de frete por HTTP, só com o servidor do JDK. POST /cotacao recebe o pedido em JSON:
+//   {"cep": "01310-100", "estrategia": "SEDEX",
+//    "itens": [{"id": 1, "nome": "Notebook", "preco": "2500.00", "moeda": "BRL", "peso": 2.5, "quantidade": 1}]}
+// e devolve subtotal, peso e, por estratégia, frete, total e prazo. Sem "estrategia", cota todas as
+// registradas, da mais barata para a mais cara. O corpo é lido token a token pelo LeitorJson, direto
+// para os objetos do domínio; cada requisição roda na própria thread (virtual quando o JDK oferece).
+final class ServidorCotacao implements Closeable {
+    static final String CAMINHO = "/cotacao";
+    static final int MAXIMO_ITENS = 1_000;
+    // Mil itens com nomes longos ainda cabem; acima disso o corpo é recusado sem ser lido até o fim
+    static final int MAXIMO_CORPO_BYTES = 1 << 20;
+
+    static {
+        // O servidor do JDK não liga TCP_NODELAY por padrão, e a resposta pequena fica esperando o ACK
+        // atrasado do cliente (~40 ms por requisição). A propriedade vale para a JVM toda e só é lida
+        // quando o primeiro HttpServer é criado; quem já a definiu mantém a própria escolha.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ServicoCotacaoFrete servico;
+    // Nula: a região vem só do prefixo do CEP
+    private final BaseCEP base;
+    private final ExecutorService executor = Executores.porTarefa("http-cotacao");
+    private HttpServer servidor;
+
+    public ServidorCotacao(ServicoCotacaoFrete servico, BaseCEP base) {
+        this.servico = servico;
+        this.base = base;
+    }
+
+    public synchronized ServidorCotacao iniciar(InetSocketAddress endereco) throws IOException {
+        if (servidor != null) {
+            throw new IllegalStateException("Servidor já iniciado");
+        }
+        servidor = HttpServer.create(endereco, 1_024);
+        servidor.setExecutor(executor);
+        servidor.createContext(CAMINHO, this::atender);
+        servidor.start();
+        return this;
+    }
+
+    public synchronized int porta() {
+        if (servidor == null) {
+            throw new IllegalStateException("Servidor não iniciado");
+        }
+        return servidor.getAddress().getPort();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (servidor != null) {
+            servidor.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    private void atender(HttpExchange troca) {
+        try {
+            if (!CAMINHO.equals(troca.getRequestURI().getPath())) {
+                responder(troca, 404, erro("Recurso não encontrado"));
+                return;
+            }
+            if (!"POST".equals(troca.getRequestMethod())) {
+                troca.getResponseHeaders().set("Allow", "POST");
+                responder(troca, 405, erro("Use POST"));
+                return;
+            }
+            String tamanho = troca.getRequestHeaders().getFirst("Content-Length");
+            if (tamanho != null && excedeCorpo(tamanho)) {
+                responder(troca, 413, erro("Corpo acima de " + MAXIMO_CORPO_BYTES + " bytes"));
+                return;
+            }
+            String resposta;
+            try {
+                LeitorJson json = new LeitorJson(new InputStreamReader(
+                        new EntradaLimitada(troca.getRequestBody(), MAXIMO_CORPO_BYTES), StandardCharsets.UTF_8));
+                resposta = cotar(json);
+            } catch (UncheckedIOException e) {
+                throw e;
+            } catch (IllegalArgumentException e) {
+                responder(troca, 400, erro(e.getMessage()));
+                return;
+            } catch (RuntimeException e) {
+                responder(troca, 500, erro("Erro interno ao cotar"));
+                return;
+            }
+            responder(troca, 200, resposta);
+        } catch (IOException | UncheckedIOException e) {
+            // Cliente desconectou no meio da troca: não há a quem responder
+        } finally {
+            troca.close();
+        }
+    }
+
+    // Content-Length malformado ou enorme fica para a EntradaLimitada, que corta a leitura de qualquer jeito
+    private static boolean excedeCorpo(String tamanho) {
+        try {
+            return Long.parseLong(tamanho.strip()) > MAXIMO_CORPO_BYTES;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String cotar(LeitorJson json) {
+        String codigoCep = null;
+        String estrategia = null;
+        List<ItemCarrinho> itens = null;
+        json.esperar(LeitorJson.Token.INICIO_OBJETO);
+        while (json.proximo() == LeitorJson.Token.NOME) {
+            switch (json.texto()) {
+                case "cep" -> codigoCep = json.lerTexto("cep");
+                case "estrategia" -> estrategia = json.lerTexto("estrategia");
+                case "itens" -> itens = lerItens(json);
+                default -> json.pular();
+            }
+        }
+        json.esperar(LeitorJson.Token.FIM);
+        if (codigoCep == null) {
+            throw new IllegalArgumentException("Pedido sem campo obrigatório: cep");
+        }
+        if (itens == null || itens.isEmpty()) {
+            throw new IllegalArgumentException("Pedido sem itens");
+        }
+
+        CEP cep = base == null ? new CEP(codigoCep) : new CEP(codigoCep, base);
+        Pedido pedido = new Pedido(itens, cep, null);
+        List<ServicoCotacaoFrete.Cotacao> cotacoes = estrategia == null
+                ? servico.cotar(pedido).porPreco()
+                : List.of(servico.cotar(pedido, estrategia));
+        return escrever(pedido, cotacoes);
+    }
+
+    private static List<ItemCarrinho> lerItens(LeitorJson json) {
+        json.esperar(LeitorJson.Token.INICIO_LISTA);
+        List<ItemCarrinho> itens = new ArrayList<>();
+        LeitorJson.Token token;
+        while ((token = json.proximo()) == LeitorJson.Token.INICIO_OBJETO) {
+            if (itens.size() == MAXIMO_ITENS) {
+                throw new IllegalArgumentException("Pedido com mais de " + MAXIMO_ITENS + " itens");
+            }
+            itens.add(lerItem(json));
+        }
+        if (token != LeitorJson.Token.FIM_LISTA) {
+            throw new IllegalArgumentException("Cada item deve ser um objeto");
+        }
+        return itens;
+    }
+
+    // O INICIO_OBJETO do item já foi consumido
+    private static ItemCarrinho lerItem(LeitorJson json) {
+        BigDecimal id = null;
+        String nome = null;
+        BigDecimal preco = null;
+        Moeda moeda = Moeda.BRL;
+        BigDecimal peso = null;
+        BigDecimal quantidade = null;
+        while (json.proximo() == LeitorJson.Token.NOME) {
+            switch (json.texto()) {
+                case "id" -> id = json.lerNumero("id");
+                case "nome" -> nome = json.lerTexto("nome");
+                case "preco" -> preco = json.lerNumero("preco");
+                case "moeda" -> moeda = moeda(json.lerTexto("moeda"));
+                case "peso" -> peso = json.lerNumero("peso");
+                case "quantidade" -> quantidade = json.lerNumero("quantidade");
+                default -> json.pular();
+            }
+        }
+        if (id == null || preco == null || peso == null || quantidade == null) {
+            throw new IllegalArgumentException("Item exige id, preco, peso e quantidade");
+        }
+        if (peso.signum() < 0) {
+            throw new IllegalArgumentException("Peso não pode ser negativo");
+        }
+        try {
+            Produto produto = new Produto(id.longValueExact(), nome, new Dinheiro(preco, moeda), peso);
+            return new ItemCarrinho(produto, quantidade.intValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("id e quantidade devem ser inteiros");
+        }
+    }
+
+    private static Moeda moeda(String codigo) {
+        for (Moeda moeda : Moeda.values()) {
+            if (moeda.name().equals(codigo)) {
+                return moeda;
+            }
+        }
+        throw new IllegalArgumentException("Moeda desconhecida: " + codigo);
+    }
+
+    private static String escrever(Pedido pedido, List<ServicoCotacaoFrete.Cotacao> cotacoes) {
+        ContextoCotacao contexto = pedido.getContextoCotacao();
+        Dinheiro subtotal = pedido.calcularSubtotal();
+        StringBuilder saida = new StringBuilder(256 + 96 * cotacoes.size());
+        saida.append("{\"cep\":\"").append(pedido.getCep().getCodigo())
+                .append("\",\"regiao\":\"").append(contexto.regiao())
+                .append("\",\"moeda\":\"").append(subtotal.getMoeda())
+                .append("\",\"subtotal\":").append(subtotal.getValor().toPlainString())
+                .append(",\"pesoTotal\":").append(contexto.pesoTotal().toPlainString())
+                .append(",\"cotacoes\":[");
+        for (int i = 0; i < cotacoes.size(); i++) {
+            ServicoCotacaoFrete.Cotacao cotacao = cotacoes.get(i);
+            Dinheiro total = subtotal.somar(new Dinheiro(cotacao.valor(), subtotal.getMoeda()));
+            if (i > 0) {
+                saida.append(',');
+            }
+            saida.append("{\"estrategia\":");
+            escreverTexto(saida, cotacao.estrategia());
+            saida.append(",\"frete\":").append(cotacao.valor().toPlainString())
+                    .append(",\"total\":").append(total.getValor().toPlainString())
+                    .append(",\"prazoDias\":").append(cotacao.prazoDias())
+                    .append('}');
+        }
+        return saida.append("]}").toString();
+    }
+
+    private static String erro(String mensagem) {
+        StringBuilder saida = new StringBuilder("{\"erro\":");
+        escreverTexto(saida, mensagem);
+        return saida.append('}').toString();
+    }
+
+    private static void escreverTexto(StringBuilder saida, String texto) {
+        saida.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"' -> saida.append("\\\"");
+                case '\\' -> saida.append("\\\\");
+                case '\n' -> saida.append("\\n");
+                case '\r' -> saida.append("\\r");
+                case '\t' -> saida.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        saida.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        saida.append(c);
+                    }
+                }
+            }
+        }
+        saida.append('"');
+    }
+
+    // Para corpos sem Content-Length (chunked): a leitura falha ao passar do limite
+    private static final class EntradaLimitada extends FilterInputStream {
+        private long restantes;
+
+        private EntradaLimitada(InputStream entrada, long limite) {
+            super(entrada);
+            this.restantes = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int lido = super.read();
+            if (lido >= 0) {
+                consumir(1);
+            }
+            return lido;
+        }
+
+        @Override
+        public int read(byte[] destino, int inicio, int tamanho) throws IOException {
+            int lidos = super.read(destino, inicio, (int) Math.min(tamanho, restantes + 1));
+            if (lidos > 0) {
+                consumir(lidos);
+            }
+            return lidos;
+        }
+
+        private void consumir(int bytes) {
+            restantes -= bytes;
+            if (restantes < 0) {
+                throw new IllegalArgumentException("Corpo acima de " + MAXIMO_CORPO_BYTES + " bytes");
+            }
+        }
+    }
+
+    private static void responder(HttpExchange troca, int status, String json) throws IOException {
+        byte[] corpo = json.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(status, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Frete por tabela de faixas de peso × região lida de arquivo. Cotar só lê o instantâneo vigente
+// (um campo volatile); recarregar monta o instantâneo novo ao lado e troca a referência de uma vez,
+// então as cotações nunca esperam nem veem uma tabela pela metade. Formato do arquivo:
+//   regioes;SUDESTE;SUL;...           ordem das colunas de valores
+//   0.5;16.25;21.25;...               peso máximo da faixa em kg; valor por região
+//   excedente;2.50;3.00;...           opcional: valor por kg acima da última faixa
+// Quem publica tarifas deve trocar o arquivo de uma vez (substituir(), ou arquivo temporário no
+// mesmo diretório e Files.move com ATOMIC_MOVE). Gravado no lugar, o arquivo só é aceito depois de
+// duas leituras seguidas iguais, o que evita a maioria das leituras pela metade, mas não todas.
+final class TabelaFreteStrategy implements CalculadoraFreteContextual, Closeable {
+    static final int LEITURAS_MAXIMAS = 10;
+    static final long PAUSA_ENTRE_LEITURAS_MS = 20;
+
+    private final Path arquivo;
+    private final List<Runnable> aoRecarregar = new CopyOnWriteArrayList<>();
+    private volatile Tarifas tarifas;
+    private volatile RuntimeException ultimaFalha;
+    // Conteúdo da versão vigente: data e tamanho não distinguem duas gravações no mesmo tique do relógio
+    private byte[] conteudoCarregado;
+    private long versoesCarregadas;
+    private WatchService vigia;
+
+    public TabelaFreteStrategy(Path arquivo) {
+        this.arquivo = arquivo;
+        recarregar();
+    }
+
+    @Override
+    public BigDecimal calcular(ContextoCotacao contexto) {
+        return tarifas.calcular(contexto.regiaoObrigatoria(), contexto.pesoTotal());
+    }
+
+    public long versao() {
+        return tarifas.versao;
+    }
+
+    // Falha da última recarga feita pela vigilância; a tabela anterior continua valendo
+    public RuntimeException ultimaFalha() {
+        return ultimaFalha;
+    }
+
+    // Chamado após cada troca de tabela, por exemplo para invalidar um CacheCotacoesFrete
+    public void aoRecarregar(Runnable acao) {
+        aoRecarregar.add(acao);
+    }
+
+    public synchronized void recarregar() {
+        publicar(lerEstavel());
+    }
+
+    public synchronized boolean recarregarSeAlterado() {
+        byte[] conteudo = lerEstavel();
+        if (Arrays.equals(conteudo, conteudoCarregado)) {
+            return false;
+        }
+        publicar(conteudo);
+        return true;
+    }
+
+    // Grava em um temporário ao lado e o move sobre o arquivo: leitores veem o antigo ou o novo inteiro
+    public static void substituir(Path arquivo, List<String> linhas) {
+        Path destino = arquivo.toAbsolutePath();
+        try {
+            Path temporario = Files.createTempFile(destino.getParent(), destino.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporario, linhas, StandardCharsets.UTF_8);
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Vigia o diretório do arquivo em uma thread daemon e recarrega a cada alteração; arquivos
+    // inválidos ficam registrados em ultimaFalha sem derrubar a tabela vigente
+    public synchronized void vigiar() {
+        if (vigia != null) {
+            return;
+        }
+        try {
+            Path diretorio = arquivo.toAbsolutePath().getParent();
+            vigia = diretorio.getFileSystem().newWatchService();
+            diretorio.register(vigia, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        WatchService servico = vigia;
+        Thread thread = new Thread(() -> vigiar(servico), "vigia-" + arquivo.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (vigia != null) {
+            vigia.close();
+            vigia = null;
+        }
+    }
+
+    private void publicar(byte[] conteudo) {
+        String texto = new String(conteudo, StandardCharsets.UTF_8);
+        tarifas = Tarifas.de(texto.lines().toList(), versoesCarregadas + 1);
+        versoesCarregadas++;
+        conteudoCarregado = conteudo;
+        ultimaFalha = null;
+        for (Runnable acao : aoRecarregar) {
+            acao.run();
+        }
+    }
+
+    // Relê até duas leituras seguidas coincidirem, para não publicar um arquivo ainda em gravação
+    private byte[] lerEstavel() {
+        try {
+            byte[] anterior = Files.readAllBytes(arquivo);
+            for (int leitura = 1; leitura < LEITURAS_MAXIMAS; leitura++) {
+                Thread.sleep(PAUSA_ENTRE_LEITURAS_MS);
+                byte[] atual = Files.readAllBytes(arquivo);
+                if (Arrays.equals(anterior, atual)) {
+                    return atual;
+                }
+                anterior = atual;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Leitura da tabela de frete interrompida", e);
+        }
+        throw new IllegalStateException("Tabela de frete ainda em gravação após " + LEITURAS_MAXIMAS
+                + " leituras: " + arquivo);
+    }
+
+    private void vigiar(WatchService servico) {
+        try {
+            while (true) {
+                WatchKey chave = servico.take();
+                boolean alterado = false;
+                for (WatchEvent<?> evento : chave.pollEvents()) {
+                    alterado |= arquivo.getFileName().equals(evento.context())
+                            || evento.kind() == StandardWatchEventKinds.OVERFLOW;
+                }
+                chave.reset();
+                if (alterado) {
+                    try {
+                        recarregarSeAlterado();
+                    } catch (RuntimeException e) {
+                        ultimaFalha = e;
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Encerrado por close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Instantâneo imutável: limites das faixas em ordem crescente e valores[regiao][faixa]
+    static final class Tarifas {
+        private static final Regiao[] REGIOES = Regiao.values();
+
+        private final long versao;
+        private final BigDecimal[] limites;
+        private final BigDecimal[][] valores;
+        private final BigDecimal[] excedentes;
+
+        private Tarifas(long versao, BigDecimal[] limites, BigDecimal[][] valores, BigDecimal[] excedentes) {
+            this.versao = versao;
+            this.limites = limites;
+            this.valores = valores;
+            this.excedentes = excedentes;
+        }
+
+        static Tarifas de(List<String> linhas, long versao) {
+            Regiao[] colunas = null;
+            List<BigDecimal> limites = new ArrayList<>();
+            List<BigDecimal[]> faixas = new ArrayList<>();
+            BigDecimal[] excedentes = null;
+            for (int i = 0; i < linhas.size(); i++) {
+                String linha = linhas.get(i).strip();
+                if (linha.isEmpty() || linha.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linha.split(";");
+                try {
+                    if (campos[0].strip().equals("regioes")) {
+                        colunas = new Regiao[campos.length - 1];
+                        for (int c = 1; c < campos.length; c++) {
+                            colunas[c - 1] = Regiao.valueOf(campos[c].strip());
+                        }
+                        if (colunas.length != REGIOES.length || Arrays.stream(colunas).distinct().count() != REGIOES.length) {
+                            throw new IllegalArgumentException("Cabeçalho deve listar cada região uma vez");
+                        }
+                        continue;
+                    }
+                    if (colunas == null || campos.length != colunas.length + 1) {
+                        throw new IllegalArgumentException("Esperado cabeçalho 'regioes' e um valor por região");
+                    }
+                    BigDecimal[] porRegiao = new BigDecimal[REGIOES.length];
+                    for (int c = 1; c < campos.length; c++) {
+                        BigDecimal valor = new BigDecimal(campos[c].strip());
+                        if (valor.signum() < 0) {
+                            throw new IllegalArgumentException("Valor de frete não pode ser negativo");
+                        }
+                        porRegiao[colunas[c - 1].ordinal()] = valor;
+                    }
+                    if (campos[0].strip().equals("excedente")) {
+                        excedentes = porRegiao;
+                        continue;
+                    }
+                    BigDecimal limite = new BigDecimal(campos[0].strip());
+                    if (limite.signum() <= 0 || (!limites.isEmpty()
+                            && limite.compareTo(limites.get(limites.size() - 1)) <= 0)) {
+                        throw new IllegalArgumentException("Faixas de peso devem ser positivas e crescentes");
+                    }
+                    limites.add(limite);
+                    faixas.add(porRegiao);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Linha " + (i + 1) + " da tabela de frete inválida: "
+                            + e.getMessage(), e);
+                }
+            }
+            if (limites.isEmpty()) {
+                throw new IllegalArgumentException("Tabela de frete sem faixas de peso");
+            }
+
+            BigDecimal[][] valores = new BigDecimal[REGIOES.length][limites.size()];
+            for (int f = 0; f < faixas.size(); f++) {
+                for (int r = 0; r < REGIOES.length; r++) {
+                    valores[r][f] = faixas.get(f)[r];
+                }
+            }
+            return new Tarifas(versao, limites.toArray(new BigDecimal[0]), valores, excedentes);
+        }
+
+        BigDecimal calcular(Regiao regiao, BigDecimal peso) {
+            int faixa = faixaDe(peso);
+            BigDecimal[] porFaixa = valores[regiao.ordinal()];
+            if (faixa < limites.length) {
+                return porFaixa[faixa].setScale(2, RoundingMode.HALF_EVEN);
+            }
+            if (excedentes == null) {
+                throw new IllegalArgumentException("Peso acima da última faixa da tabela de frete: " + peso);
+            }
+            BigDecimal excesso = peso.subtract(limites[limites.length - 1]);
+            return porFaixa[limites.length - 1].add(excesso.multiply(excedentes[regiao.ordinal()]))
+                    .setScale(2, RoundingMode.HALF_EVEN);
+        }
+
+        // Primeira faixa cujo limite comporta o peso, por busca binária; limites.length se nenhuma
+        private int faixaDe(BigDecimal peso) {
+            int baixo = 0;
+            int alto = limites.length;
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (limites[meio].compareTo(peso) < 0) {
+                    baixo = meio + 1;
+                } else {
+                    alto = meio;
+                }
+            }
+            return baixo;
+        }
+    }
+}
@@ -1,285 +1,30 @@
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Pattern;
-
-enum Moeda {
-    BRL, USD, EUR
-}
-
-final class Dinheiro {
-    private final BigDecimal valor;
-    private final Moeda moeda;
-
-    public Dinheiro(BigDecimal valor, Moeda moeda) {
-        if (valor.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Valor não pode ser negativo");
-        }
-        this.valor = valor.setScale(2, RoundingMode.HALF_EVEN);
-        this.moeda = moeda;
-    }
-
-    public Dinheiro(String valor, Moeda moeda) {
-        this(new BigDecimal(valor), moeda);
-    }
-
-    public BigDecimal getValor() {
-        return valor;
-    }
-
-    public Moeda getMoeda() {
-        return moeda;
-    }
-
-    public Dinheiro somar(Dinheiro outro) {
-        validarMoeda(outro);
-        return new Dinheiro(this.valor.add(outro.valor), this.moeda);
-    }
-
-    public Dinheiro multiplicar(BigDecimal fator) {
-        return new Dinheiro(this.valor.multiply(fator), this.moeda);
-    }
-
-    private void validarMoeda(Dinheiro outro) {
-        if (!this.moeda.equals(outro.moeda)) {
-            throw new IllegalArgumentException("Moedas incompatíveis");
-        }
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof Dinheiro)) return false;
-        Dinheiro dinheiro = (Dinheiro) o;
-        return valor.equals(dinheiro.valor) && moeda == dinheiro.moeda;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(valor, moeda);
-    }
-
-    @Override
-    public String toString() {
-        return moeda + " " + valor;
-    }
-}
-
-class Produto {
-    private final Long id;
-    private final String nome;
-    private final Dinheiro preco;
-    private final BigDecimal peso;
-
-    public Produto(Long id, String nome, Dinheiro preco, BigDecimal peso) {
-        this.id = id;
-        this.nome = nome;
-        this.preco = preco;
-        this.peso = peso;
-    }
-
-    public Long getId() {
-        return id;
-    }
-
-    public String getNome() {
-        return nome;
-    }
-
-    public Dinheiro getPreco() {
-        return preco;
-    }
-
-    public BigDecimal getPeso() {
-        return peso;
-    }
-}
-
-final class ItemCarrinho {
-    private final Produto produto;
-    private final int quantidade;
-
-    public ItemCarrinho(Produto produto, int quantidade) {
-        if (quantidade <= 0) {
-            throw new IllegalArgumentException("Quantidade deve ser maior que zero");
-        }
-        this.produto = produto;
-        this.quantidade = quantidade;
-    }
-
-    public Produto getProduto() {
-        return produto;
-    }
-
-    public int getQuantidade() {
-        return quantidade;
-    }
-
-    public Dinheiro getSubtotal() {
-        return produto.getPreco().multiplicar(new BigDecimal(quantidade));
-    }
-
-    public BigDecimal getPesoTotal() {
-        return produto.getPeso().multiply(new BigDecimal(quantidade));
-    }
-}
-
-enum Regiao {
-    SUDESTE, SUL, NORDESTE, NORTE, CENTRO_OESTE
-}
-
-class CEP {
-    private final String codigo;
-    private final Regiao regiao;
-    private static final Pattern CEP_PATTERN = Pattern.compile("\\d{5}-?\\d{3}");
-    private static final Map<String, Regiao> REGIOES_CEP = new HashMap<>();
-
-    static {
-        REGIOES_CEP.put("01", Regiao.SUDESTE);
-        REGIOES_CEP.put("02", Regiao.SUDESTE);
-        REGIOES_CEP.put("03", Regiao.SUDESTE);
-        REGIOES_CEP.put("04", Regiao.SUDESTE);
-        REGIOES_CEP.put("05", Regiao.SUDESTE);
-        REGIOES_CEP.put("20", Regiao.SUDESTE);
-        REGIOES_CEP.put("21", Regiao.SUDESTE);
-        REGIOES_CEP.put("22", Regiao.SUDESTE);
-        REGIOES_CEP.put("23", Regiao.SUDESTE);
-        REGIOES_CEP.put("24", Regiao.SUDESTE);
-        REGIOES_CEP.put("80", Regiao.SUL);
-        REGIOES_CEP.put("81", Regiao.SUL);
-        REGIOES_CEP.put("82", Regiao.SUL);
-        REGIOES_CEP.put("90", Regiao.SUL);
-        REGIOES_CEP.put("91", Regiao.SUL);
-        REGIOES_CEP.put("40", Regiao.NORDESTE);
-        REGIOES_CEP.put("41", Regiao.NORDESTE);
-        REGIOES_CEP.put("50", Regiao.NORDESTE);
-        REGIOES_CEP.put("51", Regiao.NORDESTE);
-        REGIOES_CEP.put("60", Regiao.NORDESTE);
-        REGIOES_CEP.put("69", Regiao.NORTE);
-        REGIOES_CEP.put("68", Regiao.NORTE);
-        REGIOES_CEP.put("70", Regiao.CENTRO_OESTE);
-        REGIOES_CEP.put("71", Regiao.CENTRO_OESTE);
-        REGIOES_CEP.put("72", Regiao.CENTRO_OESTE);
-        REGIOES_CEP.put("78", Regiao.CENTRO_OESTE);
-    }
-
-    public CEP(String codigo) {
-        if (codigo == null || !CEP_PATTERN.matcher(codigo.replace("-", "")).matches()) {
-            throw new IllegalArgumentException("CEP inválido: " + codigo);
-        }
-
-        this.codigo = codigo.replace("-", "");
-        String prefixo = this.codigo.substring(0, 2);
-        this.regiao = REGIOES_CEP.get(prefixo);
-
-        if (this.regiao == null) {
-            throw new IllegalArgumentException("CEP não mapeado para região: " + codigo);
-        }
-    }
-
-    public String getCodigo() {
-        return codigo;
-    }
-
-    public Regiao getRegiao() {
-        return regiao;
-    }
-}
-
-@FunctionalInterface
-interface CalculadoraFrete {
-    BigDecimal calcular(Pedido pedido);
-}
-
-class SedexStrategy implements CalculadoraFrete {
-    private static final Map<Regiao, BigDecimal> VALORES_BASE = Map.of(
-            Regiao.SUDESTE, new BigDecimal("15.00"),
-            Regiao.SUL, new BigDecimal("20.00"),
-            Regiao.NORDESTE, new BigDecimal("25.00"),
-            Regiao.NORTE, new BigDecimal("35.00"),
-            Regiao.CENTRO_OESTE, new BigDecimal("30.00")
-    );
-
-    @Override
-    public BigDecimal calcular(Pedido pedido) {
-        BigDecimal valorBase = VALORES_BASE.get(pedido.getCep().getRegiao());
-        BigDecimal pesoTotal = pedido.getPesoTotal();
-        BigDecimal adicionalPeso = pesoTotal.multiply(new BigDecimal("2.50"));
-        return valorBase.add(adicionalPeso).setScale(2, RoundingMode.HALF_EVEN);
-    }
-}
-
-class PacStrategy implements CalculadoraFrete {
-    private static final Map<Regiao, BigDecimal> VALORES_BASE = Map.of(
-            Regiao.SUDESTE, new BigDecimal("8.00"),
-            Regiao.SUL, new BigDecimal("12.00"),
-            Regiao.NORDESTE, new BigDecimal("15.00"),
-            Regiao.NORTE, new BigDecimal("25.00"),
-            Regiao.CENTRO_OESTE, new BigDecimal("18.00")
-    );
-
-    @Override
-    public BigDecimal calcular(Pedido pedido) {
-        BigDecimal valorBase = VALORES_BASE.get(pedido.getCep().getRegiao());
-        BigDecimal pesoTotal = pedido.getPesoTotal();
-        BigDecimal adicionalPeso = pesoTotal.multiply(new BigDecimal("1.50"));
-        return valorBase.add(adicionalPeso).setScale(2, RoundingMode.HALF_EVEN);
-    }
-}
-
-class RetiradaNaLojaStrategy implements CalculadoraFrete {
-    @Override
-    public BigDecimal calcular(Pedido pedido) {
-        return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
-    }
-}
-
-class Pedido {
-    private final List<ItemCarrinho> itens;
-    private final CEP cep;
-    private CalculadoraFrete estrategiaFrete;
-
-    public Pedido(List<ItemCarrinho> itens, CEP cep, CalculadoraFrete estrategiaFrete) {
-        this.itens = Collections.unmodifiableList(new ArrayList<>(itens));
-        this.cep = cep;
-        this.estrategiaFrete = estrategiaFrete;
-    }
-
-    public List<ItemCarrinho> getItens() {
-        return itens;
-    }
-
-    public CEP getCep() {
-        return cep;
-    }
-
-    public void setEstrategiaFrete(CalculadoraFrete estrategiaFrete) {
-        this.estrategiaFrete = estrategiaFrete;
-    }
-
-    public BigDecimal calcularFrete() {
-        return estrategiaFrete.calcular(this);
-    }
-
-    public Dinheiro calcularSubtotal() {
-        return itens.stream()
-                .map(ItemCarrinho::getSubtotal)
-                .reduce(Dinheiro::somar)
-                .orElse(new Dinheiro(BigDecimal.ZERO, Moeda.BRL));
-    }
-
-    public Dinheiro calcularTotal() {
-        Dinheiro subtotal = calcularSubtotal();
-        Dinheiro frete = new Dinheiro(calcularFrete(), subtotal.getMoeda());
-        return subtotal.somar(frete);
-    }
-
-    public BigDecimal getPesoTotal() {
-        return itens.stream()
-                .map(ItemCarrinho::getPesoTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-}
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TesteFreteCompleto {
     public static void main(String[] args) {
@@ -289,6 +34,16 @@ public class TesteFreteCompleto {
         testEstrategiasFrete();
         testTrocaEstrategiaRuntime();
         testFretePromocional();
+        testAnaliseCEP();
+        testBaseCEP();
+        testContextoCotacao();
+        testCotacaoMultiplasEstrategias();
+        testCacheCotacoes();
+        testTabelaFreteRecarregavel();
+        testOtimizadorPacotes();
+        testFretePorDistancia();
+        testCotacaoConcorrenteTransportadoras();
+        testServidorCotacao();
 
         System.out.println("\n=== TODOS OS TESTES PASSARAM! ===");
     }
@@ -401,4 +156,825 @@ public class TesteFreteCompleto {
         Pedido pedidoDesconto = new Pedido(itensCaros, cep, descontoProgressivo);
         System.out.println("   ✓ Com desconto 50% (acima R$ 500): R$ " + pedidoDesconto.calcularFrete());
     }
-}
\ No newline at end of file
+
+    private static void testAnaliseCEP() {
+        System.out.println("\n5. Testando análise de CEP sem alocação...");
+
+        assert CEP.analisar("01310-100") == 1_310_100;
+        assert CEP.analisar("01310100") == 1_310_100;
+        assert CEP.analisar("0131-0100") == 1_310_100;
+        assert CEP.analisar("0131010") == -1;
+        assert CEP.analisar("013101000") == -1;
+        assert CEP.analisar("01310-10a") == -1;
+        assert CEP.analisar("０1310-100") == -1;
+        assert CEP.analisar("") == -1;
+        System.out.println("   ✓ Dígitos validados e convertidos em uma passada");
+
+        assert CEP.regiaoDe(1_310_100) == Regiao.SUDESTE;
+        assert CEP.regiaoDe(69_005_040) == Regiao.NORTE;
+        assert CEP.regiaoDe(12_345_678) == null;
+        CEP cep = new CEP("01310-100");
+        assert cep.getNumero() == 1_310_100 && cep.getCodigo().equals("01310100");
+        System.out.println("   ✓ Região pela tabela de 100 prefixos: " + cep.getCodigo() + " - " + cep.getRegiao());
+
+        try {
+            new CEP(null);
+            assert false : "CEP nulo deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ CEP nulo rejeitado: " + e.getMessage());
+        }
+    }
+
+    private static void testBaseCEP() {
+        System.out.println("\n6. Testando base de faixas de CEP mapeada em memória...");
+
+        try {
+            Path fonte = Files.createTempFile("faixas-cep", ".csv");
+            Path binario = Files.createTempFile("faixas-cep", ".bin");
+            Files.delete(binario);
+            Files.write(fonte, List.of(
+                    "# início;fim;UF;localidade",
+                    "20000-000;23799-999;RJ;Rio de Janeiro",
+                    "01000-000;05999-999;SP;São Paulo",
+                    "06000-000;19999-999;SP;Interior",
+                    "69000000;69099999;AM;Manaus"));
+
+            BaseCEP base = BaseCEP.carregar(fonte, binario);
+            assert Files.exists(binario) && base.quantidade() == 4;
+            CEP interior = new CEP("12345-678", base);
+            assert interior.getUf() == UF.SP && interior.getRegiao() == Regiao.SUDESTE;
+            assert interior.getLocalidade().equals("Interior");
+            CEP capital = new CEP("01310-100", base);
+            assert capital.getLocalidade().equals("São Paulo");
+            assert capital.getLocalidade() == new CEP("05999-999", base).getLocalidade();
+            assert new CEP("69005-040", base).getRegiao() == Regiao.NORTE;
+            assert base.localizar(1_000_000) >= 0 && base.localizar(999_999) == -1;
+            assert base.localizar(23_800_000) == -1 && base.localizar(99_999_999) == -1;
+            System.out.println("   ✓ 12345-678 agora resolve: " + interior.getUf() + " - " + interior.getLocalidade()
+                    + " (" + interior.getRegiao() + ")");
+
+            try {
+                new CEP("23800-000", base);
+                assert false : "CEP fora das faixas deveria ser rejeitado";
+            } catch (IllegalArgumentException e) {
+                System.out.println("   ✓ CEP fora das faixas rejeitado: " + e.getMessage());
+            }
+
+            Files.write(fonte, List.of("01000-000;05999-999;SP;A", "05000-000;06999-999;SP;B"));
+            Files.setLastModifiedTime(fonte, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+            try {
+                BaseCEP.carregar(fonte, binario);
+                assert false : "Faixas sobrepostas deveriam ser rejeitadas";
+            } catch (IllegalArgumentException e) {
+                System.out.println("   ✓ Faixas sobrepostas rejeitadas: " + e.getMessage());
+            }
+
+            BaseCEP completa = BaseCEP.carregar(arquivoDeDados("faixas-cep.csv"), binario.resolveSibling("completa.bin"));
+            assert new CEP("88015-100", completa).getUf() == UF.SC;
+            System.out.println("   ✓ Arquivo faixas-cep.csv com " + completa.quantidade() + " faixas carregado");
+            Files.deleteIfExists(binario.resolveSibling("completa.bin"));
+            Files.deleteIfExists(fonte);
+            Files.deleteIfExists(binario);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void testContextoCotacao() {
+        System.out.println("\n7. Testando contexto de cotação memoizado...");
+
+        Produto notebook = new Produto(1L, "Notebook",
+                new Dinheiro("2500.00", Moeda.BRL), new BigDecimal("2.5"));
+        Produto mouse = new Produto(2L, "Mouse",
+                new Dinheiro("150.00", Moeda.BRL), new BigDecimal("0.3"));
+        List<ItemCarrinho> itens = List.of(new ItemCarrinho(notebook, 1), new ItemCarrinho(mouse, 2));
+
+        Pedido pedido = new Pedido(itens, new CEP("90210-001"), new SedexStrategy());
+        ContextoCotacao contexto = pedido.getContextoCotacao();
+        assert contexto.regiao() == Regiao.SUL;
+        assert contexto.pesoTotal().compareTo(new BigDecimal("3.1")) == 0;
+        assert contexto.subtotal().equals(new Dinheiro("2800.00", Moeda.BRL));
+        assert pedido.getContextoCotacao() == contexto;
+        assert pedido.calcularSubtotal() == pedido.calcularSubtotal();
+        assert pedido.getPesoTotal() == pedido.getPesoTotal();
+        System.out.println("   ✓ Peso " + contexto.pesoTotal() + " kg e subtotal " + contexto.subtotal()
+                + " calculados uma vez");
+
+        assert new SedexStrategy().calcular(contexto).equals(pedido.calcularFrete());
+        assert pedido.calcularTotal().equals(new Dinheiro("2827.75", Moeda.BRL));
+        System.out.println("   ✓ Estratégias cotam direto do contexto: SEDEX R$ " + pedido.calcularFrete());
+
+        Pedido compartilhado = new Pedido(itens, new CEP("01310-100"), new PacStrategy());
+        ContextoCotacao[] vistos = new ContextoCotacao[4];
+        Thread[] threads = new Thread[vistos.length];
+        for (int i = 0; i < threads.length; i++) {
+            int indice = i;
+            threads[i] = new Thread(() -> vistos[indice] = compartilhado.getContextoCotacao());
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        for (ContextoCotacao visto : vistos) {
+            assert visto.equals(compartilhado.getContextoCotacao());
+        }
+        System.out.println("   ✓ Leituras concorrentes veem o mesmo contexto");
+
+        Pedido vazio = new Pedido(List.of(), new CEP("01310-100"), new PacStrategy());
+        assert vazio.getPesoTotal().signum() == 0 && vazio.calcularSubtotal().getValor().signum() == 0;
+        System.out.println("   ✓ Pedido vazio: frete PAC R$ " + vazio.calcularFrete());
+
+        Produto cabo = new Produto(3L, "Cabo", new Dinheiro("10.00", Moeda.USD), new BigDecimal("0.5"));
+        Produto livro = new Produto(4L, "Livro", new Dinheiro("40.00", Moeda.BRL), new BigDecimal("2.0"));
+        Pedido misto = new Pedido(List.of(new ItemCarrinho(livro, 1), new ItemCarrinho(cabo, 2)),
+                new CEP("01310-100"), new SedexStrategy());
+        assert misto.getPesoTotal().compareTo(new BigDecimal("3.0")) == 0;
+        assert misto.calcularFrete().equals(new BigDecimal("22.50"));
+        misto.setEstrategiaFrete(new PacStrategy());
+        assert misto.calcularFrete().equals(new BigDecimal("12.50"));
+        assert misto.getContextoCotacao().subtotal() == null;
+        try {
+            misto.calcularSubtotal();
+            assert false : "Subtotal com moedas misturadas deveria falhar";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Moedas incompatíveis");
+        }
+        System.out.println("   ✓ Pedido BRL+USD: peso " + misto.getPesoTotal() + " kg e frete cotados; só o subtotal falha");
+
+        Pedido semCep = new Pedido(List.of(new ItemCarrinho(livro, 2)), null, new RetiradaNaLojaStrategy());
+        assert semCep.getPesoTotal().compareTo(new BigDecimal("4.0")) == 0;
+        assert semCep.calcularSubtotal().equals(new Dinheiro("80.00", Moeda.BRL));
+        assert semCep.calcularFrete().equals(new BigDecimal("0.00"));
+        assert semCep.calcularTotal().equals(new Dinheiro("80.00", Moeda.BRL));
+        semCep.setEstrategiaFrete(new SedexStrategy());
+        try {
+            semCep.calcularFrete();
+            assert false : "SEDEX sem CEP deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Pedido sem CEP: retirada, subtotal e peso funcionam; SEDEX rejeitado: " + e.getMessage());
+        }
+    }
+
+    private static void testCotacaoMultiplasEstrategias() {
+        System.out.println("\n8. Testando cotação de várias estratégias em lote...");
+
+        Produto notebook = new Produto(1L, "Notebook",
+                new Dinheiro("2500.00", Moeda.BRL), new BigDecimal("2.5"));
+        ServicoCotacaoFrete servico = ServicoCotacaoFrete.padrao(ForkJoinPool.commonPool())
+                .registrar("EXPRESSO", pedido -> pedido.getPesoTotal().multiply(new BigDecimal("20"))
+                        .setScale(2, RoundingMode.HALF_EVEN), contexto -> 0);
+
+        Pedido pedido = new Pedido(List.of(new ItemCarrinho(notebook, 1)), new CEP("01310-100"), null);
+        ServicoCotacaoFrete.TabelaCotacoes tabela = servico.cotar(pedido);
+        assert tabela.porPreco().size() == 4;
+        assert tabela.maisBarata().estrategia().equals("RETIRADA");
+        assert tabela.porPreco().get(1).estrategia().equals("PAC");
+        assert tabela.porPreco().get(1).valor().equals(new BigDecimal("11.75"));
+        assert tabela.porPreco().get(2).valor().equals(new BigDecimal("21.25"));
+        assert tabela.maisRapida().estrategia().equals("EXPRESSO");
+        assert tabela.porPrazo().get(1).estrategia().equals("RETIRADA"); // empata com SEDEX em 1 dia, é mais barata
+        System.out.println("   ✓ Mais barata: " + tabela.maisBarata() + " | mais rápida: " + tabela.maisRapida());
+
+        try {
+            servico.registrar("PAC", new PacStrategy(), contexto -> 5);
+            assert false : "Estratégia duplicada deveria ser rejeitada";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Estratégia duplicada rejeitada: " + e.getMessage());
+        }
+
+        String[] ceps = {"01310-100", "90210-001", "40020-000", "69005-040", "70040-010"};
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Produto produto = new Produto((long) i, "Produto " + i,
+                    new Dinheiro(BigDecimal.valueOf(10 + i % 90), Moeda.BRL), BigDecimal.valueOf(i % 40, 1));
+            pedidos.add(new Pedido(List.of(new ItemCarrinho(produto, 1 + i % 3)), new CEP(ceps[i % ceps.length]),
+                    null));
+        }
+        List<ServicoCotacaoFrete.TabelaCotacoes> tabelas = servico.cotar(pedidos);
+        assert tabelas.size() == pedidos.size();
+        for (int i = 0; i < pedidos.size(); i++) {
+            ServicoCotacaoFrete.TabelaCotacoes esperada = servico.cotar(pedidos.get(i));
+            assert tabelas.get(i).pedido() == pedidos.get(i);
+            assert tabelas.get(i).porPreco().equals(esperada.porPreco());
+        }
+        System.out.println("   ✓ Lote de " + pedidos.size() + " pedidos cotado em paralelo, na ordem de entrada");
+    }
+
+    private static void testCacheCotacoes() {
+        System.out.println("\n9. Testando cache de cotações por contexto...");
+
+        CacheCotacoesFrete cache = new CacheCotacoesFrete(32);
+        CalculadoraFreteContextual sedex = cache.envolver("SEDEX", new SedexStrategy());
+        Dinheiro subtotal = new Dinheiro("100.00", Moeda.BRL);
+
+        ContextoCotacao exato = new ContextoCotacao(Regiao.SUDESTE, new BigDecimal("2.5"), subtotal);
+        assert sedex.calcular(exato).equals(new BigDecimal("21.25"));
+        assert sedex.calcular(exato).equals(new SedexStrategy().calcular(exato));
+        // O cache é transparente: cada peso é cotado pelo que pesa, e não pelo topo de uma faixa
+        for (String peso : new String[]{"2.3", "2.31", "0", "7.777", "2.3"}) {
+            ContextoCotacao contexto = new ContextoCotacao(Regiao.SUDESTE, new BigDecimal(peso), subtotal);
+            assert sedex.calcular(contexto).equals(new SedexStrategy().calcular(contexto)) : peso;
+        }
+        CacheCotacoesFrete.Estatisticas estatisticas = cache.estatisticas();
+        assert estatisticas.faltas() == 5 && estatisticas.acertos() == 2 && estatisticas.tamanho() == 5;
+        System.out.printf("   ✓ Valores iguais aos da estratégia; contextos repetidos reaproveitados (acerto %.0f%%)%n",
+                estatisticas.taxaAcerto() * 100);
+
+        for (int peso = 0; peso < 100; peso++) {
+            sedex.calcular(new ContextoCotacao(Regiao.NORTE, BigDecimal.valueOf(peso * 5L, 1), subtotal));
+        }
+        assert cache.estatisticas().tamanho() == 32;
+        long faltas = cache.estatisticas().faltas();
+        // Saem primeiro as mais antigas: os últimos 32 pesos continuam, o primeiro não
+        sedex.calcular(new ContextoCotacao(Regiao.NORTE, BigDecimal.valueOf(99 * 5L, 1), subtotal));
+        assert cache.estatisticas().faltas() == faltas;
+        sedex.calcular(new ContextoCotacao(Regiao.NORTE, BigDecimal.valueOf(0, 1), subtotal));
+        assert cache.estatisticas().faltas() == faltas + 1;
+        System.out.println("   ✓ Tamanho limitado: " + cache.estatisticas().tamanho()
+                + " de 100 contextos mantidos, descartando os mais antigos");
+
+        CalculadoraFreteContextual pac = cache.envolver("PAC", new PacStrategy());
+        pac.calcular(exato);
+        int antes = cache.estatisticas().tamanho();
+        cache.invalidar("SEDEX");
+        assert cache.estatisticas().tamanho() == 1 && pac.calcular(exato).equals(new BigDecimal("11.75"));
+        cache.invalidar();
+        assert cache.estatisticas().tamanho() == 0;
+        System.out.println("   ✓ Invalidação por estratégia (" + antes + " → 1) e total (→ 0)");
+
+        try {
+            new CacheCotacoesFrete(0);
+            assert false : "Capacidade zero deveria ser rejeitada";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Capacidade inválida rejeitada: " + e.getMessage());
+        }
+    }
+
+    private static void testTabelaFreteRecarregavel() {
+        System.out.println("\n10. Testando tabela de frete recarregável...");
+
+        Dinheiro subtotal = new Dinheiro("100.00", Moeda.BRL);
+        try {
+            Path arquivo = Files.createTempFile("tarifas", ".csv");
+            Files.write(arquivo, List.of(
+                    "regioes;SUDESTE;SUL;NORDESTE;NORTE;CENTRO_OESTE",
+                    "1;10.00;12.00;14.00;20.00;16.00",
+                    "5;20.00;24.00;28.00;40.00;32.00",
+                    "excedente;3.00;3.00;3.00;4.00;3.00"));
+
+            try (TabelaFreteStrategy tabela = new TabelaFreteStrategy(arquivo)) {
+                assert tabela.calcular(new ContextoCotacao(Regiao.SUDESTE, new BigDecimal("1"), subtotal))
+                        .equals(new BigDecimal("10.00"));
+                assert tabela.calcular(new ContextoCotacao(Regiao.SUL, new BigDecimal("1.2"), subtotal))
+                        .equals(new BigDecimal("24.00"));
+                assert tabela.calcular(new ContextoCotacao(Regiao.NORTE, new BigDecimal("7.5"), subtotal))
+                        .equals(new BigDecimal("50.00"));
+                System.out.println("   ✓ Faixas e excedente por kg: NORTE 7,5 kg = R$ 50.00");
+
+                CacheCotacoesFrete cache = new CacheCotacoesFrete(64);
+                CalculadoraFreteContextual comCache = cache.envolver("TABELA", tabela);
+                tabela.aoRecarregar(() -> cache.invalidar("TABELA"));
+                ContextoCotacao contexto = new ContextoCotacao(Regiao.SUDESTE, new BigDecimal("0.8"), subtotal);
+                assert comCache.calcular(contexto).equals(new BigDecimal("10.00"));
+
+                Files.write(arquivo, List.of(
+                        "regioes;SUL;SUDESTE;NORDESTE;NORTE;CENTRO_OESTE",
+                        "1;12.00;11.00;14.00;20.00;16.00",
+                        "5;24.00;22.00;28.00;40.00;32.00"));
+                Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis() + 1_000));
+                assert tabela.recarregarSeAlterado() && !tabela.recarregarSeAlterado();
+                assert tabela.versao() == 2;
+                assert comCache.calcular(contexto).equals(new BigDecimal("11.00"));
+                System.out.println("   ✓ Versão " + tabela.versao() + " publicada e cache invalidado: R$ "
+                        + comCache.calcular(contexto));
+
+                try {
+                    tabela.calcular(new ContextoCotacao(Regiao.SUL, new BigDecimal("6"), subtotal));
+                    assert false : "Peso acima da última faixa sem excedente deveria falhar";
+                } catch (IllegalArgumentException e) {
+                    System.out.println("   ✓ Peso fora da tabela rejeitado: " + e.getMessage());
+                }
+
+                Files.write(arquivo, List.of("regioes;SUDESTE;SUL", "1;10.00;12.00"));
+                Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis() + 2_000));
+                try {
+                    tabela.recarregarSeAlterado();
+                    assert false : "Tabela inválida deveria ser rejeitada";
+                } catch (IllegalArgumentException e) {
+                    assert tabela.versao() == 2 && tabela.calcular(contexto).equals(new BigDecimal("11.00"));
+                    System.out.println("   ✓ Tabela inválida rejeitada, versão anterior mantida: " + e.getMessage());
+                }
+
+                tabela.vigiar();
+                long[] lidas = new long[1];
+                boolean[] falhou = new boolean[1];
+                Thread leitor = new Thread(() -> {
+                    while (tabela.versao() < 3) {
+                        BigDecimal valor = tabela.calcular(contexto);
+                        falhou[0] |= !valor.equals(new BigDecimal("11.00")) && !valor.equals(new BigDecimal("13.00"));
+                        lidas[0]++;
+                    }
+                });
+                leitor.start();
+                Files.write(arquivo, List.of(
+                        "regioes;SUDESTE;SUL;NORDESTE;NORTE;CENTRO_OESTE",
+                        "2;13.00;15.00;17.00;23.00;19.00"));
+                Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis() + 3_000));
+                leitor.join(10_000);
+                assert !leitor.isAlive() && !falhou[0] : "Vigilância não publicou a nova tabela";
+                assert tabela.calcular(contexto).equals(new BigDecimal("13.00"));
+                System.out.println("   ✓ Alteração detectada pela vigilância; " + lidas[0]
+                        + " cotações concorrentes sem bloqueio");
+            }
+            Files.deleteIfExists(arquivo);
+
+            // Duas gravações no mesmo tique: mesmo tamanho e mesma data, conteúdo diferente
+            Path mesmoTique = Files.createTempFile("tarifas", ".csv");
+            Files.write(mesmoTique, List.of("regioes;SUDESTE;SUL;NORDESTE;NORTE;CENTRO_OESTE",
+                    "1;10.00;12.00;14.00;20.00;16.00"));
+            FileTime instante = Files.getLastModifiedTime(mesmoTique);
+            try (TabelaFreteStrategy tabela = new TabelaFreteStrategy(mesmoTique)) {
+                long tamanho = Files.size(mesmoTique);
+                Files.write(mesmoTique, List.of("regioes;SUDESTE;SUL;NORDESTE;NORTE;CENTRO_OESTE",
+                        "1;19.00;12.00;14.00;20.00;16.00"));
+                Files.setLastModifiedTime(mesmoTique, instante);
+                assert Files.size(mesmoTique) == tamanho && Files.getLastModifiedTime(mesmoTique).equals(instante);
+                ContextoCotacao sudeste = new ContextoCotacao(Regiao.SUDESTE, BigDecimal.ONE, subtotal);
+                assert tabela.recarregarSeAlterado() && tabela.versao() == 2;
+                assert tabela.calcular(sudeste).equals(new BigDecimal("19.00"));
+                System.out.println("   ✓ Regravação com mesma data e tamanho detectada pelo conteúdo");
+
+                TabelaFreteStrategy.substituir(mesmoTique, List.of("regioes;SUDESTE;SUL;NORDESTE;NORTE;CENTRO_OESTE",
+                        "1;21.00;12.00;14.00;20.00;16.00", "excedente;1.00;1.00;1.00;1.00;1.00"));
+                assert tabela.recarregarSeAlterado() && tabela.calcular(sudeste).equals(new BigDecimal("21.00"));
+                try (var restantes = Files.list(mesmoTique.toAbsolutePath().getParent())) {
+                    assert restantes.noneMatch(p -> p.getFileName().toString()
+                            .startsWith(mesmoTique.getFileName().toString()) && p.toString().endsWith(".tmp"));
+                }
+                System.out.println("   ✓ Troca atômica publicada como versão " + tabela.versao());
+            }
+            Files.deleteIfExists(mesmoTique);
+
+            try (TabelaFreteStrategy sedex = new TabelaFreteStrategy(arquivoDeDados("tarifas-sedex.csv"))) {
+                for (String peso : new String[]{"0.5", "2", "30", "42.5"}) {
+                    ContextoCotacao contexto = new ContextoCotacao(Regiao.NORDESTE, new BigDecimal(peso), subtotal);
+                    assert sedex.calcular(contexto).equals(new SedexStrategy().calcular(contexto));
+                }
+                System.out.println("   ✓ tarifas-sedex.csv reproduz a SedexStrategy nos limites das faixas");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void testOtimizadorPacotes() {
+        System.out.println("\n11. Testando divisão do pedido em pacotes...");
+
+        // Econômico: preço fixo até 10 kg; pesado: aceita até 50 kg, mas cobra por kg
+        CalculadoraFreteContextual economico = contexto -> new BigDecimal("15.00");
+        CalculadoraFreteContextual pesado = contexto -> new BigDecimal("40")
+                .add(contexto.pesoTotal().multiply(new BigDecimal("2"))).setScale(2, RoundingMode.HALF_EVEN);
+        OtimizadorPacotes otimizador = new OtimizadorPacotes(ForkJoinPool.commonPool())
+                .registrar("ECONOMICO", economico, new BigDecimal("10"))
+                .registrar("PESADO", pesado, new BigDecimal("50"));
+
+        Produto halter = new Produto(10L, "Halter", new Dinheiro("80.00", Moeda.BRL), new BigDecimal("4"));
+        Pedido pedido = new Pedido(List.of(new ItemCarrinho(halter, 6)), new CEP("01310-100"), null);
+        OtimizadorPacotes.PlanoEnvio plano = otimizador.otimizar(pedido, Duration.ofMillis(200));
+        assert plano.custoPacoteUnico().equals(new BigDecimal("88.00"));
+        assert plano.custoTotal().compareTo(new BigDecimal("45.00")) == 0 && plano.pacotes().size() == 3;
+        for (OtimizadorPacotes.Pacote pacote : plano.pacotes()) {
+            assert pacote.estrategia().equals("ECONOMICO") && pacote.pesoKg().compareTo(BigDecimal.TEN) <= 0;
+        }
+        System.out.println("   ✓ 24 kg em " + plano.pacotes().size() + " pacotes: R$ " + plano.custoTotal()
+                + " contra R$ " + plano.custoPacoteUnico() + " em um só (economia R$ " + plano.economia() + ")");
+
+        Produto esteira = new Produto(11L, "Esteira", new Dinheiro("3000.00", Moeda.BRL), new BigDecimal("20"));
+        Produto banco = new Produto(12L, "Banco", new Dinheiro("600.00", Moeda.BRL), new BigDecimal("15"));
+        OtimizadorPacotes correios = new OtimizadorPacotes(ForkJoinPool.commonPool())
+                .registrar("SEDEX", new SedexStrategy(), new BigDecimal("30"))
+                .registrar("PAC", new PacStrategy(), new BigDecimal("30"));
+        OtimizadorPacotes.PlanoEnvio grande = correios.otimizar(new Pedido(List.of(new ItemCarrinho(esteira, 1),
+                new ItemCarrinho(banco, 1)), new CEP("01310-100"), null), Duration.ofMillis(50));
+        assert grande.custoPacoteUnico() == null && grande.pacotes().size() == 2;
+        assert grande.custoTotal().equals(new BigDecimal("68.50")); // PAC: (8 + 30) + (8 + 22,50)
+        System.out.println("   ✓ 35 kg acima do limite de 30 kg divididos em 2 pacotes PAC: R$ " + grande.custoTotal());
+
+        try {
+            correios.otimizar(new Pedido(List.of(new ItemCarrinho(new Produto(13L, "Piano",
+                    new Dinheiro("9000.00", Moeda.BRL), new BigDecimal("200")), 1)), new CEP("01310-100"), null),
+                    Duration.ofMillis(10));
+            assert false : "Item mais pesado que qualquer transportadora deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Item pesado demais rejeitado: " + e.getMessage());
+        }
+
+        // Unidades iguais andam em grupo e o prazo vale para o first-fit e as junções: sem orçamento,
+        // um milhão de unidades ainda sai no primeiro plano montado
+        Produto parafuso = new Produto(14L, "Caixa de parafusos", new Dinheiro("5.00", Moeda.BRL), BigDecimal.ONE);
+        long inicio = System.nanoTime();
+        OtimizadorPacotes.PlanoEnvio atacado = otimizador.otimizar(new Pedido(List.of(
+                new ItemCarrinho(parafuso, 1_000_000)), new CEP("01310-100"), null), Duration.ZERO);
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        assert atacado.tentativas() == 1 && atacado.pacotes().size() == 100_000;
+        assert atacado.custoTotal().compareTo(new BigDecimal("1500000.00")) == 0;
+        assert atacado.pacotes().get(0).itens().get(0).getQuantidade() == 10;
+        System.out.println("   ✓ 1.000.000 unidades em " + atacado.pacotes().size() + " pacotes sem orçamento ("
+                + duracaoMs + " ms)");
+
+        List<ItemCarrinho> muitosItens = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            muitosItens.add(new ItemCarrinho(new Produto(100L + i, "Peça " + i, new Dinheiro("10.00", Moeda.BRL),
+                    BigDecimal.valueOf(100 + (i * 37) % 2_900, 3)), 1 + i % 8));
+        }
+        Pedido pedidoGrande = new Pedido(muitosItens, new CEP("69005-040"), null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        OtimizadorPacotes.PlanoEnvio paralelo = new OtimizadorPacotes(pool)
+                .registrar("ECONOMICO", economico, new BigDecimal("10"))
+                .registrar("PESADO", pesado, new BigDecimal("50"))
+                .otimizar(pedidoGrande, Duration.ofMillis(200));
+        pool.shutdown();
+        Map<Long, Integer> enviados = new HashMap<>();
+        BigDecimal pesoEnviado = BigDecimal.ZERO;
+        for (OtimizadorPacotes.Pacote pacote : paralelo.pacotes()) {
+            BigDecimal pesoPacote = BigDecimal.ZERO;
+            for (ItemCarrinho item : pacote.itens()) {
+                enviados.merge(item.getProduto().getId(), item.getQuantidade(), Integer::sum);
+                pesoPacote = pesoPacote.add(item.getPesoTotal());
+            }
+            assert pesoPacote.compareTo(pacote.pesoKg()) == 0;
+            assert pacote.pesoKg().compareTo(new BigDecimal(pacote.estrategia().equals("ECONOMICO") ? "10" : "50")) <= 0;
+            pesoEnviado = pesoEnviado.add(pesoPacote);
+        }
+        for (ItemCarrinho item : muitosItens) {
+            assert enviados.get(item.getProduto().getId()) == item.getQuantidade();
+        }
+        assert pesoEnviado.compareTo(pedidoGrande.getPesoTotal()) == 0;
+        System.out.println("   ✓ " + pedidoGrande.getPesoTotal() + " kg em " + paralelo.pacotes().size()
+                + " pacotes por R$ " + paralelo.custoTotal() + " após " + paralelo.tentativas() + " tentativas em paralelo");
+    }
+
+    private static void testFretePorDistancia() {
+        System.out.println("\n12. Testando frete por distância até o centro de distribuição...");
+
+        List<MatrizDistancias.Centro> centros = List.of(
+                new MatrizDistancias.Centro("CD-CAJAMAR", -23.3550, -46.8770, Set.of(1L, 2L)),
+                new MatrizDistancias.Centro("CD-RECIFE", -8.1130, -35.0150, Set.of(1L)),
+                new MatrizDistancias.Centro("CD-GRAVATAI", -29.9440, -50.9920, Set.of(1L, 2L)));
+        MatrizDistancias matriz = MatrizDistancias.de(List.of(
+                "010;059;-23.5505;-46.6333;São Paulo",
+                "500;529;-8.0476;-34.8770;Recife",
+                "900;919;-30.0346;-51.2177;Porto Alegre"), centros);
+        assert matriz.distanciaKm(13, 0) == Math.round(MatrizDistancias.distanciaKm(-23.5505, -46.6333,
+                -23.3550, -46.8770));
+        assert matriz.distanciaKm(123, 0) == -1;
+
+        Produto livro = new Produto(1L, "Livro", new Dinheiro("50.00", Moeda.BRL), new BigDecimal("0.5"));
+        Produto monitor = new Produto(2L, "Monitor", new Dinheiro("900.00", Moeda.BRL), new BigDecimal("4"));
+        FreteDistanciaStrategy distancia = new FreteDistanciaStrategy(matriz, new BigDecimal("5.00"),
+                new BigDecimal("0.02"), new BigDecimal("1.00"));
+
+        Pedido recifeLivro = new Pedido(List.of(new ItemCarrinho(livro, 2)), new CEP("50030-230"), distancia);
+        FreteDistanciaStrategy.Rota rota = distancia.rota(recifeLivro);
+        assert rota.centro().codigo().equals("CD-RECIFE") && rota.distanciaKm() < 30;
+        assert recifeLivro.calcularFrete().equals(new BigDecimal("6.00").add(new BigDecimal("0.02")
+                .multiply(BigDecimal.valueOf(rota.distanciaKm()))).setScale(2, RoundingMode.HALF_EVEN));
+        System.out.println("   ✓ Livro para Recife sai do " + rota.centro().codigo() + " (" + rota.distanciaKm()
+                + " km): R$ " + recifeLivro.calcularFrete());
+
+        Pedido recifeMonitor = new Pedido(List.of(new ItemCarrinho(monitor, 1)), new CEP("50030-230"), distancia);
+        FreteDistanciaStrategy.Rota semEstoqueLocal = distancia.rota(recifeMonitor);
+        assert semEstoqueLocal.centro().codigo().equals("CD-CAJAMAR") && semEstoqueLocal.distanciaKm() > 2_000;
+        System.out.println("   ✓ Monitor sem estoque em Recife sai do " + semEstoqueLocal.centro().codigo() + " ("
+                + semEstoqueLocal.distanciaKm() + " km): R$ " + recifeMonitor.calcularFrete());
+
+        assert distancia.rota(new Pedido(List.of(new ItemCarrinho(monitor, 1)), new CEP("90010-000"), distancia))
+                .centro().codigo().equals("CD-GRAVATAI");
+
+        try {
+            new Pedido(List.of(new ItemCarrinho(livro, 1)), new CEP("78900-000"), distancia).calcularFrete();
+            assert false : "CEP sem coordenadas deveria ser rejeitado";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Setor sem coordenadas rejeitado: " + e.getMessage());
+        }
+        try {
+            MatrizDistancias.de(List.of("010;059;-23.55;-46.63", "050;060;-23.6;-46.7"), centros);
+            assert false : "Setores repetidos deveriam ser rejeitados";
+        } catch (IllegalArgumentException e) {
+            System.out.println("   ✓ Setores repetidos rejeitados: " + e.getMessage());
+        }
+
+        try {
+            MatrizDistancias completa = MatrizDistancias.carregar(arquivoDeDados("coordenadas-cep.csv"), centros);
+            assert completa.distanciaKm(MatrizDistancias.setorDe(new CEP("69005-040")), 0) > 2_500;
+            System.out.println("   ✓ coordenadas-cep.csv carregado: Manaus a "
+                    + completa.distanciaKm(690, 0) + " km de Cajamar");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void testCotacaoConcorrenteTransportadoras() {
+        System.out.println("\n13. Testando cotação concorrente com prazo, repetição e reserva...");
+
+        // Servidor local no lugar das APIs das transportadoras: /rapida responde na hora, /lenta demora 2 s
+        // e /instavel demora 2 s só quando marcada para isso
+        AtomicBoolean proximaLenta = new AtomicBoolean();
+        AtomicInteger chamadasInstavel = new AtomicInteger();
+        HttpServer stub;
+        try {
+            stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        stub.setExecutor(Executores.porTarefa("stub-transportadoras"));
+        stub.createContext("/rapida", troca -> responder(troca, "19.90", 0));
+        stub.createContext("/lenta", troca -> responder(troca, "9.90", 2_000));
+        stub.createContext("/instavel", troca -> {
+            chamadasInstavel.incrementAndGet();
+            responder(troca, "14.90", proximaLenta.getAndSet(false) ? 2_000 : 0);
+        });
+        stub.start();
+        HttpClient cliente = HttpClient.newHttpClient();
+        String base = "http://127.0.0.1:" + stub.getAddress().getPort();
+
+        Produto livro = new Produto(1L, "Livro", new Dinheiro("50.00", Moeda.BRL), new BigDecimal("0.5"));
+        Pedido pedido = new Pedido(List.of(new ItemCarrinho(livro, 1)), new CEP("01310-100"), null);
+        try (CotadorTransportadoras cotador = new CotadorTransportadoras()
+                .registrar("RAPIDA", p -> consultar(cliente, base + "/rapida"), Duration.ofMillis(500), null)
+                .registrar("LENTA", p -> consultar(cliente, base + "/lenta"), Duration.ofMillis(300),
+                        new PacStrategy())
+                .registrar("INSTAVEL", p -> consultar(cliente, base + "/instavel"), Duration.ofMillis(800), null)
+                .registrar("FORA_DO_AR", p -> {
+                    throw new IllegalStateException("Conexão recusada");
+                }, Duration.ofMillis(500), new SedexStrategy())) {
+
+            for (int i = 0; i < CotadorTransportadoras.AMOSTRAS_MINIMAS; i++) {
+                cotador.cotar(pedido);
+            }
+            long inicio = System.nanoTime();
+            proximaLenta.set(true);
+            int chamadasAntes = chamadasInstavel.get();
+            Map<String, CotadorTransportadoras.Cotacao> cotacoes = new HashMap<>();
+            for (CotadorTransportadoras.Cotacao cotacao : cotador.cotar(pedido)) {
+                cotacoes.put(cotacao.transportadora(), cotacao);
+            }
+            long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+            assert cotacoes.get("RAPIDA").origem() == CotadorTransportadoras.Origem.PRIMARIA;
+            assert cotacoes.get("RAPIDA").valor().equals(new BigDecimal("19.90"));
+            assert cotacoes.get("LENTA").origem() == CotadorTransportadoras.Origem.RESERVA;
+            assert cotacoes.get("LENTA").valor().equals(new PacStrategy().calcular(pedido));
+            assert cotacoes.get("INSTAVEL").origem() == CotadorTransportadoras.Origem.REPETICAO;
+            assert cotacoes.get("INSTAVEL").valor().equals(new BigDecimal("14.90"));
+            assert chamadasInstavel.get() - chamadasAntes == 2;
+            assert cotacoes.get("FORA_DO_AR").origem() == CotadorTransportadoras.Origem.RESERVA;
+            assert duracaoMs < 1_500 : "Uma transportadora lenta não pode segurar a cotação: " + duracaoMs + " ms";
+            System.out.println("   ✓ Cotação completa em " + duracaoMs + " ms apesar da transportadora de 2 s");
+            System.out.println("   ✓ LENTA pela reserva (PAC R$ " + cotacoes.get("LENTA").valor()
+                    + "), INSTAVEL pela repetição, FORA_DO_AR pela reserva sem esperar o prazo");
+
+            CotadorTransportadoras.Percentis percentis = cotador.percentis("RAPIDA");
+            // Repetições que também responderam entram na janela, então pode haver mais de uma por cotação
+            assert percentis.amostras() >= CotadorTransportadoras.AMOSTRAS_MINIMAS + 1;
+            assert percentis.p50Nanos() <= percentis.p95Nanos() && percentis.p95Nanos() <= percentis.p99Nanos();
+            assert cotador.percentis("LENTA").amostras() == 0;
+            System.out.printf("   ✓ RAPIDA: p50 %.2f ms, p95 %.2f ms, p99 %.2f ms em %d respostas%n",
+                    percentis.p50Nanos() / 1e6, percentis.p95Nanos() / 1e6, percentis.p99Nanos() / 1e6,
+                    percentis.amostras());
+
+            try (CotadorTransportadoras soLenta = new CotadorTransportadoras()
+                    .registrar("SO_LENTA", p -> consultar(cliente, base + "/lenta"), Duration.ofMillis(100), null)) {
+                CotadorTransportadoras.Cotacao semReserva = soLenta.cotar(pedido).get(0);
+                assert semReserva.origem() == CotadorTransportadoras.Origem.INDISPONIVEL && semReserva.valor() == null;
+                System.out.println("   ✓ Sem reserva, transportadora fora do prazo fica indisponível");
+            }
+
+            // Reservas lentas rodam no executor, lado a lado, e não enfileiradas na thread do agendador
+            Set<String> threadsReserva = Collections.synchronizedSet(new HashSet<>());
+            CalculadoraFrete reservaLenta = p -> {
+                threadsReserva.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                return new BigDecimal("12.00");
+            };
+            try (CotadorTransportadoras comReservasLentas = new CotadorTransportadoras()
+                    .registrar("LENTA_A", p -> consultar(cliente, base + "/lenta"), Duration.ofMillis(100), reservaLenta)
+                    .registrar("LENTA_B", p -> consultar(cliente, base + "/lenta"), Duration.ofMillis(100), reservaLenta)) {
+                long inicioReservas = System.nanoTime();
+                List<CotadorTransportadoras.Cotacao> pelaReserva = comReservasLentas.cotar(pedido);
+                long reservasMs = (System.nanoTime() - inicioReservas) / 1_000_000;
+                for (CotadorTransportadoras.Cotacao cotacao : pelaReserva) {
+                    assert cotacao.origem() == CotadorTransportadoras.Origem.RESERVA : cotacao;
+                }
+                assert threadsReserva.size() == 2 && !threadsReserva.contains("cotacao-agendador") : threadsReserva;
+                assert reservasMs < 650 : "Reservas enfileiradas: " + reservasMs + " ms";
+                System.out.println("   ✓ Duas reservas de 300 ms em paralelo no executor: " + reservasMs + " ms");
+            }
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private static void testServidorCotacao() {
+        System.out.println("\n14. Testando endpoint HTTP de cotação e leitor de JSON...");
+
+        LeitorJson json = new LeitorJson(new StringReader(
+                "{\"a\": [1, {\"b\": \"x\\u00e9\\n\"}], \"ignorado\": {\"c\": [[], {}]}, \"d\": -1.5e3, \"e\": null}"));
+        json.esperar(LeitorJson.Token.INICIO_OBJETO);
+        assert json.proximo() == LeitorJson.Token.NOME && json.texto().equals("a");
+        json.esperar(LeitorJson.Token.INICIO_LISTA);
+        assert json.proximo() == LeitorJson.Token.NUMERO && json.texto().equals("1");
+        json.esperar(LeitorJson.Token.INICIO_OBJETO);
+        assert json.proximo() == LeitorJson.Token.NOME && json.texto().equals("b");
+        assert json.lerTexto("b").equals("xé\n");
+        json.esperar(LeitorJson.Token.FIM_OBJETO);
+        json.esperar(LeitorJson.Token.FIM_LISTA);
+        assert json.proximo() == LeitorJson.Token.NOME && json.texto().equals("ignorado");
+        json.pular();
+        assert json.proximo() == LeitorJson.Token.NOME && json.texto().equals("d");
+        assert json.lerNumero("d").compareTo(new BigDecimal("-1500")) == 0;
+        assert json.proximo() == LeitorJson.Token.NOME && json.lerTexto("e") == null;
+        json.esperar(LeitorJson.Token.FIM_OBJETO);
+        json.esperar(LeitorJson.Token.FIM);
+        for (String invalido : new String[]{"{\"a\":1,}", "[1 2]", "{\"a\":01}", "\"sem fim", "{} x", "[-]", "{a:1}"}) {
+            try {
+                LeitorJson leitor = new LeitorJson(new StringReader(invalido));
+                while (leitor.proximo() != LeitorJson.Token.FIM) {
+                }
+                assert false : "Deveria rejeitar JSON inválido: " + invalido;
+            } catch (IllegalArgumentException e) {
+                // esperado
+            }
+        }
+        System.out.println("   ✓ Leitor percorre tokens, pula valores aninhados e rejeita JSON malformado");
+
+        ServicoCotacaoFrete servico = ServicoCotacaoFrete.padrao(ForkJoinPool.commonPool());
+        try (ServidorCotacao servidor = new ServidorCotacao(servico, null)
+                .iniciar(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            HttpClient cliente = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + servidor.porta() + ServidorCotacao.CAMINHO);
+            String corpo = "{\"cep\": \"01310-100\", \"cupom\": {\"codigo\": \"X\"}, \"itens\": ["
+                    + "{\"id\": 1, \"nome\": \"Notebook\", \"preco\": \"2500.00\", \"peso\": 2.5, \"quantidade\": 1},"
+                    + "{\"id\": 2, \"nome\": \"Mouse\", \"preco\": 75, \"moeda\": \"BRL\", \"peso\": 0.2, \"quantidade\": 2}]}";
+
+            HttpResponse<String> resposta = postar(cliente, uri, corpo);
+            assert resposta.statusCode() == 200 : resposta.body();
+            assert resposta.headers().firstValue("Content-Type").orElse("").startsWith("application/json");
+            Map<String, BigDecimal[]> cotacoes = lerCotacoes(resposta.body());
+            Produto notebook = new Produto(1L, "Notebook", new Dinheiro("2500.00", Moeda.BRL), new BigDecimal("2.5"));
+            Produto mouse = new Produto(2L, "Mouse", new Dinheiro("75", Moeda.BRL), new BigDecimal("0.2"));
+            Pedido pedido = new Pedido(List.of(new ItemCarrinho(notebook, 1), new ItemCarrinho(mouse, 2)),
+                    new CEP("01310-100"), new SedexStrategy());
+            assert cotacoes.keySet().equals(Set.of("SEDEX", "PAC", "RETIRADA"));
+            assert cotacoes.get("SEDEX")[0].equals(pedido.calcularFrete());
+            assert cotacoes.get("SEDEX")[1].equals(pedido.calcularTotal().getValor());
+            pedido.setEstrategiaFrete(new PacStrategy());
+            assert cotacoes.get("PAC")[1].equals(pedido.calcularTotal().getValor());
+            assert cotacoes.get("RETIRADA")[1].equals(new BigDecimal("2650.00"));
+            assert resposta.body().indexOf("\"RETIRADA\"") < resposta.body().indexOf("\"PAC\"")
+                    : "Cotações devem vir da mais barata para a mais cara";
+            System.out.println("   ✓ POST " + ServidorCotacao.CAMINHO + " devolve as 3 estratégias: SEDEX total R$ "
+                    + cotacoes.get("SEDEX")[1] + ", igual a Pedido.calcularTotal()");
+
+            String soPac = corpo.replace("\"cep\":", "\"estrategia\": \"PAC\", \"cep\":");
+            Map<String, BigDecimal[]> apenasPac = lerCotacoes(postar(cliente, uri, soPac).body());
+            assert apenasPac.keySet().equals(Set.of("PAC"));
+            System.out.println("   ✓ Com \"estrategia\", só ela é cotada");
+
+            String[][] invalidos = {
+                    {"{\"cep\": \"01310-100\", \"itens\": [", "JSON inválido"},
+                    {soPac.replace("PAC", "DRONE"), "Estratégia não registrada: DRONE"},
+                    {corpo.replace("01310-100", "12345-678"), "CEP não mapeado"},
+                    {corpo.replace("\"quantidade\": 2", "\"quantidade\": 0"), "Quantidade deve ser maior que zero"},
+                    {corpo.replace("\"moeda\": \"BRL\"", "\"moeda\": \"USD\""), "Moedas incompatíveis"},
+                    {"{\"cep\": \"01310-100\", \"itens\": []}", "Pedido sem itens"},
+                    // Números curtos que viram bilhões de dígitos em setScale ou toPlainString
+                    {corpo.replace("\"preco\": 75", "\"preco\": 1e999999999"), "fora do intervalo aceito"},
+                    {corpo.replace("\"peso\": 0.2", "\"peso\": 1e999999999"), "fora do intervalo aceito"},
+                    {corpo.replace("\"peso\": 0.2", "\"peso\": 1e-999999999"), "fora do intervalo aceito"},
+                    {corpo.replace("\"preco\": 75", "\"preco\": " + "9".repeat(40)), "fora do intervalo aceito"},
+                    {corpo.replace("Mouse", "M".repeat(LeitorJson.TAMANHO_MAXIMO_TEXTO + 1)), "acima de"}
+            };
+            for (String[] invalido : invalidos) {
+                HttpResponse<String> rejeitada = postar(cliente, uri, invalido[0]);
+                assert rejeitada.statusCode() == 400 : rejeitada.statusCode() + " " + rejeitada.body();
+                assert rejeitada.body().startsWith("{\"erro\":") && rejeitada.body().contains(invalido[1])
+                        : rejeitada.body();
+            }
+            // Só os cabeçalhos: o servidor responde sem ler o corpo, e o HttpClient perderia a resposta
+            // ao ter a conexão fechada no meio do envio
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), servidor.porta())) {
+                socket.getOutputStream().write(("POST " + ServidorCotacao.CAMINHO + " HTTP/1.1\r\nHost: local\r\n"
+                        + "Content-Length: " + (ServidorCotacao.MAXIMO_CORPO_BYTES + 1) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                String linhaStatus = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII)).readLine();
+                assert linhaStatus.startsWith("HTTP/1.1 413") : linhaStatus;
+            }
+            HttpResponse<String> semPost = cliente.send(HttpRequest.newBuilder(uri).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assert semPost.statusCode() == 405;
+            System.out.println("   ✓ Pedido inválido, número fora do intervalo ou texto gigante responde 400;"
+                    + " GET responde 405");
+
+            List<CompletableFuture<HttpResponse<String>>> simultaneas = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                simultaneas.add(cliente.sendAsync(HttpRequest.newBuilder(uri)
+                        .POST(HttpRequest.BodyPublishers.ofString(corpo)).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> simultanea : simultaneas) {
+                HttpResponse<String> concluida = simultanea.join();
+                assert concluida.statusCode() == 200 && concluida.body().equals(resposta.body());
+            }
+            System.out.println("   ✓ 64 requisições simultâneas respondidas com a mesma cotação");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Os arquivos de dados ficam ao lado dos fontes, como o cache do gerador: execute a partir de src/8
+    private static Path arquivoDeDados(String nome) {
+        Path arquivo = Path.of(nome);
+        if (!Files.exists(arquivo)) {
+            throw new IllegalStateException("Arquivo de dados não encontrado: " + arquivo.toAbsolutePath()
+                    + " (execute os testes a partir de src/8)");
+        }
+        return arquivo;
+    }
+
+    private static HttpResponse<String> postar(HttpClient cliente, URI uri, String corpo)
+            throws IOException, InterruptedException {
+        return cliente.send(HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(corpo)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Estratégia -> {frete, total}, lidos da resposta token a token
+    private static Map<String, BigDecimal[]> lerCotacoes(String resposta) {
+        LeitorJson json = new LeitorJson(new StringReader(resposta));
+        Map<String, BigDecimal[]> cotacoes = new HashMap<>();
+        json.esperar(LeitorJson.Token.INICIO_OBJETO);
+        while (json.proximo() == LeitorJson.Token.NOME) {
+            if (!json.texto().equals("cotacoes")) {
+                json.pular();
+                continue;
+            }
+            json.esperar(LeitorJson.Token.INICIO_LISTA);
+            while (json.proximo() == LeitorJson.Token.INICIO_OBJETO) {
+                String estrategia = null;
+                BigDecimal[] valores = new BigDecimal[2];
+                while (json.proximo() == LeitorJson.Token.NOME) {
+                    switch (json.texto()) {
+                        case "estrategia" -> estrategia = json.lerTexto("estrategia");
+                        case "frete" -> valores[0] = json.lerNumero("frete");
+                        case "total" -> valores[1] = json.lerNumero("total");
+                        default -> json.pular();
+                    }
+                }
+                cotacoes.put(estrategia, valores);
+            }
+        }
+        return cotacoes;
+    }
+
+    private static void responder(HttpExchange troca, String valor, long atrasoMs) throws IOException {
+        try {
+            Thread.sleep(atrasoMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] corpo = valor.getBytes(StandardCharsets.UTF_8);
+        troca.sendResponseHeaders(200, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    private static BigDecimal consultar(HttpClient cliente, String url) {
+        try {
+            HttpResponse<String> resposta = cliente.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return new BigDecimal(resposta.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cotação interrompida", e);
+        }
+    }
+}